@@ -0,0 +1,198 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ThreadInfo;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 栈采样的公共部分：按固定频率以一次批量的getThreadInfo(tids, depth)获取目标线程的栈，交给子类累加，
+ * 并将以折叠格式(folded stack)累加的权重写入文件，可直接作为flamegraph.pl的输入。
+ *
+ * 长时间运行时不同的栈(如线程名中带有递增序号)会不断增加，超过MAX_STACKS个后新出现的栈合并计入[other stacks]。
+ */
+public abstract class AbstractStackSampler implements Runnable {
+
+	// 栈深度超过时从栈底截断，折叠栈以[truncated]作为根
+	public static final int MAX_DEPTH = 128;
+	// 保留的不同折叠栈的个数上限
+	public static final int MAX_STACKS = 10000;
+	public static final String OTHER_STACKS = "[other stacks]";
+
+	protected final VMInfo vmInfo;
+	private final String path;
+	private final String threadName;
+	private final long periodNanos;
+	public final int hz;
+
+	// 目标线程，为null时暂停采样
+	protected volatile long[] targetTids;
+	private volatile boolean running = true;
+	private Thread samplerThread;
+
+	// 折叠栈 -> 累计的权重，读写均在锁内
+	protected final Map<String, long[]> stacks = new HashMap<>();
+	private boolean dirty = false;
+
+	// 统计信息，供界面显示
+	public volatile long sampleCount;
+	public volatile long missedCount;
+	// 因超过MAX_STACKS而计入[other stacks]的次数
+	public volatile long otherCount;
+	private volatile long totalCostNanos;
+	private volatile long callCount;
+
+	protected AbstractStackSampler(VMInfo vmInfo, String path, int hz, String threadName) {
+		if (hz < 1 || hz > 1000) {
+			throw new IllegalArgumentException("Sample rate should be between 1 and 1000 Hz");
+		}
+		this.vmInfo = vmInfo;
+		this.path = path;
+		this.hz = hz;
+		this.threadName = threadName;
+		this.periodNanos = TimeUnit.SECONDS.toNanos(1) / hz;
+	}
+
+	public void start() {
+		samplerThread = new Thread(this, threadName);
+		samplerThread.setDaemon(true);
+		samplerThread.start();
+	}
+
+	public void stop() {
+		running = false;
+		if (samplerThread != null) {
+			samplerThread.interrupt();
+		}
+	}
+
+	public int targetCount() {
+		long[] tids = targetTids;
+		return tids == null ? 0 : tids.length;
+	}
+
+	/**
+	 * 批量getThreadInfo的平均耗时
+	 */
+	public double avgCostMills() {
+		return callCount == 0 ? 0 : (double) totalCostNanos / callCount / TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Override
+	public void run() {
+		long nextTime = System.nanoTime();
+		while (running) {
+			long[] tids = targetTids;
+			if (tids != null && tids.length > 0) {
+				try {
+					long start = System.nanoTime();
+					ThreadInfo[] infos = vmInfo.getThreadInfo(tids, MAX_DEPTH);
+					totalCostNanos += System.nanoTime() - start;
+					callCount++;
+					addSamples(tids, infos);
+				} catch (IOException e) {
+					// JMX暂时不可用时跳过本次采样，由刷新线程处理连接状态
+				}
+			}
+
+			nextTime += periodNanos;
+			long sleepNanos = nextTime - System.nanoTime();
+			if (sleepNanos < 0) {
+				// 采样耗时超过周期时不追赶，丢弃错过的采样点
+				long missed = -sleepNanos / periodNanos + 1;
+				missedCount += missed;
+				nextTime += missed * periodNanos;
+				sleepNanos = nextTime - System.nanoTime();
+			}
+			try {
+				TimeUnit.NANOSECONDS.sleep(Math.max(0, sleepNanos));
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 在采样线程中处理一次批量取得的栈，tids为本次采样的目标线程
+	 */
+	abstract void addSamples(long[] tids, ThreadInfo[] infos);
+
+	/**
+	 * 将权重累加到折叠栈，不同的栈超过MAX_STACKS个后新出现的栈计入[other stacks]
+	 */
+	void addToStack(String stack, long weight) {
+		synchronized (stacks) {
+			long[] total = stacks.get(stack);
+			if (total == null && stacks.size() >= MAX_STACKS) {
+				otherCount++;
+				total = stacks.get(OTHER_STACKS);
+				stack = OTHER_STACKS;
+			}
+			if (total == null) {
+				stacks.put(stack, new long[] { weight });
+			} else {
+				total[0] += weight;
+			}
+			dirty = true;
+		}
+	}
+
+	/**
+	 * 线程名;根帧;...;叶子帧，帧格式为类名.方法名，sb为调用者复用的缓冲
+	 */
+	static String foldStack(ThreadInfo info, StringBuilder sb) {
+		sb.setLength(0);
+		appendFrame(sb, info.getThreadName());
+		StackTraceElement[] frames = info.getStackTrace();
+		if (frames.length >= MAX_DEPTH) {
+			sb.append(";[truncated]");
+		}
+		for (int i = frames.length - 1; i >= 0; i--) {
+			sb.append(';');
+			appendFrame(sb, frames[i].getClassName());
+			sb.append('.');
+			appendFrame(sb, frames[i].getMethodName());
+		}
+		return sb.toString();
+	}
+
+	// 分号是帧分隔符，换行会破坏行格式
+	private static void appendFrame(StringBuilder sb, String name) {
+		for (int i = 0; i < name.length(); i++) {
+			char c = name.charAt(i);
+			sb.append(c == ';' || c == '\n' || c == '\r' ? '_' : c);
+		}
+	}
+
+	/**
+	 * 将累计结果写入文件，先写临时文件再改名，vjtop被kill时文件仍是完整的上一份结果。由刷新线程每个周期调用
+	 */
+	public void flush() throws IOException {
+		synchronized (stacks) {
+			if (!dirty) {
+				return;
+			}
+			Path target = Paths.get(path);
+			Path temp = Paths.get(path + ".tmp");
+			try (Writer writer = new BufferedWriter(
+					new OutputStreamWriter(Files.newOutputStream(temp), Recording.UTF8))) {
+				for (Map.Entry<String, long[]> entry : stacks.entrySet()) {
+					writer.write(entry.getKey());
+					writer.write(' ');
+					writer.write(String.valueOf(entry.getValue()[0]));
+					writer.write('\n');
+				}
+			}
+			Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+			dirty = false;
+		}
+	}
+}
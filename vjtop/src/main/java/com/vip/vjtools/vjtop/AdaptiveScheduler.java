@@ -0,0 +1,146 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.sun.management.OperatingSystemMXBean;
+import com.vip.vjtools.vjtop.data.jmx.JmxClient;
+import com.vip.vjtools.vjtop.util.Utils;
+
+/**
+ * 按vjtop自身的消耗自适应调整刷新间隔与栈采样的线程数，保证监控本身不会成为负载。
+ *
+ * 一个周期(两次刷新开始之间，包括休眠)的消耗以占一个核的百分比计，取以下两者的较大值:
+ * 1. 观察者: vjtop进程消耗的CPU时间，包括休眠期间采样线程与HTTP线程的消耗
+ * 2. 被观察者: 所有JMX远程调用的耗时之和，近似目标JVM为响应这些调用所做的工作
+ *
+ * 消耗超出预算时，刷新间隔的倍数翻倍(最多16倍)，栈采样的目标线程数减半直至暂停采样；消耗低于预算的1/4时逐步恢复。
+ * 此外每次休眠后的周期长度不少于本次刷新的消耗除以预算，即使倍数已到上限，平均消耗也不会超过预算。
+ */
+@SuppressWarnings("restriction")
+public class AdaptiveScheduler {
+
+	public static final int MAX_FACTOR = 16;
+	// 消耗低于预算的1/QUIET_DIVISOR时开始恢复
+	private static final int QUIET_DIVISOR = 4;
+
+	private final VMInfo vmInfo;
+	private final OperatingSystemMXBean osMXBean;
+	public final double budgetPercent;
+
+	// 刷新间隔的倍数
+	public int factor = 1;
+	// 栈采样的目标线程数上限，-1为不限制，0为暂停采样
+	public int sampleLimit = -1;
+	private int lastSampleTargets;
+
+	// 上一个完整周期的消耗
+	public double costPercent;
+	public double observerPercent;
+	public double targetPercent;
+
+	private long cycleStartNanos = -1;
+	private long cycleStartCpuNanos;
+	private long cycleStartJmxNanos;
+
+	private long iterationStartNanos;
+	private long iterationStartCpuNanos;
+	private long iterationStartJmxNanos;
+	private long iterationWallNanos;
+	private long iterationCostNanos;
+
+	public AdaptiveScheduler(VMInfo vmInfo, double budgetPercent) {
+		if (budgetPercent <= 0 || budgetPercent > 100) {
+			throw new IllegalArgumentException("Budget should be between 0 and 100 percent of one core");
+		}
+		this.vmInfo = vmInfo;
+		this.budgetPercent = budgetPercent;
+		this.osMXBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+	}
+
+	/**
+	 * 每次刷新开始时调用，结算上一个周期的消耗并调整
+	 */
+	public void beginIteration() {
+		beginIteration(System.nanoTime(), osMXBean.getProcessCpuTime(), jmxLatencyNanos());
+	}
+
+	/**
+	 * 以当前时间、vjtop进程累计的CPU时间与JMX调用累计的耗时结算，均为纳秒
+	 */
+	void beginIteration(long now, long cpuNanos, long jmxNanos) {
+		if (cycleStartNanos != -1 && now > cycleStartNanos) {
+			long cycleNanos = now - cycleStartNanos;
+			observerPercent = (cpuNanos - cycleStartCpuNanos) * 100d / cycleNanos;
+			targetPercent = (jmxNanos - cycleStartJmxNanos) * 100d / cycleNanos;
+			costPercent = Math.max(observerPercent, targetPercent);
+			adjust();
+		}
+
+		cycleStartNanos = now;
+		cycleStartCpuNanos = cpuNanos;
+		cycleStartJmxNanos = jmxNanos;
+
+		iterationStartNanos = now;
+		iterationStartCpuNanos = cpuNanos;
+		iterationStartJmxNanos = jmxNanos;
+	}
+
+	/**
+	 * 每次刷新结束时调用，记录本次刷新的消耗
+	 */
+	public void endIteration() {
+		endIteration(System.nanoTime(), osMXBean.getProcessCpuTime(), jmxLatencyNanos());
+	}
+
+	void endIteration(long now, long cpuNanos, long jmxNanos) {
+		iterationWallNanos = now - iterationStartNanos;
+		iterationCostNanos = Math.max(cpuNanos - iterationStartCpuNanos, jmxNanos - iterationStartJmxNanos);
+	}
+
+	private void adjust() {
+		if (costPercent > budgetPercent) {
+			factor = Math.min(MAX_FACTOR, factor * 2);
+			if (lastSampleTargets > 0) {
+				sampleLimit = (sampleLimit == -1 ? lastSampleTargets : sampleLimit) / 2;
+			}
+		} else if (costPercent < budgetPercent / QUIET_DIVISOR) {
+			factor = Math.max(1, factor / 2);
+			if (sampleLimit != -1) {
+				sampleLimit = Math.max(1, sampleLimit * 2);
+				if (sampleLimit >= lastSampleTargets) {
+					sampleLimit = -1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 本次刷新结束后的休眠时间: 间隔乘以倍数，且保证周期长度不少于本次刷新消耗除以预算
+	 */
+	public long nextSleepMills(long intervalMills) {
+		long sleepMills = intervalMills * factor;
+		long minCycleMills = (long) (iterationCostNanos * 100 / budgetPercent / Utils.NANOS_TO_MILLS);
+		long minSleepMills = minCycleMills - iterationWallNanos / Utils.NANOS_TO_MILLS;
+		return Math.max(sleepMills, minSleepMills);
+	}
+
+	/**
+	 * 按当前上限截取栈采样的目标线程，tids按CPU排序，保留最繁忙的线程；暂停采样时返回null
+	 */
+	public long[] limitSampleTargets(long[] tids) {
+		if (tids == null) {
+			return null;
+		}
+		lastSampleTargets = tids.length;
+		if (sampleLimit == -1 || sampleLimit >= tids.length) {
+			return tids;
+		}
+		return sampleLimit == 0 ? null : Arrays.copyOf(tids, sampleLimit);
+	}
+
+	private long jmxLatencyNanos() {
+		JmxClient.CallStats stats = vmInfo.getJmxCallStats();
+		return stats != null ? stats.getTotalLatencyNanos() : 0;
+	}
+}
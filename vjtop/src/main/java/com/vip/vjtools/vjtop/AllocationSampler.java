@@ -0,0 +1,226 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+
+/**
+ * 不依赖Agent与JFR的内存分配热点分析：按固定频率采样分配最多的top N线程的栈，在每次刷新时将各线程区间内的分配字节数
+ * (getThreadAllocatedBytes的差值)按该线程各个栈的采样次数等比例分摊，累加为以字节数为权重的折叠栈，可直接作为flamegraph.pl的输入。
+ *
+ * 分配点(site)为从栈顶起第一个非JDK的帧，即业务代码中调用集合、字符串等JDK方法分配内存的位置。
+ * 采样只能看到RUNNABLE的瞬间，分配少而快的代码路径会被低估，区间内没有采样到的线程的分配量计为未归属。
+ * 分配点与折叠栈一样，超过MAX_STACKS个后新出现的计入[other stacks]。
+ */
+public class AllocationSampler extends AbstractStackSampler {
+
+	public static final int DEFAULT_HZ = 20;
+
+	private static final String[] JDK_PACKAGES = { "java.", "javax.", "jdk.", "sun.", "com.sun." };
+
+	private static final Comparator<SiteStat> SITE_COMPARATOR = new Comparator<SiteStat>() {
+		@Override
+		public int compare(SiteStat o1, SiteStat o2) {
+			return Long.compare(o2.deltaBytes, o1.deltaBytes);
+		}
+	};
+
+	// 本次刷新区间内每个目标线程的折叠栈采样，采样线程写入，刷新线程分摊后清空，均在锁内
+	private final LongObjectMap<ThreadSamples> intervalSamples = new LongObjectHashMap<>();
+	private final StringBuilder sb = new StringBuilder(4096);
+
+	// 折叠栈的权重为累计分摊的字节数，由刷新线程分摊时写入；分配点 -> 区间与累计字节数，只由刷新线程访问
+	final Map<String, SiteStat> sites = new HashMap<>();
+
+	public AllocationSampler(VMInfo vmInfo, String path, int hz) {
+		super(vmInfo, path, hz, "vjtop-alloc-sampler");
+	}
+
+	@Override
+	void addSamples(long[] tids, ThreadInfo[] infos) {
+		synchronized (intervalSamples) {
+			// 采样期间目标线程已被刷新线程切换，这批采样属于上一个区间
+			if (tids != targetTids) {
+				return;
+			}
+			for (ThreadInfo info : infos) {
+				// 线程已退出，或采样瞬间不在运行，不会分配内存
+				if (info == null || info.getThreadState() != Thread.State.RUNNABLE) {
+					continue;
+				}
+				ThreadSamples thread = intervalSamples.get(info.getThreadId());
+				if (thread == null) {
+					thread = new ThreadSamples();
+					intervalSamples.put(info.getThreadId(), thread);
+				}
+				String stack = foldStack(info, sb);
+				StackSamples samples = thread.stacks.get(stack);
+				thread.add(stack, samples != null ? samples.site : allocationSite(info.getStackTrace()));
+				sampleCount++;
+			}
+		}
+	}
+
+	/**
+	 * 从栈顶起第一个非JDK的帧，全部为JDK帧时取栈顶
+	 */
+	static String allocationSite(StackTraceElement[] frames) {
+		if (frames.length == 0) {
+			return "[unknown]";
+		}
+		StackTraceElement site = frames[0];
+		for (StackTraceElement frame : frames) {
+			if (!isJdkClass(frame.getClassName())) {
+				site = frame;
+				break;
+			}
+		}
+		String name = site.getClassName() + '.' + site.getMethodName();
+		return site.getLineNumber() > 0 ? name + ':' + site.getLineNumber() : name;
+	}
+
+	private static boolean isJdkClass(String className) {
+		for (String prefix : JDK_PACKAGES) {
+			if (className.startsWith(prefix)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 由刷新线程在每次取得线程内存分配后调用：将上一区间目标线程的分配字节数按采样分摊到栈与分配点，再切换为新的目标线程。
+	 * deltaBytes为本区间所有线程的分配字节数，nextTids为null时暂停采样
+	 */
+	public AllocationResult attribute(LongLongHashMap deltaBytes, long[] nextTids, int siteLimit) {
+		AllocationResult result = new AllocationResult();
+		for (SiteStat site : sites.values()) {
+			site.deltaBytes = 0;
+		}
+
+		synchronized (intervalSamples) {
+			long[] tids = targetTids;
+			if (tids != null && deltaBytes != null) {
+				for (long tid : tids) {
+					long bytes = deltaBytes.get(tid, 0);
+					if (bytes <= 0) {
+						continue;
+					}
+					result.targetBytes += bytes;
+					ThreadSamples thread = intervalSamples.get(tid);
+					if (thread == null) {
+						continue;
+					}
+					distribute(thread, bytes);
+					result.attributedBytes += bytes;
+				}
+			}
+			intervalSamples.clear();
+			targetTids = nextTids;
+		}
+
+		List<SiteStat> sortedSites = new ArrayList<>();
+		for (SiteStat site : sites.values()) {
+			if (site.deltaBytes > 0) {
+				sortedSites.add(site);
+			}
+		}
+		Collections.sort(sortedSites, SITE_COMPARATOR);
+		result.siteCount = sortedSites.size();
+		result.topSites = sortedSites.subList(0, Math.min(siteLimit, sortedSites.size()));
+		return result;
+	}
+
+	/**
+	 * 切换到非内存的显示模式时暂停采样，丢弃本区间的采样
+	 */
+	public void pause() {
+		synchronized (intervalSamples) {
+			intervalSamples.clear();
+			targetTids = null;
+		}
+	}
+
+	/**
+	 * 按采样次数等比例分摊，除不尽的余数归入最后一个栈，保证分摊总和等于线程的分配量。只由刷新线程调用
+	 */
+	void distribute(ThreadSamples thread, long bytes) {
+		long remain = bytes;
+		int remainStacks = thread.stacks.size();
+		for (Map.Entry<String, StackSamples> entry : thread.stacks.entrySet()) {
+			StackSamples samples = entry.getValue();
+			long share = --remainStacks == 0 ? remain : bytes * samples.count / thread.count;
+			remain -= share;
+
+			addToStack(entry.getKey(), share);
+
+			String siteName = samples.site;
+			SiteStat site = sites.get(siteName);
+			if (site == null && sites.size() >= MAX_STACKS) {
+				siteName = OTHER_STACKS;
+				site = sites.get(siteName);
+			}
+			if (site == null) {
+				site = new SiteStat(siteName);
+				sites.put(siteName, site);
+			}
+			site.deltaBytes += share;
+			site.totalBytes += share;
+		}
+	}
+
+	/**
+	 * 一个线程在一个区间内的采样，按栈第一次被采样到的顺序保存
+	 */
+	static class ThreadSamples {
+		private final Map<String, StackSamples> stacks = new LinkedHashMap<>();
+		private int count;
+
+		void add(String stack, String site) {
+			StackSamples samples = stacks.get(stack);
+			if (samples == null) {
+				samples = new StackSamples(site);
+				stacks.put(stack, samples);
+			}
+			samples.count++;
+			count++;
+		}
+	}
+
+	private static class StackSamples {
+		private final String site;
+		private int count;
+
+		StackSamples(String site) {
+			this.site = site;
+		}
+	}
+
+	public static class SiteStat {
+		public final String name;
+		public long deltaBytes;
+		public long totalBytes;
+
+		SiteStat(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class AllocationResult {
+		public List<SiteStat> topSites = Collections.emptyList();
+		public int siteCount;
+
+		// 上一区间目标线程的分配字节数，及其中有采样可以分摊的部分
+		public long targetBytes;
+		public long attributedBytes;
+	}
+}
@@ -0,0 +1,197 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.VMInfo.Rate;
+import com.vip.vjtools.vjtop.data.PerfData;
+
+import sun.management.counter.Counter;
+
+/**
+ * 类加载与元空间泄漏的跟踪：每个刷新周期的类加载/卸载数与元空间增长，以及由元空间触发的GC(Metadata GC Threshold)。
+ *
+ * 按需(交互命令c)经DiagnosticCommand执行VM.classloader_stats，按ClassLoader的类型汇总loader数、类数(含hidden/匿名类)
+ * 与元空间chunk大小，并与上一次快照比较，找出Groovy脚本、动态代理、反射DelegatingClassLoader等持续增长的类加载器。
+ * VM.classloader_stats只遍历ClassLoaderData，比类直方图轻量，但仍在安全点中执行，因此不定期执行。
+ */
+@SuppressWarnings("restriction")
+public class ClassLoaderTracker {
+
+	private static final String METADATA_GC_CAUSE = "Metadata GC";
+
+	private static final Comparator<LoaderStat> GROWTH_COMPARATOR = new Comparator<LoaderStat>() {
+		@Override
+		public int compare(LoaderStat o1, LoaderStat o2) {
+			// 只创建loader不定义类的泄漏(如每次新建loader的动态代理缓存)也排在前面
+			int result = Long.compare(o2.classesDelta, o1.classesDelta);
+			if (result == 0) {
+				result = Long.compare(o2.loadersDelta, o1.loadersDelta);
+			}
+			return result != 0 ? result : Long.compare(o2.classes, o1.classes);
+		}
+	};
+
+	private final VMInfo vmInfo;
+	private final Counter lastGcCauseCounter;
+
+	// 启动以来累计加载与卸载的类数
+	public Rate loaded = new Rate();
+	public Rate unloaded = new Rate();
+	public Rate metaspaceUsed = new Rate();
+	public Rate ccsUsed = new Rate();
+	private long lastGcCount = -1;
+	// 发生GC且最近一次GC原因为元空间不足的周期数
+	public long metadataGcCount;
+
+	// 最近一次VM.classloader_stats快照，按与上次快照相比的类数与loader数增量从大到小排序
+	public long snapshotTime;
+	public long lastSnapshotTime;
+	public List<LoaderStat> loaders = Collections.emptyList();
+	public long totalLoaders;
+	public long totalClasses;
+	public long totalChunkSize;
+	public long totalLoadersDelta;
+	public long totalClassesDelta;
+	public long totalChunkSizeDelta;
+	private Map<String, LoaderStat> lastLoaders;
+
+	public ClassLoaderTracker(VMInfo vmInfo) {
+		this.vmInfo = vmInfo;
+		PerfData perfData = vmInfo != null ? vmInfo.getPerfData() : null;
+		this.lastGcCauseCounter = perfData != null ? perfData.findCounter("sun.gc.lastCause") : null;
+	}
+
+	/**
+	 * 每次刷新JVM信息后调用，首次调用时各增量为0
+	 */
+	public void update() {
+		loaded.update(vmInfo.classLoaded.current + vmInfo.classUnLoaded);
+		unloaded.update(vmInfo.classUnLoaded);
+		if (vmInfo.perm != null) {
+			metaspaceUsed.update(vmInfo.perm.used);
+		}
+		if (vmInfo.ccs != null) {
+			ccsUsed.update(vmInfo.ccs.used);
+		}
+
+		long gcCount = Math.max(0, vmInfo.ygcCount.current) + Math.max(0, vmInfo.fullgcCount.current);
+		if (lastGcCount != -1 && gcCount != lastGcCount && lastGcCauseCounter != null
+				&& ((String) lastGcCauseCounter.getValue()).startsWith(METADATA_GC_CAUSE)) {
+			metadataGcCount++;
+		}
+		lastGcCount = gcCount;
+	}
+
+	/**
+	 * 按元空间当前的增长速度，多少毫秒后达到MaxMetaspaceSize，未设置上限或未增长时返回-1
+	 */
+	public long millsToFull(long intervalMills) {
+		if (vmInfo.perm == null || vmInfo.perm.max <= 0 || metaspaceUsed.delta <= 0 || intervalMills <= 0) {
+			return -1;
+		}
+		return Math.max(0, vmInfo.perm.max - vmInfo.perm.used) * intervalMills / metaspaceUsed.delta;
+	}
+
+	/**
+	 * 执行VM.classloader_stats并与上一次快照比较
+	 */
+	public void snapshot() throws IOException {
+		parse(vmInfo.getClassLoaderStats());
+		lastSnapshotTime = snapshotTime;
+		snapshotTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 解析VM.classloader_stats的输出，按类型汇总。首次解析时增量为0
+	 */
+	void parse(String output) {
+		Map<String, LoaderStat> stats = new HashMap<>();
+		LoaderStat current = null;
+
+		for (String line : output.split("\n")) {
+			String trimmed = line.trim();
+			if (trimmed.startsWith("0x")) {
+				// ClassLoader Parent CLD* Classes ChunkSz BlockSz Type，Type中可能有空格，如<boot class loader>
+				String[] fields = trimmed.split("\\s+", 7);
+				if (fields.length < 7) {
+					continue;
+				}
+				current = stats.get(fields[6]);
+				if (current == null) {
+					current = new LoaderStat(fields[6]);
+					stats.put(current.type, current);
+				}
+				current.loaders++;
+				current.classes += Long.parseLong(fields[3]);
+				current.chunkSize += Long.parseLong(fields[4]);
+			} else if (current != null && !trimmed.isEmpty() && Character.isDigit(trimmed.charAt(0))
+					&& trimmed.contains("+ ")) {
+				// 上一行loader定义的hidden(JDK15+)或匿名类(JDK8-14)，Lambda与动态代理均在此
+				String[] fields = trimmed.split("\\s+", 4);
+				long classes = Long.parseLong(fields[0]);
+				current.classes += classes;
+				current.hiddenClasses += classes;
+				current.chunkSize += Long.parseLong(fields[1]);
+			}
+		}
+
+		List<LoaderStat> result = new ArrayList<>(stats.values());
+		long loaderCount = 0;
+		long classCount = 0;
+		long chunkSize = 0;
+		for (LoaderStat stat : result) {
+			if (lastLoaders != null) {
+				LoaderStat last = lastLoaders.get(stat.type);
+				if (last != null) {
+					stat.loadersDelta = stat.loaders - last.loaders;
+					stat.classesDelta = stat.classes - last.classes;
+					stat.chunkSizeDelta = stat.chunkSize - last.chunkSize;
+				} else {
+					stat.loadersDelta = stat.loaders;
+					stat.classesDelta = stat.classes;
+					stat.chunkSizeDelta = stat.chunkSize;
+				}
+			}
+			loaderCount += stat.loaders;
+			classCount += stat.classes;
+			chunkSize += stat.chunkSize;
+		}
+		Collections.sort(result, GROWTH_COMPARATOR);
+
+		if (lastLoaders != null) {
+			totalLoadersDelta = loaderCount - totalLoaders;
+			totalClassesDelta = classCount - totalClasses;
+			totalChunkSizeDelta = chunkSize - totalChunkSize;
+		}
+		totalLoaders = loaderCount;
+		totalClasses = classCount;
+		totalChunkSize = chunkSize;
+		loaders = result;
+		lastLoaders = stats;
+	}
+
+	/**
+	 * 同一类型的ClassLoader的汇总，元空间以字节为单位
+	 */
+	public static class LoaderStat {
+		public final String type;
+		public long loaders;
+		public long classes;
+		public long hiddenClasses;
+		public long chunkSize;
+
+		public long loadersDelta;
+		public long classesDelta;
+		public long chunkSizeDelta;
+
+		LoaderStat(String type) {
+			this.type = type;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+
+/**
+ * 定期检查死锁与锁等待链。
+ *
+ * 每个检查周期以一次不带栈的批量getThreadInfo(tids)获取所有线程的锁与锁的持有者，不需要进入安全点。以"等待者->锁的持有者"
+ * 为边构建等待图，找出被阻塞线程最多的根持有者(自身不在等待锁的线程)及最长的等待链。
+ *
+ * findDeadlockedThreads需要进入安全点，只在等待图中出现环时，或距上次检查超过DEADLOCK_CHECK_MILLS时才调用。
+ * 真正的死锁中各线程持续阻塞，一定会在快照中形成环。
+ */
+public class DeadlockDetector {
+
+	public static final int DEFAULT_CHECK_SECONDS = 30;
+	// 即使等待图中没有环，也定期用findDeadlockedThreads确认一次
+	private static final long DEADLOCK_CHECK_MILLS = 5 * 60 * 1000;
+	// 最多报告的锁等待链数
+	private static final int MAX_CHAINS = 3;
+	// 沿持有者查找根时的最大深度，防止快照不一致时出现异常长的链
+	private static final int MAX_DEPTH = 64;
+
+	private static final Comparator<LockChain> CHAIN_COMPARATOR = new Comparator<LockChain>() {
+		@Override
+		public int compare(LockChain o1, LockChain o2) {
+			if (o1.blockedThreads != o2.blockedThreads) {
+				return o1.blockedThreads > o2.blockedThreads ? -1 : 1;
+			}
+			return o1.path.size() > o2.path.size() ? -1 : (o1.path.size() == o2.path.size() ? 0 : 1);
+		}
+	};
+
+	private final VMInfo vmInfo;
+	private final long checkIntervalMills;
+	private long lastCheckTime;
+	private long lastDeadlockCheckTime;
+
+	// 最近一次检查的结果，未检测到时为空
+	public List<LockChain> deadlocks = Collections.emptyList();
+	public List<LockChain> chains = Collections.emptyList();
+
+	public DeadlockDetector(VMInfo vmInfo, int checkSeconds) {
+		this.vmInfo = vmInfo;
+		this.checkIntervalMills = checkSeconds * 1000L;
+		this.lastDeadlockCheckTime = System.currentTimeMillis();
+	}
+
+	/**
+	 * 每次刷新时调用，按检查间隔节流，返回本次是否进行了检查
+	 */
+	public boolean poll() throws IOException {
+		long now = System.currentTimeMillis();
+		if (lastCheckTime != 0 && now - lastCheckTime < checkIntervalMills) {
+			return false;
+		}
+		lastCheckTime = now;
+
+		ThreadInfo[] infos = vmInfo.getThreadInfo(vmInfo.getAllThreadIds());
+		LongObjectMap<ThreadInfo> waiters = new LongObjectHashMap<>();
+		for (ThreadInfo info : infos) {
+			if (info != null && info.getLockOwnerId() != -1) {
+				waiters.put(info.getThreadId(), info);
+			}
+		}
+
+		boolean hasCycle = buildChains(waiters);
+
+		if (hasCycle || now - lastDeadlockCheckTime >= DEADLOCK_CHECK_MILLS) {
+			lastDeadlockCheckTime = now;
+			deadlocks = findDeadlocks();
+		} else {
+			deadlocks = Collections.emptyList();
+		}
+		return true;
+	}
+
+	/**
+	 * 为每个等待者沿持有者找到根，按根汇总，返回是否存在环
+	 */
+	boolean buildChains(LongObjectMap<ThreadInfo> waiters) {
+		LongObjectMap<LockChain> roots = new LongObjectHashMap<>();
+		boolean hasCycle = false;
+
+		for (ThreadInfo waiter : waiters.values()) {
+			List<ThreadInfo> path = new ArrayList<>();
+			path.add(waiter);
+			ThreadInfo current = waiter;
+			boolean cycle = false;
+
+			while (path.size() < MAX_DEPTH) {
+				long ownerId = current.getLockOwnerId();
+				ThreadInfo owner = waiters.get(ownerId);
+				if (owner == null) {
+					break;
+				}
+				if (path.contains(owner)) {
+					cycle = true;
+					break;
+				}
+				path.add(owner);
+				current = owner;
+			}
+
+			if (cycle) {
+				hasCycle = true;
+				continue;
+			}
+
+			// 根是路径末端线程所等待的锁的持有者
+			long rootId = current.getLockOwnerId();
+			LockChain chain = roots.get(rootId);
+			if (chain == null) {
+				chain = new LockChain(false);
+				chain.rootTid = rootId;
+				chain.rootName = current.getLockOwnerName();
+				chain.lockName = current.getLockName();
+				roots.put(rootId, chain);
+			}
+			chain.blockedThreads++;
+			if (path.size() >= chain.path.size()) {
+				chain.path = toNames(path);
+				chain.path.add(format(chain.rootName, rootId));
+			}
+		}
+
+		List<LockChain> result = new ArrayList<>();
+		for (LockChain chain : roots.values()) {
+			// 只有一个等待者且链上没有级联阻塞时不是锁链
+			if (chain.blockedThreads > 1 || chain.path.size() > 2) {
+				result.add(chain);
+			}
+		}
+		Collections.sort(result, CHAIN_COMPARATOR);
+		chains = result.size() > MAX_CHAINS ? new ArrayList<>(result.subList(0, MAX_CHAINS)) : result;
+		return hasCycle;
+	}
+
+	/**
+	 * 沿锁的持有者将死锁的线程分成互不相关的环
+	 */
+	private List<LockChain> findDeadlocks() throws IOException {
+		long[] tids = vmInfo.findDeadlockedThreads();
+		if (tids == null || tids.length == 0) {
+			return Collections.emptyList();
+		}
+
+		LongObjectMap<ThreadInfo> deadlocked = new LongObjectHashMap<>();
+		for (ThreadInfo info : vmInfo.getThreadInfo(tids)) {
+			if (info != null) {
+				deadlocked.put(info.getThreadId(), info);
+			}
+		}
+
+		// 一次死锁检查可能包含多个互不相关的环，每个线程只属于一个环
+		List<LockChain> result = new ArrayList<>();
+		LongObjectMap<Boolean> visited = new LongObjectHashMap<>();
+		for (ThreadInfo start : deadlocked.values()) {
+			if (visited.containsKey(start.getThreadId())) {
+				continue;
+			}
+			List<ThreadInfo> path = new ArrayList<>();
+			ThreadInfo current = start;
+			while (current != null && !visited.containsKey(current.getThreadId()) && path.size() < MAX_DEPTH) {
+				visited.put(current.getThreadId(), Boolean.TRUE);
+				path.add(current);
+				current = deadlocked.get(current.getLockOwnerId());
+			}
+
+			LockChain chain = new LockChain(true);
+			chain.rootTid = start.getThreadId();
+			chain.rootName = start.getThreadName();
+			chain.lockName = start.getLockName();
+			chain.blockedThreads = path.size();
+			chain.path = toNames(path);
+			// 回到环的起点
+			if (current != null) {
+				chain.path.add(format(current.getThreadName(), current.getThreadId()));
+			}
+			result.add(chain);
+		}
+		return result;
+	}
+
+	private static List<String> toNames(List<ThreadInfo> path) {
+		List<String> names = new ArrayList<>(path.size() + 1);
+		for (ThreadInfo info : path) {
+			names.add(format(info.getThreadName(), info.getThreadId()));
+		}
+		return names;
+	}
+
+	private static String format(String name, long tid) {
+		return name + "(" + tid + ")";
+	}
+
+	/**
+	 * 一条锁等待链，path从等待最深的线程开始，到根持有者结束；死锁时path为环，首尾为同一线程
+	 */
+	public static class LockChain {
+		public final boolean deadlock;
+		public long rootTid;
+		public String rootName;
+		// 链末端的线程等待的、由根持有的锁
+		public String lockName;
+		// 直接或间接等待根持有者的线程数
+		public int blockedThreads;
+		public List<String> path = Collections.emptyList();
+
+		LockChain(boolean deadlock) {
+			this.deadlock = deadlock;
+		}
+
+		public String pathString() {
+			StringBuilder sb = new StringBuilder();
+			for (int i = 0; i < path.size(); i++) {
+				if (i > 0) {
+					sb.append(" -> ");
+				}
+				sb.append(path.get(i));
+			}
+			return sb.toString();
+		}
+	}
+}
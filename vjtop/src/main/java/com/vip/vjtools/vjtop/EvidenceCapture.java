@@ -0,0 +1,353 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ThreadInfo;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.vip.vjtools.vjtop.WarningRule.LongWarning;
+import com.vip.vjtools.vjtop.util.LongRingBuffer;
+import com.vip.vjtools.vjtop.util.Utils;
+
+/**
+ * 异常时自动取证：某项指标连续redIntervals个刷新周期达到WarningRule的红色阈值时，将top线程栈、类直方图与最近若干周期的
+ * 指标走势写入目录下的一个文件，以便事后分析值班时没有看到的短暂异常。
+ *
+ * 类直方图即使不触发Full GC，也要在安全点中遍历整个堆，大堆时会带来秒级的停顿，而取证恰好发生在fullgc或安全点时间已为红色时，
+ * 因此只在显式开启时采集。
+ *
+ * 取证在独立的daemon线程中进行，不阻塞界面刷新。两次取证至少间隔cooldown，上一次取证未完成时不开始新的取证，
+ * 冷却期间持续红色的指标在冷却结束后再取证。
+ */
+public class EvidenceCapture {
+
+	public static final int DEFAULT_RED_INTERVALS = 3;
+	public static final int DEFAULT_COOLDOWN_SECONDS = 600;
+	// 类直方图只保留占用最多的行
+	private static final int HISTOGRAM_LINES = 50;
+
+	private final VMDetailView view;
+	private final VMInfo vmInfo;
+	private final File dir;
+	private final int redIntervals;
+	private final long cooldownMills;
+	private final boolean histogram;
+	private final Trigger[] triggers = createTriggers();
+
+	private long lastCaptureTime;
+	final AtomicBoolean capturing = new AtomicBoolean(false);
+
+	// 统计信息，供界面显示
+	public volatile int captureCount;
+	// 冷却中或上一次取证未完成而未能取证的次数
+	public volatile int suppressedCount;
+	public volatile String lastFile;
+	public volatile String lastReason;
+	public volatile String lastError;
+
+	public EvidenceCapture(VMDetailView view, String dir, int redIntervals, int cooldownSeconds, boolean histogram) {
+		if (redIntervals < 1) {
+			throw new IllegalArgumentException("--capture-intervals should be positive");
+		}
+		this.view = view;
+		this.vmInfo = view.vmInfo;
+		this.dir = new File(dir);
+		if (!this.dir.isDirectory() && !this.dir.mkdirs()) {
+			throw new IllegalArgumentException("Could not create the capture directory " + dir);
+		}
+		this.redIntervals = redIntervals;
+		this.cooldownMills = cooldownSeconds * 1000L;
+		this.histogram = histogram;
+	}
+
+	/**
+	 * 每次刷新JVM信息后调用，返回本次是否开始了取证
+	 */
+	public boolean check() {
+		return check(System.currentTimeMillis());
+	}
+
+	boolean check(long now) {
+		WarningRule rule = vmInfo.warningRule;
+		List<Trigger> fired = new ArrayList<>();
+		for (Trigger trigger : triggers) {
+			if (trigger.isRed(vmInfo, rule)) {
+				trigger.redCount++;
+				if (trigger.redCount >= redIntervals) {
+					fired.add(trigger);
+				}
+			} else {
+				trigger.redCount = 0;
+			}
+		}
+		if (fired.isEmpty()) {
+			return false;
+		}
+
+		if (now - lastCaptureTime < cooldownMills || !capturing.compareAndSet(false, true)) {
+			suppressedCount++;
+			return false;
+		}
+		lastCaptureTime = now;
+
+		StringBuilder reason = new StringBuilder();
+		for (Trigger trigger : fired) {
+			if (reason.length() > 0) {
+				reason.append(", ");
+			}
+			reason.append(trigger.name).append(' ').append(trigger.value(vmInfo, rule));
+			// 持续红色时，冷却结束后需要再连续redIntervals个周期才再次取证
+			trigger.redCount = 0;
+		}
+
+		File file = new File(dir, String.format("vjtop-%s-%s.txt", vmInfo.pid,
+				new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date(now))));
+		capture(file, reason.toString(), formatHistory(vmInfo.history));
+		return true;
+	}
+
+	/**
+	 * 在daemon线程中写取证文件，完成后清除capturing
+	 */
+	void capture(final File file, final String reasonText, final String metrics) {
+		Thread captureThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					writeEvidence(file, reasonText, metrics);
+					lastFile = file.getPath();
+					lastReason = reasonText;
+					lastError = null;
+					captureCount++;
+				} catch (Exception e) {
+					lastError = e.getMessage();
+				} finally {
+					capturing.set(false);
+				}
+			}
+		}, "vjtop-capture");
+		captureThread.setDaemon(true);
+		captureThread.start();
+	}
+
+	private void writeEvidence(File file, String reason, String metrics) throws IOException {
+		try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(file)), false,
+				"UTF-8")) {
+			out.printf("vjtop evidence capture at %s%n", new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date()));
+			out.printf("PID: %s JVM: %s MAIN: %s%n", vmInfo.pid, vmInfo.jvmVersion, vmInfo.mainClass);
+			out.printf("Red for %d intervals: %s%n", redIntervals, reason);
+
+			out.printf("%n== Metrics of the last intervals, oldest first ==%n");
+			out.print(metrics);
+
+			// perf数据源没有JMX，只能记录指标
+			if (!vmInfo.jmxSupport) {
+				out.printf("%n== Thread stacks and class histogram need the JMX data source ==%n");
+				return;
+			}
+
+			out.printf("%n== Thread stacks ==%n");
+			if (view.threadPrinter.printTopStack(out) == 0) {
+				// 当前显示模式没有top cpu线程时，记录所有线程
+				for (ThreadInfo info : vmInfo.getAllThreadInfo()) {
+					if (info != null) {
+						view.threadPrinter.printSingleThread(info, out);
+					}
+				}
+			}
+
+			if (!histogram) {
+				out.printf("%n== Class histogram is disabled, enable it with --capture-histogram ==%n");
+				return;
+			}
+			out.printf("%n== Class histogram of all objects, top %d ==%n", HISTOGRAM_LINES);
+			try {
+				out.print(truncateHistogram(vmInfo.getClassHistogram(), HISTOGRAM_LINES));
+			} catch (IOException e) {
+				out.printf("Fails to get class histogram: %s%n", e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * 保留表头，前lines行与最后的Total行
+	 */
+	static String truncateHistogram(String histogram, int lines) {
+		String[] rows = histogram.split("\n");
+		StringBuilder sb = new StringBuilder();
+		int dataRows = 0;
+		for (String row : rows) {
+			String trimmed = row.trim();
+			boolean isData = !trimmed.isEmpty() && Character.isDigit(trimmed.charAt(0));
+			if (isData && ++dataRows > lines) {
+				continue;
+			}
+			sb.append(row).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * 在刷新线程中复制指标，取证线程写文件时不再访问环形缓冲
+	 */
+	private static String formatHistory(VMInfo.History history) {
+		if (history == null) {
+			return "trend history is disabled\n";
+		}
+		StringBuilder sb = new StringBuilder(4096);
+		appendHistory(sb, "cpu(%*100)", history.cpu);
+		appendHistory(sb, "rss", history.rss);
+		appendHistory(sb, "ygc.time(ms)", history.ygcTime);
+		appendHistory(sb, "alloc.rate", history.allocRate);
+		appendHistory(sb, "thread.live", history.threads);
+		return sb.toString();
+	}
+
+	private static void appendHistory(StringBuilder sb, String label, LongRingBuffer buffer) {
+		sb.append(label).append(':');
+		for (int i = 0; i < buffer.size(); i++) {
+			sb.append(' ').append(buffer.get(i));
+		}
+		sb.append('\n');
+	}
+
+	private static Trigger[] createTriggers() {
+		return new Trigger[] { new Trigger("cpu") {
+			@Override
+			boolean isRed(VMInfo vm, WarningRule rule) {
+				return vm.cpuLoad >= rule.cpu.red;
+			}
+
+			@Override
+			String value(VMInfo vm, WarningRule rule) {
+				return String.format("%.2f%%>=%.2f%%", vm.cpuLoad, rule.cpu.red);
+			}
+		}, new Trigger("cpuLimit") {
+			@Override
+			boolean isRed(VMInfo vm, WarningRule rule) {
+				return vm.cpuLimit > 0 && vm.cpuLimitLoad >= rule.cpu.red;
+			}
+
+			@Override
+			String value(VMInfo vm, WarningRule rule) {
+				return String.format("%.2f%%>=%.2f%%", vm.cpuLimitLoad, rule.cpu.red);
+			}
+		}, new LongTrigger("throttled") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.cpuThrottledNanos.delta / Utils.NANOS_TO_MILLS;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.cpuThrottledTime;
+			}
+		}, new LongTrigger("fullgc") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.fullgcCount.delta;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.fullgcCount;
+			}
+		}, new LongTrigger("ygcTime") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.ygcTimeMills.delta;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.ygcTime;
+			}
+		}, new LongTrigger("old") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.old != null ? vm.old.used : -1;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.old;
+			}
+		}, new LongTrigger("safepointTime") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.perfDataSupport ? vm.safepointTimeMills.delta : -1;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.safepointTime;
+			}
+		}, new LongTrigger("thread") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.threadActive;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.thread;
+			}
+		}, new LongTrigger("containerMemory") {
+			@Override
+			long value(VMInfo vm) {
+				return vm.memoryUsage;
+			}
+
+			@Override
+			LongWarning warning(WarningRule rule) {
+				return rule.containerMemory;
+			}
+		} };
+	}
+
+	abstract static class Trigger {
+		final String name;
+		// 连续为红色的刷新周期数
+		int redCount;
+
+		Trigger(String name) {
+			this.name = name;
+		}
+
+		abstract boolean isRed(VMInfo vm, WarningRule rule);
+
+		abstract String value(VMInfo vm, WarningRule rule);
+	}
+
+	/**
+	 * 以LongWarning为阈值的指标，值为-1时代表无数据
+	 */
+	abstract static class LongTrigger extends Trigger {
+
+		LongTrigger(String name) {
+			super(name);
+		}
+
+		abstract long value(VMInfo vm);
+
+		abstract LongWarning warning(WarningRule rule);
+
+		@Override
+		boolean isRed(VMInfo vm, WarningRule rule) {
+			long value = value(vm);
+			return value != -1 && value >= warning(rule).red;
+		}
+
+		@Override
+		String value(VMInfo vm, WarningRule rule) {
+			return value(vm) + ">=" + warning(rule).red;
+		}
+	}
+}
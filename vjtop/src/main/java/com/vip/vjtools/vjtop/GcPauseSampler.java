@@ -0,0 +1,217 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.concurrent.TimeUnit;
+
+import com.vip.vjtools.vjtop.data.PerfData;
+import com.vip.vjtools.vjtop.util.Histogram;
+
+import sun.management.counter.Counter;
+import sun.management.counter.LongCounter;
+
+/**
+ * 以固定频率读取PerfData中sun.gc.collector.0/1(与ygc/fgc相同)的计数器，得到每次GC停顿的时长，不需要开启GC日志。
+ *
+ * PerfData是映射到vjtop进程内的内存文件，读取对目标JVM没有任何消耗，因此可以100ms这样的高频率采样。
+ * 两次采样间只有一次GC时，lastExitTime - lastEntryTime即为准确的停顿时长；有多次GC时，最后一次仍然准确，
+ * 其余几次以累计时间的差值平均估算。采样时GC正在进行(lastEntryTime晚于lastExitTime)则留到下次采样再计算。
+ *
+ * 每个collector维护启动以来的直方图，以及由WINDOW_SLOTS个时间片组成的最近一分钟滚动直方图。
+ */
+@SuppressWarnings("restriction")
+public class GcPauseSampler implements Runnable {
+
+	public static final int DEFAULT_PERIOD_MILLS = 100;
+	public static final int WINDOW_SLOTS = 6;
+	public static final long SLOT_MILLS = 10 * 1000;
+
+	private final long periodMills;
+	public final CollectorPauses young;
+	public final CollectorPauses full;
+
+	private volatile boolean running = true;
+	private Thread samplerThread;
+
+	public GcPauseSampler(PerfData perfData, int periodMills) {
+		if (periodMills < 10 || periodMills > 10000) {
+			throw new IllegalArgumentException("GC sample period should be between 10 and 10000 ms");
+		}
+		this.periodMills = periodMills;
+		this.young = CollectorPauses.create(perfData, 0);
+		this.full = CollectorPauses.create(perfData, 1);
+	}
+
+	public void start() {
+		samplerThread = new Thread(this, "vjtop-gc-sampler");
+		samplerThread.setDaemon(true);
+		samplerThread.start();
+	}
+
+	public void stop() {
+		running = false;
+		if (samplerThread != null) {
+			samplerThread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			long now = System.currentTimeMillis();
+			if (young != null) {
+				young.sample(now);
+			}
+			if (full != null) {
+				full.sample(now);
+			}
+			try {
+				TimeUnit.MILLISECONDS.sleep(periodMills);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 一个collector的停顿统计，时长以微秒为单位。采样线程写入，刷新线程读取，均在this的锁内
+	 */
+	public static class CollectorPauses {
+		public final String name;
+
+		private final PerfData perfData;
+		private final LongCounter invocationsCounter;
+		private final LongCounter timeCounter;
+		private final LongCounter lastEntryCounter;
+		private final LongCounter lastExitCounter;
+
+		private long lastInvocations;
+		private long lastTime;
+
+		private final Histogram total = new Histogram();
+		private final Histogram[] slots = new Histogram[WINDOW_SLOTS];
+		private final Histogram window = new Histogram();
+		private int slotIndex;
+		private long slotStartTime;
+
+		/**
+		 * PerfData中没有该collector时返回null
+		 */
+		static CollectorPauses create(PerfData perfData, int index) {
+			String prefix = "sun.gc.collector." + index;
+			LongCounter invocations = (LongCounter) perfData.findCounter(prefix + ".invocations");
+			LongCounter time = (LongCounter) perfData.findCounter(prefix + ".time");
+			if (invocations == null || time == null) {
+				return null;
+			}
+			Counter nameCounter = perfData.findCounter(prefix + ".name");
+			String name = nameCounter != null ? (String) nameCounter.getValue() : prefix;
+			return new CollectorPauses(name, perfData, invocations, time,
+					(LongCounter) perfData.findCounter(prefix + ".lastEntryTime"),
+					(LongCounter) perfData.findCounter(prefix + ".lastExitTime"));
+		}
+
+		CollectorPauses(String name, PerfData perfData, LongCounter invocationsCounter, LongCounter timeCounter,
+				LongCounter lastEntryCounter, LongCounter lastExitCounter) {
+			this.name = name;
+			this.perfData = perfData;
+			this.invocationsCounter = invocationsCounter;
+			this.timeCounter = timeCounter;
+			this.lastEntryCounter = lastEntryCounter;
+			this.lastExitCounter = lastExitCounter;
+			for (int i = 0; i < WINDOW_SLOTS; i++) {
+				slots[i] = new Histogram();
+			}
+			// 启动前已发生的GC不计入
+			lastInvocations = invocationsCounter.longValue();
+			lastTime = timeCounter.longValue();
+			slotStartTime = System.currentTimeMillis();
+		}
+
+		synchronized void sample(long now) {
+			rotate(now);
+
+			long invocations = invocationsCounter.longValue();
+			if (invocations == lastInvocations) {
+				return;
+			}
+
+			long lastPauseTicks = -1;
+			if (lastEntryCounter != null && lastExitCounter != null) {
+				long entry = lastEntryCounter.longValue();
+				long exit = lastExitCounter.longValue();
+				// GC正在进行，留到下次采样
+				if (exit < entry) {
+					return;
+				}
+				lastPauseTicks = exit - entry;
+			}
+
+			long time = timeCounter.longValue();
+			long count = invocations - lastInvocations;
+			long deltaTicks = Math.max(0, time - lastTime);
+			lastInvocations = invocations;
+			lastTime = time;
+
+			if (lastPauseTicks < 0) {
+				recordPause(perfData.tickToMicros(deltaTicks / count), count);
+			} else {
+				recordPause(perfData.tickToMicros(lastPauseTicks), 1);
+				if (count > 1) {
+					long restTicks = Math.max(0, deltaTicks - lastPauseTicks);
+					recordPause(perfData.tickToMicros(restTicks / (count - 1)), count - 1);
+				}
+			}
+		}
+
+		void recordPause(long micros, long count) {
+			total.record(micros, count);
+			slots[slotIndex].record(micros, count);
+		}
+
+		void rotate(long now) {
+			long elapsed = now - slotStartTime;
+			if (elapsed < SLOT_MILLS) {
+				return;
+			}
+			// 长时间没有采样时整个窗口都已过期
+			long steps = Math.min(elapsed / SLOT_MILLS, WINDOW_SLOTS);
+			for (int i = 0; i < steps; i++) {
+				slotIndex = (slotIndex + 1) % WINDOW_SLOTS;
+				slots[slotIndex].reset();
+			}
+			slotStartTime += (elapsed / SLOT_MILLS) * SLOT_MILLS;
+		}
+
+		/**
+		 * 最近一分钟的停顿，由各时间片合并而成
+		 */
+		public synchronized PauseStats windowStats() {
+			rotate(System.currentTimeMillis());
+			window.reset();
+			for (Histogram slot : slots) {
+				window.add(slot);
+			}
+			return new PauseStats(window);
+		}
+
+		public synchronized PauseStats totalStats() {
+			return new PauseStats(total);
+		}
+	}
+
+	/**
+	 * 直方图的快照，时长以微秒为单位
+	 */
+	public static class PauseStats {
+		public final long count;
+		public final long p50;
+		public final long p99;
+		public final long max;
+
+		PauseStats(Histogram histogram) {
+			count = histogram.getTotalCount();
+			p50 = histogram.getValueAtPercentile(50);
+			p99 = histogram.getValueAtPercentile(99);
+			max = histogram.getMaxValue();
+		}
+	}
+}
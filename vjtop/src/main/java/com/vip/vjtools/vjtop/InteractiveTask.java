@@ -3,6 +3,7 @@ package com.vip.vjtools.vjtop;
 import java.io.Console;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.text.ParseException;
 
 import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
 
@@ -64,6 +65,8 @@ public class InteractiveTask implements Runnable {
 			printBlockedThreadsStack();
 		} else if (command.equals("a")) {
 			printAllThreadsName();
+		} else if (command.equals("c")) {
+			printClassLoaderStats();
 		} else if (command.equals("m")) {
 			changeDisplayMode();
 		} else if (command.equals("i") || command.startsWith("i ")) {
@@ -72,6 +75,8 @@ public class InteractiveTask implements Runnable {
 			changeThreadLimit(command);
 		} else if (command.equals("f")) {
 			changeThreadFilter();
+		} else if (app.view.replay != null && isReplayCommand(command)) {
+			handleReplayCommand(command);
 		} else if (command.equals("q") || command.equals("quit") || command.equals("exit")) {
 			app.exit();
 			return;
@@ -125,6 +130,16 @@ public class InteractiveTask implements Runnable {
 		}
 	}
 
+	private void printClassLoaderStats() throws IOException {
+		try {
+			app.preventFlush();
+			app.view.printClassLoaderStats();
+			waitForEnter();
+		} finally {
+			app.continueFlush();
+		}
+	}
+
 	private void printBlockedThreadsStack() throws IOException {
 		try {
 			app.preventFlush();
@@ -139,12 +154,12 @@ public class InteractiveTask implements Runnable {
 		app.preventFlush();
 
 		String mode = readLine(
-				" Input number of Display Mode(1.cpu, 2.syscpu 3.total cpu 4.total syscpu 5.memory 6.total memory, current "
+				" Input number of Display Mode(1.cpu, 2.syscpu 3.total cpu 4.total syscpu 5.memory 6.total memory 7.group 8.contention 9.churn, current "
 						+ app.view.threadInfoMode + "): ");
 		ThreadInfoMode detailMode = ThreadInfoMode.parseInt(mode);
 
 		if (detailMode == null) {
-			tty.println(" Wrong option for display mode(1-6)");
+			tty.println(" Wrong option for display mode(1-9)");
 		} else if (detailMode == app.view.threadInfoMode) {
 			tty.println(" Nothing be changed");
 		} else {
@@ -230,18 +245,68 @@ public class InteractiveTask implements Runnable {
 		app.continueFlush();
 	}
 
+	private boolean isReplayCommand(String command) {
+		return command.equals("n") || command.equals("p") || command.equals("r") || command.equals("g")
+				|| command.startsWith("g ");
+	}
+
+	/**
+	 * 回放录制文件时的帧导航，定位后立即刷新
+	 */
+	private void handleReplayCommand(String command) {
+		RecordingReader replay = app.view.replay;
+		if (command.equals("n")) {
+			replay.requestSeek(replay.currentIndex() + 1);
+		} else if (command.equals("p")) {
+			replay.requestSeek(replay.currentIndex() - 1);
+		} else if (command.equals("r")) {
+			replay.paused = !replay.paused;
+			tty.println(replay.paused ? " Replay paused" : " Replay resumed");
+		} else {
+			app.preventFlush();
+			String target;
+			if (command.length() == 1) {
+				target = readLine(" Input frame number or time(HH:mm[:ss]), total " + replay.frameCount() + " frames:");
+			} else {
+				target = command.substring(2).trim();
+			}
+
+			try {
+				if (target.indexOf(':') != -1) {
+					replay.requestSeek(replay.findFrame(target));
+				} else {
+					replay.requestSeek(Integer.parseInt(target) - 1);
+				}
+			} catch (NumberFormatException | ParseException e) {
+				tty.println(" Wrong format for frame number or time");
+				return;
+			} finally {
+				app.continueFlush();
+			}
+		}
+		app.interruptSleep();
+	}
+
 	private void printHelp() throws Exception {
 		app.preventFlush();
 		tty.println(" s [tid]: print stack trace of the thread you choose");
 		tty.println(" t : print stack trace of top " + app.view.threadLimit + " threads");
 		tty.println(" b : print stack trace of blocked threads");
 		tty.println(" a : list id and name of all threads");
+		tty.println(" c : count classes per class loader type, compared with the last time");
 		tty.println(" ---------------");
 		tty.println(" m : change threads display mode and ordering");
 		tty.println(" i [num]: change flush interval seconds");
 		tty.println(" l [num]: change number of display threads");
 		tty.println(" f [name]: set thread name filter");
 		tty.println(" ---------------");
+		if (app.view.replay != null) {
+			tty.println(" n : next frame of the recording");
+			tty.println(" p : previous frame of the recording");
+			tty.println(" g [frame|HH:mm:ss]: go to the frame or time of the recording");
+			tty.println(" r : pause or resume the replay");
+			tty.println(" ---------------");
+		}
 		tty.println(" q : quit");
 		tty.println(" h : print help");
 		waitForEnter();
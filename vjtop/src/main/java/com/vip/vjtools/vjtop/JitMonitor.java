@@ -0,0 +1,298 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.vip.vjtools.vjtop.VMInfo.Rate;
+import com.vip.vjtools.vjtop.data.PerfData;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+
+import sun.management.counter.Counter;
+import sun.management.counter.LongCounter;
+
+/**
+ * JIT视图的数据：从PerfData的sun.ci.*计数器读取编译次数、OSR、bailout、逆优化(invalidate)与编译耗时，
+ * 从/proc读取编译线程与代码缓存清扫线程(JDK9+的Sweeper thread，JDK8中清扫在编译线程中进行)的CPU，
+ * JMX数据源且目标为JDK9+时再经DiagnosticCommand执行Compiler.codecache(JDK8没有该命令)，得到代码缓存的用量、nmethod数与代码缓存满的次数。
+ *
+ * 用于将应用发布后的延时毛刺与JIT预热、代码缓存不足导致的停止编译相关联。读取映射的PerfData与/proc对目标JVM没有消耗。
+ */
+@SuppressWarnings("restriction")
+public class JitMonitor {
+
+	// /proc中的线程名最长15个字符，"C2 CompilerThread0"为"C2 CompilerThre"
+	private static final String COMPILER_THREAD_NAME = "CompilerThre";
+	private static final String SWEEPER_THREAD_NAME = "Sweeper thread";
+
+	// 分段代码缓存为各"CodeHeap 'xxx': size=..."一行，-XX:-SegmentedCodeCache时为一行"CodeCache: size=..."
+	private static final Pattern HEAP_PATTERN = Pattern
+			.compile("size=(\\d+)Kb\\s+used=(\\d+)Kb\\s+max_used=(\\d+)Kb\\s+free=(\\d+)Kb");
+	private static final Pattern NMETHODS_PATTERN = Pattern.compile("nmethods=(\\d+)");
+	private static final Pattern FULL_COUNT_PATTERN = Pattern.compile("full_count=(\\d+)");
+
+	private static final String[] COMPILE_TYPES = { "none", "standard", "osr", "native" };
+
+	private static final Comparator<CompilerThread> CPU_COMPARATOR = new Comparator<CompilerThread>() {
+		@Override
+		public int compare(CompilerThread o1, CompilerThread o2) {
+			return Long.compare(o2.deltaCpuNanos, o1.deltaCpuNanos);
+		}
+	};
+
+	private final VMInfo vmInfo;
+	private final PerfData perfData;
+
+	private final LongCounter totalCompilesCounter;
+	private final LongCounter osrCompilesCounter;
+	private final LongCounter bailoutsCounter;
+	private final LongCounter invalidatesCounter;
+	private final LongCounter standardTimeCounter;
+	private final LongCounter osrTimeCounter;
+	private final LongCounter standardBytesCounter;
+	private final LongCounter osrBytesCounter;
+	private final LongCounter nmethodSizeCounter;
+	private final LongCounter nmethodCodeSizeCounter;
+	private final Counter lastMethodCounter;
+	private final LongCounter lastTypeCounter;
+	private final LongCounter lastSizeCounter;
+	private final Counter lastFailedMethodCounter;
+	private final Counter lastInvalidatedMethodCounter;
+
+	// 编译与清扫线程上次的累计CPU，按线程计算增量，JDK11+动态增减的编译线程退出时不会产生负数
+	private LongLongHashMap lastThreadCpu = new LongLongHashMap();
+	private LongLongHashMap currentThreadCpu = new LongLongHashMap();
+	private boolean threadCpuInitialized = false;
+
+	public Rate compiles = new Rate();
+	public Rate osrCompiles = new Rate();
+	public Rate bailouts = new Rate();
+	public Rate invalidates = new Rate();
+	public Rate compileMicros = new Rate();
+	// 被编译方法的字节码大小
+	public Rate compiledBytes = new Rate();
+	// 已生成的nmethod的总大小及其中机器码的大小
+	public Rate nmethodSize = new Rate();
+	public long nmethodCodeSize;
+
+	public String lastMethod;
+	public String lastType;
+	public long lastSize;
+	public String lastFailedMethod;
+	public String lastInvalidatedMethod;
+
+	// 本周期编译线程，按CPU增量从大到小排序
+	public List<CompilerThread> compilerThreads = Collections.emptyList();
+	public long compilerCpuNanos;
+	public long c1CpuNanos;
+	public long c2CpuNanos;
+	// 没有独立的清扫线程时为-1
+	public long sweeperCpuNanos = -1;
+
+	// Compiler.codecache的结果，只在JMX数据源且JDK9+时有
+	public CodeCache codeCache = new CodeCache();
+	public final boolean codeCacheSupported;
+
+	public JitMonitor(VMInfo vmInfo, PerfData perfData) {
+		this.vmInfo = vmInfo;
+		this.perfData = perfData;
+		this.codeCacheSupported = isCodeCacheSupported(vmInfo.jmxSupport, vmInfo.jvmMajorVersion);
+
+		totalCompilesCounter = (LongCounter) perfData.findCounter("sun.ci.totalCompiles");
+		osrCompilesCounter = (LongCounter) perfData.findCounter("sun.ci.osrCompiles");
+		bailoutsCounter = (LongCounter) perfData.findCounter("sun.ci.totalBailouts");
+		invalidatesCounter = (LongCounter) perfData.findCounter("sun.ci.totalInvalidates");
+		standardTimeCounter = (LongCounter) perfData.findCounter("sun.ci.standardTime");
+		osrTimeCounter = (LongCounter) perfData.findCounter("sun.ci.osrTime");
+		standardBytesCounter = (LongCounter) perfData.findCounter("sun.ci.standardBytes");
+		osrBytesCounter = (LongCounter) perfData.findCounter("sun.ci.osrBytes");
+		nmethodSizeCounter = (LongCounter) perfData.findCounter("sun.ci.nmethodSize");
+		nmethodCodeSizeCounter = (LongCounter) perfData.findCounter("sun.ci.nmethodCodeSize");
+		lastMethodCounter = perfData.findCounter("sun.ci.lastMethod");
+		lastTypeCounter = (LongCounter) perfData.findCounter("sun.ci.lastType");
+		lastSizeCounter = (LongCounter) perfData.findCounter("sun.ci.lastSize");
+		lastFailedMethodCounter = perfData.findCounter("sun.ci.lastFailedMethod");
+		lastInvalidatedMethodCounter = perfData.findCounter("sun.ci.lastInvalidatedMethod");
+
+		// -Xint或关闭了编译器计数器的JVM
+		if (totalCompilesCounter == null || standardTimeCounter == null || osrTimeCounter == null) {
+			throw new IllegalArgumentException("JIT counters are not found in PerfData, the JIT may be disabled");
+		}
+	}
+
+	/**
+	 * 每次刷新时调用，首次调用时各增量为0
+	 */
+	public void update() throws IOException {
+		compiles.update(totalCompilesCounter.longValue());
+		osrCompiles.update(value(osrCompilesCounter));
+		bailouts.update(value(bailoutsCounter));
+		invalidates.update(value(invalidatesCounter));
+		compileMicros.update(perfData.tickToMicros(standardTimeCounter.longValue() + osrTimeCounter.longValue()));
+		compiledBytes.update(value(standardBytesCounter) + value(osrBytesCounter));
+		nmethodSize.update(value(nmethodSizeCounter));
+		nmethodCodeSize = value(nmethodCodeSizeCounter);
+
+		lastMethod = string(lastMethodCounter);
+		long type = value(lastTypeCounter);
+		lastType = type >= 0 && type < COMPILE_TYPES.length ? COMPILE_TYPES[(int) type] : String.valueOf(type);
+		lastSize = value(lastSizeCounter);
+		lastFailedMethod = string(lastFailedMethodCounter);
+		lastInvalidatedMethod = string(lastInvalidatedMethodCounter);
+
+		if (vmInfo.isLinux) {
+			updateThreadCpu();
+		}
+
+		if (codeCacheSupported) {
+			codeCache.parse(vmInfo.getCodeCacheInfo());
+		}
+	}
+
+	/**
+	 * Compiler.codecache在JDK9加入，JDK8执行时每次都会抛出异常
+	 */
+	static boolean isCodeCacheSupported(boolean jmxSupport, int jvmMajorVersion) {
+		return jmxSupport && jvmMajorVersion >= 9;
+	}
+
+	private void updateThreadCpu() {
+		List<CompilerThread> threads = new ArrayList<>();
+		long compilerCpu = 0;
+		long c1Cpu = 0;
+		long c2Cpu = 0;
+		long sweeperCpu = -1;
+
+		currentThreadCpu.clear();
+		for (TaskStat stat : vmInfo.getProcThreadStats()) {
+			boolean isCompiler = stat.name.contains(COMPILER_THREAD_NAME);
+			boolean isSweeper = stat.name.startsWith(SWEEPER_THREAD_NAME);
+			if (!isCompiler && !isSweeper) {
+				continue;
+			}
+			long cpu = stat.cpuNanos();
+			currentThreadCpu.put(stat.tid, cpu);
+			// 周期内新启动的线程，全部CPU计入本周期
+			long delta = threadCpuInitialized ? cpu - lastThreadCpu.get(stat.tid, 0) : 0;
+
+			if (isSweeper) {
+				sweeperCpu = Math.max(0, sweeperCpu) + delta;
+				continue;
+			}
+			threads.add(new CompilerThread(stat.tid, stat.name, stat.stateName(), delta, cpu));
+			compilerCpu += delta;
+			if (stat.name.startsWith("C1")) {
+				c1Cpu += delta;
+			} else if (stat.name.startsWith("C2")) {
+				c2Cpu += delta;
+			}
+		}
+
+		LongLongHashMap temp = lastThreadCpu;
+		lastThreadCpu = currentThreadCpu;
+		currentThreadCpu = temp;
+		threadCpuInitialized = true;
+
+		Collections.sort(threads, CPU_COMPARATOR);
+		compilerThreads = threads;
+		compilerCpuNanos = compilerCpu;
+		c1CpuNanos = c1Cpu;
+		c2CpuNanos = c2Cpu;
+		sweeperCpuNanos = sweeperCpu;
+	}
+
+	/**
+	 * 周期内编译耗时占周期时长的百分比，编译线程并行时可超过100%
+	 */
+	public double compileTimePercent(long intervalMills) {
+		return intervalMills <= 0 ? 0 : compileMicros.delta / 10d / intervalMills;
+	}
+
+	private static long value(LongCounter counter) {
+		return counter != null ? counter.longValue() : 0;
+	}
+
+	private static String string(Counter counter) {
+		return counter != null ? ((String) counter.getValue()).trim() : "";
+	}
+
+	/**
+	 * 一个编译线程的CPU时间，TID为系统线程号
+	 */
+	public static class CompilerThread {
+		public final long tid;
+		public final String name;
+		public final String state;
+		public final long deltaCpuNanos;
+		public final long totalCpuNanos;
+
+		CompilerThread(long tid, String name, String state, long deltaCpuNanos, long totalCpuNanos) {
+			this.tid = tid;
+			this.name = name;
+			this.state = state;
+			this.deltaCpuNanos = deltaCpuNanos;
+			this.totalCpuNanos = totalCpuNanos;
+		}
+	}
+
+	/**
+	 * Compiler.codecache的结果，单位字节
+	 */
+	public static class CodeCache {
+		public boolean supported;
+		public long size;
+		public long used;
+		public long maxUsed;
+		public Rate nmethods = new Rate();
+		// 输出中没有full_count时为-1
+		public Rate fullCount = new Rate();
+		public boolean compilationEnabled = true;
+
+		/**
+		 * 分段代码缓存时将各CodeHeap的用量相加
+		 */
+		void parse(String output) {
+			long totalSize = 0;
+			long totalUsed = 0;
+			long totalMaxUsed = 0;
+			long nmethodCount = -1;
+			long full = -1;
+			boolean enabled = true;
+
+			for (String line : output.split("\n")) {
+				line = line.trim();
+				Matcher matcher = HEAP_PATTERN.matcher(line);
+				if (matcher.find()) {
+					totalSize += Long.parseLong(matcher.group(1)) * 1024;
+					totalUsed += Long.parseLong(matcher.group(2)) * 1024;
+					totalMaxUsed += Long.parseLong(matcher.group(3)) * 1024;
+					continue;
+				}
+				matcher = NMETHODS_PATTERN.matcher(line);
+				if (matcher.find()) {
+					nmethodCount = Long.parseLong(matcher.group(1));
+				}
+				matcher = FULL_COUNT_PATTERN.matcher(line);
+				if (matcher.find()) {
+					full = Long.parseLong(matcher.group(1));
+				}
+				if (line.startsWith("compilation:")) {
+					enabled = line.startsWith("compilation: enabled");
+				}
+			}
+
+			supported = totalSize > 0;
+			size = totalSize;
+			used = totalUsed;
+			maxUsed = totalMaxUsed;
+			nmethods.update(nmethodCount);
+			fullCount.update(full);
+			compilationEnabled = enabled;
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopCpuResult;
+import com.vip.vjtools.vjtop.VMInfo.Usage;
+import com.vip.vjtools.vjtop.util.Formats;
+import com.vip.vjtools.vjtop.util.Utils;
+
+/**
+ * 以OpenMetrics文本格式在HTTP端口上暴露VMInfo中已计算好的指标，供Prometheus采集。
+ *
+ * 每次刷新后在主线程中渲染到复用的StringBuilder与byte[]，再与服务中的buffer交换；采集请求只复制最近一次渲染的结果，
+ * 不触发任何数据获取，采集成本与目标JVM的线程数无关。
+ */
+@SuppressWarnings("restriction")
+public class MetricsExporter implements HttpHandler {
+
+	public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+	private static final String METRICS_PATH = "/metrics";
+
+	private static final String[] MEMORY_AREAS = { "eden", "sur", "old", "perm", "ccs", "codeCache", "direct",
+			"map" };
+
+	private HttpServer server;
+
+	private final StringBuilder sb = new StringBuilder(16 * 1024);
+	private final Usage[] memoryUsages = new Usage[MEMORY_AREAS.length];
+	private String pidLabel;
+
+	// 渲染线程写back，交换后由HTTP线程读取front
+	private byte[] back = new byte[16 * 1024];
+	private int backLength;
+	private byte[] front = new byte[16 * 1024];
+	private int frontLength;
+	private final Object lock = new Object();
+
+	// HttpServer默认单线程处理请求，发送buffer只有该线程使用
+	private byte[] sendBuffer = new byte[16 * 1024];
+
+	/**
+	 * 在host:port上启动HTTP服务，默认只监听127.0.0.1
+	 */
+	public void start(String hostAndPort) throws IOException {
+		String host = "127.0.0.1";
+		String port = hostAndPort;
+		int index = hostAndPort.lastIndexOf(':');
+		if (index != -1) {
+			host = hostAndPort.substring(0, index);
+			port = hostAndPort.substring(index + 1);
+		}
+
+		server = HttpServer.create(new InetSocketAddress(host, Integer.parseInt(port)), 0);
+		server.createContext(METRICS_PATH, this);
+		server.start();
+
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				server.stop(0);
+			}
+		}));
+	}
+
+	/**
+	 * 每个刷新周期结束后调用，cpuResult在非cpu显示模式或尚无数据时为null
+	 */
+	public void render(VMInfo vmInfo, TopCpuResult cpuResult) {
+		if (pidLabel == null) {
+			pidLabel = "pid=\"" + vmInfo.pid + "\"";
+		}
+
+		sb.setLength(0);
+
+		gauge("vjtop_process_cpu_usage", "Process cpu usage in cores during the last interval");
+		sample("vjtop_process_cpu_usage", null, null, vmInfo.singleCoreCpuLoad / 100, 4);
+
+		if (vmInfo.cpuTimeNanos.current >= 0) {
+			counter("vjtop_process_cpu_seconds", "Process cpu time");
+			sample("vjtop_process_cpu_seconds_total", null, null,
+					(double) vmInfo.cpuTimeNanos.current / (1000 * Utils.NANOS_TO_MILLS), 3);
+		}
+
+		if (vmInfo.isLinux && vmInfo.processDataSupport) {
+			gauge("vjtop_process_rss_bytes", "Process resident memory");
+			sample("vjtop_process_rss_bytes", null, null, vmInfo.rss);
+			gauge("vjtop_process_swap_bytes", "Process swapped memory");
+			sample("vjtop_process_swap_bytes", null, null, vmInfo.swap);
+			gauge("vjtop_process_threads", "OS threads of the process");
+			sample("vjtop_process_threads", null, null, vmInfo.osThreads);
+		}
+
+		if (vmInfo.cgroupSupport) {
+			if (vmInfo.cpuLimit > 0) {
+				gauge("vjtop_cgroup_cpu_limit", "Cpu quota of the cgroup in cores");
+				sample("vjtop_cgroup_cpu_limit", null, null, vmInfo.cpuLimit, 2);
+			}
+			if (vmInfo.cpuThrottledNanos.current >= 0) {
+				counter("vjtop_cgroup_cpu_throttled_periods", "CFS periods throttled by the cgroup cpu quota");
+				sample("vjtop_cgroup_cpu_throttled_periods_total", null, null, vmInfo.cpuThrottled.current);
+				counter("vjtop_cgroup_cpu_throttled_seconds", "Time throttled by the cgroup cpu quota");
+				sample("vjtop_cgroup_cpu_throttled_seconds_total", null, null,
+						(double) vmInfo.cpuThrottledNanos.current / (1000 * Utils.NANOS_TO_MILLS), 3);
+			}
+			if (vmInfo.memoryLimit != -1) {
+				gauge("vjtop_cgroup_memory_limit_bytes", "Memory limit of the cgroup");
+				sample("vjtop_cgroup_memory_limit_bytes", null, null, vmInfo.memoryLimit);
+			}
+			gauge("vjtop_cgroup_memory_working_set_bytes", "Memory usage of the cgroup minus inactive page cache");
+			sample("vjtop_cgroup_memory_working_set_bytes", null, null, vmInfo.memoryUsage);
+		}
+
+		gauge("vjtop_jvm_threads", "Java threads");
+		sample("vjtop_jvm_threads", "state", "live", vmInfo.threadActive);
+		sample("vjtop_jvm_threads", "state", "daemon", vmInfo.threadDaemon);
+		sample("vjtop_jvm_threads", "state", "peak", vmInfo.threadPeak);
+
+		// 累计值以counter暴露，速率交给PromQL的rate()计算
+		counter("vjtop_gc_collections", "GC collections");
+		sample("vjtop_gc_collections_total", "gen", "young", Math.max(0, vmInfo.ygcCount.current));
+		sample("vjtop_gc_collections_total", "gen", "full", Math.max(0, vmInfo.fullgcCount.current));
+		counter("vjtop_gc_seconds", "GC pause time");
+		sample("vjtop_gc_seconds_total", "gen", "young", Math.max(0, vmInfo.ygcTimeMills.current) / 1000d, 3);
+		sample("vjtop_gc_seconds_total", "gen", "full", Math.max(0, vmInfo.fullgcTimeMills.current) / 1000d, 3);
+
+		if (vmInfo.perfDataSupport) {
+			counter("vjtop_safepoints", "Safepoints");
+			sample("vjtop_safepoints_total", null, null, Math.max(0, vmInfo.safepointCount.current));
+			counter("vjtop_safepoint_seconds", "Time spent in safepoints");
+			sample("vjtop_safepoint_seconds_total", null, null, Math.max(0, vmInfo.safepointTimeMills.current) / 1000d,
+					3);
+			counter("vjtop_safepoint_sync_seconds", "Time spent to reach safepoints");
+			sample("vjtop_safepoint_sync_seconds_total", null, null,
+					Math.max(0, vmInfo.safepointSyncTimeMills.current) / 1000d, 3);
+		}
+
+		renderMemory(vmInfo);
+
+		// 平滑后的速率，瞬时值可由eden用量与GC次数在PromQL中自行计算
+		if (vmInfo.allocRate.ratePerSecond >= 0) {
+			gauge("vjtop_heap_allocation_bytes_per_second", "Young generation allocation rate, smoothed");
+			sample("vjtop_heap_allocation_bytes_per_second", null, null, vmInfo.allocRate.ratePerSecond);
+		}
+		if (vmInfo.promoteRate.ratePerSecond >= 0) {
+			gauge("vjtop_heap_promotion_bytes_per_second", "Old generation promotion rate, smoothed");
+			sample("vjtop_heap_promotion_bytes_per_second", null, null, vmInfo.promoteRate.ratePerSecond);
+		}
+
+		if (cpuResult != null && cpuResult.ready) {
+			renderTopThreads(vmInfo, cpuResult);
+		}
+
+		sb.append("# EOF\n");
+		publish();
+	}
+
+	private void renderMemory(VMInfo vmInfo) {
+		memoryUsages[0] = vmInfo.eden;
+		memoryUsages[1] = vmInfo.sur;
+		memoryUsages[2] = vmInfo.old;
+		memoryUsages[3] = vmInfo.perm;
+		memoryUsages[4] = vmInfo.ccs;
+		memoryUsages[5] = vmInfo.codeCache;
+		memoryUsages[6] = vmInfo.direct;
+		memoryUsages[7] = vmInfo.map;
+
+		gauge("vjtop_memory_used_bytes", "Used memory by area");
+		for (int i = 0; i < MEMORY_AREAS.length; i++) {
+			Usage usage = memoryUsages[i];
+			if (usage != null && usage.used >= 0) {
+				sample("vjtop_memory_used_bytes", "area", MEMORY_AREAS[i], usage.used);
+			}
+		}
+		gauge("vjtop_memory_committed_bytes", "Committed memory by area");
+		for (int i = 0; i < MEMORY_AREAS.length; i++) {
+			Usage usage = memoryUsages[i];
+			if (usage != null && usage.committed >= 0) {
+				sample("vjtop_memory_committed_bytes", "area", MEMORY_AREAS[i], usage.committed);
+			}
+		}
+		// map的max为映射的buffer个数，不作为字节数暴露
+		gauge("vjtop_memory_max_bytes", "Max memory by area");
+		for (int i = 0; i < MEMORY_AREAS.length - 1; i++) {
+			Usage usage = memoryUsages[i];
+			if (usage != null && usage.max >= 0) {
+				sample("vjtop_memory_max_bytes", "area", MEMORY_AREAS[i], usage.max);
+			}
+		}
+	}
+
+	private void renderTopThreads(VMInfo vmInfo, TopCpuResult result) {
+		gauge("vjtop_top_thread_cpu_usage", "Cpu usage in cores of the top threads during the last interval");
+		for (int i = 0; i < result.topTids.length; i++) {
+			String name = result.topThreadNames[i];
+			if (name == null) {
+				continue;
+			}
+			long tid = result.topTids[i];
+			long deltaCpu = result.threadCpuDeltaTimes.get(tid, 0);
+			double cpu = Utils.calcLoad(deltaCpu, vmInfo.upTimeMills.delta, Utils.NANOS_TO_MILLS) / 100;
+
+			sb.append("vjtop_top_thread_cpu_usage{").append(pidLabel).append(",tid=\"").append(tid)
+					.append("\",name=\"");
+			appendLabelValue(name);
+			sb.append("\"} ");
+			Formats.appendDecimal(sb, cpu, 4);
+			sb.append('\n');
+		}
+	}
+
+	private void gauge(String name, String help) {
+		metadata(name, "gauge", help);
+	}
+
+	private void counter(String name, String help) {
+		metadata(name, "counter", help);
+	}
+
+	private void metadata(String name, String type, String help) {
+		sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+		sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+	}
+
+	private void sample(String name, String labelName, String labelValue, long value) {
+		sampleName(name, labelName, labelValue);
+		sb.append(value).append('\n');
+	}
+
+	private void sample(String name, String labelName, String labelValue, double value, int scale) {
+		sampleName(name, labelName, labelValue);
+		Formats.appendDecimal(sb, value, scale);
+		sb.append('\n');
+	}
+
+	private void sampleName(String name, String labelName, String labelValue) {
+		sb.append(name).append('{').append(pidLabel);
+		if (labelName != null) {
+			sb.append(',').append(labelName).append("=\"").append(labelValue).append('"');
+		}
+		sb.append("} ");
+	}
+
+	private void appendLabelValue(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '"') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else {
+				sb.append(c);
+			}
+		}
+	}
+
+	/**
+	 * 将sb以UTF-8编码写入back，再与front交换
+	 */
+	private void publish() {
+		int length = sb.length();
+		// UTF-8每个char最多3个字节
+		if (back.length < length * 3) {
+			back = new byte[length * 3];
+		}
+
+		int pos = 0;
+		for (int i = 0; i < length; i++) {
+			char c = sb.charAt(i);
+			if (c < 0x80) {
+				back[pos++] = (byte) c;
+			} else if (c < 0x800) {
+				back[pos++] = (byte) (0xC0 | (c >> 6));
+				back[pos++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(sb.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, sb.charAt(++i));
+				back[pos++] = (byte) (0xF0 | (codePoint >> 18));
+				back[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				back[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				back[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else {
+				back[pos++] = (byte) (0xE0 | (c >> 12));
+				back[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				back[pos++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		backLength = pos;
+
+		synchronized (lock) {
+			byte[] temp = front;
+			front = back;
+			frontLength = backLength;
+			back = temp;
+		}
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		try {
+			int length;
+			// 在锁内只做内存复制，慢速的客户端不会阻塞渲染线程
+			synchronized (lock) {
+				length = frontLength;
+				if (sendBuffer.length < length) {
+					sendBuffer = new byte[front.length];
+				}
+				System.arraycopy(front, 0, sendBuffer, 0, length);
+			}
+
+			if (length == 0) {
+				// 首次刷新尚未完成
+				exchange.sendResponseHeaders(503, -1);
+				return;
+			}
+
+			exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+			exchange.sendResponseHeaders(200, length);
+			OutputStream os = exchange.getResponseBody();
+			os.write(sendBuffer, 0, length);
+			os.close();
+		} finally {
+			exchange.close();
+		}
+	}
+}
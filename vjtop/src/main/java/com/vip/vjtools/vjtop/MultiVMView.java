@@ -0,0 +1,200 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+import com.vip.vjtools.vjtop.data.LocalVMDiscovery;
+import com.vip.vjtools.vjtop.util.Formats;
+
+/**
+ * 本机所有JVM的汇总视图。
+ *
+ * 每个JVM只映射PerfData与读取/proc，目标JVM不需要做任何工作；刷新在固定大小的线程池中并行执行，观察者一侧的CPU消耗不随目标数量放大线程数。
+ */
+public class MultiVMView {
+	private static final int DEFAULT_WIDTH = 100;
+	private static final int MIN_WIDTH = 80;
+	// 除MAIN列外其他列的总宽度
+	private static final int FIXED_COLUMNS_WIDTH = 76;
+	private static final int MAX_UPDATE_THREADS = 4;
+
+	private static final Comparator<VMInfo> CPU_COMPARATOR = new Comparator<VMInfo>() {
+		@Override
+		public int compare(VMInfo o1, VMInfo o2) {
+			return Double.compare(o2.singleCoreCpuLoad, o1.singleCoreCpuLoad);
+		}
+	};
+
+	private int width;
+
+	private final LocalVMDiscovery discovery;
+	final Map<String, UpdateTask> updateTasks = new HashMap<>();
+	// 无法映射PerfData的进程(如其他用户的进程)，在其退出前不再重试
+	final Set<String> failedPids = new HashSet<>();
+	private final List<VMInfo> sortedVms = new ArrayList<>();
+
+	private final int updateThreads;
+	private final ExecutorService executor;
+
+	public MultiVMView(Integer width) {
+		this(width, new LocalVMDiscovery());
+	}
+
+	MultiVMView(Integer width, LocalVMDiscovery discovery) {
+		setWidth(width);
+		this.discovery = discovery;
+
+		updateThreads = Math.min(MAX_UPDATE_THREADS, Runtime.getRuntime().availableProcessors());
+		executor = Executors.newFixedThreadPool(updateThreads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "vjtop-update-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void printView() throws Exception {
+		long iterationStartTime = System.currentTimeMillis();
+
+		refreshTargets();
+		// invokeAll返回时所有VMInfo已更新完毕，打印在主线程中进行
+		executor.invokeAll(updateTasks.values());
+
+		sortedVms.clear();
+		for (UpdateTask task : updateTasks.values()) {
+			sortedVms.add(task.vmInfo);
+		}
+		Collections.sort(sortedVms, CPU_COMPARATOR);
+
+		long cost = System.currentTimeMillis() - iterationStartTime;
+
+		Formats.clearTerminal();
+		System.out.printf(" %8tT - %d JVMs, %d not accessible, refresh cost %dms by %d threads%n%n", new Date(),
+				sortedVms.size(), failedPids.size(), cost, updateThreads);
+
+		int mainWidth = width - FIXED_COLUMNS_WIDTH;
+		System.out.printf(" %7s %-8s %-" + mainWidth + "s %6s %6s %6s %5s %4s %6s %3s %6s %7s%n", "PID", "USER",
+				"MAIN", "CPU%", "RSS", "THREAD", "OLD%", "YGC", "YGCT", "FGC", "SAFEPT", "UPTIME");
+
+		for (VMInfo vm : sortedVms) {
+			printVM(vm, mainWidth);
+		}
+	}
+
+	private void printVM(VMInfo vm, int mainWidth) {
+		WarningRule warning = vm.warningRule;
+
+		String[] cpuAnsi = Formats.colorAnsi(vm.cpuLoad, warning.cpu);
+		String[] threadAnsi = Formats.colorAnsi(vm.threadActive, warning.thread);
+		String[] oldAnsi = Formats.colorAnsi(vm.old.used, warning.old);
+		String[] ygcAnsi = Formats.colorAnsi(vm.ygcCount.delta, warning.ygcCount);
+		String[] ygcTimeAnsi = Formats.colorAnsi(vm.ygcTimeMills.delta, warning.ygcTime);
+		String[] fgcAnsi = Formats.colorAnsi(vm.fullgcCount.delta, warning.fullgcCount);
+		String[] safepointAnsi = Formats.colorAnsi(vm.safepointTimeMills.delta, warning.safepointTime);
+
+		String oldPercent = vm.old.max > 0 ? String.valueOf(vm.old.used * 100 / vm.old.max) : "NaN";
+		String rss = vm.processDataSupport ? Formats.toMB(vm.rss) : "NaN";
+
+		System.out.printf(
+				" %7s %-8s %-" + mainWidth + "s %s%6.1f%s %6s %s%6d%s %s%5s%s %s%4d%s %s%6d%s %s%3d%s %s%6d%s %7s%n",
+				vm.pid, Formats.leftStr(String.valueOf(vm.osUser), 8),
+				Formats.shortName(vm.mainClass, mainWidth, 12), cpuAnsi[0], vm.singleCoreCpuLoad, cpuAnsi[1], rss,
+				threadAnsi[0], vm.threadActive, threadAnsi[1], oldAnsi[0], oldPercent, oldAnsi[1], ygcAnsi[0],
+				vm.ygcCount.delta, ygcAnsi[1], ygcTimeAnsi[0], vm.ygcTimeMills.delta, ygcTimeAnsi[1], fgcAnsi[0],
+				vm.fullgcCount.delta, fgcAnsi[1], safepointAnsi[0], vm.safepointTimeMills.delta, safepointAnsi[1],
+				Formats.toTimeUnit(vm.upTimeMills.current));
+	}
+
+	/**
+	 * 按hsperfdata目录增删监控目标，每个进程只在首次发现时映射一次PerfData
+	 */
+	void refreshTargets() {
+		List<String> pids = discovery.listPids();
+		Set<String> alivePids = new HashSet<>(pids);
+
+		int closed = 0;
+		Iterator<Map.Entry<String, UpdateTask>> it = updateTasks.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, UpdateTask> entry = it.next();
+			VMInfo vmInfo = entry.getValue().vmInfo;
+			if (!alivePids.contains(entry.getKey())) {
+				vmInfo.close();
+				it.remove();
+				closed++;
+			} else if (vmInfo.state == VMInfoState.DETACHED) {
+				vmInfo.close();
+				it.remove();
+				failedPids.add(entry.getKey());
+				closed++;
+			}
+		}
+		failedPids.retainAll(alivePids);
+
+		// PerfData的映射在ByteBuffer被GC回收后才解除，长期存活的映射对象已在老年代，不主动GC时可能一直不被回收。
+		// vjtop自身的堆很小，Full GC的代价可以忽略。上一次打印的列表仍引用已关闭的VMInfo，先清空
+		if (closed > 0) {
+			sortedVms.clear();
+			System.gc();
+		}
+
+		for (String pid : pids) {
+			if (updateTasks.containsKey(pid) || failedPids.contains(pid)) {
+				continue;
+			}
+			try {
+				updateTasks.put(pid, new UpdateTask(attach(pid)));
+			} catch (Exception e) {
+				failedPids.add(pid);
+			}
+		}
+	}
+
+	/**
+	 * 只映射PerfData与读取/proc，不经JMX
+	 */
+	VMInfo attach(String pid) throws Exception {
+		return new VMInfo(null, pid);
+	}
+
+	private void setWidth(Integer width) {
+		if (width == null) {
+			this.width = DEFAULT_WIDTH;
+		} else if (width < MIN_WIDTH) {
+			this.width = MIN_WIDTH;
+		} else {
+			this.width = width;
+		}
+	}
+
+	static class UpdateTask implements Callable<Void> {
+		final VMInfo vmInfo;
+
+		UpdateTask(VMInfo vmInfo) {
+			this.vmInfo = vmInfo;
+		}
+
+		@Override
+		public Void call() {
+			vmInfo.update(true);
+			return null;
+		}
+	}
+}
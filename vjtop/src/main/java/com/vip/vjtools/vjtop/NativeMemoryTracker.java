@@ -0,0 +1,155 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 目标JVM以-XX:NativeMemoryTracking=summary/detail启动时，定期经DiagnosticCommand MBean执行VM.native_memory summary，
+ * 得到各分类(Java Heap, Class, Thread, Code, GC, Internal...)的reserved/committed内存，及与上次查询相比的committed增量。
+ *
+ * NMT汇总需要在目标JVM中遍历所有的malloc与mmap记录，因此按查询间隔节流，两次查询之间沿用上次的结果。
+ */
+public class NativeMemoryTracker {
+
+	public static final int DEFAULT_POLL_SECONDS = 60;
+
+	private static final String NMT_ARG = "-XX:NativeMemoryTracking=";
+	private static final Pattern TOTAL_PATTERN = Pattern
+			.compile("^Total:\\s+reserved=(\\d+)KB,\\s+committed=(\\d+)KB");
+	private static final Pattern CATEGORY_PATTERN = Pattern
+			.compile("^-\\s+(.+?)\\s+\\(reserved=(\\d+)KB,\\s+committed=(\\d+)KB\\)");
+
+	private static final Comparator<Category> COMMITTED_COMPARATOR = new Comparator<Category>() {
+		@Override
+		public int compare(Category o1, Category o2) {
+			return o1.committed > o2.committed ? -1 : (o1.committed == o2.committed ? 0 : 1);
+		}
+	};
+
+	private final VMInfo vmInfo;
+	private final long pollIntervalMills;
+	private Map<String, Long> lastCommitted;
+
+	// 最近一次查询的结果，按committed从大到小排序，单位字节
+	public long lastPollTime;
+	public long totalReserved;
+	public long totalCommitted;
+	public long totalDelta;
+	public List<Category> categories = Collections.emptyList();
+
+	public NativeMemoryTracker(VMInfo vmInfo, int pollSeconds) {
+		this.vmInfo = vmInfo;
+		this.pollIntervalMills = pollSeconds * 1000L;
+	}
+
+	/**
+	 * 以启动参数中最后出现的-XX:NativeMemoryTracking为准
+	 */
+	public static boolean isEnabled(String vmArgs) {
+		int index = vmArgs.lastIndexOf(NMT_ARG);
+		if (index == -1) {
+			return false;
+		}
+		String level = vmArgs.substring(index + NMT_ARG.length());
+		return level.startsWith("summary") || level.startsWith("detail");
+	}
+
+	/**
+	 * 每次刷新时调用，按查询间隔节流，返回本次是否进行了查询
+	 */
+	public boolean poll() throws IOException {
+		long now = System.currentTimeMillis();
+		if (lastPollTime != 0 && now - lastPollTime < pollIntervalMills) {
+			return false;
+		}
+		lastPollTime = now;
+
+		String summary = vmInfo.getNativeMemorySummary();
+		parse(summary);
+		return true;
+	}
+
+	/**
+	 * 解析scale=KB的summary输出，首次解析时增量为0
+	 */
+	void parse(String summary) {
+		List<Category> result = new ArrayList<>();
+		Map<String, Long> committedMap = new HashMap<>();
+		long reserved = 0;
+		long committed = 0;
+
+		for (String line : summary.split("\n")) {
+			line = line.trim();
+			Matcher matcher = TOTAL_PATTERN.matcher(line);
+			if (matcher.find()) {
+				reserved = Long.parseLong(matcher.group(1)) * 1024;
+				committed = Long.parseLong(matcher.group(2)) * 1024;
+				continue;
+			}
+			matcher = CATEGORY_PATTERN.matcher(line);
+			if (matcher.find()) {
+				Category category = new Category(matcher.group(1), Long.parseLong(matcher.group(2)) * 1024,
+						Long.parseLong(matcher.group(3)) * 1024);
+				if (lastCommitted != null) {
+					Long last = lastCommitted.get(category.name);
+					category.delta = category.committed - (last != null ? last : 0);
+				}
+				committedMap.put(category.name, category.committed);
+				result.add(category);
+			}
+		}
+
+		Collections.sort(result, COMMITTED_COMPARATOR);
+		totalDelta = lastCommitted != null ? committed - totalCommitted : 0;
+		totalReserved = reserved;
+		totalCommitted = committed;
+		categories = result;
+		lastCommitted = committedMap;
+	}
+
+	/**
+	 * NMT中的一个内存分类，单位字节
+	 */
+	public static class Category {
+		public final String name;
+		public final long reserved;
+		public final long committed;
+		// 与上次查询相比committed的增量
+		public long delta;
+
+		Category(String name, long reserved, long committed) {
+			this.name = name;
+			this.reserved = reserved;
+			this.committed = committed;
+		}
+
+		/**
+		 * text格式中的key，如Java Heap转为javaHeap，GC转为gc
+		 */
+		public String key() {
+			StringBuilder builder = new StringBuilder(name.length());
+			boolean firstWord = true;
+			boolean upper = false;
+			for (int i = 0; i < name.length(); i++) {
+				char c = name.charAt(i);
+				if (c == ' ') {
+					firstWord = builder.length() == 0;
+					upper = !firstWord;
+				} else if (firstWord) {
+					builder.append(Character.toLowerCase(c));
+				} else {
+					builder.append(upper ? Character.toUpperCase(c) : c);
+					upper = false;
+				}
+			}
+			return builder.toString();
+		}
+	}
+}
@@ -0,0 +1,336 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.vip.vjtools.vjtop.VMInfo.Usage;
+import com.vip.vjtools.vjtop.util.Formats;
+
+/**
+ * 输出JSON Lines或CSV格式的记录，供日志采集等第三方工具使用。
+ *
+ * 每个刷新周期输出一条jvm记录，每个热点线程一条thread记录，以及检测到的每个死锁或锁等待链一条lock记录。
+ * 字段名与顺序由JVM_FIELDS/THREAD_FIELDS/LOCK_FIELDS定义，增删字段时必须递增SCHEMA_VERSION。CSV在首次输出时打印以#开头的表头行，lock记录的表头在首次输出lock记录时才打印。
+ *
+ * 为了长时间运行时不成为GC的来源，记录在复用的StringBuilder中拼接，数字不经String.format直接写入，再通过复用的char[]写出。
+ */
+public class RecordPrinter {
+
+	public static final int SCHEMA_VERSION = 3;
+
+	public static final String JVM_RECORD = "jvm";
+	public static final String THREAD_RECORD = "thread";
+	public static final String LOCK_RECORD = "lock";
+
+	// 与text格式的字段名保持一致
+	public static final String[] JVM_FIELDS = { "time", "pid", "uptime", "process.cpu.core", "process.cpu.server",
+			"server.core", "process.thread", "rss", "rss.peak", "swap", "disk.read", "disk.write", "thread.live",
+			"thread.daemon", "thread.peak", "thread.new", "class.loaded", "class.unloaded", "class.new", "eden.use",
+			"eden.commit", "eden.max", "sur.use", "sur.commit", "sur.max", "old.use", "old.commit", "old.max",
+			"alloc.rate", "promote.rate", "perm.use", "perm.commit", "perm.max", "codeCache.use", "codeCache.commit",
+			"codeCache.max", "ccs.use", "ccs.commit", "ccs.max", "direct.use", "direct.commit", "direct.max", "map.use",
+			"map.commit", "map.count", "threadStack", "ygc.count", "ygc.time", "fgc.count", "fgc.time",
+			"safePoint.count", "safePoint.time", "safePoint.syncTime", "gc.cause" };
+
+	// cpu与memory类的显示模式共用同一个schema，不适用的字段输出-1
+	public static final String[] THREAD_FIELDS = { "time", "pid", "mode", "rank", "tid", "name", "state", "cpu",
+			"syscpu", "cpu.total", "syscpu.total", "memory.rate", "memory.rate.percent", "memory.total",
+			"memory.total.percent" };
+
+	// kind为deadlock或chain，chain为以" -> "连接的线程路径
+	public static final String[] LOCK_FIELDS = { "time", "pid", "kind", "root.tid", "root.name", "blocked", "depth",
+			"lock", "chain" };
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final boolean json;
+	private boolean headerPrinted = false;
+	private boolean lockHeaderPrinted = false;
+
+	private final StringBuilder sb = new StringBuilder(4096);
+	private char[] chars = new char[4096];
+
+	private PrintStream out;
+	private Writer writer;
+
+	private long time;
+	private String[] fields;
+	private int fieldIndex;
+
+	public RecordPrinter(boolean json) {
+		this.json = json;
+	}
+
+	/**
+	 * 每个刷新周期开始时调用，同一周期的记录使用相同的时间戳
+	 */
+	public void beginInterval() {
+		time = System.currentTimeMillis();
+		if (!json && !headerPrinted) {
+			printHeader(JVM_RECORD, JVM_FIELDS);
+			printHeader(THREAD_RECORD, THREAD_FIELDS);
+			headerPrinted = true;
+		}
+	}
+
+	public void printJvmRecord(VMInfo vmInfo) throws IOException {
+		boolean procSupport = vmInfo.isLinux && vmInfo.processDataSupport;
+		boolean ioSupport = vmInfo.isLinux && vmInfo.ioDataSupport;
+
+		beginRecord(JVM_RECORD, JVM_FIELDS);
+		value(time);
+		value(Long.parseLong(vmInfo.pid));
+		value(vmInfo.upTimeMills.current);
+		value(vmInfo.singleCoreCpuLoad);
+		value(vmInfo.cpuLoad);
+		value(vmInfo.processors);
+		value(procSupport ? vmInfo.osThreads : -1);
+		value(procSupport ? vmInfo.rss : -1);
+		value(procSupport ? vmInfo.peakRss : -1);
+		value(procSupport ? vmInfo.swap : -1);
+		value(ioSupport ? vmInfo.readBytes.ratePerSecond : -1);
+		value(ioSupport ? vmInfo.writeBytes.ratePerSecond : -1);
+		value(vmInfo.threadActive);
+		value(vmInfo.threadDaemon);
+		value(vmInfo.threadPeak);
+		value(vmInfo.threadNew.delta);
+		value(vmInfo.classLoaded.current);
+		value(vmInfo.classUnLoaded);
+		value(vmInfo.classLoaded.delta);
+		usage(vmInfo.eden);
+		usage(vmInfo.sur);
+		usage(vmInfo.old);
+		value(vmInfo.allocRate.ratePerSecond);
+		value(vmInfo.promoteRate.ratePerSecond);
+		usage(vmInfo.perm);
+		usage(vmInfo.codeCache);
+		usage(vmInfo.ccs);
+		usage(vmInfo.direct);
+		usage(vmInfo.map);
+		value(vmInfo.threadStackSize * vmInfo.threadActive);
+		value(vmInfo.ygcCount.delta);
+		value(vmInfo.ygcTimeMills.delta);
+		value(vmInfo.fullgcCount.delta);
+		value(vmInfo.fullgcTimeMills.delta);
+		value(vmInfo.perfDataSupport ? vmInfo.safepointCount.delta : -1);
+		value(vmInfo.perfDataSupport ? vmInfo.safepointTimeMills.delta : -1);
+		value(vmInfo.perfDataSupport ? vmInfo.safepointSyncTimeMills.delta : -1);
+		value(vmInfo.currentGcCause);
+		endRecord();
+	}
+
+	public void printCpuThreadRecord(VMInfo vmInfo, String mode, int rank, long tid, String name, String state,
+			double cpu, double syscpu, double totalcpu, double totalsyscpu) throws IOException {
+		beginThreadRecord(vmInfo, mode, rank, tid, name, state);
+		value(cpu);
+		value(syscpu);
+		value(totalcpu);
+		value(totalsyscpu);
+		value(-1);
+		value(-1);
+		value(-1);
+		value(-1);
+		endRecord();
+	}
+
+	public void printMemoryThreadRecord(VMInfo vmInfo, String mode, int rank, long tid, String name, String state,
+			long rate, double ratePercent, long total, double totalPercent) throws IOException {
+		beginThreadRecord(vmInfo, mode, rank, tid, name, state);
+		value(-1);
+		value(-1);
+		value(-1);
+		value(-1);
+		value(rate);
+		value(ratePercent);
+		value(total);
+		value(totalPercent);
+		endRecord();
+	}
+
+	public void printLockRecord(VMInfo vmInfo, DeadlockDetector.LockChain chain) throws IOException {
+		if (!json && !lockHeaderPrinted) {
+			printHeader(LOCK_RECORD, LOCK_FIELDS);
+			lockHeaderPrinted = true;
+		}
+		beginRecord(LOCK_RECORD, LOCK_FIELDS);
+		value(time);
+		value(Long.parseLong(vmInfo.pid));
+		value(chain.deadlock ? "deadlock" : "chain");
+		value(chain.rootTid);
+		value(chain.rootName);
+		value(chain.blockedThreads);
+		value(chain.path.size() - 1);
+		value(chain.lockName);
+		value(chain.pathString());
+		endRecord();
+	}
+
+	/**
+	 * 将本周期的记录写入System.out的缓冲区，由调用方flush System.out
+	 */
+	public void flush() throws IOException {
+		if (writer != null) {
+			writer.flush();
+		}
+	}
+
+	private void beginThreadRecord(VMInfo vmInfo, String mode, int rank, long tid, String name, String state) {
+		beginRecord(THREAD_RECORD, THREAD_FIELDS);
+		value(time);
+		value(Long.parseLong(vmInfo.pid));
+		value(mode);
+		value(rank);
+		value(tid);
+		value(name);
+		value(state);
+	}
+
+	private void printHeader(String type, String[] names) {
+		sb.setLength(0);
+		sb.append('#').append(type).append(",v");
+		for (String name : names) {
+			sb.append(',').append(name);
+		}
+		try {
+			writeLine();
+		} catch (IOException e) {
+			// PrintStream不会抛出IOException
+		}
+	}
+
+	private void beginRecord(String type, String[] names) {
+		fields = names;
+		fieldIndex = 0;
+		sb.setLength(0);
+		if (json) {
+			sb.append("{\"type\":\"").append(type).append("\",\"v\":").append(SCHEMA_VERSION);
+		} else {
+			sb.append(type).append(',').append(SCHEMA_VERSION);
+		}
+	}
+
+	private void endRecord() throws IOException {
+		if (fieldIndex != fields.length) {
+			throw new IllegalStateException(
+					"record has " + fieldIndex + " values but schema has " + fields.length + " fields");
+		}
+		if (json) {
+			sb.append('}');
+		}
+		writeLine();
+	}
+
+	private void nextField() {
+		if (json) {
+			sb.append(",\"").append(fields[fieldIndex]).append("\":");
+		} else {
+			sb.append(',');
+		}
+		fieldIndex++;
+	}
+
+	private void usage(Usage usage) {
+		if (usage == null) {
+			value(-1);
+			value(-1);
+			value(-1);
+		} else {
+			value(usage.used);
+			value(usage.committed);
+			value(usage.max);
+		}
+	}
+
+	private void value(long value) {
+		nextField();
+		sb.append(value);
+	}
+
+	private void value(double value) {
+		nextField();
+		Formats.appendDecimal(sb, value, 2);
+	}
+
+	private void value(String value) {
+		nextField();
+		if (json) {
+			appendJsonString(sb, value);
+		} else {
+			appendCsvString(sb, value);
+		}
+	}
+
+	private void writeLine() throws IOException {
+		sb.append('\n');
+
+		// VJTop会替换System.out为带缓冲的PrintStream，因此按需重建writer
+		if (out != System.out) {
+			out = System.out;
+			writer = new OutputStreamWriter(out, UTF8);
+		}
+
+		int length = sb.length();
+		if (chars.length < length) {
+			chars = new char[Math.max(length, chars.length * 2)];
+		}
+		sb.getChars(0, length, chars, 0);
+		writer.write(chars, 0, length);
+	}
+
+	static void appendJsonString(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("null");
+			return;
+		}
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c == '\n') {
+				sb.append("\\n");
+			} else if (c == '\r') {
+				sb.append("\\r");
+			} else if (c == '\t') {
+				sb.append("\\t");
+			} else if (c < 0x20) {
+				sb.append("\\u00");
+				sb.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+			} else {
+				sb.append(c);
+			}
+		}
+		sb.append('"');
+	}
+
+	static void appendCsvString(StringBuilder sb, String value) {
+		if (value == null) {
+			return;
+		}
+		boolean needQuote = false;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				needQuote = true;
+				break;
+			}
+		}
+		if (!needQuote) {
+			sb.append(value);
+			return;
+		}
+
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"') {
+				sb.append('"');
+			}
+			sb.append(c);
+		}
+		sb.append('"');
+	}
+}
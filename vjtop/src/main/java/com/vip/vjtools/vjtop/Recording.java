@@ -0,0 +1,321 @@
+package com.vip.vjtools.vjtop;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.VMInfo.Usage;
+import com.vip.vjtools.vjtop.util.Utils;
+
+/**
+ * vjtop录制文件的格式定义，由RecordingWriter写入，RecordingReader回放。
+ *
+ * <pre>
+ * 文件头: MAGIC, VERSION, 静态信息(pid, jvm版本, 启动参数等), 能力标志位, FIELDS字段名列表
+ * 帧    : 帧类型(1字节) + 帧长度(varint) + 帧内容
+ * 帧内容: 时间, FIELDS中每个字段的值, GC原因, 热点线程表
+ * </pre>
+ *
+ * 所有long以zigzag varint写入，数值为与上一帧的差值，每KEY_FRAME_INTERVAL帧写入一个与0比较的关键帧并重置字符串字典，
+ * 回放时从最近的关键帧开始解码即可定位到任意一帧。字段名写在文件头中，回放时忽略不认识的字段，新增字段不破坏旧文件。
+ */
+public class Recording {
+
+	public static final int MAGIC = 0x564A5452; // "VJTR"
+	public static final int VERSION = 1;
+
+	public static final byte KEY_FRAME = 1;
+	public static final byte DELTA_FRAME = 2;
+	public static final int KEY_FRAME_INTERVAL = 300;
+
+	public static final byte NO_THREADS = 0;
+	public static final byte CPU_THREADS = 1;
+	public static final byte MEMORY_THREADS = 2;
+
+	// 热点线程表的显示模式，以在数组中的序号写入文件，与枚举的定义顺序无关。序号不可修改，新的模式追加在末尾
+	private static final ThreadInfoMode[] THREAD_MODES = { ThreadInfoMode.cpu, ThreadInfoMode.totalcpu,
+			ThreadInfoMode.syscpu, ThreadInfoMode.totalsyscpu, ThreadInfoMode.memory, ThreadInfoMode.totalmemory };
+
+	// 能力标志位
+	public static final int FLAG_LINUX = 1;
+	public static final int FLAG_PERF_DATA = 1 << 1;
+	public static final int FLAG_JMX = 1 << 2;
+	public static final int FLAG_PROCESS_DATA = 1 << 3;
+	public static final int FLAG_IO_DATA = 1 << 4;
+	public static final int FLAG_THREAD_CPU = 1 << 5;
+	public static final int FLAG_THREAD_MEMORY = 1 << 6;
+	public static final int FLAG_PROC_THREAD_CPU = 1 << 7;
+
+	public static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// 每帧记录的VMInfo数值，Rate类型记录累计值，回放时重新计算差值与速率
+	public static final String[] FIELDS = { "uptime", "cpu.time", "rss", "rss.peak", "swap", "process.thread",
+			"disk.read.total", "disk.write.total", "thread.live", "thread.daemon", "thread.peak", "thread.started",
+			"class.loaded", "class.unloaded", "eden.use", "eden.commit", "eden.max", "sur.use", "sur.commit",
+			"sur.max", "old.use", "old.commit", "old.max", "perm.use", "perm.commit", "perm.max", "codeCache.use",
+			"codeCache.commit", "codeCache.max", "ccs.use", "ccs.commit", "ccs.max", "direct.use", "direct.commit",
+			"direct.max", "map.use", "map.commit", "map.count", "ygc.count", "ygc.time", "fgc.count", "fgc.time",
+			"safePoint.count", "safePoint.time", "safePoint.syncTime" };
+
+	/**
+	 * 显示模式写入文件的序号，不能录制的模式返回-1
+	 */
+	public static int threadModeId(ThreadInfoMode mode) {
+		for (int i = 0; i < THREAD_MODES.length; i++) {
+			if (THREAD_MODES[i] == mode) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * 文件中的序号对应的显示模式，不认识的序号返回defaultMode
+	 */
+	public static ThreadInfoMode threadMode(int id, ThreadInfoMode defaultMode) {
+		return id >= 0 && id < THREAD_MODES.length ? THREAD_MODES[id] : defaultMode;
+	}
+
+	/**
+	 * 按FIELDS的顺序取出VMInfo的数值
+	 */
+	public static void collect(VMInfo vmInfo, long[] values) {
+		int i = 0;
+		values[i++] = vmInfo.upTimeMills.current;
+		values[i++] = vmInfo.cpuTimeNanos.current;
+		values[i++] = vmInfo.rss;
+		values[i++] = vmInfo.peakRss;
+		values[i++] = vmInfo.swap;
+		values[i++] = vmInfo.osThreads;
+		values[i++] = vmInfo.readBytes.current;
+		values[i++] = vmInfo.writeBytes.current;
+		values[i++] = vmInfo.threadActive;
+		values[i++] = vmInfo.threadDaemon;
+		values[i++] = vmInfo.threadPeak;
+		values[i++] = vmInfo.threadNew.current;
+		values[i++] = vmInfo.classLoaded.current;
+		values[i++] = vmInfo.classUnLoaded;
+		i = collectUsage(vmInfo.eden, values, i);
+		i = collectUsage(vmInfo.sur, values, i);
+		i = collectUsage(vmInfo.old, values, i);
+		i = collectUsage(vmInfo.perm, values, i);
+		i = collectUsage(vmInfo.codeCache, values, i);
+		i = collectUsage(vmInfo.ccs, values, i);
+		i = collectUsage(vmInfo.direct, values, i);
+		i = collectUsage(vmInfo.map, values, i);
+		values[i++] = vmInfo.ygcCount.current;
+		values[i++] = vmInfo.ygcTimeMills.current;
+		values[i++] = vmInfo.fullgcCount.current;
+		values[i++] = vmInfo.fullgcTimeMills.current;
+		values[i++] = vmInfo.safepointCount.current;
+		values[i++] = vmInfo.safepointTimeMills.current;
+		values[i++] = vmInfo.safepointSyncTimeMills.current;
+	}
+
+	/**
+	 * 将一帧的数值写回VMInfo，与VMInfo.update()相同地更新Rate与告警阈值
+	 */
+	public static void apply(long[] values, VMInfo vmInfo) {
+		int i = 0;
+		vmInfo.upTimeMills.update(values[i++]);
+		vmInfo.warningRule.updateInterval(Math.max(1, vmInfo.upTimeMills.delta / 1000));
+
+		vmInfo.cpuTimeNanos.update(values[i++]);
+		vmInfo.singleCoreCpuLoad = Utils.calcLoad(vmInfo.cpuTimeNanos.delta / Utils.NANOS_TO_MILLS,
+				vmInfo.upTimeMills.delta);
+		vmInfo.cpuLoad = vmInfo.singleCoreCpuLoad / Math.max(1, vmInfo.processors);
+
+		vmInfo.rss = values[i++];
+		vmInfo.peakRss = values[i++];
+		vmInfo.swap = values[i++];
+		vmInfo.osThreads = values[i++];
+		vmInfo.readBytes.update(values[i++]);
+		vmInfo.writeBytes.update(values[i++]);
+		if (vmInfo.upTimeMills.delta > 0) {
+			vmInfo.readBytes.caculateRatePerSecond(vmInfo.upTimeMills.delta);
+			vmInfo.writeBytes.caculateRatePerSecond(vmInfo.upTimeMills.delta);
+		}
+
+		vmInfo.threadActive = values[i++];
+		vmInfo.threadDaemon = values[i++];
+		vmInfo.threadPeak = values[i++];
+		vmInfo.threadNew.update(values[i++]);
+		vmInfo.classLoaded.update(values[i++]);
+		vmInfo.classUnLoaded = values[i++];
+
+		vmInfo.eden = toUsage(values, i);
+		vmInfo.sur = toUsage(values, i + 3);
+		vmInfo.old = toUsage(values, i + 6);
+		vmInfo.perm = toUsage(values, i + 9);
+		vmInfo.codeCache = toUsage(values, i + 12);
+		vmInfo.ccs = toUsage(values, i + 15);
+		vmInfo.direct = toUsage(values, i + 18);
+		vmInfo.map = toUsage(values, i + 21);
+		i += 24;
+		vmInfo.warningRule.updateOld(vmInfo.old.max);
+		vmInfo.warningRule.updatePerm(vmInfo.perm.max);
+
+		vmInfo.ygcCount.update(values[i++]);
+		vmInfo.ygcTimeMills.update(values[i++]);
+		vmInfo.fullgcCount.update(values[i++]);
+		vmInfo.fullgcTimeMills.update(values[i++]);
+		vmInfo.safepointCount.update(values[i++]);
+		vmInfo.safepointTimeMills.update(values[i++]);
+		vmInfo.safepointSyncTimeMills.update(values[i++]);
+
+		vmInfo.updateHeapRates(vmInfo.eden.used, vmInfo.eden.committed, vmInfo.old.used);
+	}
+
+	public static int toFlags(VMInfo vmInfo) {
+		int flags = 0;
+		flags |= vmInfo.isLinux ? FLAG_LINUX : 0;
+		flags |= vmInfo.perfDataSupport ? FLAG_PERF_DATA : 0;
+		flags |= vmInfo.jmxSupport ? FLAG_JMX : 0;
+		flags |= vmInfo.processDataSupport ? FLAG_PROCESS_DATA : 0;
+		flags |= vmInfo.ioDataSupport ? FLAG_IO_DATA : 0;
+		flags |= vmInfo.threadCpuTimeSupported ? FLAG_THREAD_CPU : 0;
+		flags |= vmInfo.threadMemoryAllocatedSupported ? FLAG_THREAD_MEMORY : 0;
+		flags |= vmInfo.procThreadCpuSupported ? FLAG_PROC_THREAD_CPU : 0;
+		return flags;
+	}
+
+	public static void applyFlags(int flags, VMInfo vmInfo) {
+		vmInfo.isLinux = (flags & FLAG_LINUX) != 0;
+		vmInfo.perfDataSupport = (flags & FLAG_PERF_DATA) != 0;
+		vmInfo.jmxSupport = (flags & FLAG_JMX) != 0;
+		vmInfo.processDataSupport = (flags & FLAG_PROCESS_DATA) != 0;
+		vmInfo.ioDataSupport = (flags & FLAG_IO_DATA) != 0;
+		vmInfo.threadCpuTimeSupported = (flags & FLAG_THREAD_CPU) != 0;
+		vmInfo.threadMemoryAllocatedSupported = (flags & FLAG_THREAD_MEMORY) != 0;
+		vmInfo.procThreadCpuSupported = (flags & FLAG_PROC_THREAD_CPU) != 0;
+	}
+
+	private static int collectUsage(Usage usage, long[] values, int i) {
+		if (usage == null) {
+			values[i] = -1;
+			values[i + 1] = -1;
+			values[i + 2] = -1;
+		} else {
+			values[i] = usage.used;
+			values[i + 1] = usage.committed;
+			values[i + 2] = usage.max;
+		}
+		return i + 3;
+	}
+
+	private static Usage toUsage(long[] values, int i) {
+		return new Usage(values[i], values[i + 1], values[i + 2]);
+	}
+
+	/**
+	 * 可增长的字节缓冲区，写入zigzag varint，帧内容先写入此处再整体写出
+	 */
+	public static class FrameBuffer {
+		public byte[] bytes;
+		public int length;
+
+		public FrameBuffer(int capacity) {
+			bytes = new byte[capacity];
+		}
+
+		public void reset() {
+			length = 0;
+		}
+
+		public void writeByte(int value) {
+			ensureCapacity(1);
+			bytes[length++] = (byte) value;
+		}
+
+		public void writeInt(int value) {
+			ensureCapacity(4);
+			bytes[length++] = (byte) (value >>> 24);
+			bytes[length++] = (byte) (value >>> 16);
+			bytes[length++] = (byte) (value >>> 8);
+			bytes[length++] = (byte) value;
+		}
+
+		public void writeVarLong(long value) {
+			ensureCapacity(10);
+			// zigzag: 绝对值小的负数也只占少量字节
+			long v = (value << 1) ^ (value >> 63);
+			while ((v & ~0x7FL) != 0) {
+				bytes[length++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			bytes[length++] = (byte) v;
+		}
+
+		public void writeString(String value) {
+			byte[] utf8 = value.getBytes(UTF8);
+			writeVarLong(utf8.length);
+			ensureCapacity(utf8.length);
+			System.arraycopy(utf8, 0, bytes, length, utf8.length);
+			length += utf8.length;
+		}
+
+		private void ensureCapacity(int size) {
+			if (length + size > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + size));
+			}
+		}
+	}
+
+	/**
+	 * 在录制文件的字节数组上顺序读取，与FrameBuffer的写入对应
+	 */
+	public static class FrameReader {
+		private final byte[] bytes;
+		public int position;
+
+		public FrameReader(byte[] bytes) {
+			this.bytes = bytes;
+		}
+
+		public int remaining() {
+			return bytes.length - position;
+		}
+
+		public int readByte() {
+			return bytes[position++];
+		}
+
+		public int readInt() {
+			int value = ((bytes[position] & 0xFF) << 24) | ((bytes[position + 1] & 0xFF) << 16)
+					| ((bytes[position + 2] & 0xFF) << 8) | (bytes[position + 3] & 0xFF);
+			position += 4;
+			return value;
+		}
+
+		/**
+		 * 剩余的字节中是否有一个完整的varint，文件在varint中间被截断时返回false
+		 */
+		public boolean hasVarLong() {
+			for (int i = position; i < bytes.length; i++) {
+				if ((bytes[i] & 0x80) == 0) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public long readVarLong() {
+			long v = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = bytes[position++];
+				v |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return (v >>> 1) ^ -(v & 1);
+		}
+
+		public String readString() {
+			int size = (int) readVarLong();
+			String value = new String(bytes, position, size, UTF8);
+			position += size;
+			return value;
+		}
+	}
+}
@@ -0,0 +1,380 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+
+import com.vip.vjtools.vjtop.Recording.FrameReader;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopCpuResult;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopMemoryResult;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopThreadsResult;
+import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+
+/**
+ * 回放RecordingWriter写入的录制文件，将每一帧写回一个回放用的VMInfo与热点线程结果，由VMDetailView照常渲染。
+ *
+ * 打开时扫描一遍所有帧建立偏移与时间的索引，定位时从目标帧之前最近的关键帧开始解码。交互线程只提交定位请求，
+ * 实际的解码在刷新线程的advance()中进行。
+ */
+public class RecordingReader {
+
+	// 文件头中的静态信息
+	private String pid;
+	private String mainClass;
+	private String jvmVersion;
+	private int jvmMajorVersion;
+	private String osUser;
+	private String vmArgs;
+	private String permGenName;
+	private int processors;
+	private long threadStackSize;
+	private long maxDirectMemorySize;
+	private int flags;
+	// 文件头中的字段序号到Recording.FIELDS序号的映射，不认识的字段为-1
+	private int[] fieldMapping;
+
+	private final FrameReader reader;
+
+	// 帧索引
+	private int frameCount = 0;
+	private int[] frameOffsets = new int[1024];
+	private long[] frameTimes = new long[1024];
+	private boolean[] keyFrames = new boolean[1024];
+
+	// 解码状态
+	private int decodedIndex = -1;
+	private long lastTime;
+	private long[] lastValues;
+	private final long[] values = new long[Recording.FIELDS.length];
+	private String gcCause;
+	private final List<String> dictionary = new ArrayList<>();
+	private long[] lastTids = new long[0];
+	private long[] lastTotals = new long[0];
+	private long[] lastSysTotals = new long[0];
+
+	private VMInfo vmInfo;
+	private volatile int current = -1;
+	private volatile int pendingSeek = -1;
+	public volatile boolean paused = false;
+
+	// 当前帧的热点线程，没有线程数据时均为null
+	public ThreadInfoMode threadMode;
+	public TopCpuResult cpuResult;
+	public TopMemoryResult memoryResult;
+
+	private RecordingReader(byte[] bytes) {
+		this.reader = new FrameReader(bytes);
+	}
+
+	public static RecordingReader open(String path) throws IOException {
+		RecordingReader recording = new RecordingReader(Files.readAllBytes(Paths.get(path)));
+		recording.readHeader();
+		recording.buildIndex();
+		if (recording.frameCount == 0) {
+			throw new IOException("No frame in recording " + path);
+		}
+		return recording;
+	}
+
+	/**
+	 * 创建回放用的VMInfo，之后每次定位都会更新它
+	 */
+	public VMInfo createVMInfo() {
+		vmInfo = VMInfo.createReplayVM(pid);
+		vmInfo.mainClass = mainClass;
+		vmInfo.jvmVersion = jvmVersion;
+		vmInfo.jvmMajorVersion = jvmMajorVersion;
+		vmInfo.osUser = osUser;
+		vmInfo.vmArgs = vmArgs;
+		vmInfo.permGenName = permGenName;
+		vmInfo.processors = processors;
+		vmInfo.threadStackSize = threadStackSize;
+		vmInfo.maxDirectMemorySize = maxDirectMemorySize;
+		Recording.applyFlags(flags, vmInfo);
+		vmInfo.warningRule.updateProcessor(processors);
+		return vmInfo;
+	}
+
+	/**
+	 * 由刷新线程在每次打印前调用: 处理定位请求，或在播放状态下前进一帧，到达文件末尾时暂停
+	 */
+	public void advance() {
+		int seekTo = pendingSeek;
+		if (seekTo >= 0) {
+			pendingSeek = -1;
+			seek(seekTo);
+		} else if (current < 0) {
+			seek(0);
+		} else if (!paused) {
+			if (current + 1 < frameCount) {
+				seek(current + 1);
+			} else {
+				paused = true;
+			}
+		}
+	}
+
+	/**
+	 * 请求定位到某一帧并暂停，由交互线程调用
+	 */
+	public void requestSeek(int index) {
+		pendingSeek = Math.max(0, Math.min(index, frameCount - 1));
+		paused = true;
+	}
+
+	/**
+	 * 查找时间不早于目标时间的第一帧，支持"yyyy-MM-dd HH:mm:ss"，或"HH:mm[:ss]"表示录制开始后第一次到达该时刻
+	 */
+	public int findFrame(String time) throws ParseException {
+		long target;
+		if (time.indexOf('-') != -1) {
+			target = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(time).getTime();
+		} else {
+			String[] parts = time.split(":");
+			Calendar calendar = Calendar.getInstance();
+			calendar.setTimeInMillis(frameTimes[0]);
+			calendar.set(Calendar.HOUR_OF_DAY, Integer.parseInt(parts[0]));
+			calendar.set(Calendar.MINUTE, parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+			calendar.set(Calendar.SECOND, parts.length > 2 ? Integer.parseInt(parts[2]) : 0);
+			calendar.set(Calendar.MILLISECOND, 0);
+			if (calendar.getTimeInMillis() < frameTimes[0]) {
+				calendar.add(Calendar.DAY_OF_MONTH, 1);
+			}
+			target = calendar.getTimeInMillis();
+		}
+
+		int index = Arrays.binarySearch(frameTimes, 0, frameCount, target);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return Math.min(index, frameCount - 1);
+	}
+
+	public int currentIndex() {
+		return current;
+	}
+
+	public int frameCount() {
+		return frameCount;
+	}
+
+	public long currentTime() {
+		return current >= 0 ? frameTimes[current] : frameTimes[0];
+	}
+
+	/**
+	 * 为了让VMInfo中的Rate得到正确的差值，先写回前一帧再写回目标帧
+	 */
+	private void seek(int index) {
+		int start = Math.max(0, index - 1);
+		int from;
+		if (decodedIndex >= 0 && decodedIndex <= start) {
+			from = decodedIndex + 1;
+		} else {
+			from = start;
+			while (!keyFrames[from]) {
+				from--;
+			}
+		}
+
+		if (decodedIndex == start) {
+			applyCurrentFrame();
+		}
+		for (int i = from; i <= index; i++) {
+			decodeFrame(i);
+			if (i >= start) {
+				applyCurrentFrame();
+			}
+		}
+		// 第一帧没有前一帧，写回两次使差值为0
+		if (index == 0) {
+			applyCurrentFrame();
+		}
+		current = index;
+	}
+
+	private void readHeader() throws IOException {
+		if (reader.remaining() < 4 || reader.readInt() != Recording.MAGIC) {
+			throw new IOException("Not a vjtop recording file");
+		}
+		int version = (int) reader.readVarLong();
+		if (version > Recording.VERSION) {
+			throw new IOException("Recording version " + version + " is newer than vjtop supports");
+		}
+		pid = reader.readString();
+		mainClass = reader.readString();
+		jvmVersion = reader.readString();
+		jvmMajorVersion = (int) reader.readVarLong();
+		osUser = reader.readString();
+		vmArgs = reader.readString();
+		permGenName = reader.readString();
+		processors = (int) reader.readVarLong();
+		threadStackSize = reader.readVarLong();
+		maxDirectMemorySize = reader.readVarLong();
+		flags = (int) reader.readVarLong();
+
+		int fieldCount = (int) reader.readVarLong();
+		fieldMapping = new int[fieldCount];
+		List<String> knownFields = Arrays.asList(Recording.FIELDS);
+		for (int i = 0; i < fieldCount; i++) {
+			fieldMapping[i] = knownFields.indexOf(reader.readString());
+		}
+		lastValues = new long[fieldCount];
+	}
+
+	/**
+	 * 扫描所有帧的偏移与时间，vjtop被kill时写了一半的最后一帧被忽略
+	 */
+	private void buildIndex() {
+		long time = 0;
+		while (reader.remaining() >= 2) {
+			int type = reader.readByte();
+			if (!reader.hasVarLong()) {
+				break;
+			}
+			int length = (int) reader.readVarLong();
+			int offset = reader.position;
+			if (length <= 0 || length > reader.remaining()) {
+				break;
+			}
+
+			if (frameCount == frameOffsets.length) {
+				frameOffsets = Arrays.copyOf(frameOffsets, frameCount * 2);
+				frameTimes = Arrays.copyOf(frameTimes, frameCount * 2);
+				keyFrames = Arrays.copyOf(keyFrames, frameCount * 2);
+			}
+			boolean keyFrame = type == Recording.KEY_FRAME;
+			time = (keyFrame ? 0 : time) + reader.readVarLong();
+			frameOffsets[frameCount] = offset;
+			frameTimes[frameCount] = time;
+			keyFrames[frameCount] = keyFrame;
+			frameCount++;
+
+			reader.position = offset + length;
+		}
+	}
+
+	private void decodeFrame(int index) {
+		if (keyFrames[index]) {
+			lastTime = 0;
+			Arrays.fill(lastValues, 0);
+			dictionary.clear();
+			lastTids = new long[0];
+		}
+
+		reader.position = frameOffsets[index];
+		lastTime += reader.readVarLong();
+
+		Arrays.fill(values, -1);
+		for (int i = 0; i < lastValues.length; i++) {
+			lastValues[i] += reader.readVarLong();
+			if (fieldMapping[i] != -1) {
+				values[fieldMapping[i]] = lastValues[i];
+			}
+		}
+		gcCause = readString();
+
+		threadMode = null;
+		cpuResult = null;
+		memoryResult = null;
+		int threadKind = reader.readByte();
+		if (threadKind == Recording.CPU_THREADS) {
+			threadMode = Recording.threadMode((int) reader.readVarLong(), ThreadInfoMode.cpu);
+			cpuResult = new TopCpuResult();
+			cpuResult.activeThreads = reader.readVarLong();
+			cpuResult.deltaAllActiveThreadCpu = reader.readVarLong();
+			cpuResult.deltaAllActiveThreadSysCpu = reader.readVarLong();
+			cpuResult.deltaAllFreeThreadCpu = reader.readVarLong();
+			cpuResult.deltaVmThreadCpu = reader.readVarLong();
+			cpuResult.threadCpuDeltaTimes = new LongLongHashMap();
+			cpuResult.threadSysCpuDeltaTimes = new LongLongHashMap();
+			cpuResult.threadCpuTotalTimes = new LongLongHashMap();
+			cpuResult.threadSysCpuTotalTimes = new LongLongHashMap();
+			readThreads(cpuResult, cpuResult.threadCpuDeltaTimes, cpuResult.threadSysCpuDeltaTimes,
+					cpuResult.threadCpuTotalTimes, cpuResult.threadSysCpuTotalTimes);
+		} else if (threadKind == Recording.MEMORY_THREADS) {
+			threadMode = Recording.threadMode((int) reader.readVarLong(), ThreadInfoMode.memory);
+			memoryResult = new TopMemoryResult();
+			memoryResult.activeThreads = reader.readVarLong();
+			memoryResult.deltaAllThreadBytes = reader.readVarLong();
+			memoryResult.totalAllThreadBytes = reader.readVarLong();
+			memoryResult.threadMemoryDeltaBytesMap = new LongLongHashMap();
+			memoryResult.threadMemoryTotalBytesMap = new LongLongHashMap();
+			readThreads(memoryResult, memoryResult.threadMemoryDeltaBytesMap, new LongLongHashMap(),
+					memoryResult.threadMemoryTotalBytesMap, new LongLongHashMap());
+		}
+
+		decodedIndex = index;
+	}
+
+	private void readThreads(TopThreadsResult result, LongLongHashMap deltaMap, LongLongHashMap sysDeltaMap,
+			LongLongHashMap totalMap, LongLongHashMap sysTotalMap) {
+		int count = (int) reader.readVarLong();
+		long[] tids = new long[count];
+		long[] totals = new long[count];
+		long[] sysTotals = new long[count];
+		result.topTids = tids;
+		result.topThreadNames = new String[count];
+		result.topThreadStates = new String[count];
+
+		for (int i = 0; i < count; i++) {
+			long tid = reader.readVarLong();
+			tids[i] = tid;
+			result.topThreadNames[i] = readString();
+			result.topThreadStates[i] = readString();
+			deltaMap.put(tid, reader.readVarLong());
+			sysDeltaMap.put(tid, reader.readVarLong());
+
+			int last = indexOf(lastTids, tid);
+			totals[i] = reader.readVarLong() + (last == -1 ? 0 : lastTotals[last]);
+			sysTotals[i] = reader.readVarLong() + (last == -1 ? 0 : lastSysTotals[last]);
+			totalMap.put(tid, totals[i]);
+			sysTotalMap.put(tid, sysTotals[i]);
+		}
+
+		lastTids = tids;
+		lastTotals = totals;
+		lastSysTotals = sysTotals;
+	}
+
+	private void applyCurrentFrame() {
+		Recording.apply(values, vmInfo);
+		vmInfo.currentGcCause = gcCause != null ? gcCause : "";
+
+		// 时间差为0时无法计算比例，视为没有线程数据
+		boolean ready = vmInfo.upTimeMills.delta > 0;
+		if (cpuResult != null) {
+			cpuResult.ready = ready;
+		}
+		if (memoryResult != null) {
+			memoryResult.ready = ready;
+		}
+	}
+
+	private String readString() {
+		int index = (int) reader.readVarLong();
+		if (index == 0) {
+			return null;
+		}
+		if (index - 1 == dictionary.size()) {
+			dictionary.add(reader.readString());
+		}
+		return dictionary.get(index - 1);
+	}
+
+	private static int indexOf(long[] array, long value) {
+		for (int i = 0; i < array.length; i++) {
+			if (array[i] == value) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
@@ -0,0 +1,227 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.Recording.FrameBuffer;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopCpuResult;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopMemoryResult;
+import com.vip.vjtools.vjtop.TopThreadInfo.TopThreadsResult;
+import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+
+/**
+ * 将每个刷新周期的VMInfo数值与热点线程表以差值编码写入录制文件，格式见Recording。
+ *
+ * 每帧写完即flush，vjtop被kill时最多丢失正在写的一帧，回放时会忽略不完整的最后一帧。
+ */
+public class RecordingWriter implements Closeable {
+
+	private final OutputStream out;
+	private boolean headerWritten = false;
+	private int frameCount = 0;
+
+	private final FrameBuffer frame = new FrameBuffer(4096);
+	private final FrameBuffer prefix = new FrameBuffer(16);
+
+	private long lastTime;
+	private final long[] values = new long[Recording.FIELDS.length];
+	private final long[] lastValues = new long[Recording.FIELDS.length];
+	private final Map<String, Integer> dictionary = new HashMap<>();
+
+	// 上一帧热点线程的累计值，按tid做差值编码
+	private long[] lastTids = new long[0];
+	private long[] lastTotals = new long[0];
+	private long[] lastSysTotals = new long[0];
+	private int lastThreadCount = 0;
+	private long[] tids = new long[0];
+	private long[] totals = new long[0];
+	private long[] sysTotals = new long[0];
+
+	public RecordingWriter(String path) throws IOException {
+		out = new BufferedOutputStream(new FileOutputStream(path), 8192);
+	}
+
+	/**
+	 * 写入一帧，cpuResult与memoryResult最多只有一个不为null
+	 */
+	public void write(VMInfo vmInfo, ThreadInfoMode mode, TopCpuResult cpuResult, TopMemoryResult memoryResult)
+			throws IOException {
+		if (!headerWritten) {
+			writeHeader(vmInfo);
+			headerWritten = true;
+		}
+
+		boolean keyFrame = frameCount % Recording.KEY_FRAME_INTERVAL == 0;
+		if (keyFrame) {
+			lastTime = 0;
+			Arrays.fill(lastValues, 0);
+			dictionary.clear();
+			lastThreadCount = 0;
+		}
+
+		frame.reset();
+		long time = System.currentTimeMillis();
+		frame.writeVarLong(time - lastTime);
+		lastTime = time;
+
+		Recording.collect(vmInfo, values);
+		for (int i = 0; i < values.length; i++) {
+			frame.writeVarLong(values[i] - lastValues[i]);
+			lastValues[i] = values[i];
+		}
+		writeString(vmInfo.currentGcCause);
+
+		if (cpuResult != null && cpuResult.ready) {
+			frame.writeByte(Recording.CPU_THREADS);
+			frame.writeVarLong(Recording.threadModeId(mode));
+			frame.writeVarLong(cpuResult.activeThreads);
+			frame.writeVarLong(cpuResult.deltaAllActiveThreadCpu);
+			frame.writeVarLong(cpuResult.deltaAllActiveThreadSysCpu);
+			frame.writeVarLong(cpuResult.deltaAllFreeThreadCpu);
+			frame.writeVarLong(cpuResult.deltaVmThreadCpu);
+			writeThreads(cpuResult, cpuResult.threadCpuDeltaTimes, cpuResult.threadSysCpuDeltaTimes,
+					cpuResult.threadCpuTotalTimes, cpuResult.threadSysCpuTotalTimes);
+		} else if (memoryResult != null && memoryResult.ready) {
+			frame.writeByte(Recording.MEMORY_THREADS);
+			frame.writeVarLong(Recording.threadModeId(mode));
+			frame.writeVarLong(memoryResult.activeThreads);
+			frame.writeVarLong(memoryResult.deltaAllThreadBytes);
+			frame.writeVarLong(memoryResult.totalAllThreadBytes);
+			writeThreads(memoryResult, memoryResult.threadMemoryDeltaBytesMap, null,
+					memoryResult.threadMemoryTotalBytesMap, null);
+		} else {
+			frame.writeByte(Recording.NO_THREADS);
+		}
+
+		prefix.reset();
+		prefix.writeByte(keyFrame ? Recording.KEY_FRAME : Recording.DELTA_FRAME);
+		prefix.writeVarLong(frame.length);
+		out.write(prefix.bytes, 0, prefix.length);
+		out.write(frame.bytes, 0, frame.length);
+		out.flush();
+		frameCount++;
+	}
+
+	/**
+	 * 每个线程写入tid，名称，状态，两个区间值，以及与上一帧同一线程比较的两个累计值差值，memory模式的sys值为0
+	 */
+	private void writeThreads(TopThreadsResult result, LongLongHashMap deltaMap, LongLongHashMap sysDeltaMap,
+			LongLongHashMap totalMap, LongLongHashMap sysTotalMap) {
+		int size = result.topTids.length;
+		if (tids.length < size) {
+			tids = new long[size];
+			totals = new long[size];
+			sysTotals = new long[size];
+		}
+
+		int count = 0;
+		for (int i = 0; i < size; i++) {
+			if (result.topThreadNames[i] != null) {
+				count++;
+			}
+		}
+		frame.writeVarLong(count);
+
+		int index = 0;
+		for (int i = 0; i < size; i++) {
+			if (result.topThreadNames[i] == null) {
+				continue;
+			}
+			long tid = result.topTids[i];
+			frame.writeVarLong(tid);
+			writeString(result.topThreadNames[i]);
+			writeString(result.topThreadStates[i]);
+			frame.writeVarLong(valueOf(deltaMap, tid));
+			frame.writeVarLong(valueOf(sysDeltaMap, tid));
+
+			long total = valueOf(totalMap, tid);
+			long sysTotal = valueOf(sysTotalMap, tid);
+			int last = indexOfLastTid(tid);
+			frame.writeVarLong(last == -1 ? total : total - lastTotals[last]);
+			frame.writeVarLong(last == -1 ? sysTotal : sysTotal - lastSysTotals[last]);
+
+			tids[index] = tid;
+			totals[index] = total;
+			sysTotals[index] = sysTotal;
+			index++;
+		}
+
+		// 交换本帧与上一帧的数组
+		long[] temp = lastTids;
+		lastTids = tids;
+		tids = temp;
+		temp = lastTotals;
+		lastTotals = totals;
+		totals = temp;
+		temp = lastSysTotals;
+		lastSysTotals = sysTotals;
+		sysTotals = temp;
+		lastThreadCount = index;
+	}
+
+	private int indexOfLastTid(long tid) {
+		for (int i = 0; i < lastThreadCount; i++) {
+			if (lastTids[i] == tid) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static long valueOf(LongLongHashMap map, long tid) {
+		return map == null ? 0 : map.get(tid, 0);
+	}
+
+	private void writeHeader(VMInfo vmInfo) throws IOException {
+		frame.reset();
+		frame.writeInt(Recording.MAGIC);
+		frame.writeVarLong(Recording.VERSION);
+		frame.writeString(vmInfo.pid);
+		frame.writeString(vmInfo.mainClass);
+		frame.writeString(vmInfo.jvmVersion);
+		frame.writeVarLong(vmInfo.jvmMajorVersion);
+		frame.writeString(String.valueOf(vmInfo.osUser));
+		frame.writeString(vmInfo.vmArgs);
+		frame.writeString(String.valueOf(vmInfo.permGenName));
+		frame.writeVarLong(vmInfo.processors);
+		frame.writeVarLong(vmInfo.threadStackSize);
+		frame.writeVarLong(vmInfo.maxDirectMemorySize);
+		frame.writeVarLong(Recording.toFlags(vmInfo));
+		frame.writeVarLong(Recording.FIELDS.length);
+		for (String field : Recording.FIELDS) {
+			frame.writeString(field);
+		}
+		out.write(frame.bytes, 0, frame.length);
+	}
+
+	/**
+	 * 字符串以字典序号写入，首次出现时在序号后写入内容，0代表null
+	 */
+	private void writeString(String value) {
+		if (value == null) {
+			frame.writeVarLong(0);
+			return;
+		}
+		Integer index = dictionary.get(value);
+		if (index != null) {
+			frame.writeVarLong(index + 1);
+		} else {
+			index = dictionary.size();
+			dictionary.put(value, index);
+			frame.writeVarLong(index + 1);
+			frame.writeString(value);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -0,0 +1,285 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import com.vip.vjtools.vjtop.data.PerfData;
+import com.vip.vjtools.vjtop.util.Histogram;
+
+import sun.management.counter.LongCounter;
+
+/**
+ * 以亚秒级的频率读取PerfData中的sun.rt.safepoints/safepointTime/safepointSyncTime，供安全点视图使用。
+ *
+ * 每个采样间隔内的安全点时间除以次数，即为该间隔内每次安全点的平均停顿；间隔内只有一次安全点时是准确值，
+ * 因此采样频率越高，最差停顿与其中的进入安全点耗时(time to safepoint, TTSP)越准确。
+ *
+ * 同一采样间隔内有GC发生的，安全点归为gc；有vjtop自身的取栈/线程Dump/死锁检查的，归为vjtop；其余归为other。
+ * 读取映射的PerfData对目标JVM没有任何消耗。
+ */
+@SuppressWarnings("restriction")
+public class SafepointSampler implements Runnable {
+
+	public static final int DEFAULT_PERIOD_MILLS = 50;
+	// 每个刷新周期保留的停顿最长的采样间隔数
+	private static final int MAX_SPIKES = 50;
+
+	private static final Comparator<Spike> SPIKE_COMPARATOR = new Comparator<Spike>() {
+		@Override
+		public int compare(Spike o1, Spike o2) {
+			long l1 = o1.latencyMicros();
+			long l2 = o2.latencyMicros();
+			return l1 > l2 ? -1 : (l1 == l2 ? 0 : 1);
+		}
+	};
+
+	public enum Cause {
+		gc, vjtop, other
+	}
+
+	private final VMInfo vmInfo;
+	private final PerfData perfData;
+	public final long periodMills;
+
+	private final LongCounter countCounter;
+	private final LongCounter timeCounter;
+	private final LongCounter syncTimeCounter;
+	private final List<LongCounter> gcCounters = new ArrayList<>();
+
+	private long lastCount;
+	private long lastTimeMicros;
+	private long lastSyncTimeMicros;
+	private long lastGcCount;
+	private long lastStackOperations;
+	private boolean lastStackOperationInFlight;
+
+	// 启动以来每次安全点停顿的分布，微秒
+	private final Histogram latency = new Histogram();
+	private IntervalStats current = new IntervalStats();
+
+	private volatile boolean running = true;
+	private Thread samplerThread;
+
+	public SafepointSampler(VMInfo vmInfo, PerfData perfData, int periodMills) {
+		checkPeriod(periodMills);
+		this.vmInfo = vmInfo;
+		this.perfData = perfData;
+		this.periodMills = periodMills;
+
+		countCounter = (LongCounter) perfData.findCounter("sun.rt.safepoints");
+		timeCounter = (LongCounter) perfData.findCounter("sun.rt.safepointTime");
+		syncTimeCounter = (LongCounter) perfData.findCounter("sun.rt.safepointSyncTime");
+		if (countCounter == null || timeCounter == null || syncTimeCounter == null) {
+			throw new IllegalArgumentException("Safepoint counters are not found in PerfData");
+		}
+		for (int i = 0;; i++) {
+			LongCounter counter = (LongCounter) perfData.findCounter("sun.gc.collector." + i + ".invocations");
+			if (counter == null) {
+				break;
+			}
+			gcCounters.add(counter);
+		}
+
+		lastCount = countCounter.longValue();
+		lastTimeMicros = perfData.tickToMicros(timeCounter.longValue());
+		lastSyncTimeMicros = perfData.tickToMicros(syncTimeCounter.longValue());
+		lastGcCount = gcCount();
+		lastStackOperations = vmInfo.getStackOperationCount();
+	}
+
+	/**
+	 * 不读取PerfData，由调用者直接提供计数器的值，计数器初始均为0
+	 */
+	SafepointSampler(int periodMills) {
+		checkPeriod(periodMills);
+		this.vmInfo = null;
+		this.perfData = null;
+		this.periodMills = periodMills;
+		countCounter = null;
+		timeCounter = null;
+		syncTimeCounter = null;
+	}
+
+	private static void checkPeriod(int periodMills) {
+		if (periodMills < 10 || periodMills > 1000) {
+			throw new IllegalArgumentException("Safepoint sample period should be between 10 and 1000 ms");
+		}
+	}
+
+	public void start() {
+		samplerThread = new Thread(this, "vjtop-safepoint-sampler");
+		samplerThread.setDaemon(true);
+		samplerThread.start();
+	}
+
+	public void stop() {
+		running = false;
+		if (samplerThread != null) {
+			samplerThread.interrupt();
+		}
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			sample();
+			try {
+				TimeUnit.MILLISECONDS.sleep(periodMills);
+			} catch (InterruptedException e) {
+				break;
+			}
+		}
+	}
+
+	private void sample() {
+		sample(System.currentTimeMillis(), countCounter.longValue(), perfData.tickToMicros(timeCounter.longValue()),
+				perfData.tickToMicros(syncTimeCounter.longValue()), gcCount(), vmInfo.getStackOperationCount(),
+				vmInfo.isStackOperationInFlight());
+	}
+
+	/**
+	 * 以一次采样时各计数器的值更新统计，时间已换算为微秒
+	 */
+	synchronized void sample(long now, long count, long timeMicros, long syncTimeMicros, long gcCount,
+			long stackOperations, boolean stackOperationInFlight) {
+		// 次数在安全点开始时增加，时间在结束时累加。次数增加而时间未增加时安全点仍在进行中，保留上次的基准值，
+		// 留到时间增加的采样间隔再计算，否则长于采样周期的停顿会被记为0，时间则被丢弃
+		long deltaCount = count - lastCount;
+		current.samples++;
+		if (deltaCount > 0 && timeMicros == lastTimeMicros) {
+			lastStackOperationInFlight |= stackOperationInFlight;
+			return;
+		}
+
+		if (deltaCount > 0) {
+			Cause cause;
+			if (gcCount != lastGcCount) {
+				cause = Cause.gc;
+			} else if (stackOperations != lastStackOperations || stackOperationInFlight
+					|| lastStackOperationInFlight) {
+				cause = Cause.vjtop;
+			} else {
+				cause = Cause.other;
+			}
+
+			Spike spike = new Spike(now, deltaCount, Math.max(0, timeMicros - lastTimeMicros),
+					Math.max(0, syncTimeMicros - lastSyncTimeMicros), cause);
+			latency.record(spike.latencyMicros(), deltaCount);
+			current.add(spike);
+		}
+
+		lastCount = count;
+		lastTimeMicros = timeMicros;
+		lastSyncTimeMicros = syncTimeMicros;
+		lastGcCount = gcCount;
+		lastStackOperations = stackOperations;
+		lastStackOperationInFlight = stackOperationInFlight;
+	}
+
+	private long gcCount() {
+		long result = 0;
+		for (LongCounter counter : gcCounters) {
+			result += counter.longValue();
+		}
+		return result;
+	}
+
+	/**
+	 * 每次刷新时调用，取出上次调用以来的统计并开始新的周期
+	 */
+	public synchronized IntervalStats drain() {
+		IntervalStats result = current;
+		result.endTime = System.currentTimeMillis();
+		current = new IntervalStats();
+		Collections.sort(result.spikes, SPIKE_COMPARATOR);
+		result.p99Micros = latency.getValueAtPercentile(99);
+		result.totalCount = latency.getTotalCount();
+		return result;
+	}
+
+	/**
+	 * 一个采样间隔内的安全点，时间以微秒为单位
+	 */
+	public static class Spike {
+		public final long time;
+		public final long count;
+		public final long totalMicros;
+		public final long syncMicros;
+		public final Cause cause;
+
+		Spike(long time, long count, long totalMicros, long syncMicros, Cause cause) {
+			this.time = time;
+			this.count = count;
+			this.totalMicros = totalMicros;
+			this.syncMicros = Math.min(syncMicros, totalMicros);
+			this.cause = cause;
+		}
+
+		/**
+		 * 间隔内每次安全点的平均停顿
+		 */
+		public long latencyMicros() {
+			return totalMicros / count;
+		}
+
+		public long syncLatencyMicros() {
+			return syncMicros / count;
+		}
+	}
+
+	/**
+	 * 一个刷新周期内的安全点统计，时间以微秒为单位
+	 */
+	public static class IntervalStats {
+		public long count;
+		public long totalMicros;
+		public long syncMicros;
+		public long worstMicros;
+		// 最差那次安全点中的进入安全点耗时
+		public long worstSyncMicros;
+		public long worstTtspMicros;
+		public int samples;
+		public final long startTime = System.currentTimeMillis();
+		public long endTime;
+
+		public final long[] causeCounts = new long[Cause.values().length];
+		public final long[] causeMicros = new long[Cause.values().length];
+		// 按每次安全点的停顿从长到短排序
+		public final List<Spike> spikes = new ArrayList<>();
+
+		// 启动以来的p99与安全点次数
+		public long p99Micros;
+		public long totalCount;
+
+		void add(Spike spike) {
+			count += spike.count;
+			totalMicros += spike.totalMicros;
+			syncMicros += spike.syncMicros;
+			if (spike.latencyMicros() > worstMicros) {
+				worstMicros = spike.latencyMicros();
+				worstSyncMicros = spike.syncLatencyMicros();
+			}
+			worstTtspMicros = Math.max(worstTtspMicros, spike.syncLatencyMicros());
+			causeCounts[spike.cause.ordinal()] += spike.count;
+			causeMicros[spike.cause.ordinal()] += spike.totalMicros;
+
+			spikes.add(spike);
+			// 超过上限时丢弃最短的一半，避免每次都排序
+			if (spikes.size() >= MAX_SPIKES * 2) {
+				Collections.sort(spikes, SPIKE_COMPARATOR);
+				spikes.subList(MAX_SPIKES, spikes.size()).clear();
+			}
+		}
+
+		public long intervalMicros() {
+			return Math.max(1, endTime - startTime) * 1000;
+		}
+
+		public long avgMicros() {
+			return count == 0 ? 0 : totalMicros / count;
+		}
+	}
+}
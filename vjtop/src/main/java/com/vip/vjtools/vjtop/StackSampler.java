@@ -0,0 +1,48 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ThreadInfo;
+
+/**
+ * 只针对繁忙线程的采样Profiler：按固定频率以一次批量的getThreadInfo(tids, depth)获取当前top N CPU线程的栈，
+ * 将RUNNABLE线程的栈按折叠格式(folded stack)累加，可直接作为flamegraph.pl的输入。
+ *
+ * 目标线程由每次刷新的topCpuThreads()结果更新，切换到非CPU的显示模式时暂停采样。采样在独立的daemon线程中进行，不阻塞界面刷新。
+ */
+public class StackSampler extends AbstractStackSampler {
+
+	public static final int DEFAULT_HZ = 50;
+
+	private final StringBuilder sb = new StringBuilder(4096);
+
+	public StackSampler(VMInfo vmInfo, String path, int hz) {
+		super(vmInfo, path, hz, "vjtop-sampler");
+	}
+
+	/**
+	 * 由刷新线程在每次取得top cpu线程后调用，tids为null时暂停采样
+	 */
+	public void updateTargets(long[] tids) {
+		targetTids = tids;
+	}
+
+	/**
+	 * 切换到非CPU的显示模式时暂停采样，已累计的结果保留，回到CPU模式后继续累加
+	 */
+	public void pause() {
+		targetTids = null;
+	}
+
+	@Override
+	void addSamples(long[] tids, ThreadInfo[] infos) {
+		synchronized (stacks) {
+			for (ThreadInfo info : infos) {
+				// 线程已退出，或采样瞬间不在运行
+				if (info == null || info.getThreadState() != Thread.State.RUNNABLE) {
+					continue;
+				}
+				addToStack(foldStack(info, sb), 1);
+				sampleCount++;
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 package com.vip.vjtools.vjtop;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.lang.Thread.State;
 import java.lang.management.LockInfo;
 import java.lang.management.ThreadInfo;
@@ -20,6 +21,9 @@ public class ThreadPrinter {
 	 * 打印单条线程的stack strace，会造成停顿，但比获取全部线程的stack trace停顿少
 	 */
 	public void printStack(long tid) throws IOException {
+		if (!checkJmxSupport()) {
+			return;
+		}
 		System.out.printf("%n Stack trace of thread %d:%n", tid);
 
 		ThreadInfo info = view.vmInfo.getThreadInfo(tid, 20);
@@ -35,19 +39,36 @@ public class ThreadPrinter {
 	 * 打印所有活跃线程的stack strace，会造成停顿，但比获取全部线程的stack trace停顿少
 	 */
 	public void printTopStack() throws IOException {
-		System.out.printf("%n Stack trace of top %d threads:%n", view.threadLimit);
+		if (!checkJmxSupport()) {
+			return;
+		}
+		printTopStack(System.out);
+		System.out.flush();
+	}
 
+	/**
+	 * 打印到指定的输出，自动取证时写入文件，返回打印的线程数
+	 */
+	public int printTopStack(PrintStream out) throws IOException {
+		out.printf("%n Stack trace of top %d threads:%n", view.threadLimit);
+
+		int count = 0;
 		ThreadInfo[] infos = view.topThreadInfo.getTopThreadInfo();
 		for (ThreadInfo info : infos) {
 			if (info == null) {
 				continue;
 			}
-			printSingleThread(info);
+			printSingleThread(info, out);
+			count++;
 		}
-		System.out.flush();
+		return count;
 	}
 
 	public StackTraceElement[] printSingleThread(ThreadInfo info) {
+		return printSingleThread(info, System.out);
+	}
+
+	public StackTraceElement[] printSingleThread(ThreadInfo info, PrintStream out) {
 		StackTraceElement[] trace = info.getStackTrace();
 		StringBuilder sb = new StringBuilder(512);
 
@@ -83,7 +104,7 @@ public class ThreadPrinter {
 			sb.append("\tat ").append(traceElement).append("\n");
 		}
 
-		System.out.print(sb.toString());
+		out.print(sb.toString());
 
 		return trace;
 	}
@@ -92,6 +113,9 @@ public class ThreadPrinter {
 	 * 打印所有线程，只获取名称不获取stack，不造成停顿
 	 */
 	public void printAllThreads() throws IOException {
+		if (!checkJmxSupport()) {
+			return;
+		}
 		int[] stateCounter = new int[6];
 
 		System.out.println("\n Thread Id and name of all live threads:");
@@ -125,6 +149,9 @@ public class ThreadPrinter {
 	}
 
 	public void printBlockedThreads() throws IOException {
+		if (!checkJmxSupport()) {
+			return;
+		}
 		System.out.println("\n Stack trace of blocked threads:");
 		int counter = 0;
 		ThreadInfo[] threadInfos = view.vmInfo.getAllThreadInfo();
@@ -149,4 +176,21 @@ public class ThreadPrinter {
 		}
 		System.out.flush();
 	}
+
+	/**
+	 * perf数据源时没有JMX连接，无法获取线程栈与Java线程信息
+	 */
+	private boolean checkJmxSupport() {
+		if (view.vmInfo.replay) {
+			System.out.println("\n Thread information is not available when replaying a recording.");
+			System.out.flush();
+			return false;
+		}
+		if (!view.vmInfo.jmxSupport) {
+			System.out.println("\n Thread information is not available in perf data source, please restart vjtop without it.");
+			System.out.flush();
+			return false;
+		}
+		return true;
+	}
 }
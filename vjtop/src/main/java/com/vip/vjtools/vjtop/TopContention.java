@@ -0,0 +1,265 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap.PrimitiveEntry;
+
+/**
+ * 按刷新间隔内的阻塞次数/时间与等待时间对线程排序，并按锁对象汇总阻塞在同一把锁上的线程，用于发现锁护航(lock convoy)。
+ *
+ * 每个周期以一次不带栈的批量getThreadInfo(tids)获取所有线程的阻塞/等待计数，maxDepth为0时不需要进入安全点，不会停顿应用。
+ *
+ * 阻塞与等待时间只有在目标JVM开启了ThreadContentionMonitoring时才有值，否则按阻塞次数排序。
+ * 汇总的锁包括synchronized的监视器(线程为BLOCKED)与有owner的j.u.c锁(如ReentrantLock，线程为WAITING)。
+ */
+public class TopContention {
+
+	private static final Comparator<ContentionEntry> THREAD_COMPARATOR = new Comparator<ContentionEntry>() {
+		@Override
+		public int compare(ContentionEntry o1, ContentionEntry o2) {
+			int result = compareLong(o1.deltaBlockedTime, o2.deltaBlockedTime);
+			if (result == 0) {
+				result = compareLong(o1.deltaBlockedCount, o2.deltaBlockedCount);
+			}
+			if (result == 0) {
+				result = compareLong(o1.deltaWaitedTime, o2.deltaWaitedTime);
+			}
+			if (result == 0) {
+				result = compareLong(o1.deltaWaitedCount, o2.deltaWaitedCount);
+			}
+			return result;
+		}
+	};
+
+	private static final Comparator<LockStat> LOCK_COMPARATOR = new Comparator<LockStat>() {
+		@Override
+		public int compare(LockStat o1, LockStat o2) {
+			int result = compareLong(o1.waiters, o2.waiters);
+			if (result == 0) {
+				result = compareLong(o1.deltaBlockedTime, o2.deltaBlockedTime);
+			}
+			if (result == 0) {
+				result = compareLong(o1.deltaBlockedCount, o2.deltaBlockedCount);
+			}
+			return result;
+		}
+	};
+
+	private VMInfo vmInfo;
+
+	private LongObjectMap<ContentionEntry> threads = new LongObjectHashMap<>();
+	private Map<String, LockStat> locks = new HashMap<>();
+	private List<ContentionEntry> sortedThreads = new ArrayList<>();
+	private int generation = 0;
+	private boolean firstTime = true;
+
+	public TopContention(VMInfo vmInfo) {
+		this.vmInfo = vmInfo;
+	}
+
+	public TopContentionResult topContention(int threadLimit) throws IOException {
+		ThreadInfo[] infos;
+		try {
+			long[] tids = vmInfo.getAllThreadIds();
+			infos = vmInfo.getThreadInfo(tids);
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+			TopContentionResult result = new TopContentionResult();
+			result.ready = false;
+			return result;
+		}
+		return topContention(infos, threadLimit);
+	}
+
+	/**
+	 * 以本周期批量获取的不带栈的ThreadInfo计算区间值，按线程与锁排序
+	 */
+	TopContentionResult topContention(ThreadInfo[] infos, int threadLimit) {
+		TopContentionResult result = new TopContentionResult();
+		generation++;
+		sortedThreads.clear();
+		locks.clear();
+
+		for (ThreadInfo info : infos) {
+			// 获取信息前已退出的线程
+			if (info == null) {
+				continue;
+			}
+
+			ContentionEntry entry = threads.get(info.getThreadId());
+			if (entry == null) {
+				entry = new ContentionEntry(info.getThreadId());
+				threads.put(info.getThreadId(), entry);
+			}
+			entry.update(generation, info);
+
+			// 关闭ThreadContentionMonitoring时时间为-1
+			if (info.getBlockedTime() >= 0) {
+				result.timeSupported = true;
+			}
+
+			result.deltaAllBlockedCount += entry.deltaBlockedCount;
+			result.deltaAllBlockedTime += entry.deltaBlockedTime;
+			result.deltaAllWaitedTime += entry.deltaWaitedTime;
+
+			if (entry.deltaBlockedCount > 0 || entry.deltaWaitedCount > 0 || entry.isContended()) {
+				sortedThreads.add(entry);
+			}
+			if (entry.isContended()) {
+				addToLock(entry);
+			}
+		}
+
+		removeExitedThreads();
+
+		if (firstTime) {
+			firstTime = false;
+			result.ready = false;
+			return result;
+		}
+
+		result.contendedThreads = sortedThreads.size();
+		Collections.sort(sortedThreads, THREAD_COMPARATOR);
+		result.topThreads = sortedThreads.subList(0, Math.min(threadLimit, sortedThreads.size()));
+
+		List<LockStat> sortedLocks = new ArrayList<>(locks.values());
+		Collections.sort(sortedLocks, LOCK_COMPARATOR);
+		result.lockCount = sortedLocks.size();
+		result.topLocks = sortedLocks.subList(0, Math.min(threadLimit, sortedLocks.size()));
+		return result;
+	}
+
+	private void addToLock(ContentionEntry entry) {
+		LockStat lock = locks.get(entry.lockName);
+		if (lock == null) {
+			lock = new LockStat(entry.lockName);
+			locks.put(entry.lockName, lock);
+		}
+		lock.waiters++;
+		lock.deltaBlockedCount += entry.deltaBlockedCount;
+		lock.deltaBlockedTime += entry.deltaBlockedTime;
+		if (entry.lockOwnerId != -1) {
+			lock.ownerId = entry.lockOwnerId;
+			lock.ownerName = entry.lockOwnerName;
+		}
+	}
+
+	private void removeExitedThreads() {
+		long[] exited = null;
+		int count = 0;
+		for (PrimitiveEntry<ContentionEntry> entry : threads.entries()) {
+			if (entry.value().generation != generation) {
+				if (exited == null) {
+					exited = new long[threads.size()];
+				}
+				exited[count++] = entry.key();
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			threads.remove(exited[i]);
+		}
+	}
+
+	private static int compareLong(long x, long y) {
+		return x > y ? -1 : (x == y ? 0 : 1);
+	}
+
+	/**
+	 * 线程本周期的阻塞/等待区间值与当前的锁信息，上次累计值-1代表尚无数据
+	 */
+	public static class ContentionEntry {
+		public final long tid;
+		public String name;
+		public Thread.State state;
+		public String lockName;
+		public long lockOwnerId;
+		public String lockOwnerName;
+
+		public long deltaBlockedCount;
+		public long deltaBlockedTime;
+		public long deltaWaitedCount;
+		public long deltaWaitedTime;
+
+		private int generation;
+		private long lastBlockedCount = -1;
+		private long lastBlockedTime = -1;
+		private long lastWaitedCount = -1;
+		private long lastWaitedTime = -1;
+
+		ContentionEntry(long tid) {
+			this.tid = tid;
+		}
+
+		void update(int generation, ThreadInfo info) {
+			this.generation = generation;
+			name = info.getThreadName();
+			state = info.getThreadState();
+			lockName = info.getLockName();
+			lockOwnerId = info.getLockOwnerId();
+			lockOwnerName = info.getLockOwnerName();
+
+			deltaBlockedCount = delta(info.getBlockedCount(), lastBlockedCount);
+			deltaBlockedTime = delta(info.getBlockedTime(), lastBlockedTime);
+			deltaWaitedCount = delta(info.getWaitedCount(), lastWaitedCount);
+			deltaWaitedTime = delta(info.getWaitedTime(), lastWaitedTime);
+
+			lastBlockedCount = info.getBlockedCount();
+			lastBlockedTime = info.getBlockedTime();
+			lastWaitedCount = info.getWaitedCount();
+			lastWaitedTime = info.getWaitedTime();
+		}
+
+		/**
+		 * 阻塞在synchronized上，或等待一把有owner的j.u.c锁
+		 */
+		public boolean isContended() {
+			return lockName != null && (state == Thread.State.BLOCKED || lockOwnerId != -1);
+		}
+
+		private static long delta(long current, long last) {
+			// 第一次出现的线程，或未开启ThreadContentionMonitoring时的时间
+			if (current < 0 || last < 0 || current < last) {
+				return 0;
+			}
+			return current - last;
+		}
+	}
+
+	public static class LockStat {
+		public final String name;
+		// 当前阻塞在此锁上的线程数
+		public int waiters;
+		public long deltaBlockedCount;
+		public long deltaBlockedTime;
+		public long ownerId = -1;
+		public String ownerName;
+
+		LockStat(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class TopContentionResult {
+		public List<ContentionEntry> topThreads = Collections.emptyList();
+		public List<LockStat> topLocks = Collections.emptyList();
+		public int contendedThreads;
+		public int lockCount;
+
+		public long deltaAllBlockedCount;
+		public long deltaAllBlockedTime;
+		public long deltaAllWaitedTime;
+		// 目标JVM开启了ThreadContentionMonitoring，阻塞与等待时间有值
+		public boolean timeSupported;
+
+		public boolean ready = true;
+	}
+}
@@ -0,0 +1,321 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+import com.vip.vjtools.vjtop.util.LongHashSet;
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+import com.vip.vjtools.vjtop.util.ThreadNameNormalizer;
+
+/**
+ * 比较相邻两个刷新周期的线程号集合，按归一后的线程名(线程池)统计新建与退出的线程，找出频繁创建短命线程的线程池。
+ *
+ * 线程创建需要分配与提交线程栈，线程池不断销毁重建线程时会拖慢p99延时。线程号集合保存在两个交替复用的LongHashSet中，
+ * 线程名只在线程第一次出现时批量获取一次。在两次刷新之间创建又退出的线程无法被看到，以JVM的累计启动线程数推算其数量。
+ */
+public class TopThreadChurn {
+
+	// 从第一次被看到起，存活不超过该时长即退出的线程视为短命线程
+	public static final long SHORT_LIVED_MILLS = 60 * 1000;
+
+	private static final Comparator<ChurnStat> CHURN_COMPARATOR = new Comparator<ChurnStat>() {
+		@Override
+		public int compare(ChurnStat o1, ChurnStat o2) {
+			int result = compareLong(o1.created + o1.died, o2.created + o2.died);
+			if (result == 0) {
+				result = compareLong(o1.shortLived, o2.shortLived);
+			}
+			if (result == 0) {
+				result = compareLong(o1.totalCreated + o1.totalDied, o2.totalCreated + o2.totalDied);
+			}
+			if (result == 0) {
+				result = compareLong(o1.threads, o2.threads);
+			}
+			return result;
+		}
+	};
+
+	private VMInfo vmInfo;
+
+	private LongHashSet currentIds = new LongHashSet();
+	private LongHashSet lastIds = new LongHashSet();
+	private LongObjectMap<ThreadEntry> threads = new LongObjectHashMap<>();
+	private Map<String, ChurnStat> groups = new HashMap<>();
+	private long lastStartedCount = -1;
+	private boolean firstTime = true;
+
+	public TopThreadChurn(VMInfo vmInfo) {
+		this.vmInfo = vmInfo;
+	}
+
+	public TopChurnResult topChurn(int groupLimit) throws IOException {
+		TopChurnResult result = new TopChurnResult();
+		long now = System.currentTimeMillis();
+		beginInterval();
+
+		long startedCount;
+		try {
+			if (vmInfo.jmxSupport) {
+				updateFromJmx(now, result);
+			} else {
+				updateFromProc(now, vmInfo.getProcThreadStats(), result);
+			}
+			startedCount = vmInfo.getTotalStartedThreadCount();
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+			result.ready = false;
+			return result;
+		}
+		return endInterval(now, startedCount, groupLimit, result);
+	}
+
+	/**
+	 * 以调用者提供的线程列表与JVM累计启动线程数计算本周期的结果
+	 */
+	TopChurnResult topChurn(long now, List<TaskStat> taskStats, long startedCount, int groupLimit) {
+		TopChurnResult result = new TopChurnResult();
+		beginInterval();
+		updateFromProc(now, taskStats, result);
+		return endInterval(now, startedCount, groupLimit, result);
+	}
+
+	/**
+	 * 切换到其他显示模式时调用，丢弃线程号集合与累计启动线程数。
+	 *
+	 * 不在线程churn模式的期间没有比较线程号集合，重新进入时若与离开前的集合比较，期间所有的新建与退出都会被算作一个周期的，
+	 * 并被误报为短命线程与从未被看到的线程，因此重新进入时与启动时一样，第一个周期只记录已存在的线程。各线程池的累计值保留。
+	 */
+	public void pause() {
+		if (firstTime) {
+			return;
+		}
+		currentIds.clear();
+		lastIds.clear();
+		threads.clear();
+		lastStartedCount = -1;
+		firstTime = true;
+	}
+
+	private void beginInterval() {
+		for (ChurnStat group : groups.values()) {
+			group.reset();
+		}
+		currentIds.clear();
+	}
+
+	private TopChurnResult endInterval(long now, long startedCount, int groupLimit, TopChurnResult result) {
+		removeDeadThreads(now, result);
+
+		LongHashSet temp = lastIds;
+		lastIds = currentIds;
+		currentIds = temp;
+
+		for (ThreadEntry entry : threads.values()) {
+			entry.group.threads++;
+		}
+
+		if (startedCount != -1 && lastStartedCount != -1) {
+			result.started = startedCount - lastStartedCount;
+			// 两次刷新之间启动又退出，从未被看到的线程
+			result.unseen = Math.max(0, result.started - result.created);
+		}
+		lastStartedCount = startedCount;
+
+		if (firstTime) {
+			firstTime = false;
+			result.ready = false;
+			return result;
+		}
+
+		List<ChurnStat> sortedGroups = new ArrayList<>();
+		for (ChurnStat group : groups.values()) {
+			if (group.threads > 0 || group.totalCreated > 0 || group.totalDied > 0) {
+				sortedGroups.add(group);
+			}
+			if (group.isChurning()) {
+				result.churningGroups++;
+			}
+		}
+		Collections.sort(sortedGroups, CHURN_COMPARATOR);
+		result.groupCount = sortedGroups.size();
+		result.topGroups = sortedGroups.subList(0, Math.min(groupLimit, sortedGroups.size()));
+		return result;
+	}
+
+	private void updateFromJmx(long now, TopChurnResult result) throws IOException {
+		long[] tids = vmInfo.getAllThreadIds();
+		int newCount = 0;
+		for (long tid : tids) {
+			currentIds.add(tid);
+			if (!lastIds.contains(tid)) {
+				newCount++;
+			}
+		}
+		if (newCount == 0) {
+			return;
+		}
+
+		long[] newTids = new long[newCount];
+		int index = 0;
+		for (long tid : tids) {
+			if (!lastIds.contains(tid)) {
+				newTids[index++] = tid;
+			}
+		}
+
+		// 只为新出现的线程批量获取一次不带栈的ThreadInfo，获取前已退出的线程为null
+		ThreadInfo[] infos = vmInfo.getThreadInfo(newTids);
+		for (ThreadInfo info : infos) {
+			if (info != null) {
+				addThread(info.getThreadId(), info.getThreadName(), now, result);
+			}
+		}
+	}
+
+	private void updateFromProc(long now, List<TaskStat> taskStats, TopChurnResult result) {
+		for (TaskStat taskStat : taskStats) {
+			currentIds.add(taskStat.tid);
+			if (!lastIds.contains(taskStat.tid)) {
+				addThread(taskStat.tid, taskStat.name, now, result);
+			}
+		}
+	}
+
+	private void addThread(long tid, String name, long now, TopChurnResult result) {
+		ChurnStat group = groupOf(name);
+		// 第一个周期中已存在的线程不计为新建，也不知道其创建时间
+		long seenTime = firstTime ? -1 : now;
+		threads.put(tid, new ThreadEntry(group, seenTime));
+		if (!firstTime) {
+			group.created++;
+			group.totalCreated++;
+			result.created++;
+		}
+	}
+
+	/**
+	 * 上个周期存在而本周期不存在的线程已退出
+	 */
+	private void removeDeadThreads(long now, TopChurnResult result) {
+		for (int slot = 0; slot < lastIds.capacity(); slot++) {
+			if (!lastIds.isUsed(slot)) {
+				continue;
+			}
+			long tid = lastIds.keyAt(slot);
+			if (currentIds.contains(tid)) {
+				continue;
+			}
+			ThreadEntry entry = threads.remove(tid);
+			// 新出现时已经退出，未取到线程名
+			if (entry == null) {
+				continue;
+			}
+
+			ChurnStat group = entry.group;
+			group.died++;
+			group.totalDied++;
+			result.died++;
+			if (entry.seenTime != -1) {
+				long lifeMills = now - entry.seenTime;
+				group.lifeMills += lifeMills;
+				group.lifeCount++;
+				if (lifeMills <= SHORT_LIVED_MILLS) {
+					group.shortLived++;
+				}
+			}
+		}
+	}
+
+	private ChurnStat groupOf(String threadName) {
+		String name = ThreadNameNormalizer.normalize(threadName);
+		ChurnStat group = groups.get(name);
+		if (group == null) {
+			group = new ChurnStat(name);
+			groups.put(name, group);
+		}
+		return group;
+	}
+
+	private static int compareLong(long x, long y) {
+		return x > y ? -1 : (x == y ? 0 : 1);
+	}
+
+	private static class ThreadEntry {
+		private final ChurnStat group;
+		// 第一次被看到的时间，-1代表vjtop启动时已存在
+		private final long seenTime;
+
+		ThreadEntry(ChurnStat group, long seenTime) {
+			this.group = group;
+			this.seenTime = seenTime;
+		}
+	}
+
+	/**
+	 * 一个线程池本周期新建与退出的线程数，及vjtop启动以来的累计值
+	 */
+	public static class ChurnStat {
+		public final String name;
+		// 当前存活的线程数
+		public int threads;
+		public long created;
+		public long died;
+		// 本周期退出的线程中，被看到后SHORT_LIVED_MILLS内即退出的线程数
+		public long shortLived;
+		// 本周期退出、且创建时间已知的线程的存活时长之和
+		public long lifeMills;
+		public long lifeCount;
+
+		public long totalCreated;
+		public long totalDied;
+
+		ChurnStat(String name) {
+			this.name = name;
+		}
+
+		void reset() {
+			threads = 0;
+			created = 0;
+			died = 0;
+			shortLived = 0;
+			lifeMills = 0;
+			lifeCount = 0;
+		}
+
+		/**
+		 * 同一周期内既有新建又有退出，或有短命线程
+		 */
+		public boolean isChurning() {
+			return shortLived > 0 || (created > 0 && died > 0);
+		}
+
+		/**
+		 * 本周期退出线程的平均存活时长，无数据时返回-1
+		 */
+		public long avgLifeMills() {
+			return lifeCount == 0 ? -1 : lifeMills / lifeCount;
+		}
+	}
+
+	public static class TopChurnResult {
+		public List<ChurnStat> topGroups = Collections.emptyList();
+		public int groupCount;
+		public int churningGroups;
+
+		// 本周期JVM启动的线程数，-1代表未知
+		public long started = -1;
+		public long unseen;
+		public long created;
+		public long died;
+
+		public boolean ready = true;
+	}
+}
@@ -0,0 +1,267 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.IOException;
+import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap.PrimitiveEntry;
+import com.vip.vjtools.vjtop.util.ThreadNameNormalizer;
+
+/**
+ * 按归一后的线程名(线程池)汇总所有线程的cpu, syscpu与内存分配，线程池线程很多时比逐个线程的排序更能看出哪个线程池占满了CPU。
+ *
+ * 每个线程的上次累计值保存在以tid为key的可变对象中，刷新时只更新long字段，不产生装箱的Long。
+ * 线程名只在线程第一次出现时批量获取一次。JMX数据源时数据来自ThreadMXBean，perf数据源时来自/proc/PID/task，线程名为OS线程名。
+ */
+public class TopThreadGroups {
+
+	private static final Comparator<GroupStat> CPU_COMPARATOR = new Comparator<GroupStat>() {
+		@Override
+		public int compare(GroupStat o1, GroupStat o2) {
+			if (o1.deltaCpu != o2.deltaCpu) {
+				return o1.deltaCpu > o2.deltaCpu ? -1 : 1;
+			}
+			return o1.deltaBytes > o2.deltaBytes ? -1 : (o1.deltaBytes == o2.deltaBytes ? 0 : 1);
+		}
+	};
+
+	private VMInfo vmInfo;
+
+	private LongObjectMap<ThreadEntry> threads = new LongObjectHashMap<>();
+	private Map<String, GroupStat> groups = new HashMap<>();
+	private List<GroupStat> sortedGroups = new ArrayList<>();
+	private int generation = 0;
+	private boolean firstTime = true;
+
+	public TopThreadGroups(VMInfo vmInfo) {
+		this.vmInfo = vmInfo;
+	}
+
+	public TopGroupResult topGroups(int groupLimit) throws IOException {
+		TopGroupResult result = new TopGroupResult();
+		beginInterval();
+
+		try {
+			if (vmInfo.jmxSupport) {
+				updateFromJmx();
+			} else {
+				updateFromProc(vmInfo.getProcThreadStats());
+			}
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+			result.ready = false;
+			return result;
+		}
+		return endInterval(groupLimit, result);
+	}
+
+	/**
+	 * 以调用者提供的线程列表计算本周期的结果
+	 */
+	TopGroupResult topGroups(List<TaskStat> taskStats, int groupLimit) {
+		TopGroupResult result = new TopGroupResult();
+		beginInterval();
+		updateFromProc(taskStats);
+		return endInterval(groupLimit, result);
+	}
+
+	private void beginInterval() {
+		generation++;
+		for (GroupStat group : groups.values()) {
+			group.reset();
+		}
+	}
+
+	private TopGroupResult endInterval(int groupLimit, TopGroupResult result) {
+		removeExitedThreads();
+
+		sortedGroups.clear();
+		for (Iterator<GroupStat> it = groups.values().iterator(); it.hasNext();) {
+			GroupStat group = it.next();
+			if (group.threads == 0) {
+				it.remove();
+				continue;
+			}
+			sortedGroups.add(group);
+			result.deltaAllCpu += group.deltaCpu;
+			result.deltaAllBytes += group.deltaBytes;
+		}
+
+		if (firstTime) {
+			firstTime = false;
+			result.ready = false;
+			return result;
+		}
+
+		Collections.sort(sortedGroups, CPU_COMPARATOR);
+		result.groupCount = sortedGroups.size();
+		result.topGroups = sortedGroups.subList(0, Math.min(groupLimit, sortedGroups.size()));
+		return result;
+	}
+
+	private void updateFromJmx() throws IOException {
+		long[] tids = vmInfo.getAllThreadIds();
+		long[] cpuTimes = vmInfo.threadCpuTimeSupported ? vmInfo.getThreadCpuTime(tids) : null;
+		long[] userTimes = vmInfo.threadCpuTimeSupported ? vmInfo.getThreadUserTime(tids) : null;
+		long[] allocatedBytes = vmInfo.threadMemoryAllocatedSupported ? vmInfo.getThreadAllocatedBytes(tids) : null;
+
+		fetchNewThreadNames(tids);
+
+		for (int i = 0; i < tids.length; i++) {
+			ThreadEntry entry = threads.get(tids[i]);
+			// 获取名字前已退出的线程
+			if (entry == null) {
+				continue;
+			}
+			long cpu = cpuTimes != null ? cpuTimes[i] : -1;
+			// totalTime与userTime的获取时间有先后，sys可能算出负数
+			long sys = cpuTimes != null ? Math.max(0, cpuTimes[i] - userTimes[i]) : -1;
+			long bytes = allocatedBytes != null ? allocatedBytes[i] : -1;
+			entry.update(generation, cpu, sys, bytes);
+		}
+	}
+
+	/**
+	 * 只为新出现的线程批量获取一次ThreadInfo，不带栈
+	 */
+	private void fetchNewThreadNames(long[] tids) throws IOException {
+		int newCount = 0;
+		for (long tid : tids) {
+			if (!threads.containsKey(tid)) {
+				newCount++;
+			}
+		}
+		if (newCount == 0) {
+			return;
+		}
+
+		long[] newTids = new long[newCount];
+		int index = 0;
+		for (long tid : tids) {
+			if (!threads.containsKey(tid)) {
+				newTids[index++] = tid;
+			}
+		}
+
+		ThreadInfo[] infos = vmInfo.getThreadInfo(newTids);
+		for (ThreadInfo info : infos) {
+			if (info != null) {
+				threads.put(info.getThreadId(), new ThreadEntry(groupOf(info.getThreadName())));
+			}
+		}
+	}
+
+	private void updateFromProc(List<TaskStat> taskStats) {
+		for (TaskStat taskStat : taskStats) {
+			ThreadEntry entry = threads.get(taskStat.tid);
+			if (entry == null) {
+				entry = new ThreadEntry(groupOf(taskStat.name));
+				threads.put(taskStat.tid, entry);
+			}
+			entry.update(generation, taskStat.cpuNanos(), taskStat.sysCpuNanos, -1);
+		}
+	}
+
+	private void removeExitedThreads() {
+		long[] exited = null;
+		int count = 0;
+		for (PrimitiveEntry<ThreadEntry> entry : threads.entries()) {
+			if (entry.value().generation != generation) {
+				if (exited == null) {
+					exited = new long[threads.size()];
+				}
+				exited[count++] = entry.key();
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			threads.remove(exited[i]);
+		}
+	}
+
+	private GroupStat groupOf(String threadName) {
+		String name = ThreadNameNormalizer.normalize(threadName);
+		GroupStat group = groups.get(name);
+		if (group == null) {
+			group = new GroupStat(name);
+			groups.put(name, group);
+		}
+		return group;
+	}
+
+	/**
+	 * 每个线程的上次累计值，-1代表不支持
+	 */
+	private static class ThreadEntry {
+		private final GroupStat group;
+		private int generation;
+		private long lastCpu = -1;
+		private long lastSys = -1;
+		private long lastBytes = -1;
+
+		ThreadEntry(GroupStat group) {
+			this.group = group;
+		}
+
+		void update(int generation, long cpu, long sys, long bytes) {
+			this.generation = generation;
+			group.threads++;
+
+			// 第一次出现的线程没有区间值
+			if (lastCpu >= 0 && cpu >= lastCpu) {
+				group.deltaCpu += cpu - lastCpu;
+			}
+			if (lastSys >= 0 && sys >= lastSys) {
+				group.deltaSys += sys - lastSys;
+			}
+			if (lastBytes >= 0 && bytes >= lastBytes) {
+				group.deltaBytes += bytes - lastBytes;
+			}
+			if (cpu > 0) {
+				group.totalCpu += cpu;
+			}
+
+			lastCpu = cpu;
+			lastSys = sys;
+			lastBytes = bytes;
+		}
+	}
+
+	public static class GroupStat {
+		public final String name;
+		public int threads;
+		public long deltaCpu;
+		public long deltaSys;
+		public long deltaBytes;
+		public long totalCpu;
+
+		GroupStat(String name) {
+			this.name = name;
+		}
+
+		void reset() {
+			threads = 0;
+			deltaCpu = 0;
+			deltaSys = 0;
+			deltaBytes = 0;
+			totalCpu = 0;
+		}
+	}
+
+	public static class TopGroupResult {
+		public List<GroupStat> topGroups = Collections.emptyList();
+		public int groupCount;
+		public long deltaAllCpu;
+		public long deltaAllBytes;
+
+		public boolean ready = true;
+	}
+}
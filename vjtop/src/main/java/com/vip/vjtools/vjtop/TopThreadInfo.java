@@ -2,8 +2,13 @@ package com.vip.vjtools.vjtop;
 
 import java.io.IOException;
 import java.lang.management.ThreadInfo;
+import java.util.List;
 
 import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+import com.vip.vjtools.vjtop.data.ThreadNidMapper;
+import com.vip.vjtools.vjtop.util.LongHashSet;
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
 import com.vip.vjtools.vjtop.util.LongObjectHashMap;
 import com.vip.vjtools.vjtop.util.LongObjectMap;
 import com.vip.vjtools.vjtop.util.Utils;
@@ -12,26 +17,56 @@ public class TopThreadInfo {
 	private VMInfo vmInfo;
 	private long[] topTidArray;
 
-	private LongObjectMap<Long> lastThreadCpuTotalTimes = new LongObjectHashMap<>();
-	private LongObjectMap<Long> lastThreadSysCpuTotalTimes = new LongObjectHashMap<>();
-	private LongObjectMap<Long> lastThreadMemoryTotalBytes = new LongObjectHashMap<>();
+	// 上次与本次的累计值各一组Map，每次刷新后交换，并在下次刷新时clear后复用，线程数稳定后刷新过程不再分配Map与装箱的Long
+	private LongLongHashMap lastThreadCpuTotalTimes = new LongLongHashMap();
+	private LongLongHashMap lastThreadSysCpuTotalTimes = new LongLongHashMap();
+	private LongLongHashMap lastThreadMemoryTotalBytes = new LongLongHashMap();
+	private LongLongHashMap threadCpuTotalTimes = new LongLongHashMap();
+	private LongLongHashMap threadSysCpuTotalTimes = new LongLongHashMap();
+	private LongLongHashMap threadMemoryTotalBytes = new LongLongHashMap();
+
+	// 本次的区间值，以及/proc数据源时以Java线程号为key的累计值，每次刷新时clear后复用
+	private LongLongHashMap threadCpuDeltaTimes = new LongLongHashMap();
+	private LongLongHashMap threadSysCpuDeltaTimes = new LongLongHashMap();
+	private LongLongHashMap threadMemoryDeltaBytes = new LongLongHashMap();
+	private LongLongHashMap javaThreadCpuTotalTimes = new LongLongHashMap();
+	private LongLongHashMap javaThreadSysCpuTotalTimes = new LongLongHashMap();
+	private LongObjectMap<TaskStat> taskStatMap = new LongObjectHashMap<>();
+
+	// 线程Dump的最小间隔
+	private static final long NID_MAPPING_REFRESH_MILLS = 60 * 1000;
+	// 未映射的线程CPU已达到显示阈值时，线程Dump的最小间隔
+	private static final long BUSY_NID_MAPPING_REFRESH_MILLS = 5 * 1000;
+	private ThreadNidMapper nidMapper = new ThreadNidMapper();
+	private long lastNidMappingTime;
+	// 上次线程Dump时已存在却不在Dump中的OS线程，如没有attach到JVM的native线程，不会因其繁忙而反复Dump
+	private LongHashSet notInDumpNids = new LongHashSet();
 
 	public TopThreadInfo(VMInfo vmInfo) throws Exception {
 		this.vmInfo = vmInfo;
 	}
 
+	/**
+	 * 返回结果中的Map在下一次刷新时被复用，只在本次刷新中有效
+	 */
 	public TopCpuResult topCpuThreads(ThreadInfoMode mode, int threadLimit) throws IOException {
+		if (!vmInfo.jmxSupport || vmInfo.procThreadCpuSupported) {
+			return topCpuThreadsFromProc(mode, threadLimit);
+		}
 
 		TopCpuResult result = new TopCpuResult();
 
 		try {
 			long tids[] = vmInfo.getAllThreadIds();
 
-			int mapSize = tids.length * 2;
-			result.threadCpuTotalTimes = new LongObjectHashMap<>(mapSize);
-			result.threadCpuDeltaTimes = new LongObjectHashMap<>(mapSize);
-			result.threadSysCpuTotalTimes = new LongObjectHashMap<>(mapSize);
-			result.threadSysCpuDeltaTimes = new LongObjectHashMap<>(mapSize);
+			threadCpuTotalTimes.clear();
+			threadSysCpuTotalTimes.clear();
+			threadCpuDeltaTimes.clear();
+			threadSysCpuDeltaTimes.clear();
+			result.threadCpuTotalTimes = threadCpuTotalTimes;
+			result.threadCpuDeltaTimes = threadCpuDeltaTimes;
+			result.threadSysCpuTotalTimes = threadSysCpuTotalTimes;
+			result.threadSysCpuDeltaTimes = threadSysCpuDeltaTimes;
 
 			// 批量获取CPU times，性能大幅提高。
 			// 两次获取之间有间隔，在低流量下可能造成负数
@@ -45,14 +80,14 @@ public class TopThreadInfo {
 			// 此算法第一次不会显示任何数据，保证每次显示都只显示区间内数据
 			for (int i = 0; i < tids.length; i++) {
 				long tid = tids[i];
-				Long threadCpuTotalTime = threadCpuTotalTimeArray[i];
-				result.threadCpuTotalTimes.put(tid, threadCpuTotalTime);
+				long threadCpuTotalTime = threadCpuTotalTimeArray[i];
+				threadCpuTotalTimes.put(tid, threadCpuTotalTime);
 
-				Long lastTime = lastThreadCpuTotalTimes.get(tid);
-				if (lastTime != null) {
-					Long deltaThreadCpuTime = threadCpuTotalTime - lastTime;
+				long lastTime = lastThreadCpuTotalTimes.get(tid, -1);
+				if (lastTime != -1) {
+					long deltaThreadCpuTime = threadCpuTotalTime - lastTime;
 					if (deltaThreadCpuTime >= minDeltaCpuTime) {
-						result.threadCpuDeltaTimes.put(tid, deltaThreadCpuTime);
+						threadCpuDeltaTimes.put(tid, deltaThreadCpuTime);
 						result.deltaAllActiveThreadCpu += deltaThreadCpuTime;
 					} else {
 						result.deltaAllFreeThreadCpu += deltaThreadCpuTime;
@@ -64,46 +99,139 @@ public class TopThreadInfo {
 			for (int i = 0; i < tids.length; i++) {
 				long tid = tids[i];
 				// 因为totalTime 与 userTime 的获取时间有先后，实际sys接近0时，后取的userTime可能比前一时刻的totalTime高，计算出来的sysTime可为负数
-				Long threadSysCpuTotalTime = Math.max(0, threadCpuTotalTimeArray[i] - threadUserCpuTotalTimeArray[i]);
-				result.threadSysCpuTotalTimes.put(tid, threadSysCpuTotalTime);
+				long threadSysCpuTotalTime = Math.max(0, threadCpuTotalTimeArray[i] - threadUserCpuTotalTimeArray[i]);
+				threadSysCpuTotalTimes.put(tid, threadSysCpuTotalTime);
 
-				Long lastTime = lastThreadSysCpuTotalTimes.get(tid);
-				if (lastTime != null) {
-					Long deltaThreadSysCpuTime = Math.max(0, threadSysCpuTotalTime - lastTime);
+				long lastTime = lastThreadSysCpuTotalTimes.get(tid, -1);
+				if (lastTime != -1) {
+					long deltaThreadSysCpuTime = Math.max(0, threadSysCpuTotalTime - lastTime);
 					if (deltaThreadSysCpuTime >= minDeltaCpuTime) {
-						result.threadSysCpuDeltaTimes.put(tid, deltaThreadSysCpuTime);
+						threadSysCpuDeltaTimes.put(tid, deltaThreadSysCpuTime);
 						result.deltaAllActiveThreadSysCpu += deltaThreadSysCpuTime;
 					}
 				}
 			}
 
-			if (lastThreadCpuTotalTimes.isEmpty()) {
-				lastThreadCpuTotalTimes = result.threadCpuTotalTimes;
-				lastThreadSysCpuTotalTimes = result.threadSysCpuTotalTimes;
+			boolean firstTime = lastThreadCpuTotalTimes.isEmpty();
+			swapCpuTotalTimes();
+			if (firstTime) {
 				result.ready = false;
 				return result;
 			}
 
 			// 按不同类型排序,过滤
-			if (mode == ThreadInfoMode.cpu) {
-				topTidArray = Utils.sortAndFilterThreadIdsByValue(result.threadCpuDeltaTimes, threadLimit);
-			} else if (mode == ThreadInfoMode.syscpu) {
-				topTidArray = Utils.sortAndFilterThreadIdsByValue(result.threadSysCpuDeltaTimes, threadLimit);
-			} else if (mode == ThreadInfoMode.totalcpu) {
-				topTidArray = Utils.sortAndFilterThreadIdsByValue(result.threadCpuTotalTimes, threadLimit);
-			} else if (mode == ThreadInfoMode.totalsyscpu) {
-				topTidArray = Utils.sortAndFilterThreadIdsByValue(result.threadSysCpuTotalTimes, threadLimit);
-			} else {
-				throw new RuntimeException("unkown mode:" + mode);
-			}
+			topTidArray = sortCpuThreads(result, mode, threadLimit);
 
-			result.activeThreads = result.threadCpuDeltaTimes.size();
+			result.activeThreads = threadCpuDeltaTimes.size();
 
 			// 获得线程名等信息threadInfo
-			result.threadInfos = vmInfo.getThreadInfo(topTidArray);
+			result.setTopThreads(vmInfo.getThreadInfo(topTidArray));
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * 从/proc/PID/task/TID/stat中读取所有线程的user与sys时间，同一文件中同时读出两者，不会出现负数的sys时间。
+	 * 
+	 * JMX数据源时，通过线程Dump中的nid将OS线程映射回Java线程，只为排名前列的线程获取ThreadInfo；
+	 * perf数据源时，线程号为OS线程号，线程名为OS线程名
+	 */
+	private TopCpuResult topCpuThreadsFromProc(ThreadInfoMode mode, int threadLimit) throws IOException {
+		TopCpuResult result = new TopCpuResult();
+
+		try {
+			List<TaskStat> taskStats = vmInfo.getProcThreadStats();
+
+			// 上次的值以nid为key，结果以Java线程号为key
+			threadCpuTotalTimes.clear();
+			threadSysCpuTotalTimes.clear();
+			javaThreadCpuTotalTimes.clear();
+			javaThreadSysCpuTotalTimes.clear();
+			threadCpuDeltaTimes.clear();
+			threadSysCpuDeltaTimes.clear();
+			taskStatMap.clear();
+			result.threadCpuTotalTimes = javaThreadCpuTotalTimes;
+			result.threadCpuDeltaTimes = threadCpuDeltaTimes;
+			result.threadSysCpuTotalTimes = javaThreadSysCpuTotalTimes;
+			result.threadSysCpuDeltaTimes = threadSysCpuDeltaTimes;
+
+			long minDeltaCpuTime = (vmInfo.upTimeMills.delta * Utils.NANOS_TO_MILLS / 10000);
+
+			boolean mapToJavaThread = vmInfo.jmxSupport;
+			if (mapToJavaThread && !refreshNidMapping(taskStats, minDeltaCpuTime)) {
+				result.ready = false;
+				return result;
+			}
+
+			for (TaskStat taskStat : taskStats) {
+				long nid = taskStat.tid;
+				long threadCpuTotalTime = taskStat.cpuNanos();
+				long threadSysCpuTotalTime = taskStat.sysCpuNanos;
+				threadCpuTotalTimes.put(nid, threadCpuTotalTime);
+				threadSysCpuTotalTimes.put(nid, threadSysCpuTotalTime);
+
+				long lastTime = lastThreadCpuTotalTimes.get(nid, -1);
+				boolean hasLast = lastTime != -1;
+				long deltaThreadCpuTime = hasLast ? threadCpuTotalTime - lastTime : 0;
+
+				long tid = nid;
+				if (mapToJavaThread) {
+					Long javaTid = nidMapper.getTid(nid);
+					// VM线程与尚未映射的新线程不参与排序
+					if (javaTid == null || javaTid == ThreadNidMapper.NON_JAVA_THREAD) {
+						result.deltaVmThreadCpu += deltaThreadCpuTime;
+						continue;
+					}
+					tid = javaTid;
+				}
+
+				taskStatMap.put(tid, taskStat);
+				javaThreadCpuTotalTimes.put(tid, threadCpuTotalTime);
+				javaThreadSysCpuTotalTimes.put(tid, threadSysCpuTotalTime);
+
+				if (hasLast) {
+					if (deltaThreadCpuTime >= minDeltaCpuTime) {
+						threadCpuDeltaTimes.put(tid, deltaThreadCpuTime);
+						result.deltaAllActiveThreadCpu += deltaThreadCpuTime;
+
+						long deltaThreadSysCpuTime = threadSysCpuTotalTime - lastThreadSysCpuTotalTimes.get(nid, 0);
+						threadSysCpuDeltaTimes.put(tid, deltaThreadSysCpuTime);
+						result.deltaAllActiveThreadSysCpu += deltaThreadSysCpuTime;
+					} else {
+						result.deltaAllFreeThreadCpu += deltaThreadCpuTime;
+					}
+				}
+			}
+
+			boolean firstTime = lastThreadCpuTotalTimes.isEmpty();
+			swapCpuTotalTimes();
+			if (firstTime) {
+				result.ready = false;
+				return result;
+			}
+
+			long[] topTids = sortCpuThreads(result, mode, threadLimit);
+			result.activeThreads = threadCpuDeltaTimes.size();
 
-			lastThreadCpuTotalTimes = result.threadCpuTotalTimes;
-			lastThreadSysCpuTotalTimes = result.threadSysCpuTotalTimes;
+			if (mapToJavaThread) {
+				topTidArray = topTids;
+				result.setTopThreads(vmInfo.getThreadInfo(topTidArray));
+			} else {
+				int size = topTids.length;
+				result.topTids = topTids;
+				result.topThreadNames = new String[size];
+				result.topThreadStates = new String[size];
+				for (int i = 0; i < size; i++) {
+					TaskStat taskStat = taskStatMap.get(topTids[i]);
+					result.topThreadNames[i] = taskStat.name;
+					result.topThreadStates[i] = taskStat.stateName();
+				}
+				// /proc中的OS线程号不能用于JMX获取线程栈
+				topTidArray = null;
+			}
 		} catch (Exception e) {
 			vmInfo.handleJmxFetchDataError(e);
 		}
@@ -111,14 +239,105 @@ public class TopThreadInfo {
 		return result;
 	}
 
+	private void swapCpuTotalTimes() {
+		LongLongHashMap temp = lastThreadCpuTotalTimes;
+		lastThreadCpuTotalTimes = threadCpuTotalTimes;
+		threadCpuTotalTimes = temp;
+
+		temp = lastThreadSysCpuTotalTimes;
+		lastThreadSysCpuTotalTimes = threadSysCpuTotalTimes;
+		threadSysCpuTotalTimes = temp;
+	}
+
+	/**
+	 * 首次或有未知的活跃线程时，重新获取线程Dump建立nid映射。线程Dump会造成停顿，因此限制其频率。
+	 * 
+	 * 获取线程Dump失败时，退回到用ThreadMXBean获取线程CPU，返回false
+	 */
+	private boolean refreshNidMapping(List<TaskStat> taskStats, long minDeltaCpuTime) {
+		long now = System.currentTimeMillis();
+		if (!needRefreshNidMapping(taskStats, minDeltaCpuTime, now)) {
+			return true;
+		}
+
+		try {
+			updateNidMapping(vmInfo.getThreadDump(), taskStats, now);
+		} catch (IOException e) {
+			vmInfo.procThreadCpuSupported = false;
+			cleanupThreadsHistory();
+			return false;
+		}
+		return true;
+	}
+
+	void updateNidMapping(String threadDump, List<TaskStat> taskStats, long now) {
+		nidMapper.update(threadDump);
+		lastNidMappingTime = now;
+
+		notInDumpNids.clear();
+		for (TaskStat taskStat : taskStats) {
+			if (!nidMapper.contains(taskStat.tid)) {
+				notInDumpNids.add(taskStat.tid);
+			}
+		}
+	}
+
+	/**
+	 * 未映射的线程在本周期的CPU已达到显示阈值时，以较短的间隔刷新，否则它会被计入VM线程而不出现在排名中；
+	 * 其余新线程按较长的间隔刷新
+	 */
+	boolean needRefreshNidMapping(List<TaskStat> taskStats, long minDeltaCpuTime, long now) {
+		if (nidMapper.size() == 0) {
+			return true;
+		}
+
+		long sinceLastMapping = now - lastNidMappingTime;
+		if (sinceLastMapping < BUSY_NID_MAPPING_REFRESH_MILLS) {
+			return false;
+		}
+
+		for (TaskStat taskStat : taskStats) {
+			if (nidMapper.contains(taskStat.tid)) {
+				continue;
+			}
+			long lastTime = lastThreadCpuTotalTimes.get(taskStat.tid, -1);
+			// 本周期新启动的线程，全部CPU都在本周期内
+			long deltaCpuTime = lastTime == -1 ? taskStat.cpuNanos() : taskStat.cpuNanos() - lastTime;
+			boolean busy = deltaCpuTime >= minDeltaCpuTime && !notInDumpNids.contains(taskStat.tid);
+			if (busy || (sinceLastMapping >= NID_MAPPING_REFRESH_MILLS
+					&& (lastTime == -1 || deltaCpuTime >= minDeltaCpuTime))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static long[] sortCpuThreads(TopCpuResult result, ThreadInfoMode mode, int threadLimit) {
+		if (mode == ThreadInfoMode.cpu) {
+			return Utils.sortAndFilterThreadIdsByValue(result.threadCpuDeltaTimes, threadLimit);
+		} else if (mode == ThreadInfoMode.syscpu) {
+			return Utils.sortAndFilterThreadIdsByValue(result.threadSysCpuDeltaTimes, threadLimit);
+		} else if (mode == ThreadInfoMode.totalcpu) {
+			return Utils.sortAndFilterThreadIdsByValue(result.threadCpuTotalTimes, threadLimit);
+		} else if (mode == ThreadInfoMode.totalsyscpu) {
+			return Utils.sortAndFilterThreadIdsByValue(result.threadSysCpuTotalTimes, threadLimit);
+		} else {
+			throw new RuntimeException("unkown mode:" + mode);
+		}
+	}
+
+	/**
+	 * 返回结果中的Map在下一次刷新时被复用，只在本次刷新中有效
+	 */
 	public TopMemoryResult topMemoryThreads(ThreadInfoMode mode, int threadLimit) throws IOException {
 		TopMemoryResult result = new TopMemoryResult();
 		try {
 			long tids[] = vmInfo.getAllThreadIds();
 
-			int mapSize = tids.length * 2;
-			result.threadMemoryTotalBytesMap = new LongObjectHashMap<>(mapSize);
-			result.threadMemoryDeltaBytesMap = new LongObjectHashMap<>(mapSize);
+			threadMemoryTotalBytes.clear();
+			threadMemoryDeltaBytes.clear();
+			result.threadMemoryTotalBytesMap = threadMemoryTotalBytes;
+			result.threadMemoryDeltaBytesMap = threadMemoryDeltaBytes;
 
 			// 批量获取内存分配
 			long[] threadMemoryTotalBytesArray = vmInfo.getThreadAllocatedBytes(tids);
@@ -126,24 +345,25 @@ public class TopThreadInfo {
 			// 此算法第一次不会显示任何数据，保证每次显示都只显示区间内数据
 			for (int i = 0; i < tids.length; i++) {
 				long tid = tids[i];
-				Long threadMemoryTotalBytes = threadMemoryTotalBytesArray[i];
-				result.threadMemoryTotalBytesMap.put(tid, threadMemoryTotalBytes);
-				result.totalAllThreadBytes += threadMemoryTotalBytes;
-
-				Long threadMemoryDeltaBytes = 0L;
-				Long lastBytes = lastThreadMemoryTotalBytes.get(tid);
-
-				if (lastBytes != null) {
-					threadMemoryDeltaBytes = threadMemoryTotalBytes - lastBytes;
-					if (threadMemoryDeltaBytes > 0) {
-						result.threadMemoryDeltaBytesMap.put(tid, threadMemoryDeltaBytes);
-						result.deltaAllThreadBytes += threadMemoryDeltaBytes;
+				long totalBytes = threadMemoryTotalBytesArray[i];
+				threadMemoryTotalBytes.put(tid, totalBytes);
+				result.totalAllThreadBytes += totalBytes;
+
+				long lastBytes = lastThreadMemoryTotalBytes.get(tid, -1);
+				if (lastBytes != -1) {
+					long deltaBytes = totalBytes - lastBytes;
+					if (deltaBytes > 0) {
+						threadMemoryDeltaBytes.put(tid, deltaBytes);
+						result.deltaAllThreadBytes += deltaBytes;
 					}
 				}
 			}
 
-			if (lastThreadMemoryTotalBytes.isEmpty()) {
-				lastThreadMemoryTotalBytes = result.threadMemoryTotalBytesMap;
+			boolean firstTime = lastThreadMemoryTotalBytes.isEmpty();
+			LongLongHashMap temp = lastThreadMemoryTotalBytes;
+			lastThreadMemoryTotalBytes = threadMemoryTotalBytes;
+			threadMemoryTotalBytes = temp;
+			if (firstTime) {
 				result.ready = false;
 				return result;
 			}
@@ -158,16 +378,24 @@ public class TopThreadInfo {
 
 			result.activeThreads = result.threadMemoryDeltaBytesMap.size();
 
-			result.threadInfos = vmInfo.getThreadInfo(topTidArray);
-
-			lastThreadMemoryTotalBytes = result.threadMemoryTotalBytesMap;
+			result.setTopThreads(vmInfo.getThreadInfo(topTidArray));
 		} catch (Exception e) {
 			vmInfo.handleJmxFetchDataError(e);
 		}
 		return result;
 	}
 
+	/**
+	 * 最近一次cpu排序的top线程号，无法映射到Java线程时为null
+	 */
+	public long[] getTopTids() {
+		return topTidArray;
+	}
+
 	public ThreadInfo[] getTopThreadInfo() throws IOException {
+		if (topTidArray == null) {
+			return new ThreadInfo[0];
+		}
 		return vmInfo.getThreadInfo(topTidArray, 20);
 	}
 
@@ -177,32 +405,56 @@ public class TopThreadInfo {
 		this.lastThreadMemoryTotalBytes.clear();
 	}
 
-	public static class TopCpuResult {
-		public ThreadInfo[] threadInfos;
+	/**
+	 * 繁忙线程的显示信息，数组下标一一对应，线程在获取信息前已退出时其名称为null
+	 */
+	public static class TopThreadsResult {
+		public long[] topTids = new long[0];
+		public String[] topThreadNames = new String[0];
+		public String[] topThreadStates = new String[0];
+
+		void setTopThreads(ThreadInfo[] threadInfos) {
+			int size = threadInfos.length;
+			topTids = new long[size];
+			topThreadNames = new String[size];
+			topThreadStates = new String[size];
+			for (int i = 0; i < size; i++) {
+				ThreadInfo info = threadInfos[i];
+				if (info != null) {
+					topTids[i] = info.getThreadId();
+					topThreadNames[i] = info.getThreadName();
+					topThreadStates[i] = info.getThreadState().toString();
+				}
+			}
+		}
+	}
+
+	public static class TopCpuResult extends TopThreadsResult {
 		public long activeThreads = 0;
 
 		public long deltaAllActiveThreadCpu = 0;
 		public long deltaAllActiveThreadSysCpu = 0;
 
 		public long deltaAllFreeThreadCpu = 0;
+		// 从/proc获取线程CPU时，GC、JIT等VM线程的CPU
+		public long deltaVmThreadCpu = 0;
 
-		public LongObjectMap<Long> threadCpuTotalTimes;
-		public LongObjectMap<Long> threadCpuDeltaTimes;
-		public LongObjectMap<Long> threadSysCpuTotalTimes;
-		public LongObjectMap<Long> threadSysCpuDeltaTimes;
+		public LongLongHashMap threadCpuTotalTimes;
+		public LongLongHashMap threadCpuDeltaTimes;
+		public LongLongHashMap threadSysCpuTotalTimes;
+		public LongLongHashMap threadSysCpuDeltaTimes;
 
 		public boolean ready = true;
 	}
 
-	public static class TopMemoryResult {
-		public ThreadInfo[] threadInfos;
+	public static class TopMemoryResult extends TopThreadsResult {
 		public long activeThreads = 0;
 
 		public long deltaAllThreadBytes = 0;
 		public long totalAllThreadBytes = 0;
 
-		public LongObjectMap<Long> threadMemoryTotalBytesMap;
-		public LongObjectMap<Long> threadMemoryDeltaBytesMap;
+		public LongLongHashMap threadMemoryTotalBytesMap;
+		public LongLongHashMap threadMemoryDeltaBytesMap;
 
 		public boolean ready = true;
 	}
@@ -29,6 +29,7 @@ public class VJTop {
 
 	private volatile boolean needMoreInput = false;
 	private long sleepStartTime;
+	private long sleepMills;
 
 	public static void main(String[] args) {
 		try {
@@ -41,19 +42,40 @@ public class VJTop {
 				System.exit(0);
 			}
 
-			// 2. create vminfo
-			String pid = OptionAdvanceParser.parsePid(parser, optionSet);
+			// 汇总监控本机所有JVM，不需要PID
+			if (optionSet.has("all")) {
+				runMultiVM(optionSet);
+				return;
+			}
 
-			String jmxHostAndPort = null;
-			if (optionSet.hasArgument("jmxurl")) {
-				jmxHostAndPort = (String) optionSet.valueOf("jmxurl");
+			if (optionSet.has("replay") && optionSet.has("record")) {
+				throw new IllegalArgumentException("--record cannot be used with --replay");
 			}
 
-			VMInfo vminfo = VMInfo.processNewVM(pid, jmxHostAndPort);
-			if (vminfo.state != VMInfoState.ATTACHED) {
-				System.out
-						.println("\n" + Formats.red("ERROR: Could not attach to process, see the solution in README"));
-				return;
+			// 2. create vminfo, 回放时由录制文件构造，不需要PID
+			VMInfo vminfo;
+			RecordingReader replay = null;
+			if (optionSet.hasArgument("replay")) {
+				replay = RecordingReader.open((String) optionSet.valueOf("replay"));
+				vminfo = replay.createVMInfo();
+			} else {
+				String pid = OptionAdvanceParser.parsePid(parser, optionSet);
+
+				String jmxHostAndPort = null;
+				if (optionSet.hasArgument("jmxurl")) {
+					jmxHostAndPort = (String) optionSet.valueOf("jmxurl");
+				}
+
+				if (OptionAdvanceParser.parsePerfSource(optionSet)) {
+					vminfo = VMInfo.processNewPerfVM(pid);
+				} else {
+					vminfo = VMInfo.processNewVM(pid, jmxHostAndPort);
+				}
+				if (vminfo.state != VMInfoState.ATTACHED) {
+					System.out.println(
+							"\n" + Formats.red("ERROR: Could not attach to process, see the solution in README"));
+					return;
+				}
 			}
 
 			// 3. create view
@@ -66,9 +88,12 @@ public class VJTop {
 				width = (Integer) optionSet.valueOf("width");
 			}
 
-			Integer interval = OptionAdvanceParser.parseInterval(optionSet);
+			// 回放默认每秒播放一帧
+			Integer interval = replay != null ? OptionAdvanceParser.parseInterval(optionSet, 1)
+					: OptionAdvanceParser.parseInterval(optionSet);
 
 			VMDetailView view = new VMDetailView(vminfo, format, contentMode, threadInfoMode, width, interval);
+			view.replay = replay;
 
 			if (optionSet.hasArgument("limit")) {
 				Integer limit = (Integer) optionSet.valueOf("limit");
@@ -80,6 +105,171 @@ public class VJTop {
 				view.threadNameFilter = filter;
 			}
 
+			if (optionSet.hasArgument("port")) {
+				MetricsExporter exporter = new MetricsExporter();
+				exporter.start((String) optionSet.valueOf("port"));
+				view.exporter = exporter;
+			}
+
+			if (optionSet.hasArgument("profile")) {
+				if (!vminfo.jmxSupport || vminfo.replay) {
+					throw new IllegalArgumentException("--profile needs the JMX data source");
+				}
+				int hz = StackSampler.DEFAULT_HZ;
+				if (optionSet.hasArgument("profile-hz")) {
+					hz = (Integer) optionSet.valueOf("profile-hz");
+				}
+				final StackSampler sampler = new StackSampler(vminfo, (String) optionSet.valueOf("profile"), hz);
+				sampler.start();
+				Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						sampler.stop();
+						try {
+							sampler.flush();
+						} catch (IOException ignored) {
+						}
+					}
+				}));
+				view.sampler = sampler;
+			}
+
+			if (optionSet.hasArgument("alloc-profile")) {
+				if (!vminfo.jmxSupport || vminfo.replay) {
+					throw new IllegalArgumentException("--alloc-profile needs the JMX data source");
+				}
+				int hz = AllocationSampler.DEFAULT_HZ;
+				if (optionSet.hasArgument("profile-hz")) {
+					hz = (Integer) optionSet.valueOf("profile-hz");
+				}
+				final AllocationSampler allocationSampler = new AllocationSampler(vminfo,
+						(String) optionSet.valueOf("alloc-profile"), hz);
+				allocationSampler.start();
+				Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						allocationSampler.stop();
+						try {
+							allocationSampler.flush();
+						} catch (IOException ignored) {
+						}
+					}
+				}));
+				view.allocationSampler = allocationSampler;
+			}
+
+			if (optionSet.hasArgument("record")) {
+				final RecordingWriter recorder = new RecordingWriter((String) optionSet.valueOf("record"));
+				Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							recorder.close();
+						} catch (IOException ignored) {
+						}
+					}
+				}));
+				view.recorder = recorder;
+			}
+
+			if (optionSet.hasArgument("budget")) {
+				if (vminfo.replay) {
+					throw new IllegalArgumentException("--budget cannot be used with --replay");
+				}
+				view.scheduler = new AdaptiveScheduler(vminfo, (Double) optionSet.valueOf("budget"));
+			}
+			view.isDebugCost = optionSet.has("cost");
+
+			// GC停顿分布默认开启，只读取映射的PerfData，对目标JVM没有消耗，随JVM信息在控制台与text格式中显示
+			int gcSampleMills = GcPauseSampler.DEFAULT_PERIOD_MILLS;
+			if (optionSet.hasArgument("gc-sample")) {
+				gcSampleMills = (Integer) optionSet.valueOf("gc-sample");
+			}
+			if (gcSampleMills > 0 && vminfo.getPerfData() != null && !format.record
+					&& (contentMode == ContentMode.all || contentMode == ContentMode.jvm)) {
+				GcPauseSampler gcPauseSampler = new GcPauseSampler(vminfo.getPerfData(), gcSampleMills);
+				gcPauseSampler.start();
+				view.gcPauseSampler = gcPauseSampler;
+			}
+
+			if (contentMode == ContentMode.safepoint) {
+				if (vminfo.getPerfData() == null || format.record) {
+					throw new IllegalArgumentException(
+							"safepoint content needs PerfData of the target JVM and console or text output");
+				}
+				SafepointSampler safepointSampler = new SafepointSampler(vminfo, vminfo.getPerfData(),
+						SafepointSampler.DEFAULT_PERIOD_MILLS);
+				safepointSampler.start();
+				view.safepointSampler = safepointSampler;
+			}
+
+			if (contentMode == ContentMode.jit) {
+				if (vminfo.getPerfData() == null || format.record) {
+					throw new IllegalArgumentException(
+							"jit content needs PerfData of the target JVM and console or text output");
+				}
+				view.jitMonitor = new JitMonitor(vminfo, vminfo.getPerfData());
+			}
+
+			if (contentMode == ContentMode.classes) {
+				if (vminfo.replay || format.record) {
+					throw new IllegalArgumentException("classes content needs a live JVM and console or text output");
+				}
+				view.classLoaderTracker = new ClassLoaderTracker(vminfo);
+			}
+
+			// 死锁与锁等待链检查默认开启，perf数据源与回放时没有JMX
+			int lockCheckSeconds = DeadlockDetector.DEFAULT_CHECK_SECONDS;
+			if (optionSet.hasArgument("lock-check")) {
+				lockCheckSeconds = (Integer) optionSet.valueOf("lock-check");
+			}
+			if (lockCheckSeconds > 0 && vminfo.jmxSupport && !vminfo.replay) {
+				view.deadlockDetector = new DeadlockDetector(vminfo, lockCheckSeconds);
+			}
+
+			// 目标JVM开启NMT时默认每分钟查询一次native内存汇总
+			int nmtSeconds = NativeMemoryTracker.DEFAULT_POLL_SECONDS;
+			if (optionSet.hasArgument("nmt")) {
+				nmtSeconds = (Integer) optionSet.valueOf("nmt");
+			}
+			if (nmtSeconds > 0 && vminfo.jmxSupport && !vminfo.replay && !format.record
+					&& (contentMode == ContentMode.all || contentMode == ContentMode.jvm)
+					&& NativeMemoryTracker.isEnabled(vminfo.vmArgs)) {
+				view.nativeMemoryTracker = new NativeMemoryTracker(vminfo, nmtSeconds);
+			}
+
+			// 指标走势默认关闭，不改变默认的输出，每个指标只占固定大小的环形缓冲
+			int trendSize = 0;
+			if (optionSet.hasArgument("trend")) {
+				trendSize = (Integer) optionSet.valueOf("trend");
+			}
+			if (trendSize > 0 && !vminfo.replay && !format.record
+					&& (contentMode == ContentMode.all || contentMode == ContentMode.jvm)) {
+				vminfo.enableHistory(trendSize);
+				view.showTrend = true;
+			}
+
+			if (optionSet.hasArgument("capture")) {
+				if (vminfo.replay || contentMode == ContentMode.thread || contentMode == ContentMode.safepoint
+						|| contentMode == ContentMode.jit || contentMode == ContentMode.classes) {
+					throw new IllegalArgumentException("--capture needs a live JVM and all or jvm content");
+				}
+				int redIntervals = EvidenceCapture.DEFAULT_RED_INTERVALS;
+				if (optionSet.hasArgument("capture-intervals")) {
+					redIntervals = (Integer) optionSet.valueOf("capture-intervals");
+				}
+				int cooldownSeconds = EvidenceCapture.DEFAULT_COOLDOWN_SECONDS;
+				if (optionSet.hasArgument("capture-cooldown")) {
+					cooldownSeconds = (Integer) optionSet.valueOf("capture-cooldown");
+				}
+				// 取证文件中需要最近的指标走势，只用于取证时不显示
+				if (vminfo.history == null) {
+					vminfo.enableHistory(VMInfo.History.DEFAULT_SIZE);
+				}
+				view.evidenceCapture = new EvidenceCapture(view, (String) optionSet.valueOf("capture"), redIntervals,
+						cooldownSeconds, optionSet.has("capture-histogram"));
+			}
+
 			// 4. create main application
 			VJTop app = new VJTop();
 			app.mainThread = Thread.currentThread();
@@ -92,7 +282,7 @@ public class VJTop {
 			}
 
 			// 5. console/cleanConsole mode start thread to get user input
-			if (format != OutputFormat.text) {
+			if (format != OutputFormat.text && !format.record) {
 				InteractiveTask task = new InteractiveTask(app);
 				// 前台运行，接受用户输入时才启动交互进程
 				if (task.inputEnabled()) {
@@ -109,14 +299,7 @@ public class VJTop {
 			}
 
 			// 6. cleanConsole/text mode, 屏蔽ansi码
-			if (!format.ansi) {
-				Formats.disableAnsi();
-				if (format == OutputFormat.cleanConsole) {
-					Formats.setCleanClearTerminal();
-				} else {
-					Formats.setTextClearTerminal();
-				}
-			}
+			setupAnsi(format);
 
 			// 7. run app
 			app.run(view);
@@ -126,15 +309,81 @@ public class VJTop {
 		}
 	}
 
+	private static void setupAnsi(OutputFormat format) {
+		if (!format.ansi) {
+			Formats.disableAnsi();
+			if (format == OutputFormat.cleanConsole) {
+				Formats.setCleanClearTerminal();
+			} else if (format.record) {
+				Formats.setNoClearTerminal();
+			} else {
+				Formats.setTextClearTerminal();
+			}
+		}
+	}
+
+	/**
+	 * 无交互的多JVM汇总模式，只使用PerfData与/proc数据源
+	 */
+	private static void runMultiVM(OptionSet optionSet) throws Exception {
+		OutputFormat format = OptionAdvanceParser.parseOutputFormat(optionSet);
+		if (format.record) {
+			throw new IllegalArgumentException("jsonl/csv output is not supported with --all");
+		}
+		// 后台运行，输出重定向到文件时，转为没有ansi码的干净模式
+		if (format == OutputFormat.console && System.console() == null) {
+			format = OutputFormat.cleanConsole;
+		}
+		setupAnsi(format);
+
+		Integer width = null;
+		if (optionSet.hasArgument("width")) {
+			width = (Integer) optionSet.valueOf("width");
+		}
+		int interval = OptionAdvanceParser.parseInterval(optionSet);
+		int maxIterations = -1;
+		if (optionSet.hasArgument("n")) {
+			maxIterations = (Integer) optionSet.valueOf("n");
+		}
+
+		MultiVMView multiView = new MultiVMView(width);
+
+		System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false));
+
+		int iterations = 0;
+		while (true) {
+			multiView.printView();
+			System.out.flush();
+
+			if (maxIterations > 0 && iterations >= maxIterations) {
+				break;
+			}
+
+			// 第一次最多只等待3秒
+			int sleepSeconds = (iterations == 0) ? Math.min(3, interval) : interval;
+			iterations++;
+			Utils.sleep(sleepSeconds * 1000L);
+		}
+		System.out.println("");
+		System.out.flush();
+	}
+
 	private void run(VMDetailView view) throws Exception {
 		try {
 			// System.out 设为Buffered，需要使用System.out.flush刷新
 			System.setOut(new PrintStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)), false));
 
+			AdaptiveScheduler scheduler = view.scheduler;
 			int iterations = 0;
 			while (!view.shouldExit()) {
 				waitForInput();
+				if (scheduler != null) {
+					scheduler.beginIteration();
+				}
 				view.printView();
+				if (scheduler != null) {
+					scheduler.endIteration();
+				}
 				if (view.shouldExit()) {
 					break;
 				}
@@ -148,9 +397,15 @@ public class VJTop {
 				// 第一次最多只等待3秒
 				int sleepSeconds = (iterations == 0) ? Math.min(3, interval) : interval;
 
+				sleepMills = sleepSeconds * 1000L;
+				// 按vjtop自身消耗延长休眠
+				if (scheduler != null) {
+					sleepMills = scheduler.nextSleepMills(sleepMills);
+				}
+
 				iterations++;
 				sleepStartTime = System.currentTimeMillis();
-				Utils.sleep(sleepSeconds * 1000L);
+				Utils.sleep(sleepMills);
 			}
 			System.out.println("");
 			System.out.flush();
@@ -167,6 +422,8 @@ public class VJTop {
 		try {
 			System.out.println("vjtop " + VERSION + " - java monitoring for the command-line");
 			System.out.println("Usage: vjtop.sh [options...] <PID>");
+			System.out.println("       vjtop.sh --all [options...]");
+			System.out.println("       vjtop.sh --replay <FILE> [options...]");
 			System.out.println("");
 			parser.printHelpOn(System.out);
 		} catch (IOException ignored) {
@@ -198,7 +455,7 @@ public class VJTop {
 	}
 
 	public int nextFlushTime() {
-		return Math.max(0, interval - (int) ((System.currentTimeMillis() - sleepStartTime) / 1000));
+		return Math.max(0, (int) ((sleepMills - (System.currentTimeMillis() - sleepStartTime)) / 1000));
 	}
 
 	public void updateInterval(int interval) {
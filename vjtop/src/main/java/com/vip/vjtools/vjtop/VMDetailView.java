@@ -1,20 +1,48 @@
 package com.vip.vjtools.vjtop;
 
 import java.io.IOException;
+import java.io.PrintStream;
 import java.lang.management.ManagementFactory;
-import java.lang.management.ThreadInfo;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import com.sun.management.OperatingSystemMXBean;
 import com.vip.vjtools.vjtop.TopThreadInfo.TopCpuResult;
+import com.vip.vjtools.vjtop.AllocationSampler.AllocationResult;
+import com.vip.vjtools.vjtop.AllocationSampler.SiteStat;
+import com.vip.vjtools.vjtop.TopContention.ContentionEntry;
+import com.vip.vjtools.vjtop.TopContention.LockStat;
+import com.vip.vjtools.vjtop.TopContention.TopContentionResult;
+import com.vip.vjtools.vjtop.TopThreadChurn.ChurnStat;
+import com.vip.vjtools.vjtop.TopThreadChurn.TopChurnResult;
+import com.vip.vjtools.vjtop.TopThreadGroups.GroupStat;
+import com.vip.vjtools.vjtop.TopThreadGroups.TopGroupResult;
 import com.vip.vjtools.vjtop.TopThreadInfo.TopMemoryResult;
+import com.vip.vjtools.vjtop.WarningRule.LongWarning;
+import com.vip.vjtools.vjtop.data.jmx.JmxClient;
 import com.vip.vjtools.vjtop.util.Formats;
+import com.vip.vjtools.vjtop.util.LongRingBuffer;
 import com.vip.vjtools.vjtop.util.Utils;
 
 @SuppressWarnings("restriction")
 public class VMDetailView {
 	private static final int DEFAULT_WIDTH = 100;
 	private static final int MIN_WIDTH = 80;
+	// 控制台中显示的NMT分类数
+	private static final int NATIVE_CATEGORY_LIMIT = 6;
+	// 走势图中数值的格式
+	private static final int TREND_PERCENT = 0;
+	private static final int TREND_SIZE = 1;
+	private static final int TREND_RATE = 2;
+	private static final int TREND_MILLS = 3;
+	private static final int TREND_COUNT = 4;
+	// 按当前增长速度用满元空间的时间少于10分钟时标红，少于1小时时标黄
+	private static final long METASPACE_FULL_RED_MILLS = 10 * 60 * 1000L;
+	private static final long METASPACE_FULL_YELLOW_MILLS = 60 * 60 * 1000L;
 
 	public ThreadInfoMode threadInfoMode;
 	private ContentMode contentMode;
@@ -28,11 +56,43 @@ public class VMDetailView {
 
 	public VMInfo vmInfo;
 	public TopThreadInfo topThreadInfo;
+	private TopThreadGroups topThreadGroups;
+	private TopContention topContention;
+	private TopThreadChurn topThreadChurn;
 	public ThreadPrinter threadPrinter;
 	private WarningRule warning;
-
-	// 纪录vjtop进程本身的消耗
-	private boolean isDebugCost = false;
+	// jsonl/csv格式时输出记录
+	private RecordPrinter recordPrinter;
+	// 开启HTTP指标端口时，每次刷新后渲染指标
+	public MetricsExporter exporter;
+	// 录制时每次刷新后写入一帧，回放时数据来自录制文件
+	public RecordingWriter recorder;
+	public RecordingReader replay;
+	// 对top cpu线程做栈采样
+	public StackSampler sampler;
+	public AllocationSampler allocationSampler;
+	public AdaptiveScheduler scheduler;
+	// 定期检查死锁与锁等待链
+	public DeadlockDetector deadlockDetector;
+	// 高频读取PerfData得到GC停顿的分布
+	public GcPauseSampler gcPauseSampler;
+	// 安全点视图的亚秒级采样
+	public SafepointSampler safepointSampler;
+	// JIT视图的编译计数器与编译线程CPU
+	public JitMonitor jitMonitor;
+	// 类加载视图与按需的ClassLoader快照
+	public ClassLoaderTracker classLoaderTracker;
+	// 目标JVM开启NMT时定期查询native内存
+	public NativeMemoryTracker nativeMemoryTracker;
+	// 指标持续红色时自动取证
+	public EvidenceCapture evidenceCapture;
+	// 显示指标走势，取证单独开启走势纪录时不显示
+	public boolean showTrend = false;
+	private TopCpuResult lastCpuResult;
+	private TopMemoryResult lastMemoryResult;
+
+	// 纪录vjtop进程本身与JMX调用的消耗
+	public boolean isDebugCost = false;
 	private long lastCpu = 0;
 
 	private boolean shouldExit = false;
@@ -53,6 +113,10 @@ public class VMDetailView {
 		this.interval = interval;
 		setWidth(width);
 
+		if (format.record) {
+			this.recordPrinter = new RecordPrinter(format == OutputFormat.jsonl);
+		}
+
 		if (contentMode == ContentMode.all || contentMode == ContentMode.thread) {
 			vmInfo.initThreadInfoAbility();
 		}
@@ -71,44 +135,115 @@ public class VMDetailView {
 					.getProcessCpuTime();
 		}
 
-		vmInfo.update(contentMode == ContentMode.all || contentMode == ContentMode.jvm);
+		if (replay != null) {
+			replay.advance();
+			if (replay.threadMode != null) {
+				threadInfoMode = replay.threadMode;
+			}
+		}
+
+		// JIT视图自行读取代码缓存，不需要完整的JVM信息
+		vmInfo.update(contentMode != ContentMode.thread && contentMode != ContentMode.jit);
 
 		if (!checkState()) {
 			return;
 		}
+		lastCpuResult = null;
+		lastMemoryResult = null;
+
+		if (evidenceCapture != null) {
+			evidenceCapture.check();
+		}
+
+		if (replay != null && !format.record && format != OutputFormat.text) {
+			printReplayStatus();
+		}
+
+		if (format.record) {
+			recordPrinter.beginInterval();
+		}
 
 		// 打印进程级别内容
 		if (contentMode == ContentMode.all || contentMode == ContentMode.jvm) {
-			if (format == OutputFormat.text) {
+			if (format.record) {
+				recordPrinter.printJvmRecord(vmInfo);
+			} else if (format == OutputFormat.text) {
 				printJvmInfoAsText();
 			} else {
 				printJvmInfoAsConsole();
 			}
+		} else if (contentMode == ContentMode.safepoint) {
+			printSafepointView(format != OutputFormat.text);
+		} else if (contentMode == ContentMode.jit) {
+			printJitView(format != OutputFormat.text);
+		} else if (contentMode == ContentMode.classes) {
+			printClassView(format != OutputFormat.text);
 		}
 
 		// JMX更新失败，不打印后续一定需要JMX获取的数据
 		if (!vmInfo.isJmxStateOk()) {
 			printJmxError();
+			flushRecords();
+			exportMetrics();
+			recordFrame();
 			return;
 		}
 
+		printLockChains(format != OutputFormat.text);
+
+		if (!format.record && (contentMode == ContentMode.all || contentMode == ContentMode.jvm)) {
+			printNativeMemory(format != OutputFormat.text);
+		}
+
+		// 内存分配采样只在内存模式下进行，其他模式下暂停
+		boolean showThreads = contentMode == ContentMode.all || contentMode == ContentMode.thread;
+		if (allocationSampler != null && !(showThreads
+				&& (threadInfoMode == ThreadInfoMode.memory || threadInfoMode == ThreadInfoMode.totalmemory))) {
+			allocationSampler.pause();
+		}
+		// 栈采样只针对top cpu线程，其他模式下暂停
+		if (sampler != null && !(showThreads && threadInfoMode.isCpuMode)) {
+			sampler.pause();
+		}
+		if (topThreadChurn != null && !(showThreads && threadInfoMode == ThreadInfoMode.churn)) {
+			topThreadChurn.pause();
+		}
+
 		// 打印繁忙线程级别内容
-		if (contentMode == ContentMode.all || contentMode == ContentMode.thread) {
+		if (showThreads) {
 			try {
-				if (threadInfoMode.isCpuMode) {
+				if (threadInfoMode == ThreadInfoMode.group) {
+					printTopThreadGroups(format != OutputFormat.text);
+				} else if (threadInfoMode == ThreadInfoMode.contention) {
+					printTopContention(format != OutputFormat.text);
+				} else if (threadInfoMode == ThreadInfoMode.churn) {
+					printTopChurn(format != OutputFormat.text);
+				} else if (threadInfoMode.isCpuMode) {
 					printTopCpuThreads(threadInfoMode, format != OutputFormat.text);
 				} else {
 					printTopMemoryThreads(threadInfoMode, format != OutputFormat.text);
 				}
 			} catch (Exception e) {
-				System.out.println("");
+				messageStream().println("");
 				e.printStackTrace();
-				System.out.println(Formats.red("ERROR: Exception happen when fetch thread information via JMX"));
+				messageStream().println(Formats.red("ERROR: Exception happen when fetch thread information via JMX"));
 			}
 		}
 
+		flushRecords();
+		exportMetrics();
+		recordFrame();
+		flushSamples();
+
+		if (!format.record) {
+			if (isDebugCost) {
+				printJmxCost(format != OutputFormat.text);
+			}
+			printSchedulerStatus(format != OutputFormat.text);
+		}
+
 		// 打印vjtop自身消耗
-		if (isDebugCost) {
+		if (isDebugCost && !format.record) {
 			printIterationCost(iterationStartTime, iterationStartCpu);
 		}
 
@@ -117,9 +252,69 @@ public class VMDetailView {
 		}
 	}
 
+	/**
+	 * jsonl/csv格式时错误信息输出到stderr，不破坏stdout中的记录
+	 */
+	private PrintStream messageStream() {
+		return format.record ? System.err : System.out;
+	}
+
+	private void exportMetrics() {
+		if (exporter != null) {
+			exporter.render(vmInfo, lastCpuResult);
+		}
+	}
+
+	private void recordFrame() {
+		if (recorder != null) {
+			try {
+				recorder.write(vmInfo, threadInfoMode, lastCpuResult, lastMemoryResult);
+			} catch (IOException e) {
+				System.err.println(Formats.red("ERROR: Could not write recording, stop recording: " + e.getMessage()));
+				recorder = null;
+			}
+		}
+	}
+
+	private void flushSamples() {
+		if (sampler != null) {
+			try {
+				sampler.flush();
+			} catch (IOException e) {
+				messageStream().println(Formats.red("ERROR: Could not write stack samples: " + e.getMessage()));
+			}
+		}
+		if (allocationSampler != null) {
+			try {
+				allocationSampler.flush();
+			} catch (IOException e) {
+				messageStream().println(Formats.red("ERROR: Could not write allocation samples: " + e.getMessage()));
+			}
+		}
+	}
+
+	private void printReplayStatus() {
+		System.out.printf(" REPLAY: frame %d/%d, %s%s%n", replay.currentIndex() + 1, replay.frameCount(),
+				replay.paused ? "paused" : "playing",
+				displayCommandHints ? " (n:next, p:previous, g:goto, r:pause/resume)" : "");
+	}
+
+	/**
+	 * 回放时显示帧的录制时间
+	 */
+	private Date currentTime() {
+		return replay != null ? new Date(replay.currentTime()) : new Date();
+	}
+
+	private void flushRecords() throws IOException {
+		if (format.record) {
+			recordPrinter.flush();
+		}
+	}
+
 	private boolean checkState() {
 		if (vmInfo.state != VMInfo.VMInfoState.ATTACHED && vmInfo.state != VMInfo.VMInfoState.ATTACHED_UPDATE_ERROR) {
-			System.out.println("\n" + Formats.red("ERROR: Could not attach to process, exit now."));
+			messageStream().println("\n" + Formats.red("ERROR: Could not attach to process, exit now."));
 			shoulExit();
 			return false;
 		}
@@ -127,7 +322,7 @@ public class VMDetailView {
 	}
 
 	private void printJvmInfoAsConsole() {
-		System.out.printf(" %8tT - PID: %s JVM: %s USER: %s UPTIME: %s%n", new Date(), vmInfo.pid, vmInfo.jvmVersion,
+		System.out.printf(" %8tT - PID: %s JVM: %s USER: %s UPTIME: %s%n", currentTime(), vmInfo.pid, vmInfo.jvmVersion,
 				vmInfo.osUser, Formats.toTimeUnit(vmInfo.upTimeMills.current));
 
 		String[] cpuLoadAnsi = Formats.colorAnsi(vmInfo.cpuLoad, warning.cpu);
@@ -136,10 +331,23 @@ public class VMDetailView {
 				vmInfo.cpuLoad, cpuLoadAnsi[1], vmInfo.processors);
 
 		if (vmInfo.isLinux) {
+			// 容器中以cgroup配额而非核数衡量CPU，限流是容器中隐藏的延时来源
+			if (vmInfo.cgroupSupport && vmInfo.cpuLimit > 0) {
+				String[] limitLoadAnsi = Formats.colorAnsi(vmInfo.cpuLimitLoad, warning.cpu);
+				System.out.printf(", %s%.2f%%%s of %.1f cpu limit, %sms throttled(%d/%d periods)", limitLoadAnsi[0],
+						vmInfo.cpuLimitLoad, limitLoadAnsi[1], vmInfo.cpuLimit,
+						Formats.toColor(vmInfo.cpuThrottledNanos.delta / Utils.NANOS_TO_MILLS, warning.cpuThrottledTime),
+						vmInfo.cpuThrottled.delta, vmInfo.cpuPeriods.delta);
+			}
 			System.out.printf(", %s thread%n", Formats.toColor(vmInfo.osThreads, warning.thread));
 
-			System.out.printf(" MEMORY: %s rss, %s peak, %s swap |", Formats.toMB(vmInfo.rss),
+			System.out.printf(" MEMORY: %s rss, %s peak, %s swap", Formats.toMB(vmInfo.rss),
 					Formats.toMB(vmInfo.peakRss), Formats.toMBWithColor(vmInfo.swap, warning.swap));
+			if (vmInfo.cgroupSupport && vmInfo.memoryUsage != -1) {
+				System.out.printf(", %s/%s cgroup", Formats.toMBWithColor(vmInfo.memoryUsage, warning.containerMemory),
+						vmInfo.memoryLimit == -1 ? "unlimited" : Formats.toMB(vmInfo.memoryLimit));
+			}
+			System.out.print(" |");
 
 			if (vmInfo.ioDataSupport) {
 				System.out.printf(" DISK: %sB read, %sB write",
@@ -157,8 +365,11 @@ public class VMDetailView {
 				Formats.toColor(vmInfo.classLoaded.current, warning.loadClass), vmInfo.classUnLoaded,
 				Formats.toColor(vmInfo.classLoaded.delta, warning.newClass));
 
-		System.out.printf(" HEAP: %s eden, %s sur, %s old%n", Formats.formatUsage(vmInfo.eden),
-				Formats.formatUsage(vmInfo.sur), Formats.formatUsageWithColor(vmInfo.old, warning.old));
+		System.out.printf(" HEAP: %s eden, %s sur, %s old | RATE: %s/s alloc, %s/s promote%n",
+				Formats.formatUsage(vmInfo.eden), Formats.formatUsage(vmInfo.sur),
+				Formats.formatUsageWithColor(vmInfo.old, warning.old),
+				formatHeapRate(vmInfo.allocRate, warning.allocRate),
+				formatHeapRate(vmInfo.promoteRate, warning.promoteRate));
 
 		System.out.printf(" NON-HEAP: %s %s, %s codeCache", Formats.formatUsageWithColor(vmInfo.perm, warning.perm),
 				vmInfo.permGenName, Formats.formatUsageWithColor(vmInfo.codeCache, warning.codeCache));
@@ -172,6 +383,14 @@ public class VMDetailView {
 				Formats.toMB(vmInfo.direct.max), Formats.toMB(vmInfo.map.used), Formats.toMB(vmInfo.map.committed),
 				vmInfo.map.max, Formats.toMB(vmInfo.threadStackSize * vmInfo.threadActive));
 
+		// perf数据源没有direct/map/codeCache，无法拆分
+		if (vmInfo.isLinux && vmInfo.jmxSupport) {
+			System.out.printf(" RSS-SPLIT: %s rss = %s heap + %s non-heap + %s direct + %s map + %s threadStack %s other%n",
+					Formats.toMB(vmInfo.rss), Formats.toMB(heapCommitted()), Formats.toMB(nonHeapCommitted()),
+					Formats.toMB(vmInfo.direct.committed), Formats.toMB(vmInfo.map.committed),
+					Formats.toMB(vmInfo.threadStackSize * vmInfo.threadActive), toSignedMB(rssOther()));
+		}
+
 		long ygcCount = vmInfo.ygcCount.delta;
 		long ygcTime = vmInfo.ygcTimeMills.delta;
 		long avgYgcTime = ygcCount == 0 ? 0 : ygcTime / ygcCount;
@@ -187,10 +406,124 @@ public class VMDetailView {
 					vmInfo.safepointSyncTimeMills.delta);
 		}
 		System.out.println("");
+
+		if (gcPauseSampler != null) {
+			System.out.print(" GC-PAUSE(1m):");
+			printPauseStats("ygc", gcPauseSampler.young);
+			if (gcPauseSampler.full != null) {
+				System.out.print(" |");
+				printPauseStats("fgc", gcPauseSampler.full);
+			}
+			System.out.println();
+		}
+
+		if (showTrend && !vmInfo.history.cpu.isEmpty()) {
+			printTrend(vmInfo.history);
+		}
+
+		if (evidenceCapture != null) {
+			printCaptureStatus(evidenceCapture);
+		}
+	}
+
+	/**
+	 * 未发生过取证时不占用行
+	 */
+	private void printCaptureStatus(EvidenceCapture capture) {
+		if (capture.lastError != null) {
+			System.out.printf(" CAPTURE: %s, %d captured, %d suppressed%n", Formats.red("failed: " + capture.lastError),
+					capture.captureCount, capture.suppressedCount);
+		} else if (capture.lastFile != null) {
+			System.out.printf(" CAPTURE: %s (%s), %d captured, %d suppressed%n", Formats.yellow(capture.lastFile),
+					capture.lastReason, capture.captureCount, capture.suppressedCount);
+		} else if (capture.suppressedCount > 0) {
+			System.out.printf(" CAPTURE: %d suppressed%n", capture.suppressedCount);
+		}
+	}
+
+	/**
+	 * 各指标最近若干个刷新周期的走势图，min/avg/max与走势图覆盖相同的区间
+	 */
+	private void printTrend(VMInfo.History history) {
+		int sparkWidth = Math.min(history.cpu.capacity(), this.width - 42);
+		int count = Math.min(sparkWidth, history.cpu.size());
+		String titleFormat = "%n %7s  %-" + sparkWidth + "s %9s %9s %9s%n";
+		System.out.printf(titleFormat, "TREND", "last " + count + " intervals", "MIN", "AVG", "MAX");
+
+		printTrendLine("cpu", history.cpu, sparkWidth, TREND_PERCENT);
+		printTrendLine("rss", history.rss, sparkWidth, TREND_SIZE);
+		printTrendLine("ygc", history.ygcTime, sparkWidth, TREND_MILLS);
+		printTrendLine("alloc", history.allocRate, sparkWidth, TREND_RATE);
+		printTrendLine("thread", history.threads, sparkWidth, TREND_COUNT);
+	}
+
+	private void printTrendLine(String label, LongRingBuffer buffer, int sparkWidth, int unit) {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		int count = Math.min(sparkWidth, buffer.size());
+		System.out.printf(" %7s: %-" + sparkWidth + "s %9s %9s %9s%n", label, Formats.sparkline(buffer, sparkWidth),
+				formatTrendValue(buffer.min(count), unit), formatTrendValue(buffer.avg(count), unit),
+				formatTrendValue(buffer.max(count), unit));
+	}
+
+	private static String formatTrendValue(long value, int unit) {
+		switch (unit) {
+			case TREND_PERCENT:
+				return String.format("%.2f%%", value / 100d);
+			case TREND_SIZE:
+				return Formats.toMB(value);
+			case TREND_RATE:
+				return Formats.toSizeUnit(value) + "/s";
+			case TREND_MILLS:
+				return value + "ms";
+			default:
+				return String.valueOf(value);
+		}
+	}
+
+	private void printTrendAsText(VMInfo.History history) {
+		if (!history.cpu.isEmpty()) {
+			int count = history.cpu.size();
+			System.out.printf("trend.cpu.min:%.2f%ntrend.cpu.avg:%.2f%ntrend.cpu.max:%.2f%n",
+					history.cpu.min(count) / 100d, history.cpu.avg(count) / 100d, history.cpu.max(count) / 100d);
+		}
+		printTrendAsText("rss", history.rss);
+		printTrendAsText("ygc.time", history.ygcTime);
+		printTrendAsText("alloc.rate", history.allocRate);
+		printTrendAsText("thread.live", history.threads);
+	}
+
+	private void printTrendAsText(String label, LongRingBuffer buffer) {
+		if (buffer.isEmpty()) {
+			return;
+		}
+		int count = buffer.size();
+		System.out.printf("trend.%s.min:%d%ntrend.%s.avg:%d%ntrend.%s.max:%d%n", label, buffer.min(count), label,
+				buffer.avg(count), label, buffer.max(count));
+	}
+
+	private void printPauseStats(String label, GcPauseSampler.CollectorPauses pauses) {
+		if (pauses == null) {
+			return;
+		}
+		GcPauseSampler.PauseStats stats = pauses.windowStats();
+		System.out.printf(" %d %s", stats.count, label);
+		if (stats.count > 0) {
+			System.out.printf(", p50=%.1fms, p99=%.1fms, max=%.1fms", stats.p50 / 1000d, stats.p99 / 1000d,
+					stats.max / 1000d);
+		}
+	}
+
+	private static String formatHeapRate(VMInfo.SmoothedRate rate, LongWarning warning) {
+		if (rate.ratePerSecond < 0) {
+			return "NaN";
+		}
+		return Formats.toSizeUnitWithColor(rate.ratePerSecond, warning);
 	}
 
 	private void printJvmInfoAsText() {
-		System.out.printf("time:%8tT%npid:%s%njvm:%s%nuser:%s%nuptime:%s%n", new Date(), vmInfo.pid, vmInfo.jvmVersion,
+		System.out.printf("time:%8tT%npid:%s%njvm:%s%nuser:%s%nuptime:%s%n", currentTime(), vmInfo.pid, vmInfo.jvmVersion,
 				vmInfo.osUser, vmInfo.upTimeMills.current);
 
 		System.out.printf("process.cpu.core:%.2f%nprocess.cpu.server:%.2f%nserver.core:%d%n", vmInfo.singleCoreCpuLoad,
@@ -203,6 +536,15 @@ public class VMDetailView {
 				System.out.printf("disk.read:%d%ndisk.write:%d%n", vmInfo.readBytes.ratePerSecond,
 						vmInfo.writeBytes.ratePerSecond, warning.io);
 			}
+
+			if (vmInfo.cgroupSupport) {
+				System.out.printf(
+						"cgroup.cpu.limit:%.2f%ncgroup.cpu.used:%.2f%ncgroup.cpu.periods:%d%ncgroup.cpu.throttled:%d%ncgroup.cpu.throttledTime:%d%n",
+						vmInfo.cpuLimit, vmInfo.cpuLimitLoad, vmInfo.cpuPeriods.delta, vmInfo.cpuThrottled.delta,
+						vmInfo.cpuThrottledNanos.delta / Utils.NANOS_TO_MILLS);
+				System.out.printf("cgroup.memory.limit:%d%ncgroup.memory.use:%d%n", vmInfo.memoryLimit,
+						vmInfo.memoryUsage);
+			}
 		}
 
 		System.out.printf("thread.live:%d%nthread.daemon:%d%nthread.peak:%d%nthread.new:%d%n", vmInfo.threadActive,
@@ -230,6 +572,14 @@ public class VMDetailView {
 				vmInfo.direct.used, vmInfo.direct.committed, vmInfo.direct.max, vmInfo.map.used, vmInfo.map.committed,
 				vmInfo.map.max, vmInfo.threadStackSize * vmInfo.threadActive);
 
+		if (vmInfo.isLinux && vmInfo.jmxSupport) {
+			System.out.printf("rss.heap:%d%nrss.nonHeap:%d%nrss.other:%d%n", heapCommitted(), nonHeapCommitted(),
+					rssOther());
+		}
+
+		System.out.printf("alloc.rate:%d%npromote.rate:%d%n", vmInfo.allocRate.ratePerSecond,
+				vmInfo.promoteRate.ratePerSecond);
+
 		long ygcCount = vmInfo.ygcCount.delta;
 		long ygcTime = vmInfo.ygcTimeMills.delta;
 		long avgYgcTime = ygcCount == 0 ? 0 : ygcTime / ygcCount;
@@ -241,6 +591,493 @@ public class VMDetailView {
 			System.out.printf("safePoint.count:%d%nsafePoint.time:%d%nsafePoint.syncTime:%d%n",
 					vmInfo.safepointCount.delta, vmInfo.safepointTimeMills.delta, vmInfo.safepointSyncTimeMills.delta);
 		}
+
+		if (gcPauseSampler != null) {
+			printPauseStatsAsText("ygc", gcPauseSampler.young);
+			printPauseStatsAsText("fgc", gcPauseSampler.full);
+		}
+
+		if (showTrend) {
+			printTrendAsText(vmInfo.history);
+		}
+
+		if (evidenceCapture != null) {
+			System.out.printf("capture.count:%d%ncapture.suppressed:%d%n", evidenceCapture.captureCount,
+					evidenceCapture.suppressedCount);
+		}
+	}
+
+	private void printPauseStatsAsText(String label, GcPauseSampler.CollectorPauses pauses) {
+		if (pauses == null) {
+			return;
+		}
+		GcPauseSampler.PauseStats stats = pauses.windowStats();
+		System.out.printf("%s.pause.count:%d%n%s.pause.p50:%.2f%n%s.pause.p99:%.2f%n%s.pause.max:%.2f%n", label,
+				stats.count, label, stats.p50 / 1000d, label, stats.p99 / 1000d, label, stats.max / 1000d);
+	}
+
+	private long heapCommitted() {
+		return vmInfo.eden.committed + vmInfo.sur.committed + vmInfo.old.committed;
+	}
+
+	/**
+	 * JDK8开始metaspace的committed已包含ccs
+	 */
+	private long nonHeapCommitted() {
+		return vmInfo.perm.committed + vmInfo.codeCache.committed;
+	}
+
+	/**
+	 * RSS中无法由堆，非堆，direct，map与线程栈解释的部分，即JVM自身与JNI的native内存，堆未touch的部分会使其为负数
+	 */
+	private long rssOther() {
+		return vmInfo.rss - heapCommitted() - nonHeapCommitted() - vmInfo.direct.committed - vmInfo.map.committed
+				- vmInfo.threadStackSize * vmInfo.threadActive;
+	}
+
+	private static String toSignedMB(long bytes) {
+		return bytes < 0 ? "-" + Formats.toMB(-bytes) : "+" + Formats.toMB(bytes);
+	}
+
+	/**
+	 * NMT按查询间隔节流，两次查询之间沿用上次的结果。RSS与NMT committed的差值为NMT不跟踪的部分，如malloc碎片，JNI库
+	 */
+	private void printNativeMemory(boolean console) {
+		if (nativeMemoryTracker == null) {
+			return;
+		}
+
+		try {
+			nativeMemoryTracker.poll();
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+			return;
+		}
+
+		List<NativeMemoryTracker.Category> categories = nativeMemoryTracker.categories;
+		long untracked = vmInfo.rss - nativeMemoryTracker.totalCommitted;
+
+		if (!console) {
+			System.out.printf("nmt.reserved:%d%nnmt.committed:%d%nnmt.delta:%d%n", nativeMemoryTracker.totalReserved,
+					nativeMemoryTracker.totalCommitted, nativeMemoryTracker.totalDelta);
+			if (vmInfo.isLinux) {
+				System.out.printf("nmt.untracked:%d%n", untracked);
+			}
+			for (NativeMemoryTracker.Category category : categories) {
+				System.out.printf("nmt.%s.committed:%d%nnmt.%s.delta:%d%n", category.key(), category.committed,
+						category.key(), category.delta);
+			}
+			return;
+		}
+
+		if (categories.isEmpty()) {
+			System.out.println(" NATIVE(NMT): no summary, NMT may be off in the target JVM");
+			return;
+		}
+
+		System.out.printf(" NATIVE(NMT, %ds ago): %s committed(%s), %s reserved",
+				(System.currentTimeMillis() - nativeMemoryTracker.lastPollTime) / 1000,
+				Formats.toMB(nativeMemoryTracker.totalCommitted), toSignedMB(nativeMemoryTracker.totalDelta),
+				Formats.toMB(nativeMemoryTracker.totalReserved));
+		if (vmInfo.isLinux) {
+			System.out.printf(" | rss - nmt: %s", toSignedMB(untracked));
+		}
+		System.out.println();
+
+		System.out.print(" NATIVE-TOP:");
+		int limit = Math.min(NATIVE_CATEGORY_LIMIT, categories.size());
+		for (int i = 0; i < limit; i++) {
+			NativeMemoryTracker.Category category = categories.get(i);
+			System.out.printf("%s %s %s(%s)", i == 0 ? "" : ",", category.name, Formats.toMB(category.committed),
+					toSignedMB(category.delta));
+		}
+		System.out.println();
+
+		// 增长最多的分类，往往是native内存泄漏的方向
+		List<NativeMemoryTracker.Category> growths = new ArrayList<>();
+		for (NativeMemoryTracker.Category category : categories) {
+			if (category.delta >= Formats.MB_SIZE) {
+				growths.add(category);
+			}
+		}
+		if (!growths.isEmpty()) {
+			Collections.sort(growths, new Comparator<NativeMemoryTracker.Category>() {
+				@Override
+				public int compare(NativeMemoryTracker.Category o1, NativeMemoryTracker.Category o2) {
+					return o1.delta > o2.delta ? -1 : (o1.delta == o2.delta ? 0 : 1);
+				}
+			});
+			System.out.print(" NATIVE-GROWTH:");
+			for (int i = 0; i < Math.min(NATIVE_CATEGORY_LIMIT, growths.size()); i++) {
+				NativeMemoryTracker.Category category = growths.get(i);
+				System.out.printf("%s %s %s", i == 0 ? "" : ",", category.name,
+						Formats.yellow(toSignedMB(category.delta)));
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * 死锁与锁等待链按检查间隔节流，两次检查之间控制台与text格式沿用上次的结果，jsonl/csv只在检查时输出记录
+	 */
+	private void printLockChains(boolean console) throws IOException {
+		if (deadlockDetector == null) {
+			return;
+		}
+
+		boolean checked;
+		try {
+			checked = deadlockDetector.poll();
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+			return;
+		}
+
+		if (format.record) {
+			if (checked) {
+				for (DeadlockDetector.LockChain chain : deadlockDetector.deadlocks) {
+					recordPrinter.printLockRecord(vmInfo, chain);
+				}
+				for (DeadlockDetector.LockChain chain : deadlockDetector.chains) {
+					recordPrinter.printLockRecord(vmInfo, chain);
+				}
+			}
+			return;
+		}
+
+		if (console) {
+			for (DeadlockDetector.LockChain chain : deadlockDetector.deadlocks) {
+				System.out.printf(" %s %d threads: %s%n", Formats.red("DEADLOCK:"), chain.blockedThreads,
+						chain.pathString());
+			}
+			for (DeadlockDetector.LockChain chain : deadlockDetector.chains) {
+				System.out.printf(" %s %d threads blocked behind %s(%d) on %s: %s%n", Formats.yellow("LOCK-CHAIN:"),
+						chain.blockedThreads, chain.rootName, chain.rootTid, chain.lockName, chain.pathString());
+			}
+		} else {
+			int deadlockedThreads = 0;
+			for (DeadlockDetector.LockChain chain : deadlockDetector.deadlocks) {
+				deadlockedThreads += chain.blockedThreads;
+			}
+			int maxBlocked = 0;
+			int maxDepth = 0;
+			for (DeadlockDetector.LockChain chain : deadlockDetector.chains) {
+				maxBlocked = Math.max(maxBlocked, chain.blockedThreads);
+				maxDepth = Math.max(maxDepth, chain.path.size() - 1);
+			}
+			System.out.printf("deadlock.threads:%d%nlockchain.count:%d%nlockchain.blocked:%d%nlockchain.depth:%d%n",
+					deadlockedThreads, deadlockDetector.chains.size(), maxBlocked, maxDepth);
+		}
+	}
+
+	/**
+	 * 安全点视图：本周期安全点的进入耗时(TTSP)与执行耗时的占比，每次安全点的平均与最差停顿，按GC/vjtop自身/其他归因，
+	 * 以及停顿最长的采样间隔
+	 */
+	private void printSafepointView(boolean console) {
+		if (safepointSampler == null) {
+			return;
+		}
+
+		SafepointSampler.IntervalStats stats = safepointSampler.drain();
+		long operationMicros = stats.totalMicros - stats.syncMicros;
+
+		if (!console) {
+			System.out.printf("time:%8tT%npid:%s%nuptime:%s%n", currentTime(), vmInfo.pid, vmInfo.upTimeMills.current);
+			System.out.printf(
+					"safepoint.count:%d%nsafepoint.time:%.2f%nsafepoint.syncTime:%.2f%nsafepoint.operationTime:%.2f%n",
+					stats.count, stats.totalMicros / 1000d, stats.syncMicros / 1000d, operationMicros / 1000d);
+			System.out.printf(
+					"safepoint.avg:%.2f%nsafepoint.worst:%.2f%nsafepoint.worst.syncTime:%.2f%nsafepoint.ttsp.worst:%.2f%nsafepoint.p99:%.2f%n",
+					stats.avgMicros() / 1000d, stats.worstMicros / 1000d, stats.worstSyncMicros / 1000d,
+					stats.worstTtspMicros / 1000d, stats.p99Micros / 1000d);
+			for (SafepointSampler.Cause cause : SafepointSampler.Cause.values()) {
+				System.out.printf("safepoint.%s.count:%d%nsafepoint.%s.time:%.2f%n", cause, stats.causeCounts[cause.ordinal()],
+						cause, stats.causeMicros[cause.ordinal()] / 1000d);
+			}
+			return;
+		}
+
+		System.out.printf(" %8tT - PID: %s JVM: %s UPTIME: %s%n", currentTime(), vmInfo.pid, vmInfo.jvmVersion,
+				Formats.toTimeUnit(vmInfo.upTimeMills.current));
+
+		System.out.printf(" SAFE-POINT: %d count, %.2fms time = %.2fms sync(%.1f%%) + %.2fms operation(%.1f%%), %.2f%% of interval%n",
+				stats.count, stats.totalMicros / 1000d, stats.syncMicros / 1000d,
+				percent(stats.syncMicros, stats.totalMicros), operationMicros / 1000d,
+				percent(operationMicros, stats.totalMicros), percent(stats.totalMicros, stats.intervalMicros()));
+
+		System.out.printf(" LATENCY: %.2fms avg, %s worst(%.2fms sync), %s worst ttsp, %.2fms p99 of %d since start%n",
+				stats.avgMicros() / 1000d, formatSafepointMills(stats.worstMicros, 0, warning.safepointWorst),
+				stats.worstSyncMicros / 1000d, formatSafepointMills(stats.worstTtspMicros, 0, warning.safepointTtsp),
+				stats.p99Micros / 1000d, stats.totalCount);
+
+		System.out.print(" CAUSE:");
+		for (SafepointSampler.Cause cause : SafepointSampler.Cause.values()) {
+			System.out.printf(" %s %d/%.2fms", cause, stats.causeCounts[cause.ordinal()],
+					stats.causeMicros[cause.ordinal()] / 1000d);
+		}
+		System.out.printf(" (sampled every %dms)%n", safepointSampler.periodMills);
+
+		if (stats.spikes.isEmpty()) {
+			System.out.printf("%n -No safepoint in this interval-%n");
+			return;
+		}
+
+		System.out.printf("%n %-12s %6s %10s %10s %10s %10s  %s%n", "TIME", "COUNT", "TOTAL", "AVG", "AVG-SYNC",
+				"AVG-OP", "CAUSE");
+		int limit = Math.min(threadLimit, stats.spikes.size());
+		for (int i = 0; i < limit; i++) {
+			SafepointSampler.Spike spike = stats.spikes.get(i);
+			long latency = spike.latencyMicros();
+			long sync = spike.syncLatencyMicros();
+			System.out.printf(" %tT.%03d %6d %8.2fms %s %8.2fms %8.2fms  %s%n", spike.time, spike.time % 1000,
+					spike.count, spike.totalMicros / 1000d, formatSafepointMills(latency, 8, warning.safepointWorst),
+					sync / 1000d, (latency - sync) / 1000d, spike.cause);
+		}
+		if (stats.spikes.size() > limit) {
+			System.out.printf("%n Note: Only top %d intervals (according safepoint latency) are shown!%n", limit);
+		}
+	}
+
+	/**
+	 * JIT视图：本周期的编译次数与耗时，编译线程与清扫线程的CPU，代码缓存的用量与是否已满而停止编译，以及最近编译的方法
+	 */
+	private void printJitView(boolean console) {
+		if (jitMonitor == null) {
+			return;
+		}
+
+		try {
+			jitMonitor.update();
+		} catch (Exception e) {
+			vmInfo.handleJmxFetchDataError(e);
+		}
+
+		JitMonitor jit = jitMonitor;
+		long intervalMills = vmInfo.upTimeMills.delta;
+		long intervalNanos = intervalMills * Utils.NANOS_TO_MILLS;
+
+		if (!console) {
+			System.out.printf("time:%8tT%npid:%s%nuptime:%s%n", currentTime(), vmInfo.pid, vmInfo.upTimeMills.current);
+			System.out.printf(
+					"jit.compiles:%d%njit.osr:%d%njit.bailouts:%d%njit.invalidates:%d%njit.time:%.2f%njit.bytes:%d%n",
+					jit.compiles.delta, jit.osrCompiles.delta, jit.bailouts.delta, jit.invalidates.delta,
+					jit.compileMicros.delta / 1000d, jit.compiledBytes.delta);
+			System.out.printf("jit.total.compiles:%d%njit.total.time:%d%njit.nmethod.size:%d%njit.nmethod.delta:%d%n",
+					jit.compiles.current, jit.compileMicros.current / 1000, jit.nmethodSize.current,
+					jit.nmethodSize.delta);
+			if (vmInfo.isLinux) {
+				System.out.printf("jit.compiler.threads:%d%njit.compiler.cpu:%.2f%njit.sweeper.cpu:%.2f%n",
+						jit.compilerThreads.size(), percent(jit.compilerCpuNanos, intervalNanos),
+						jit.sweeperCpuNanos < 0 ? 0d : percent(jit.sweeperCpuNanos, intervalNanos));
+			}
+			JitMonitor.CodeCache codeCache = jit.codeCache;
+			if (codeCache.supported) {
+				System.out.printf("codeCache.size:%d%ncodeCache.use:%d%ncodeCache.maxUsed:%d%ncodeCache.nmethods:%d%n",
+						codeCache.size, codeCache.used, codeCache.maxUsed, codeCache.nmethods.current);
+				System.out.printf("codeCache.full:%d%ncodeCache.compilation:%s%n", codeCache.fullCount.current,
+						codeCache.compilationEnabled ? "enabled" : "disabled");
+			}
+			return;
+		}
+
+		System.out.printf(" %8tT - PID: %s JVM: %s UPTIME: %s%n", currentTime(), vmInfo.pid, vmInfo.jvmVersion,
+				Formats.toTimeUnit(vmInfo.upTimeMills.current));
+
+		System.out.printf(" COMPILE: %d compiles(%d osr), %s bailouts, %s invalidated, %.2fms time(%.1f%% of interval), %s bytecode%n",
+				jit.compiles.delta, jit.osrCompiles.delta, Formats.toColor(jit.bailouts.delta, warning.jitBailout),
+				Formats.toColor(jit.invalidates.delta, warning.jitInvalidate), jit.compileMicros.delta / 1000d,
+				jit.compileTimePercent(intervalMills), Formats.toSizeUnit(jit.compiledBytes.delta));
+		System.out.printf(" TOTAL: %d compiles, %.2fs time, %s nmethods(%s code, %s)%n", jit.compiles.current,
+				jit.compileMicros.current / 1000000d, Formats.toSizeUnit(jit.nmethodSize.current),
+				Formats.toSizeUnit(jit.nmethodCodeSize), toSignedSize(jit.nmethodSize.delta));
+
+		if (vmInfo.isLinux) {
+			System.out.printf(" COMPILER-CPU: %d threads, %.2f%% cpu(c1 %.2f%%, c2 %.2f%%) | SWEEPER: %s%n",
+					jit.compilerThreads.size(), percent(jit.compilerCpuNanos, intervalNanos),
+					percent(jit.c1CpuNanos, intervalNanos), percent(jit.c2CpuNanos, intervalNanos),
+					jit.sweeperCpuNanos < 0 ? "no sweeper thread"
+							: String.format("%.2f%% cpu", percent(jit.sweeperCpuNanos, intervalNanos)));
+		}
+
+		JitMonitor.CodeCache codeCache = jit.codeCache;
+		if (codeCache.supported) {
+			String full = "full " + codeCache.fullCount.current + " times";
+			if (codeCache.fullCount.current < 0) {
+				full = "full count n/a";
+			} else if (codeCache.fullCount.delta > 0) {
+				// 本周期内代码缓存满过
+				full = Formats.red(full);
+			}
+			System.out.printf(" CODE-CACHE: %s used, %s max used, %s size(%.1f%%), %d nmethods(%+d), %s, compilation %s%n",
+					Formats.toMB(codeCache.used), Formats.toMB(codeCache.maxUsed), Formats.toMB(codeCache.size),
+					percent(codeCache.used, codeCache.size), codeCache.nmethods.current, codeCache.nmethods.delta, full,
+					codeCache.compilationEnabled ? "enabled" : Formats.red("disabled"));
+		} else if (!vmInfo.jmxSupport) {
+			System.out.println(" CODE-CACHE: needs the JMX data source");
+		} else if (!jit.codeCacheSupported) {
+			System.out.println(" CODE-CACHE: Compiler.codecache needs JDK9+");
+		}
+
+		System.out.printf(" LAST: %s(%s, %d bytes)", emptyToNone(jit.lastMethod), jit.lastType, jit.lastSize);
+		System.out.printf(" | FAILED: %s | INVALIDATED: %s%n", emptyToNone(jit.lastFailedMethod),
+				emptyToNone(jit.lastInvalidatedMethod));
+
+		if (jit.compilerThreads.isEmpty()) {
+			if (vmInfo.isLinux) {
+				System.out.printf("%n -No compiler thread found in /proc-%n");
+			}
+			return;
+		}
+
+		System.out.printf("%n %-8s %-16s %-14s %6s %12s%n", "TID", "NAME", "STATE", "CPU", "TOTAL-CPU");
+		int limit = Math.min(threadLimit, jit.compilerThreads.size());
+		for (int i = 0; i < limit; i++) {
+			JitMonitor.CompilerThread thread = jit.compilerThreads.get(i);
+			System.out.printf(" %-8d %-16s %-14s %5.2f%% %12s%n", thread.tid, thread.name, thread.state,
+					percent(thread.deltaCpuNanos, intervalNanos),
+					String.format("%.2fs", thread.totalCpuNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+		}
+	}
+
+	/**
+	 * 类加载视图：本周期加载与卸载的类数，元空间的增长与按当前速度用满MaxMetaspaceSize的时间，元空间触发的GC，
+	 * 以及最近一次ClassLoader快照的汇总
+	 */
+	private void printClassView(boolean console) {
+		if (classLoaderTracker == null) {
+			return;
+		}
+
+		ClassLoaderTracker tracker = classLoaderTracker;
+		tracker.update();
+		long intervalMills = vmInfo.upTimeMills.delta;
+		long millsToFull = tracker.millsToFull(intervalMills);
+
+		if (!console) {
+			System.out.printf("time:%8tT%npid:%s%nuptime:%s%n", currentTime(), vmInfo.pid, vmInfo.upTimeMills.current);
+			System.out.printf("class.live:%d%nclass.loaded:%d%nclass.unloaded:%d%nclass.loadRate:%d%n",
+					vmInfo.classLoaded.current, tracker.loaded.delta, tracker.unloaded.delta,
+					perSecond(tracker.loaded.delta, intervalMills));
+			System.out.printf("class.total.loaded:%d%nclass.total.unloaded:%d%n", tracker.loaded.current,
+					tracker.unloaded.current);
+			System.out.printf("%s.use:%d%n%s.commit:%d%n%s.max:%d%n%s.delta:%d%ngc.metadata:%d%n", vmInfo.permGenName,
+					vmInfo.perm.used, vmInfo.permGenName, vmInfo.perm.committed, vmInfo.permGenName, vmInfo.perm.max,
+					vmInfo.permGenName, tracker.metaspaceUsed.delta, tracker.metadataGcCount);
+			if (vmInfo.jvmMajorVersion >= 8) {
+				System.out.printf("ccs.use:%d%nccs.delta:%d%n", vmInfo.ccs.used, tracker.ccsUsed.delta);
+			}
+			if (millsToFull != -1) {
+				System.out.printf("%s.fullIn:%d%n", vmInfo.permGenName, millsToFull / 1000);
+			}
+			if (tracker.snapshotTime != 0) {
+				System.out.printf("loader.count:%d%nloader.classes:%d%nloader.chunkSize:%d%n", tracker.totalLoaders,
+						tracker.totalClasses, tracker.totalChunkSize);
+			}
+			return;
+		}
+
+		System.out.printf(" %8tT - PID: %s JVM: %s UPTIME: %s%n", currentTime(), vmInfo.pid, vmInfo.jvmVersion,
+				Formats.toTimeUnit(vmInfo.upTimeMills.current));
+
+		System.out.printf(" CLASS: %s live, %s loaded(%d/s), %d unloaded | total %d loaded, %d unloaded%n",
+				Formats.toColor(vmInfo.classLoaded.current, warning.loadClass),
+				Formats.toColor(tracker.loaded.delta, warning.newClass), perSecond(tracker.loaded.delta, intervalMills),
+				tracker.unloaded.delta, tracker.loaded.current, tracker.unloaded.current);
+
+		System.out.printf(" %s: %s(%s, %s/s)", vmInfo.permGenName.toUpperCase(),
+				Formats.formatUsageWithColor(vmInfo.perm, warning.perm), toSignedSize(tracker.metaspaceUsed.delta),
+				Formats.toSizeUnit(perSecond(tracker.metaspaceUsed.delta, intervalMills)));
+		if (millsToFull != -1) {
+			String fullIn = Formats.toTimeUnit(millsToFull);
+			if (millsToFull < METASPACE_FULL_RED_MILLS) {
+				fullIn = Formats.red(fullIn);
+			} else if (millsToFull < METASPACE_FULL_YELLOW_MILLS) {
+				fullIn = Formats.yellow(fullIn);
+			}
+			System.out.printf(", full in %s", fullIn);
+		}
+		if (vmInfo.jvmMajorVersion >= 8) {
+			System.out.printf(" | CCS: %s(%s)", Formats.formatUsage(vmInfo.ccs), toSignedSize(tracker.ccsUsed.delta));
+		}
+		System.out.printf(" | METADATA-GC: %s%n", Formats.toColor(tracker.metadataGcCount, warning.metadataGc));
+
+		if (tracker.snapshotTime == 0) {
+			if (vmInfo.jmxSupport) {
+				System.out.printf("%n -Press c to take a class loader snapshot, later snapshots are compared with it-%n");
+			}
+			return;
+		}
+		printClassLoaderSnapshot(tracker);
+	}
+
+	/**
+	 * 执行一次VM.classloader_stats并与上一次快照比较，由交互命令c调用
+	 */
+	public void printClassLoaderStats() throws IOException {
+		if (vmInfo.replay || !vmInfo.jmxSupport) {
+			System.out.println("\n Class loader statistics need the JMX data source of a live JVM.");
+			System.out.flush();
+			return;
+		}
+		if (classLoaderTracker == null) {
+			classLoaderTracker = new ClassLoaderTracker(vmInfo);
+		}
+		classLoaderTracker.snapshot();
+		printClassLoaderSnapshot(classLoaderTracker);
+		System.out.flush();
+	}
+
+	private void printClassLoaderSnapshot(ClassLoaderTracker tracker) {
+		System.out.printf("%n LOADERS(%ds ago%s): %d loaders(%+d), %d classes(%+d), %s metaspace(%s)%n",
+				(System.currentTimeMillis() - tracker.snapshotTime) / 1000,
+				tracker.lastSnapshotTime == 0 ? ""
+						: ", compared with " + (tracker.snapshotTime - tracker.lastSnapshotTime) / 1000 + "s before",
+				tracker.totalLoaders, tracker.totalLoadersDelta, tracker.totalClasses, tracker.totalClassesDelta,
+				Formats.toSizeUnit(tracker.totalChunkSize), toSignedSize(tracker.totalChunkSizeDelta));
+
+		System.out.printf("%n %8s %8s %9s %8s %8s %10s %9s  %s%n", "LOADERS", "+/-", "CLASSES", "+/-", "HIDDEN",
+				"METASPACE", "+/-", "TYPE");
+		int limit = Math.min(threadLimit, tracker.loaders.size());
+		for (int i = 0; i < limit; i++) {
+			ClassLoaderTracker.LoaderStat stat = tracker.loaders.get(i);
+			System.out.printf(" %8d %s %9d %s %8d %10s %9s  %s%n", stat.loaders, formatGrowth(stat.loadersDelta),
+					stat.classes, formatGrowth(stat.classesDelta), stat.hiddenClasses, Formats.toSizeUnit(stat.chunkSize),
+					toSignedSize(stat.chunkSizeDelta), stat.type);
+		}
+		if (tracker.loaders.size() > limit) {
+			System.out.printf("%n Note: Only top %d of %d class loader types (according classes growth) are shown!%n",
+					limit, tracker.loaders.size());
+		}
+	}
+
+	private static String formatGrowth(long delta) {
+		String value = String.format("%+8d", delta);
+		return delta > 0 ? Formats.yellow(value) : value;
+	}
+
+	private static long perSecond(long delta, long intervalMills) {
+		return intervalMills <= 0 ? 0 : delta * 1000 / intervalMills;
+	}
+
+	private static String toSignedSize(long bytes) {
+		return bytes < 0 ? "-" + Formats.toSizeUnit(-bytes) : "+" + Formats.toSizeUnit(bytes);
+	}
+
+	private static String emptyToNone(String value) {
+		return value == null || value.isEmpty() ? "none" : value;
+	}
+
+	private static double percent(long value, long total) {
+		return total == 0 ? 0 : value * 100d / total;
+	}
+
+	/**
+	 * 以毫秒显示微秒的安全点时间，按阈值着色，width为0时不对齐
+	 */
+	private static String formatSafepointMills(long micros, int width, LongWarning warning) {
+		String[] ansi = Formats.colorAnsi(micros / 1000, warning);
+		return ansi[0] + String.format("%" + (width > 0 ? width : "") + ".2fms", micros / 1000d) + ansi[1];
 	}
 
 	private void printTopCpuThreads(ThreadInfoMode mode, boolean console) throws IOException {
@@ -251,7 +1088,21 @@ public class VMDetailView {
 			return;
 		}
 
-		TopCpuResult result = topThreadInfo.topCpuThreads(mode, threadLimit);
+		TopCpuResult result;
+		if (replay != null) {
+			result = replay.cpuResult;
+			if (result == null) {
+				printNoRecordedThreads(console);
+				return;
+			}
+		} else {
+			result = topThreadInfo.topCpuThreads(mode, threadLimit);
+			if (sampler != null) {
+				long[] tids = topThreadInfo.getTopTids();
+				sampler.updateTargets(scheduler != null ? scheduler.limitSampleTargets(tids) : tids);
+			}
+		}
+		lastCpuResult = result;
 
 		// 第一次无数据时跳过
 		if (!result.ready) {
@@ -273,37 +1124,41 @@ public class VMDetailView {
 			}
 		}
 		// 打印线程Detail
-		for (ThreadInfo info : result.threadInfos) {
-			if (info == null) {
+		for (int i = 0; i < result.topTids.length; i++) {
+			if (result.topThreadNames[i] == null) {
 				continue;
 			}
-			Long tid = info.getThreadId();
-			String threadName = Formats.shortName(info.getThreadName(), getThreadNameWidth(), 20);
+			long tid = result.topTids[i];
+			String threadState = result.topThreadStates[i];
+			String threadName = Formats.shortName(result.topThreadNames[i], getThreadNameWidth(), 20);
 			// 过滤threadName
 			if (threadNameFilter != null && !threadName.toLowerCase().contains(threadNameFilter)) {
 				continue;
 			}
 			// 刷新间隔里，所使用的单核CPU比例
-			double cpu = Utils.calcLoad(result.threadCpuDeltaTimes.get(tid), vmInfo.upTimeMills.delta,
+			double cpu = Utils.calcLoad(result.threadCpuDeltaTimes.get(tid, 0), vmInfo.upTimeMills.delta,
 					Utils.NANOS_TO_MILLS);
 
-			double syscpu = Utils.calcLoad(result.threadSysCpuDeltaTimes.get(tid), vmInfo.upTimeMills.delta,
+			double syscpu = Utils.calcLoad(result.threadSysCpuDeltaTimes.get(tid, 0), vmInfo.upTimeMills.delta,
 					Utils.NANOS_TO_MILLS);
 
 			// 在进程所有消耗的CPU里，本线程的比例
-			double totalcpuPercent = Utils.calcLoad(result.threadCpuTotalTimes.get(tid), vmInfo.cpuTimeNanos.current,
-					1);
+			double totalcpuPercent = Utils.calcLoad(result.threadCpuTotalTimes.get(tid, 0),
+					vmInfo.cpuTimeNanos.current, 1);
 
-			double totalsysPercent = Utils.calcLoad(result.threadSysCpuTotalTimes.get(tid), vmInfo.cpuTimeNanos.current,
-					1);
+			double totalsysPercent = Utils.calcLoad(result.threadSysCpuTotalTimes.get(tid, 0),
+					vmInfo.cpuTimeNanos.current, 1);
 
 			if (console) {
 
-				System.out.printf(dataFormat, tid, threadName, Formats.leftStr(info.getThreadState().toString(), 10),
-						cpu, syscpu, totalcpuPercent, totalsysPercent);
-			} else {
-				System.out.printf(dataFormatAsText, tid, threadName, info.getThreadState().toString(), cpu, syscpu,
+				System.out.printf(dataFormat, tid, threadName, Formats.leftStr(threadState, 10), cpu, syscpu,
 						totalcpuPercent, totalsysPercent);
+			} else if (format.record) {
+				recordPrinter.printCpuThreadRecord(vmInfo, mode.name(), i + 1, tid, result.topThreadNames[i],
+						threadState, cpu, syscpu, totalcpuPercent, totalsysPercent);
+			} else {
+				System.out.printf(dataFormatAsText, tid, threadName, threadState, cpu, syscpu, totalcpuPercent,
+						totalsysPercent);
 			}
 
 		}
@@ -315,28 +1170,50 @@ public class VMDetailView {
 				vmInfo.upTimeMills.delta);
 		double deltaAllFreeThreadCpuLoad = Utils.calcLoad(result.deltaAllFreeThreadCpu / Utils.NANOS_TO_MILLS,
 				vmInfo.upTimeMills.delta);
+		double deltaVmThreadCpuLoad = Utils.calcLoad(result.deltaVmThreadCpu / Utils.NANOS_TO_MILLS,
+				vmInfo.upTimeMills.delta);
 		// double deltaAllFreeThreadSysCpuLoad = Utils.calcLoad(result.deltaAllFreeThreadSysCpu / Utils.NANOS_TO_MILLS,
 		// vmInfo.upTimeMills.delta);
 
 		if (console) {
 			System.out.printf(
-					"%n Total  : %.2f%% cpu(user=%.2f%%, sys=%.2f%%) by %d active java threads, %.2f%% by others%n",
+					"%n Total  : %.2f%% cpu(user=%.2f%%, sys=%.2f%%) by %d active java threads, %.2f%% by others",
 					deltaAllActiveThreadCpuLoad, deltaAllActiveThreadCpuLoad - deltaAllActiveThreadSysCpuLoad,
 					deltaAllActiveThreadSysCpuLoad, result.activeThreads, deltaAllFreeThreadCpuLoad);
+			if (vmInfo.jmxSupport && vmInfo.procThreadCpuSupported) {
+				System.out.printf(", %.2f%% by vm threads", deltaVmThreadCpuLoad);
+			}
+			System.out.println();
 
 			System.out.printf(" Setting: top %d threads order by %s%s, flush every %ds%n", threadLimit,
 					mode.toString().toUpperCase(), threadNameFilter == null ? "" : " filter by " + threadNameFilter,
 					interval);
-		} else {
+			if (sampler != null) {
+				System.out.printf(" Sampling: %d stacks of top %d threads at %dHz, %d missed, %.1fms per sample%s%n",
+						sampler.sampleCount, sampler.targetCount(), sampler.hz, sampler.missedCount,
+						sampler.avgCostMills(), sampler.otherCount > 0
+								? String.format(", %d in %s", sampler.otherCount, AbstractStackSampler.OTHER_STACKS) : "");
+			}
+		} else if (!format.record) {
 			System.out.printf(
 					"sum.active.threadCount:%d%nsum.active.cpu.total:%.2f%nsum.active.cpu.user:%.2f%nsum.active.cpu.sys:%.2f%nsum.free.cpu.total:%.2f%n",
 					result.activeThreads, deltaAllActiveThreadCpuLoad,
 					deltaAllActiveThreadCpuLoad - deltaAllActiveThreadSysCpuLoad, deltaAllActiveThreadSysCpuLoad,
 					deltaAllFreeThreadCpuLoad);
+			if (vmInfo.jmxSupport && vmInfo.procThreadCpuSupported) {
+				System.out.printf("sum.vm.cpu.total:%.2f%n", deltaVmThreadCpuLoad);
+			}
 		}
 	}
 
 	private void printTopMemoryThreads(ThreadInfoMode mode, boolean console) throws IOException {
+		if (!vmInfo.jmxSupport) {
+			if (console) {
+				System.out.printf("%n -Thread Memory Allocated telemetries are not available in perf data source-%n");
+			}
+			return;
+		}
+
 		if (!vmInfo.threadMemoryAllocatedSupported) {
 			if (console) {
 				System.out.printf(
@@ -345,7 +1222,24 @@ public class VMDetailView {
 			return;
 		}
 
-		TopMemoryResult result = topThreadInfo.topMemoryThreads(mode, threadLimit);
+		TopMemoryResult result;
+		AllocationResult allocationResult = null;
+		if (replay != null) {
+			result = replay.memoryResult;
+			if (result == null) {
+				printNoRecordedThreads(console);
+				return;
+			}
+		} else {
+			result = topThreadInfo.topMemoryThreads(mode, threadLimit);
+			if (allocationSampler != null && result.threadMemoryDeltaBytesMap != null) {
+				// 无论按区间还是累计排序，都采样区间内分配最多的线程
+				long[] tids = Utils.sortAndFilterThreadIdsByValue(result.threadMemoryDeltaBytesMap, threadLimit);
+				allocationResult = allocationSampler.attribute(result.threadMemoryDeltaBytesMap,
+						scheduler != null ? scheduler.limitSampleTargets(tids) : tids, threadLimit);
+			}
+		}
+		lastMemoryResult = result;
 
 		// 第一次无数据跳过
 		if (!result.ready) {
@@ -368,34 +1262,36 @@ public class VMDetailView {
 		}
 
 		// 打印线程Detail
-		for (ThreadInfo info : result.threadInfos) {
-			if (info == null) {
+		for (int i = 0; i < result.topTids.length; i++) {
+			if (result.topThreadNames[i] == null) {
 				continue;
 			}
-			Long tid = info.getThreadId();
-			String threadName = Formats.shortName(info.getThreadName(), getThreadNameWidth(), 12);
+			long tid = result.topTids[i];
+			String threadState = result.topThreadStates[i];
+			String threadName = Formats.shortName(result.topThreadNames[i], getThreadNameWidth(), 12);
 
 			// 过滤threadName
 			if (threadNameFilter != null && !threadName.toLowerCase().contains(threadNameFilter)) {
 				continue;
 			}
 
-			Long threadDelta = result.threadMemoryDeltaBytesMap.get(tid);
-			long allocationRate = threadDelta == null ? 0 : (threadDelta * 1000) / vmInfo.upTimeMills.delta;
+			long threadDelta = result.threadMemoryDeltaBytesMap.get(tid, 0);
+			long threadTotal = result.threadMemoryTotalBytesMap.get(tid, 0);
+			long allocationRate = (threadDelta * 1000) / vmInfo.upTimeMills.delta;
 			if (console) {
-				System.out.printf(dataFormat, tid, threadName, Formats.leftStr(info.getThreadState().toString(), 10),
+				System.out.printf(dataFormat, tid, threadName, Formats.leftStr(threadState, 10),
 						Formats.toFixLengthSizeUnit(allocationRate),
-						Utils.calcMemoryUtilization(result.threadMemoryDeltaBytesMap.get(tid),
-								result.deltaAllThreadBytes),
-						Formats.toFixLengthSizeUnit(result.threadMemoryTotalBytesMap.get(tid)),
-						Utils.calcMemoryUtilization(result.threadMemoryTotalBytesMap.get(tid),
-								result.totalAllThreadBytes));
+						Utils.calcMemoryUtilization(threadDelta, result.deltaAllThreadBytes),
+						Formats.toFixLengthSizeUnit(threadTotal),
+						Utils.calcMemoryUtilization(threadTotal, result.totalAllThreadBytes));
+			} else if (format.record) {
+				recordPrinter.printMemoryThreadRecord(vmInfo, mode.name(), i + 1, tid, result.topThreadNames[i],
+						threadState, allocationRate, Utils.calcMemoryUtilization(threadDelta, result.deltaAllThreadBytes),
+						threadTotal, Utils.calcMemoryUtilization(threadTotal, result.totalAllThreadBytes));
 			} else {
-				System.out.printf(dataFormatAsText, tid, threadName, info.getThreadState().toString(), allocationRate,
-						Utils.calcMemoryUtilization(result.threadMemoryDeltaBytesMap.get(tid),
-								result.deltaAllThreadBytes),
-						result.threadMemoryTotalBytesMap.get(tid), Utils.calcMemoryUtilization(
-								result.threadMemoryTotalBytesMap.get(tid), result.totalAllThreadBytes));
+				System.out.printf(dataFormatAsText, tid, threadName, threadState, allocationRate,
+						Utils.calcMemoryUtilization(threadDelta, result.deltaAllThreadBytes), threadTotal,
+						Utils.calcMemoryUtilization(threadTotal, result.totalAllThreadBytes));
 			}
 		}
 
@@ -408,10 +1304,321 @@ public class VMDetailView {
 			System.out.printf(" Setting: top %d threads order by %s%s, flush every %ds%n", threadLimit,
 					mode.toString().toUpperCase(), threadNameFilter == null ? "" : " filter by " + threadNameFilter,
 					interval);
-		} else {
+		} else if (!format.record) {
 			System.out.printf("sum.active.threadCount:%d%nsum.active.allocateRate:%d%n", result.activeThreads,
 					(result.deltaAllThreadBytes * 1000) / vmInfo.upTimeMills.delta);
 		}
+
+		if (allocationResult != null && !format.record) {
+			printAllocationSites(allocationResult, console);
+		}
+	}
+
+	/**
+	 * 按采样分摊到分配点的区间分配速率
+	 */
+	private void printAllocationSites(AllocationResult result, boolean console) {
+		long deltaMills = vmInfo.upTimeMills.delta;
+		int siteNameWidth = this.width - 36;
+		String titleFormat = "%n %-" + siteNameWidth + "s %9s %8s %10s%n";
+		String dataFormat = " %-" + siteNameWidth + "s %7s/s %7.2f%% %10s%n";
+		String dataFormatAsText = "alloc-site-%s:%d %.2f %d%n";
+		if (console && !result.topSites.isEmpty()) {
+			System.out.printf(titleFormat, "ALLOC-SITE", "RATE", "SHARE", "TOTAL");
+		}
+
+		for (SiteStat site : result.topSites) {
+			long rate = site.deltaBytes * 1000 / deltaMills;
+			double share = Utils.calcMemoryUtilization(site.deltaBytes, result.targetBytes);
+			if (console) {
+				System.out.printf(dataFormat, Formats.shortName(site.name, siteNameWidth, 30),
+						Formats.toFixLengthSizeUnit(rate), share, Formats.toFixLengthSizeUnit(site.totalBytes));
+			} else {
+				System.out.printf(dataFormatAsText, site.name, rate, share, site.totalBytes);
+			}
+		}
+
+		if (console) {
+			System.out.printf(
+					"%n Sampling: %d stacks of top %d threads at %dHz, %.2f%% of their %s/s attributed, %d missed, %.1fms per sample%s%n",
+					allocationSampler.sampleCount, allocationSampler.targetCount(), allocationSampler.hz,
+					Utils.calcMemoryUtilization(result.attributedBytes, result.targetBytes),
+					Formats.toFixLengthSizeUnit(result.targetBytes * 1000 / deltaMills).trim(),
+					allocationSampler.missedCount, allocationSampler.avgCostMills(),
+					allocationSampler.otherCount > 0 ? String.format(", %d in %s", allocationSampler.otherCount,
+							AbstractStackSampler.OTHER_STACKS) : "");
+		} else {
+			System.out.printf("sum.alloc.target:%d%nsum.alloc.attributed:%d%n", result.targetBytes,
+					result.attributedBytes);
+		}
+	}
+
+	private void printTopThreadGroups(boolean console) throws IOException {
+		if (replay != null || format.record) {
+			if (console && !format.record) {
+				System.out.printf("%n -Thread group view is not available when replaying a recording-%n");
+			}
+			return;
+		}
+
+		if (topThreadGroups == null) {
+			topThreadGroups = new TopThreadGroups(vmInfo);
+		}
+		TopGroupResult result = topThreadGroups.topGroups(threadLimit);
+
+		// 第一次无数据时跳过
+		if (!result.ready) {
+			if (console) {
+				printWelcome();
+			}
+			return;
+		}
+
+		int groupNameWidth = this.width - 44;
+		String titleFormat = "%n %-" + groupNameWidth + "s %7s %8s %8s %8s %9s%n";
+		String dataFormat = " %-" + groupNameWidth + "s %7d %7.2f%% %7.2f%% %7.2f%% %7s/s%n";
+		String dataFormatAsText = "group-%s:%d %.2f %.2f %.2f %d%n";
+		if (console) {
+			System.out.printf(titleFormat, "GROUP", "THREADS", "CPU", "SYSCPU", "TOTAL", "MEMORY");
+		}
+
+		for (GroupStat group : result.topGroups) {
+			// 过滤线程池名
+			if (threadNameFilter != null && !group.name.toLowerCase().contains(threadNameFilter)) {
+				continue;
+			}
+			double cpu = Utils.calcLoad(group.deltaCpu / Utils.NANOS_TO_MILLS, vmInfo.upTimeMills.delta);
+			double syscpu = Utils.calcLoad(group.deltaSys / Utils.NANOS_TO_MILLS, vmInfo.upTimeMills.delta);
+			// 在进程所有消耗的CPU里，本线程池存活线程的比例
+			double totalcpuPercent = Utils.calcLoad(group.totalCpu, vmInfo.cpuTimeNanos.current);
+			long allocationRate = (group.deltaBytes * 1000) / vmInfo.upTimeMills.delta;
+
+			if (console) {
+				System.out.printf(dataFormat, Formats.shortName(group.name, groupNameWidth, 20), group.threads, cpu,
+						syscpu, totalcpuPercent, Formats.toFixLengthSizeUnit(allocationRate));
+			} else {
+				System.out.printf(dataFormatAsText, group.name, group.threads, cpu, syscpu, totalcpuPercent,
+						allocationRate);
+			}
+		}
+
+		double allCpuLoad = Utils.calcLoad(result.deltaAllCpu / Utils.NANOS_TO_MILLS, vmInfo.upTimeMills.delta);
+		if (console) {
+			System.out.printf("%n Total  : %.2f%% cpu, %5s/s memory allocated by %d thread groups%n", allCpuLoad,
+					Formats.toFixLengthSizeUnit((result.deltaAllBytes * 1000) / vmInfo.upTimeMills.delta),
+					result.groupCount);
+			System.out.printf(" Setting: top %d thread groups order by CPU%s, flush every %ds%n", threadLimit,
+					threadNameFilter == null ? "" : " filter by " + threadNameFilter, interval);
+		} else {
+			System.out.printf("sum.group.count:%d%nsum.group.cpu.total:%.2f%n", result.groupCount, allCpuLoad);
+		}
+	}
+
+	private void printTopChurn(boolean console) throws IOException {
+		if (replay != null || format.record) {
+			if (console && !format.record) {
+				System.out.printf("%n -Thread churn view is not available when replaying a recording-%n");
+			}
+			return;
+		}
+
+		if (topThreadChurn == null) {
+			topThreadChurn = new TopThreadChurn(vmInfo);
+		}
+		TopChurnResult result = topThreadChurn.topChurn(threadLimit);
+
+		// 第一次无数据时跳过
+		if (!result.ready) {
+			if (console) {
+				printWelcome();
+			}
+			return;
+		}
+
+		int groupNameWidth = this.width - 62;
+		String titleFormat = "%n %-" + groupNameWidth + "s %7s %7s %7s %7s %8s %9s %10s%n";
+		String dataFormat = " %-" + groupNameWidth + "s %7d %7d %7d %7d %8s %9d %10d %s%n";
+		String dataFormatAsText = "churn-%s:%d %d %d %d %d %d %d%n";
+		if (console) {
+			System.out.printf(titleFormat, "GROUP", "THREADS", "CREATED", "DIED", "SHORT", "AVG-LIFE", "TOTAL-NEW",
+					"TOTAL-DIED");
+
+			if (result.created == 0 && result.died == 0) {
+				System.out.printf("%n -No thread was created or died in this interval-%n");
+			}
+		}
+
+		for (ChurnStat group : result.topGroups) {
+			// 过滤线程池名
+			if (threadNameFilter != null && !group.name.toLowerCase().contains(threadNameFilter)) {
+				continue;
+			}
+			long avgLifeMills = group.avgLifeMills();
+
+			if (console) {
+				System.out.printf(dataFormat, Formats.shortName(group.name, groupNameWidth, 20), group.threads,
+						group.created, group.died, group.shortLived,
+						avgLifeMills == -1 ? "-" : Formats.toTimeUnit(avgLifeMills), group.totalCreated,
+						group.totalDied, group.isChurning() ? Formats.yellow("CHURN") : "");
+			} else {
+				System.out.printf(dataFormatAsText, group.name, group.threads, group.created, group.died,
+						group.shortLived, avgLifeMills, group.totalCreated, group.totalDied);
+			}
+		}
+
+		if (console) {
+			String started = result.started == -1 ? ""
+					: result.started + " started(" + result.unseen + " died unseen), ";
+			System.out.printf("%n Total  : %s%d created, %d died in %ds, %d churning of %d thread groups%n", started,
+					result.created, result.died, vmInfo.upTimeMills.delta / 1000, result.churningGroups,
+					result.groupCount);
+			System.out.printf(
+					" Setting: top %d thread groups order by CREATED+DIED%s, short-lived means died within %ds, flush every %ds%n",
+					threadLimit, threadNameFilter == null ? "" : " filter by " + threadNameFilter,
+					TopThreadChurn.SHORT_LIVED_MILLS / 1000, interval);
+		} else {
+			System.out.printf("sum.churn.started:%d%nsum.churn.unseen:%d%nsum.churn.created:%d%nsum.churn.died:%d%n"
+					+ "sum.churn.churningGroups:%d%n", result.started, result.unseen, result.created, result.died,
+					result.churningGroups);
+		}
+	}
+
+	private void printTopContention(boolean console) throws IOException {
+		if (replay != null || format.record) {
+			if (console && !format.record) {
+				System.out.printf("%n -Thread contention view is not available when replaying a recording-%n");
+			}
+			return;
+		}
+
+		if (!vmInfo.jmxSupport) {
+			if (console) {
+				System.out.printf("%n -Thread contention telemetries are not available in perf data source-%n");
+			}
+			return;
+		}
+
+		if (topContention == null) {
+			topContention = new TopContention(vmInfo);
+		}
+		TopContentionResult result = topContention.topContention(threadLimit);
+
+		// 第一次无数据时跳过
+		if (!result.ready) {
+			if (console) {
+				printWelcome();
+			}
+			return;
+		}
+
+		long deltaMills = vmInfo.upTimeMills.delta;
+		int nameWidth = this.width - 56;
+		String titleFormat = "%n %6s %-" + nameWidth + "s %10s %8s %7s %8s %7s%n";
+		String dataFormat = " %6d %-" + nameWidth + "s %10s %6d/s %7s %6d/s %7s%n";
+		String lockFormat = " %6s -> %s %s owned by %s%n";
+		String dataFormatAsText = "thread-%d:%s %s %d %d %d %d %s %d%n";
+		if (console) {
+			System.out.printf(titleFormat, "TID", "NAME  ", "STATE", "BLOCKED", "BLKTIME", "WAITED", "WAITTIME");
+
+			if (result.contendedThreads == 0) {
+				System.out.printf("%n -No thread was blocked or waited in this interval-%n");
+			}
+		}
+
+		for (ContentionEntry entry : result.topThreads) {
+			// 过滤threadName
+			if (threadNameFilter != null && !entry.name.toLowerCase().contains(threadNameFilter)) {
+				continue;
+			}
+			long blockedRate = entry.deltaBlockedCount * 1000 / deltaMills;
+			long waitedRate = entry.deltaWaitedCount * 1000 / deltaMills;
+
+			if (console) {
+				System.out.printf(dataFormat, entry.tid, Formats.shortName(entry.name, nameWidth, 12),
+						Formats.leftStr(entry.state.toString(), 10), blockedRate,
+						formatTimePercent(result, entry.deltaBlockedTime, deltaMills), waitedRate,
+						formatTimePercent(result, entry.deltaWaitedTime, deltaMills));
+				if (entry.isContended()) {
+					System.out.printf(lockFormat, "",
+							entry.state == Thread.State.BLOCKED ? "blocked on" : "waiting for",
+							Formats.shortName(entry.lockName, this.width - 40, 12),
+							formatLockOwner(entry.lockOwnerId, entry.lockOwnerName));
+				}
+			} else {
+				System.out.printf(dataFormatAsText, entry.tid, entry.name, entry.state, blockedRate,
+						entry.deltaBlockedTime, waitedRate, entry.deltaWaitedTime,
+						entry.isContended() ? entry.lockName : "", entry.isContended() ? entry.lockOwnerId : -1);
+			}
+		}
+
+		printHotLocks(result, console, deltaMills);
+
+		if (console) {
+			System.out.printf("%n Total  : %d/s blocked, %s blocked time by %d threads, %d contended locks%n",
+					result.deltaAllBlockedCount * 1000 / deltaMills,
+					formatTimePercent(result, result.deltaAllBlockedTime, deltaMills).trim(),
+					result.contendedThreads, result.lockCount);
+			System.out.printf(" Setting: top %d threads order by BLOCKED%s%s, flush every %ds%n", threadLimit,
+					result.timeSupported ? " TIME" : " COUNT",
+					threadNameFilter == null ? "" : " filter by " + threadNameFilter, interval);
+			if (!result.timeSupported) {
+				System.out.printf(
+						" Blocked and waited time need ThreadContentionMonitoring enabled in the target JVM (ThreadMXBean.setThreadContentionMonitoringEnabled)%n");
+			}
+		} else {
+			System.out.printf("sum.contended.threadCount:%d%nsum.contended.lockCount:%d%nsum.blocked.count:%d%nsum.blocked.time:%d%n",
+					result.contendedThreads, result.lockCount, result.deltaAllBlockedCount,
+					result.deltaAllBlockedTime);
+		}
+	}
+
+	/**
+	 * 阻塞在同一把锁上的线程数最多的锁
+	 */
+	private void printHotLocks(TopContentionResult result, boolean console, long deltaMills) {
+		if (result.topLocks.isEmpty()) {
+			return;
+		}
+
+		int lockNameWidth = this.width - 58;
+		String titleFormat = "%n %-" + lockNameWidth + "s %7s %8s %7s  %-28s%n";
+		String dataFormat = " %-" + lockNameWidth + "s %7d %6d/s %7s  %-28s%n";
+		String dataFormatAsText = "lock-%s:%d %d %d %d%n";
+		if (console) {
+			System.out.printf(titleFormat, "LOCK", "WAITERS", "BLOCKED", "BLKTIME", "OWNER");
+		}
+
+		for (LockStat lock : result.topLocks) {
+			if (console) {
+				System.out.printf(dataFormat, Formats.shortName(lock.name, lockNameWidth, 12), lock.waiters,
+						lock.deltaBlockedCount * 1000 / deltaMills,
+						formatTimePercent(result, lock.deltaBlockedTime, deltaMills),
+						Formats.shortName(formatLockOwner(lock.ownerId, lock.ownerName), 28, 12));
+			} else {
+				System.out.printf(dataFormatAsText, lock.name, lock.waiters, lock.deltaBlockedCount,
+						lock.deltaBlockedTime, lock.ownerId);
+			}
+		}
+	}
+
+	/**
+	 * 阻塞或等待时间占刷新间隔的比例，未开启ThreadContentionMonitoring时无值
+	 */
+	private static String formatTimePercent(TopContentionResult result, long timeMills, long deltaMills) {
+		if (!result.timeSupported) {
+			return "      -";
+		}
+		return String.format("%6.2f%%", timeMills * 100d / deltaMills);
+	}
+
+	private static String formatLockOwner(long ownerId, String ownerName) {
+		return ownerId == -1 ? "none" : ownerName + "(" + ownerId + ")";
+	}
+
+	private void printNoRecordedThreads(boolean console) {
+		if (console) {
+			System.out.printf("%n -No thread data in this frame of the recording-%n");
+		}
 	}
 
 	private void printWelcome() {
@@ -433,6 +1640,12 @@ public class VMDetailView {
 						"%n" + Formats.yellow(" Perfdata doesn't support, SAFE-POINT data will be skipped.") + "%n");
 			}
 
+			if (!vmInfo.jmxSupport) {
+				System.out.printf("%n" + Formats.yellow(
+						" Perf data source, JMX isn't used: codeCache/direct/map data will be skipped, TID is the OS thread id.")
+						+ "%n");
+			}
+
 			System.out.printf("%n VMARGS: %s%n%n", vmInfo.vmArgs);
 
 			firstTime = false;
@@ -443,14 +1656,64 @@ public class VMDetailView {
 
 	private void printJmxError() {
 		if (!vmInfo.currentGcCause.equals("No GC")) {
-			System.out.println("\n" + Formats.red(
+			messageStream().println("\n" + Formats.red(
 					"ERROR: Could not fetch data via JMX - Process is doing GC, cause is " + vmInfo.currentGcCause));
 		} else {
-			System.out.println(
+			messageStream().println(
 					System.lineSeparator() + Formats.red("ERROR: Could not fetch data via JMX - Process terminated?"));
 		}
 	}
 
+	/**
+	 * 本周期JMX远程调用的次数与耗时，用于评估远程连接时的监控成本
+	 */
+	private void printJmxCost(boolean console) {
+		JmxClient.CallStats stats = vmInfo.getJmxCallStats();
+		if (stats == null) {
+			return;
+		}
+
+		if (console) {
+			System.out.printf(" JMX: %d calls, %dms latency", stats.getCalls(), stats.getLatencyMills());
+			if (stats.getPrefetchBeans() > 0) {
+				System.out.printf(", %d mbeans prefetched concurrently in %dms", stats.getPrefetchBeans(),
+						stats.getPrefetchMills());
+			}
+			System.out.println();
+		} else {
+			System.out.printf("jmx.calls:%d%njmx.latency:%d%njmx.prefetch.beans:%d%njmx.prefetch.time:%d%n",
+					stats.getCalls(), stats.getLatencyMills(), stats.getPrefetchBeans(), stats.getPrefetchMills());
+		}
+	}
+
+	/**
+	 * 上一周期vjtop的消耗，以及为满足预算而延长的刷新间隔与缩减的栈采样线程数
+	 */
+	private void printSchedulerStatus(boolean console) {
+		if (scheduler == null) {
+			return;
+		}
+
+		if (console) {
+			String costFormat = scheduler.costPercent > scheduler.budgetPercent ? Formats.red("%.2f%%")
+					: "%.2f%%";
+			System.out.printf(" BUDGET: " + costFormat + " of one core(observer=%.2f%%, target=%.2f%%) of %.2f%%",
+					scheduler.costPercent, scheduler.observerPercent, scheduler.targetPercent, scheduler.budgetPercent);
+			if (scheduler.factor > 1) {
+				System.out.printf(", interval x%d", scheduler.factor);
+			}
+			if (scheduler.sampleLimit == 0) {
+				System.out.print(", sampling paused");
+			} else if (scheduler.sampleLimit > 0) {
+				System.out.printf(", sampling top %d threads", scheduler.sampleLimit);
+			}
+			System.out.println();
+		} else {
+			System.out.printf("budget.cost:%.2f%nbudget.cost.observer:%.2f%nbudget.cost.target:%.2f%nbudget.factor:%d%n",
+					scheduler.costPercent, scheduler.observerPercent, scheduler.targetPercent, scheduler.factor);
+		}
+	}
+
 	private void printIterationCost(long iterationStartTime, long iterationStartCpu) {
 		long currentCpu = ((OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean()).getProcessCpuTime();
 		long deltaIterationTime = System.currentTimeMillis() - iterationStartTime;
@@ -497,7 +1760,8 @@ public class VMDetailView {
 	}
 
 	public enum ThreadInfoMode {
-		cpu(true), totalcpu(true), syscpu(true), totalsyscpu(true), memory(false), totalmemory(false);
+		cpu(true), totalcpu(true), syscpu(true), totalsyscpu(true), memory(false), totalmemory(false), group(false),
+		contention(false), churn(false);
 
 		public boolean isCpuMode;
 
@@ -510,7 +1774,7 @@ public class VMDetailView {
 				return ThreadInfoMode.valueOf(value);
 			} catch (IllegalArgumentException e) {
 				throw new IllegalArgumentException(
-						"wrong option of thread info mode(cpu,syscpu,totalcpu,totalsyscpu,memory,totalmemory)");
+						"wrong option of thread info mode(cpu,syscpu,totalcpu,totalsyscpu,memory,totalmemory,group,contention,churn)");
 			}
 		}
 
@@ -528,6 +1792,12 @@ public class VMDetailView {
 					return memory;
 				case "6":
 					return totalmemory;
+				case "7":
+					return group;
+				case "8":
+					return contention;
+				case "9":
+					return churn;
 				default:
 					return null;
 			}
@@ -535,15 +1805,18 @@ public class VMDetailView {
 	}
 
 	public enum OutputFormat {
-		console(true), cleanConsole(false), text(false);
-		OutputFormat(boolean ansi) {
+		console(true, false), cleanConsole(false, false), text(false, false), jsonl(false, true), csv(false, true);
+		OutputFormat(boolean ansi, boolean record) {
 			this.ansi = ansi;
+			this.record = record;
 		}
 
 		public boolean ansi;
+		// 机器可读的记录格式，每行一条记录
+		public boolean record;
 	}
 
 	public enum ContentMode {
-		all, jvm, thread
+		all, jvm, thread, safepoint, jit, classes
 	}
 }
@@ -4,14 +4,22 @@ import java.io.IOException;
 import java.lang.management.MemoryPoolMXBean;
 import java.lang.management.MemoryUsage;
 import java.lang.management.ThreadInfo;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.vip.vjtools.vjtop.data.CgroupData;
 import com.vip.vjtools.vjtop.data.PerfData;
 import com.vip.vjtools.vjtop.data.ProcFileData;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
 import com.vip.vjtools.vjtop.data.jmx.JmxClient;
 import com.vip.vjtools.vjtop.data.jmx.JmxMemoryPoolManager;
 import com.vip.vjtools.vjtop.util.Formats;
+import com.vip.vjtools.vjtop.util.LongRingBuffer;
 import com.vip.vjtools.vjtop.util.Utils;
 
 import sun.management.counter.Counter;
@@ -24,15 +32,29 @@ public class VMInfo {
 
 	private PerfData perfData = null;
 	public boolean perfDataSupport = false;
+	private ProcFileData procFileData = null;
+	private final long[] procStatusValues = new long[4];
+	private final long[] procIoValues = new long[2];
+	private CgroupData cgroupData = null;
+	private final long[] cgroupCpuValues = new long[3];
+	// perf数据源时不连接JMX，所有数据来自PerfData与/proc
+	public boolean jmxSupport = true;
+	// 回放录制文件，所有数据由RecordingReader写入，不访问任何数据源
+	public boolean replay = false;
 
 	public VMInfoState state = VMInfoState.INIT;
 	public String pid;
 	private int jmxUpdateErrorCount;
+	// 取栈等栈操作可能同时来自刷新线程，栈采样线程与交互线程
+	private final AtomicLong stackOperations = new AtomicLong();
+	private final AtomicInteger stackOperationsInFlight = new AtomicInteger();
 
 	// 静态数据//
 	private long startTime = 0;
 	public String osUser;
 	public String vmArgs = "";
+	// sun.rt.javaCommand中的主类或jar名，用于多JVM汇总时区分进程
+	public String mainClass = "";
 	public String jvmVersion = "";
 	public int jvmMajorVersion;
 
@@ -44,9 +66,13 @@ public class VMInfo {
 	public boolean isLinux;
 	public boolean ioDataSupport = true;// 不是同一个用户，不能读/proc/PID/io
 	public boolean processDataSupport = true;
+	// 目标进程位于cgroup中(容器，systemd服务等)且cgroup文件可读
+	public boolean cgroupSupport = false;
 	public boolean threadCpuTimeSupported;
 	public boolean threadMemoryAllocatedSupported;
 	public boolean threadContentionMonitoringSupported;
+	// 线程CPU从/proc/PID/task读取，再通过线程Dump中的nid映射回Java线程
+	public boolean procThreadCpuSupported;
 
 	public WarningRule warningRule = new WarningRule();
 
@@ -65,12 +91,30 @@ public class VMInfo {
 	public double cpuLoad = 0.0;
 	public double singleCoreCpuLoad = 0.0;
 
+	// cgroup的CPU配额折算的核数与占配额的百分比，不限制时为-1
+	public double cpuLimit = -1;
+	public double cpuLimitLoad = -1;
+	// cgroup中的CFS调度周期数，被限流的周期数与限流时间
+	public Rate cpuPeriods = new Rate();
+	public Rate cpuThrottled = new Rate();
+	public Rate cpuThrottledNanos = new Rate();
+	// cgroup的内存限制，不限制时为-1，用量为不含inactive_file的工作集
+	public long memoryLimit = -1;
+	public long memoryUsage = -1;
+
 	public Rate ygcCount = new Rate();
 	public Rate ygcTimeMills = new Rate();
 	public Rate fullgcCount = new Rate();
 	public Rate fullgcTimeMills = new Rate();
 	public String currentGcCause = "";
 
+	// 新生代分配速率与晋升到老年代的速率，由各代用量与GC次数推算
+	public SmoothedRate allocRate = new SmoothedRate();
+	public SmoothedRate promoteRate = new SmoothedRate();
+	private long lastEdenUsed = -1;
+	private long lastEdenCapacity = -1;
+	private long lastOldUsed = -1;
+
 	public long threadActive;
 	public long threadDaemon;
 	public long threadPeak;
@@ -94,6 +138,9 @@ public class VMInfo {
 	public Usage direct;
 	public Usage map;
 
+	// 最近若干个刷新周期的指标走势，未开启时为null
+	public History history;
+
 	private LongCounter threadLiveCounter;
 	private LongCounter threadDaemonCounter;
 	private LongCounter threadPeakCounter;
@@ -109,8 +156,16 @@ public class VMInfo {
 	private LongCounter safepointSyncTimeCounter;
 	private StringCounter currentGcCauseCounter;
 
+	private UsageCounters edenCounters;
+	private UsageCounters sur0Counters;
+	private UsageCounters sur1Counters;
+	private UsageCounters oldCounters;
+	private UsageCounters permCounters;
+	private UsageCounters ccsCounters;
+
 	public VMInfo(JmxClient jmxClient, String vmId) throws Exception {
 		this.jmxClient = jmxClient;
+		this.jmxSupport = jmxClient != null;
 		this.state = VMInfoState.ATTACHED;
 		this.pid = vmId;
 
@@ -144,6 +199,28 @@ public class VMInfo {
 		return createDeadVM(pid, VMInfoState.ERROR_DURING_ATTACH);
 	}
 
+	/**
+	 * 不连接JMX，仅映射PerfData文件构造VMInfo实例，目标JVM在每次刷新中不需要做任何JMX工作
+	 */
+	public static VMInfo processNewPerfVM(String pid) {
+		try {
+			return new VMInfo(null, pid);
+		} catch (Exception e) {
+			e.printStackTrace(System.out);
+		}
+
+		return createDeadVM(pid, VMInfoState.ERROR_DURING_ATTACH);
+	}
+
+	/**
+	 * 构造回放用的VMInfo实例，静态数据与每帧的动态数据均由RecordingReader写入
+	 */
+	public static VMInfo createReplayVM(String pid) {
+		VMInfo vmInfo = createDeadVM(pid, VMInfoState.ATTACHED);
+		vmInfo.replay = true;
+		return vmInfo;
+	}
+
 	/**
 	 * Creates a dead VMInfo, representing a jvm in a given state which cannot
 	 * be attached or other monitoring issues occurred.
@@ -165,9 +242,34 @@ public class VMInfo {
 			perfCounters = perfData.getAllCounters();
 			initPerfCounters(perfCounters);
 			perfDataSupport = true;
-		} catch (Throwable ignored) {
+
+			Counter javaCommand = perfCounters.get("sun.rt.javaCommand");
+			if (javaCommand != null) {
+				mainClass = ((String) javaCommand.getValue()).trim().split("\\s+")[0];
+			}
+		} catch (Throwable e) {
+			if (!jmxSupport) {
+				throw new IOException("PerfData is required when JMX is disabled", e);
+			}
 		}
 
+		isLinux = System.getProperty("os.name").toLowerCase(Locale.US).contains("linux");
+		if (isLinux) {
+			procFileData = new ProcFileData(pid);
+			cgroupData = CgroupData.create(pid);
+			cgroupSupport = cgroupData != null;
+		}
+
+		if (jmxSupport) {
+			initFromJmx(perfCounters);
+		} else {
+			initFromPerfData(perfCounters);
+		}
+
+		warningRule.updateProcessor(processors);
+	}
+
+	private void initFromJmx(Map<String, Counter> perfCounters) throws IOException {
 		if (perfDataSupport) {
 			vmArgs = (String) perfCounters.get("java.rt.vmArgs").getValue();
 		} else {
@@ -189,22 +291,81 @@ public class VMInfo {
 		maxDirectMemorySize = maxDirectMemorySize == 0 ? -1 : maxDirectMemorySize;
 
 		processors = jmxClient.getOperatingSystemMXBean().getAvailableProcessors();
-		warningRule.updateProcessor(processors);
+	}
 
-		isLinux = System.getProperty("os.name").toLowerCase(Locale.US).contains("linux");
+	/**
+	 * 不经JMX，从PerfData，/proc及启动参数中推算静态数据
+	 */
+	private void initFromPerfData(Map<String, Counter> perfCounters) throws IOException {
+		vmArgs = (String) perfCounters.get("java.rt.vmArgs").getValue();
+		String vmFlags = (String) perfCounters.get("java.rt.vmFlags").getValue();
+		String allArgs = vmFlags + " " + vmArgs;
+
+		// createVmBeginTime为epoch毫秒
+		startTime = ((LongCounter) perfCounters.get("sun.rt.createVmBeginTime")).longValue();
+
+		osUser = isLinux ? Files.getOwner(Paths.get("/proc", pid)).getName() : System.getProperty("user.name");
+
+		// JDK8的PerfData中没有java.version，退而使用规范版本如"1.8"
+		Counter versionCounter = perfCounters.get("java.property.java.version");
+		if (versionCounter == null) {
+			versionCounter = perfCounters.get("java.property.java.vm.specification.version");
+		}
+		jvmVersion = versionCounter != null ? (String) versionCounter.getValue() : "";
+		jvmMajorVersion = getJavaMajorVersion(jvmVersion);
+		permGenName = jvmMajorVersion >= 8 ? "metaspace" : "perm";
+
+		// 未显式设置时使用64位Linux下的默认值1m
+		threadStackSize = parseSizeArg(allArgs, "-Xss", -1);
+		if (threadStackSize == -1) {
+			long threadStackSizeInKb = parseSizeArg(allArgs, "-XX:ThreadStackSize=", -1);
+			threadStackSize = threadStackSizeInKb == -1 ? 1024 * 1024 : threadStackSizeInKb * 1024;
+		}
+		maxDirectMemorySize = parseSizeArg(allArgs, "-XX:MaxDirectMemorySize=", -1);
+
+		// 目标JVM与vjtop位于同一台机器
+		processors = Runtime.getRuntime().availableProcessors();
+
+		threadCpuTimeSupported = isLinux && ProcFileData.isThreadStatReadable(pid);
+
+		// direct与map内存只能通过JMX获取
+		direct = new Usage();
+		map = new Usage();
+		codeCache = new Usage();
+	}
+
+	/**
+	 * 在启动参数中查找形如-Xss512k，-XX:MaxDirectMemorySize=1g的参数，以最后出现的为准
+	 */
+	private static long parseSizeArg(String args, String name, long defaultValue) {
+		long result = defaultValue;
+		for (String arg : args.split("\\s+")) {
+			if (arg.startsWith(name)) {
+				long size = Formats.parseFromSize(arg.substring(name.length()));
+				if (size != -1) {
+					result = size;
+				}
+			}
+		}
+		return result;
 	}
 
 	public void initThreadInfoAbility() throws IOException {
+		if (!jmxSupport || replay) {
+			return;
+		}
 		threadCpuTimeSupported = jmxClient.getThreadMXBean().isThreadCpuTimeSupported();
 		threadMemoryAllocatedSupported = jmxClient.getThreadMXBean().isThreadAllocatedMemorySupported();
 		threadContentionMonitoringSupported = jmxClient.getThreadMXBean().isThreadContentionMonitoringEnabled();
+		procThreadCpuSupported = isLinux && ProcFileData.isThreadStatReadable(pid)
+				&& jmxClient.isDiagnosticCommandSupported();
 	}
 
 	/**
 	 * Updates all jvm metrics to the most recent remote values
 	 */
 	public void update(boolean needJvmInfo) {
-		if (state == VMInfoState.ERROR_DURING_ATTACH || state == VMInfoState.DETACHED) {
+		if (replay || state == VMInfoState.ERROR_DURING_ATTACH || state == VMInfoState.DETACHED) {
 			return;
 		}
 
@@ -213,8 +374,11 @@ public class VMInfo {
 			// 将UPDTATE_ERROR重置开始新一轮循环
 			state = VMInfoState.ATTACHED;
 
-			// 清空JMX内部缓存
-			jmxClient.flush();
+			// 清空JMX内部缓存，再并发预取上一周期读取过的所有MBean属性
+			if (jmxSupport) {
+				jmxClient.flush();
+				jmxClient.prefetch();
+			}
 
 			updateUpTime();
 
@@ -225,11 +389,14 @@ public class VMInfo {
 				}
 
 				updateCpu();
+				updateCgroup();
 				updateThreads();
 				updateClassLoader();
 				updateMemoryPool();
 				updateGC();
+				updateHeapRates();
 				updateSafepoint();
+				updateHistory();
 			}
 
 			// 无新异常，状态重新判定为正常
@@ -249,20 +416,42 @@ public class VMInfo {
 		warningRule.updateInterval(Math.max(1, upTimeMills.delta / 1000));
 	}
 
+	/**
+	 * 保存最近size个刷新周期的CPU、RSS、ygc时间、分配速率与线程数
+	 */
+	public void enableHistory(int size) {
+		history = new History(size);
+	}
+
+	private void updateHistory() {
+		// 第一次刷新没有区间数据
+		if (history == null || upTimeMills.delta <= 0) {
+			return;
+		}
+		history.cpu.add(Math.round(singleCoreCpuLoad * 100));
+		if (isLinux && processDataSupport) {
+			history.rss.add(rss);
+		}
+		history.ygcTime.add(ygcTimeMills.delta);
+		if (allocRate.lastPerSecond != -1) {
+			history.allocRate.add(allocRate.lastPerSecond);
+		}
+		history.threads.add(threadActive);
+	}
+
 	private void updateProcessStatus() {
 		if (!processDataSupport) {
 			return;
 		}
 
-		Map<String, String> procStatus = ProcFileData.getProcStatus(pid);
-		if (procStatus.isEmpty()) {
+		if (!procFileData.readStatus(procStatusValues)) {
 			processDataSupport = false;
 			return;
 		}
-		rss = Formats.parseFromSize(procStatus.get("VmRSS"));
-		peakRss = Formats.parseFromSize(procStatus.get("VmHWM"));
-		swap = Formats.parseFromSize(procStatus.get("VmSwap"));
-		osThreads = Long.parseLong(procStatus.get("Threads"));
+		rss = procStatusValues[ProcFileData.STATUS_VM_RSS];
+		peakRss = procStatusValues[ProcFileData.STATUS_VM_HWM];
+		swap = procStatusValues[ProcFileData.STATUS_VM_SWAP];
+		osThreads = procStatusValues[ProcFileData.STATUS_THREADS];
 	}
 
 	private void updateIO() {
@@ -270,21 +459,24 @@ public class VMInfo {
 			return;
 		}
 
-		Map<String, String> procIo = ProcFileData.getProcIO(pid);
-
-		if (procIo.isEmpty()) {
+		if (!procFileData.readIO(procIoValues)) {
 			ioDataSupport = false;
 			return;
 		}
 
-		readBytes.update(Formats.parseFromSize(procIo.get("read_bytes")));
-		writeBytes.update(Formats.parseFromSize(procIo.get("write_bytes")));
+		readBytes.update(procIoValues[ProcFileData.IO_READ_BYTES]);
+		writeBytes.update(procIoValues[ProcFileData.IO_WRITE_BYTES]);
 
 		readBytes.caculateRatePerSecond(upTimeMills.delta);
 		writeBytes.caculateRatePerSecond(upTimeMills.delta);
 	}
 
 	private void updateCpu() {
+		if (!jmxSupport) {
+			updateCpuFromProc();
+			return;
+		}
+
 		if (!isJmxStateOk()) {
 			return;
 		}
@@ -297,6 +489,43 @@ public class VMInfo {
 		}
 	}
 
+	private void updateCpuFromProc() {
+		if (!isLinux || !processDataSupport) {
+			return;
+		}
+
+		TaskStat procStat = procFileData.readProcStat();
+		if (procStat == null) {
+			processDataSupport = false;
+			return;
+		}
+		cpuTimeNanos.update(procStat.cpuNanos());
+		singleCoreCpuLoad = Utils.calcLoad(cpuTimeNanos.delta / Utils.NANOS_TO_MILLS, upTimeMills.delta);
+		cpuLoad = singleCoreCpuLoad / processors;
+	}
+
+	/**
+	 * 在/proc与JMX的CPU之后读取，以本周期的CPU使用计算占配额的百分比
+	 */
+	private void updateCgroup() {
+		if (!cgroupSupport) {
+			return;
+		}
+
+		cpuLimit = cgroupData.readCpuLimit();
+		cpuLimitLoad = cpuLimit > 0 ? singleCoreCpuLoad / cpuLimit : -1;
+
+		if (cgroupData.readCpuStat(cgroupCpuValues)) {
+			cpuPeriods.update(cgroupCpuValues[CgroupData.CPU_PERIODS]);
+			cpuThrottled.update(cgroupCpuValues[CgroupData.CPU_THROTTLED]);
+			cpuThrottledNanos.update(cgroupCpuValues[CgroupData.CPU_THROTTLED_NANOS]);
+		}
+
+		memoryLimit = cgroupData.readMemoryLimit();
+		memoryUsage = cgroupData.readMemoryWorkingSet();
+		warningRule.updateContainerMemory(memoryLimit);
+	}
+
 	private void updateThreads() {
 		if (perfDataSupport) {
 			threadActive = threadLiveCounter.longValue();
@@ -331,6 +560,11 @@ public class VMInfo {
 	}
 
 	private void updateMemoryPool() {
+		if (!jmxSupport) {
+			updateMemoryPoolFromPerfData();
+			return;
+		}
+
 		if (!isJmxStateOk()) {
 			return;
 		}
@@ -375,6 +609,27 @@ public class VMInfo {
 		}
 	}
 
+	/**
+	 * 从PerfData的sun.gc.*计数器中读取各代内存，CodeCache与堆外内存在PerfData中没有对应数据
+	 */
+	private void updateMemoryPoolFromPerfData() {
+		eden = edenCounters.toUsage();
+		old = oldCounters.toUsage();
+		warningRule.updateOld(old.max);
+
+		// 两个存活区只有一个在使用，容量相同
+		Usage sur0 = sur0Counters.toUsage();
+		Usage sur1 = sur1Counters.toUsage();
+		sur = new Usage(Math.max(0, sur0.used) + Math.max(0, sur1.used), sur0.committed, sur0.max);
+
+		perm = permCounters.toUsage();
+		warningRule.updatePerm(perm.max);
+
+		if (jvmMajorVersion >= 8) {
+			ccs = ccsCounters.toUsage();
+		}
+	}
+
 	private void updateGC() {
 		if (perfDataSupport) {
 			ygcCount.update(ygcCountCounter.longValue());
@@ -399,6 +654,52 @@ public class VMInfo {
 		}
 	}
 
+	/**
+	 * 有PerfData时直接读取计数器，与同样来自PerfData的GC次数在同一时刻采样，否则使用JMX取得的各代用量
+	 */
+	private void updateHeapRates() {
+		if (perfDataSupport) {
+			Usage edenUsage = edenCounters.toUsage();
+			updateHeapRates(edenUsage.used, edenUsage.committed, oldCounters.toUsage().used);
+		} else if (eden != null && old != null) {
+			updateHeapRates(eden.used, eden.committed, old.used);
+		}
+	}
+
+	/**
+	 * 分配量: 周期内没有GC时为eden用量的增长；有N次GC时为上次的eden剩余空间 + (N-1)个eden容量 + 当前的eden用量。
+	 * 晋升量: 周期内没有Full GC时老年代用量的增长。CMS/G1的并发回收会同时释放老年代，此时晋升量被低估；
+	 * 有Full GC的周期无法推算，保持上次的平滑值。
+	 *
+	 * 回放时由Recording.apply()以录制的各代用量调用。
+	 */
+	void updateHeapRates(long edenUsed, long edenCapacity, long oldUsed) {
+		long deltaMills = upTimeMills.delta;
+		if (edenUsed < 0 || oldUsed < 0) {
+			return;
+		}
+
+		if (lastEdenUsed >= 0 && deltaMills > 0) {
+			long gcCount = Math.max(0, ygcCount.delta) + Math.max(0, fullgcCount.delta);
+			long allocated;
+			if (gcCount == 0) {
+				allocated = Math.max(0, edenUsed - lastEdenUsed);
+			} else {
+				allocated = Math.max(0, lastEdenCapacity - lastEdenUsed) + (gcCount - 1) * Math.max(0, edenCapacity)
+						+ edenUsed;
+			}
+			allocRate.update(allocated, deltaMills);
+
+			if (fullgcCount.delta <= 0) {
+				promoteRate.update(Math.max(0, oldUsed - lastOldUsed), deltaMills);
+			}
+		}
+
+		lastEdenUsed = edenUsed;
+		lastEdenCapacity = edenCapacity;
+		lastOldUsed = oldUsed;
+	}
+
 	private void updateSafepoint() {
 		if (!perfDataSupport) {
 			return;
@@ -410,10 +711,43 @@ public class VMInfo {
 		currentGcCause = (String) currentGcCauseCounter.getValue();
 	}
 
+	/**
+	 * 映射的PerfData，不支持时为null，供独立线程高频读取计数器
+	 */
+	public PerfData getPerfData() {
+		return perfDataSupport ? perfData : null;
+	}
+
+	/**
+	 * 本周期的JMX远程调用统计，不使用JMX时为null
+	 */
+	public JmxClient.CallStats getJmxCallStats() {
+		return jmxSupport && jmxClient != null ? jmxClient.getCallStats() : null;
+	}
+
+	/**
+	 * 从/proc/PID/task读取所有线程的CPU时间，返回的List与TaskStat在下次调用时复用
+	 */
+	public List<TaskStat> getProcThreadStats() {
+		return procFileData.readThreadStats();
+	}
+
 	public long[] getAllThreadIds() throws IOException {
 		return jmxClient.getThreadMXBean().getAllThreadIds();
 	}
 
+	/**
+	 * JVM启动以来的累计启动线程数，无法获取时返回-1
+	 */
+	public long getTotalStartedThreadCount() throws IOException {
+		if (perfDataSupport) {
+			return threadStartedCounter.longValue();
+		} else if (jmxSupport) {
+			return jmxClient.getThreadMXBean().getTotalStartedThreadCount();
+		}
+		return -1;
+	}
+
 	public long[] getThreadCpuTime(long[] tids) throws IOException {
 		return jmxClient.getThreadMXBean().getThreadCpuTime(tids);
 	}
@@ -427,15 +761,105 @@ public class VMInfo {
 	}
 
 	public ThreadInfo getThreadInfo(long tid, int maxDepth) throws IOException {
-		return jmxClient.getThreadMXBean().getThreadInfo(tid, maxDepth);
+		beginStackOperation();
+		try {
+			return jmxClient.getThreadMXBean().getThreadInfo(tid, maxDepth);
+		} finally {
+			endStackOperation();
+		}
 	}
 
 	public ThreadInfo[] getThreadInfo(long[] tids, int maxDepth) throws IOException {
-		return jmxClient.getThreadMXBean().getThreadInfo(tids, maxDepth);
+		beginStackOperation();
+		try {
+			return jmxClient.getThreadMXBean().getThreadInfo(tids, maxDepth);
+		} finally {
+			endStackOperation();
+		}
 	}
 
 	public ThreadInfo[] getAllThreadInfo() throws IOException {
-		return jmxClient.getThreadMXBean().dumpAllThreads(false, false);
+		beginStackOperation();
+		try {
+			return jmxClient.getThreadMXBean().dumpAllThreads(false, false);
+		} finally {
+			endStackOperation();
+		}
+	}
+
+	/**
+	 * 检查synchronized与j.u.c锁的死锁，目标JVM不支持j.u.c锁的监控时只检查synchronized，需要进入安全点
+	 */
+	public long[] findDeadlockedThreads() throws IOException {
+		beginStackOperation();
+		try {
+			return jmxClient.getThreadMXBean().findDeadlockedThreads();
+		} catch (UnsupportedOperationException e) {
+			return jmxClient.getThreadMXBean().findMonitorDeadlockedThreads();
+		} finally {
+			endStackOperation();
+		}
+	}
+
+	/**
+	 * 不带锁信息的线程Dump，等同于jcmd PID Thread.print，会造成停顿
+	 */
+	public String getThreadDump() throws IOException {
+		beginStackOperation();
+		try {
+			return jmxClient.invokeDiagnosticCommand("threadPrint");
+		} finally {
+			endStackOperation();
+		}
+	}
+
+	/**
+	 * 等同于jcmd PID VM.native_memory summary scale=KB，目标JVM未开启NMT时返回提示信息
+	 */
+	public String getNativeMemorySummary() throws IOException {
+		return jmxClient.invokeDiagnosticCommand("vmNativeMemory", "summary", "scale=KB");
+	}
+
+	/**
+	 * 等同于jcmd PID GC.class_histogram -all，统计堆中包括不可达对象在内的所有对象，不会像默认方式那样先触发一次Full GC，
+	 * 但仍在安全点中遍历整个堆，停顿时间随堆大小增长
+	 */
+	public String getClassHistogram() throws IOException {
+		return jmxClient.invokeDiagnosticCommand("gcClassHistogram", "-all");
+	}
+
+	/**
+	 * 等同于jcmd PID Compiler.codecache，代码缓存各分段的用量，nmethod数与代码缓存满的次数
+	 */
+	public String getCodeCacheInfo() throws IOException {
+		return jmxClient.invokeDiagnosticCommand("compilerCodecache");
+	}
+
+	/**
+	 * 等同于jcmd PID VM.classloader_stats，每个ClassLoader加载的类数与占用的元空间
+	 */
+	public String getClassLoaderStats() throws IOException {
+		return jmxClient.invokeDiagnosticCommand("vmClassloaderStats");
+	}
+
+	private void beginStackOperation() {
+		stackOperationsInFlight.incrementAndGet();
+	}
+
+	private void endStackOperation() {
+		stackOperations.incrementAndGet();
+		stackOperationsInFlight.decrementAndGet();
+	}
+
+	/**
+	 * vjtop自身发起的、需要进入安全点的栈操作(取栈，线程Dump，死锁检查)已完成的次数，供安全点视图区分停顿的来源
+	 */
+	public long getStackOperationCount() {
+		return stackOperations.get();
+	}
+
+	public boolean isStackOperationInFlight() {
+		return stackOperationsInFlight.get() > 0;
 	}
 
 	public long[] getThreadAllocatedBytes(long[] tids) throws IOException {
@@ -460,6 +884,36 @@ public class VMInfo {
 		safepointTimeCounter = (LongCounter) perfCounters.get("sun.rt.safepointTime");
 		safepointSyncTimeCounter = (LongCounter) perfCounters.get("sun.rt.safepointSyncTime");
 		currentGcCauseCounter = (StringCounter) perfCounters.get("sun.gc.cause");
+
+		edenCounters = new UsageCounters(perfCounters, "sun.gc.generation.0.space.0");
+		sur0Counters = new UsageCounters(perfCounters, "sun.gc.generation.0.space.1");
+		sur1Counters = new UsageCounters(perfCounters, "sun.gc.generation.0.space.2");
+		oldCounters = new UsageCounters(perfCounters, "sun.gc.generation.1.space.0");
+		// JDK8的metaspace，JDK7的永久代
+		if (perfCounters.containsKey("sun.gc.metaspace.used")) {
+			permCounters = new UsageCounters(perfCounters, "sun.gc.metaspace");
+		} else {
+			permCounters = new UsageCounters(perfCounters, "sun.gc.generation.2.space.0");
+		}
+		ccsCounters = new UsageCounters(perfCounters, "sun.gc.compressedclassspace");
+	}
+
+	/**
+	 * 关闭/proc与cgroup文件，并释放PerfData的映射，关闭后状态为DETACHED，不可再更新。JVM退出后由多JVM监控调用
+	 */
+	public void close() {
+		state = VMInfoState.DETACHED;
+		if (perfData != null) {
+			perfDataSupport = false;
+			perfData.close();
+			perfData = null;
+		}
+		if (procFileData != null) {
+			procFileData.close();
+		}
+		if (cgroupData != null) {
+			cgroupData.close();
+		}
 	}
 
 	public void handleJmxFetchDataError(Throwable e) {
@@ -480,16 +934,19 @@ public class VMInfo {
 		return state != VMInfoState.ATTACHED_UPDATE_ERROR && state != VMInfoState.DETACHED;
 	}
 
-	private static int getJavaMajorVersion(String jvmVersion) {
-		if (jvmVersion.startsWith("1.8")) {
-			return 8;
-		} else if (jvmVersion.startsWith("1.7")) {
-			return 7;
-		} else if (jvmVersion.startsWith("1.6")) {
-			return 6;
-		} else {
+	/**
+	 * 解析java.version的主版本号，JDK8及以前为1.8.0_292的格式，JDK9起为11.0.2、17、21-ea的格式，无法解析时返回0
+	 */
+	static int getJavaMajorVersion(String jvmVersion) {
+		String version = jvmVersion.startsWith("1.") ? jvmVersion.substring(2) : jvmVersion;
+		int end = 0;
+		while (end < version.length() && Character.isDigit(version.charAt(end))) {
+			end++;
+		}
+		if (end == 0 || end > 3) {
 			return 0;
 		}
+		return Integer.parseInt(version.substring(0, end));
 	}
 
 	public enum VMInfoState {
@@ -517,6 +974,75 @@ public class VMInfo {
 		}
 	}
 
+	/**
+	 * 各指标最近若干个刷新周期的原始值，以固定大小的环形缓冲保存，内存不随运行时间增长
+	 */
+	public static class History {
+		public static final int DEFAULT_SIZE = 60;
+
+		// 单核CPU百分比乘以100
+		public final LongRingBuffer cpu;
+		public final LongRingBuffer rss;
+		// 每个区间内的ygc时间
+		public final LongRingBuffer ygcTime;
+		// 每个区间的分配速率，未经平滑
+		public final LongRingBuffer allocRate;
+		public final LongRingBuffer threads;
+
+		History(int size) {
+			cpu = new LongRingBuffer(size);
+			rss = new LongRingBuffer(size);
+			ygcTime = new LongRingBuffer(size);
+			allocRate = new LongRingBuffer(size);
+			threads = new LongRingBuffer(size);
+		}
+	}
+
+	/**
+	 * 以时间加权的指数移动平均(EWMA)平滑的每秒速率，时间常数为TIME_CONSTANT_MILLS，刷新间隔不同时平滑程度一致。
+	 * 首个样本直接作为初值，尚无数据时为-1
+	 */
+	public static class SmoothedRate {
+		private static final double TIME_CONSTANT_MILLS = 30 * 1000d;
+
+		// 上一个周期的原始速率
+		public long lastPerSecond = -1;
+		public long ratePerSecond = -1;
+
+		public void update(long delta, long deltaTimeMills) {
+			lastPerSecond = delta * 1000 / deltaTimeMills;
+			if (ratePerSecond == -1) {
+				ratePerSecond = lastPerSecond;
+			} else {
+				double alpha = 1 - Math.exp(-deltaTimeMills / TIME_CONSTANT_MILLS);
+				ratePerSecond = Math.round(ratePerSecond + alpha * (lastPerSecond - ratePerSecond));
+			}
+		}
+	}
+
+	/**
+	 * 一块内存区在PerfData中的used/capacity/maxCapacity计数器，不存在的计数器视为-1
+	 */
+	private static class UsageCounters {
+		private final LongCounter used;
+		private final LongCounter capacity;
+		private final LongCounter maxCapacity;
+
+		UsageCounters(Map<String, Counter> perfCounters, String prefix) {
+			used = (LongCounter) perfCounters.get(prefix + ".used");
+			capacity = (LongCounter) perfCounters.get(prefix + ".capacity");
+			maxCapacity = (LongCounter) perfCounters.get(prefix + ".maxCapacity");
+		}
+
+		Usage toUsage() {
+			return new Usage(valueOf(used), valueOf(capacity), valueOf(maxCapacity));
+		}
+
+		private static long valueOf(LongCounter counter) {
+			return counter != null ? counter.longValue() : -1;
+		}
+	}
+
 	public static class Usage {
 		public long used = -1;
 		public long committed = -1;
@@ -6,6 +6,9 @@ public class WarningRule {
 	public DoubleWarning cpu = new DoubleWarning(50d, 70d);
 
 	public LongWarning swap = new LongWarning(1, 1);
+	// cgroup的CPU限流时间(毫秒)与内存用量
+	public LongWarning cpuThrottledTime = new LongWarning();
+	public LongWarning containerMemory = new LongWarning();
 	public LongWarning thread = new LongWarning();
 	public LongWarning newThread = new LongWarning(1, Long.MAX_VALUE);
 	public LongWarning io = new LongWarning(100 * Formats.MB_SIZE, Long.MAX_VALUE);
@@ -21,8 +24,19 @@ public class WarningRule {
 	public LongWarning ygcTime = new LongWarning();
 	public LongWarning ygcAvgTime = new LongWarning(100, 200);
 	public LongWarning fullgcCount = new LongWarning(1, 2);
+	// 每秒字节数
+	public LongWarning allocRate = new LongWarning(500 * Formats.MB_SIZE, 1024 * Formats.MB_SIZE);
+	public LongWarning promoteRate = new LongWarning();
 	public LongWarning safepointCount = new LongWarning();
 	public LongWarning safepointTime = new LongWarning();
+	// 安全点视图中每次安全点的停顿与进入安全点耗时，毫秒
+	public LongWarning safepointWorst = new LongWarning(50, 200);
+	public LongWarning safepointTtsp = new LongWarning(10, 100);
+	// JIT视图中每个刷新周期的编译失败与逆优化次数
+	public LongWarning jitBailout = new LongWarning(1, Long.MAX_VALUE);
+	public LongWarning jitInvalidate = new LongWarning(1, Long.MAX_VALUE);
+	// 类加载视图中由元空间触发的GC次数
+	public LongWarning metadataGc = new LongWarning(1, 1);
 
 	public void updateProcessor(int processors) {
 		thread.yellow = processors <= 8 ? processors * 150 : Math.max(8 * 150, processors * 100);
@@ -42,12 +56,29 @@ public class WarningRule {
 
 		safepointTime.yellow = intervalSeconds * 1000 * 5 / 100; // 5% interval
 		safepointTime.red = intervalSeconds * 1000 * 10 / 100; // 10% interval
+
+		cpuThrottledTime.yellow = 1;
+		cpuThrottledTime.red = intervalSeconds * 1000 * 5 / 100; // 5% interval
 	}
 
 	public void updateOld(long max) {
 		if (max != -1) {
 			old.yellow = max * 85 / 100;
 			old.red = max * 95 / 100;
+			// 按当前速率10分钟或2分钟内晋升满整个老年代
+			promoteRate.yellow = max / 600;
+			promoteRate.red = max / 120;
+		}
+	}
+
+	/**
+	 * 用量为工作集，与kubelet按内存驱逐及OOM Killer的口径接近，到达limit即会被杀而不像堆内存区可由GC腾出空间。
+	 * 工作集中仍含有active的page cache，接近limit时内核会先回收这部分，因此阈值比堆内存区略高，95%时已随时可能被杀
+	 */
+	public void updateContainerMemory(long limit) {
+		if (limit != -1) {
+			containerMemory.yellow = limit * 90 / 100;
+			containerMemory.red = limit * 95 / 100;
 		}
 	}
 
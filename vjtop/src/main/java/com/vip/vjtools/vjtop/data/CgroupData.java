@@ -0,0 +1,265 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 读取目标进程所在cgroup的CPU配额，CPU限流次数与时间，及内存限制与工作集，支持cgroup v1与v2。
+ *
+ * 进程的cgroup路径来自/proc/PID/cgroup，cgroup文件系统的挂载点来自vjtop自身的/proc/self/mountinfo。
+ * vjtop与目标JVM在同一容器内时，挂载点即为容器自身的cgroup，路径不存在时退回挂载点。
+ *
+ * See https://www.kernel.org/doc/Documentation/cgroup-v2.txt and
+ * https://www.kernel.org/doc/Documentation/scheduler/sched-bwc.txt
+ */
+public class CgroupData {
+
+	private static final String PROC_CGROUP_FILE_TPL = "/proc/%s/cgroup";
+	private static final String PROC_SELF_MOUNTINFO_FILE = "/proc/self/mountinfo";
+
+	// cpu.stat中需要的key，数组下标即values中的下标，throttled时间统一转换为纳秒
+	public static final int CPU_PERIODS = 0;
+	public static final int CPU_THROTTLED = 1;
+	public static final int CPU_THROTTLED_NANOS = 2;
+	private static final byte[][] CPU_STAT_V1_KEYS = ProcFileReader.toKeys("nr_periods", "nr_throttled",
+			"throttled_time");
+	private static final byte[][] CPU_STAT_V2_KEYS = ProcFileReader.toKeys("nr_periods", "nr_throttled",
+			"throttled_usec");
+
+	// memory.stat中不活跃的文件页，v1中total_前缀的值包含子cgroup
+	private static final byte[][] MEMORY_STAT_V1_KEYS = ProcFileReader.toKeys("total_inactive_file");
+	private static final byte[][] MEMORY_STAT_V2_KEYS = ProcFileReader.toKeys("inactive_file");
+
+	// v1中不限制内存时memory.limit_in_bytes为接近Long.MAX_VALUE的页对齐值
+	private static final long V1_UNLIMITED = 1L << 62;
+
+	public final int version;
+
+	private final ProcFileReader cpuStatReader;
+	private final ProcFileReader cpuQuotaReader;
+	private final ProcFileReader cpuPeriodReader;
+	private final ProcFileReader memoryLimitReader;
+	private final ProcFileReader memoryUsageReader;
+	private final ProcFileReader memoryStatReader;
+
+	private final long[] fieldValues = new long[2];
+	private final long[] memoryStatValues = new long[1];
+
+	CgroupData(int version, String cpuDir, String memoryDir) {
+		this.version = version;
+		if (version == 2) {
+			cpuStatReader = new ProcFileReader(cpuDir + "/cpu.stat");
+			cpuQuotaReader = new ProcFileReader(cpuDir + "/cpu.max");
+			cpuPeriodReader = null;
+			memoryLimitReader = new ProcFileReader(memoryDir + "/memory.max");
+			memoryUsageReader = new ProcFileReader(memoryDir + "/memory.current");
+			memoryStatReader = new ProcFileReader(memoryDir + "/memory.stat");
+		} else {
+			cpuStatReader = newReader(cpuDir, "cpu.stat");
+			cpuQuotaReader = newReader(cpuDir, "cpu.cfs_quota_us");
+			cpuPeriodReader = newReader(cpuDir, "cpu.cfs_period_us");
+			memoryLimitReader = newReader(memoryDir, "memory.limit_in_bytes");
+			memoryUsageReader = newReader(memoryDir, "memory.usage_in_bytes");
+			memoryStatReader = newReader(memoryDir, "memory.stat");
+		}
+	}
+
+	/**
+	 * v1中cpu或memory可能没有挂载，此时对应的reader为null
+	 */
+	private static ProcFileReader newReader(String dir, String fileName) {
+		return dir != null ? new ProcFileReader(dir + "/" + fileName) : null;
+	}
+
+	/**
+	 * 找不到目标进程的cgroup，或cgroup文件系统未挂载时返回null
+	 */
+	public static CgroupData create(String pid) {
+		List<String> cgroupLines;
+		List<String> mountLines;
+		try {
+			cgroupLines = Files.readAllLines(Paths.get(String.format(PROC_CGROUP_FILE_TPL, pid)),
+					StandardCharsets.UTF_8);
+			mountLines = Files.readAllLines(Paths.get(PROC_SELF_MOUNTINFO_FILE), StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			return null;
+		}
+
+		// cgroup文件的每行为"hierarchy-ID:controller-list:cgroup-path"，v2的hierarchy-ID为0且controller-list为空
+		String cpuPath = null;
+		String memoryPath = null;
+		String unifiedPath = null;
+		for (String line : cgroupLines) {
+			String[] parts = line.split(":", 3);
+			if (parts.length < 3) {
+				continue;
+			}
+			if (parts[0].equals("0") && parts[1].isEmpty()) {
+				unifiedPath = parts[2];
+				continue;
+			}
+			for (String controller : parts[1].split(",")) {
+				if (controller.equals("cpu")) {
+					cpuPath = parts[2];
+				} else if (controller.equals("memory")) {
+					memoryPath = parts[2];
+				}
+			}
+		}
+
+		// v1与v2混合挂载时，以v1中的cpu与memory为准
+		String cpuDir = cpuPath != null ? resolve(mountLines, "cgroup", "cpu", cpuPath) : null;
+		String memoryDir = memoryPath != null ? resolve(mountLines, "cgroup", "memory", memoryPath) : null;
+		if (cpuDir != null || memoryDir != null) {
+			return new CgroupData(1, cpuDir, memoryDir);
+		}
+
+		String unifiedDir = unifiedPath != null ? resolve(mountLines, "cgroup2", null, unifiedPath) : null;
+		if (unifiedDir != null && new File(unifiedDir, "cpu.max").exists()) {
+			return new CgroupData(2, unifiedDir, unifiedDir);
+		}
+		return null;
+	}
+
+	/**
+	 * 在mountinfo中找到挂载了该controller的cgroup文件系统，将进程的cgroup路径转换为vjtop可见的目录。
+	 *
+	 * mountinfo每行为"ID parentID major:minor root mountPoint options ... - fsType source superOptions"
+	 */
+	static String resolve(List<String> mountLines, String fsType, String controller, String cgroupPath) {
+		for (String line : mountLines) {
+			int separator = line.indexOf(" - ");
+			if (separator == -1) {
+				continue;
+			}
+			String[] mountFields = line.substring(0, separator).split(" ");
+			String[] fsFields = line.substring(separator + 3).split(" ");
+			if (mountFields.length < 5 || fsFields.length < 3 || !fsFields[0].equals(fsType)) {
+				continue;
+			}
+			if (controller != null && !hasController(fsFields[2], controller)) {
+				continue;
+			}
+
+			String root = mountFields[3];
+			String mountPoint = mountFields[4];
+			String relativePath;
+			if (root.equals("/")) {
+				relativePath = cgroupPath;
+			} else if (cgroupPath.startsWith(root)) {
+				relativePath = cgroupPath.substring(root.length());
+			} else {
+				relativePath = "";
+			}
+
+			File dir = new File(mountPoint, relativePath);
+			return dir.isDirectory() ? dir.getPath() : mountPoint;
+		}
+		return null;
+	}
+
+	private static boolean hasController(String superOptions, String controller) {
+		for (String option : superOptions.split(",")) {
+			if (option.equals(controller)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * CPU配额折算的核数，不限制或无法读取时返回-1
+	 */
+	public double readCpuLimit() {
+		if (cpuQuotaReader == null || !cpuQuotaReader.read()) {
+			return -1;
+		}
+
+		long quota;
+		long period;
+		if (version == 2) {
+			// "max 100000"或"200000 100000"
+			if (cpuQuotaReader.parseFields(fieldValues) < 2) {
+				return -1;
+			}
+			quota = fieldValues[0];
+			period = fieldValues[1];
+		} else {
+			cpuQuotaReader.parseFields(fieldValues);
+			quota = fieldValues[0];
+			if (quota <= 0 || !cpuPeriodReader.read()) {
+				return -1;
+			}
+			cpuPeriodReader.parseFields(fieldValues);
+			period = fieldValues[0];
+		}
+		return quota > 0 && period > 0 ? (double) quota / period : -1;
+	}
+
+	/**
+	 * 读取cpu.stat，按CPU_*下标写入values，失败时返回false
+	 */
+	public boolean readCpuStat(long[] values) {
+		if (cpuStatReader == null || !cpuStatReader.read()) {
+			return false;
+		}
+		cpuStatReader.parseKeyValues(version == 2 ? CPU_STAT_V2_KEYS : CPU_STAT_V1_KEYS, values, (byte) ' ');
+		if (version == 2 && values[CPU_THROTTLED_NANOS] != -1) {
+			values[CPU_THROTTLED_NANOS] *= 1000;
+		}
+		return true;
+	}
+
+	/**
+	 * 内存限制，不限制或无法读取时返回-1
+	 */
+	public long readMemoryLimit() {
+		if (memoryLimitReader == null || !memoryLimitReader.read()) {
+			return -1;
+		}
+		memoryLimitReader.parseFields(fieldValues);
+		long limit = fieldValues[0];
+		return limit >= V1_UNLIMITED ? -1 : limit;
+	}
+
+	/**
+	 * cgroup的工作集内存，即用量减去memory.stat中的inactive_file，与kubelet/cAdvisor的working set口径一致。
+	 *
+	 * memory.usage_in_bytes与memory.current包含page cache，有文件读写的容器会长期接近限制，而不活跃的文件页在内存不足时可直接回收。
+	 * 无法读取时返回-1
+	 */
+	public long readMemoryWorkingSet() {
+		if (memoryUsageReader == null || !memoryUsageReader.read()) {
+			return -1;
+		}
+		memoryUsageReader.parseFields(fieldValues);
+		long usage = fieldValues[0];
+		if (usage == -1 || memoryStatReader == null || !memoryStatReader.read()) {
+			return usage;
+		}
+
+		memoryStatReader.parseKeyValues(version == 2 ? MEMORY_STAT_V2_KEYS : MEMORY_STAT_V1_KEYS, memoryStatValues,
+				(byte) ' ');
+		long inactiveFile = memoryStatValues[0];
+		return inactiveFile > 0 ? Math.max(0, usage - inactiveFile) : usage;
+	}
+
+	public void close() {
+		closeQuietly(cpuStatReader);
+		closeQuietly(cpuQuotaReader);
+		closeQuietly(cpuPeriodReader);
+		closeQuietly(memoryLimitReader);
+		closeQuietly(memoryUsageReader);
+		closeQuietly(memoryStatReader);
+	}
+
+	private static void closeQuietly(ProcFileReader reader) {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+}
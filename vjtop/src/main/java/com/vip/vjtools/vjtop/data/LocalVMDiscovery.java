@@ -0,0 +1,84 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 通过hsperfdata目录发现本机的JVM，与jps的方式相同，关闭了PerfData(-XX:-UsePerfData)的JVM无法被发现。
+ *
+ * 目录为 {java.io.tmpdir}/hsperfdata_{user}/{pid}，不能读取的其他用户目录直接跳过
+ */
+public class LocalVMDiscovery {
+
+	private static final String HSPERFDATA_DIR_PREFIX = "hsperfdata_";
+
+	private static final FileFilter HSPERFDATA_DIR_FILTER = new FileFilter() {
+		@Override
+		public boolean accept(File file) {
+			return file.isDirectory() && file.getName().startsWith(HSPERFDATA_DIR_PREFIX);
+		}
+	};
+
+	private final File tmpDir;
+	private final String selfPid;
+	// 非Linux时为null，不检查进程是否存在
+	private final File procDir;
+
+	public LocalVMDiscovery() {
+		this(new File(System.getProperty("java.io.tmpdir")),
+				ManagementFactory.getRuntimeMXBean().getName().split("@")[0],
+				new File("/proc/self").exists() ? new File("/proc") : null);
+	}
+
+	LocalVMDiscovery(File tmpDir, String selfPid, File procDir) {
+		this.tmpDir = tmpDir;
+		this.selfPid = selfPid;
+		this.procDir = procDir;
+	}
+
+	/**
+	 * 返回当前存活的JVM进程号，不包含vjtop自身
+	 */
+	public List<String> listPids() {
+		List<String> pids = new ArrayList<>();
+
+		File[] perfDirs = tmpDir.listFiles(HSPERFDATA_DIR_FILTER);
+		if (perfDirs == null) {
+			return pids;
+		}
+
+		for (File perfDir : perfDirs) {
+			String[] names = perfDir.list();
+			if (names == null) {
+				continue;
+			}
+
+			for (String name : names) {
+				if (!isNumeric(name) || name.equals(selfPid)) {
+					continue;
+				}
+				// JVM被kill -9时不会删除PerfData文件，以/proc/PID判断进程是否存在
+				if (procDir != null && !new File(procDir, name).exists()) {
+					continue;
+				}
+				pids.add(name);
+			}
+		}
+		return pids;
+	}
+
+	private static boolean isNumeric(String str) {
+		if (str.isEmpty()) {
+			return false;
+		}
+		for (int i = 0; i < str.length(); i++) {
+			if (!Character.isDigit(str.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -15,7 +15,7 @@ import sun.misc.Perf;
 
 @SuppressWarnings("restriction")
 public class PerfData {
-	private final PerfInstrumentation instr;
+	private PerfInstrumentation instr;
 	// PerfData中的时间相关数据以tick表示，每个tick的时长与计算机频率相关
 	private final double nanosPerTick;
 
@@ -67,4 +67,18 @@ public class PerfData {
 			throw new IllegalArgumentException(tickCounter.getName() + " is not a ticket counter");
 		}
 	}
+
+	public long tickToMicros(long ticks) {
+		return (long) (nanosPerTick * ticks / 1000);
+	}
+
+	/**
+	 * 释放对映射的引用，之后不可再读取计数器。
+	 *
+	 * Perf没有公开的detach，映射由attach时注册的Cleaner在ByteBuffer不可达并经过GC后解除，调用者也需丢弃持有的Counter。
+	 */
+	public void close() {
+		instr = null;
+		counters.clear();
+	}
 }
@@ -1,52 +1,194 @@
 package com.vip.vjtools.vjtop.data;
 
 import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-// See http://man7.org/linux/man-pages/man5/proc.5.html for /proc file details
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+
+/**
+ * 读取单个进程的/proc数据，解析结果直接写入调用方的long[]，每次刷新复用缓冲区与TaskStat对象。
+ * 
+ * See http://man7.org/linux/man-pages/man5/proc.5.html for /proc file details
+ */
 public class ProcFileData {
 
 	private static final String PROC_SELF_STATUS_FILE_TPL = "/proc/%s/status";
 	private static final String PROC_SELF_IO_FILE_TPL = "/proc/%s/io";
+	private static final String PROC_SELF_STAT_FILE_TPL = "/proc/%s/stat";
+	private static final String PROC_SELF_TASK_DIR_TPL = "/proc/%s/task";
+	private static final String PROC_SELF_TASK_STAT_FILE_TPL = "/proc/%s/task/%s/stat";
+
+	// stat文件中utime与stime以clock tick为单位，Linux的USER_HZ基本固定为100，即每个tick为10ms
+	public static final long CLOCK_TICK_NANOS = 10L * 1000 * 1000;
+
+	// status与io文件中需要的key，数组下标即values中的下标
+	public static final int STATUS_VM_RSS = 0;
+	public static final int STATUS_VM_HWM = 1;
+	public static final int STATUS_VM_SWAP = 2;
+	public static final int STATUS_THREADS = 3;
+	private static final byte[][] STATUS_KEYS = ProcFileReader.toKeys("VmRSS", "VmHWM", "VmSwap", "Threads");
+
+	public static final int IO_READ_BYTES = 0;
+	public static final int IO_WRITE_BYTES = 1;
+	private static final byte[][] IO_KEYS = ProcFileReader.toKeys("read_bytes", "write_bytes");
+
+	// stat文件中去掉 "pid (comm) " 后，state，utime，stime字段的下标，见proc(5)
+	private static final int[] STAT_FIELDS = new int[] { 0, 11, 12 };
+
+	private final String pid;
+	private final String taskDir;
+
+	private final ProcFileReader statusReader;
+	private final ProcFileReader ioReader;
+	private final ProcFileReader statReader;
+	private final ProcFileReader taskStatReader = new ProcFileReader(null);
+
+	private final long[] statValues = new long[STAT_FIELDS.length];
+	private final TaskStat procStat = new TaskStat();
+
+	// 以tid为key复用TaskStat对象，线程名与文件路径只在首次见到该线程时生成
+	private LongObjectMap<TaskStat> taskStatCache = new LongObjectHashMap<>();
+	private LongObjectMap<TaskStat> swapTaskStatCache = new LongObjectHashMap<>();
+	private final List<TaskStat> taskStats = new ArrayList<>();
 
-	private static final String VALUE_SEPARATOR = ":";
+	public ProcFileData(String pid) {
+		this.pid = pid;
+		this.taskDir = String.format(PROC_SELF_TASK_DIR_TPL, pid);
+		this.statusReader = new ProcFileReader(String.format(PROC_SELF_STATUS_FILE_TPL, pid));
+		this.ioReader = new ProcFileReader(String.format(PROC_SELF_IO_FILE_TPL, pid));
+		this.statReader = new ProcFileReader(String.format(PROC_SELF_STAT_FILE_TPL, pid));
+	}
 
-	public static Map<String, String> getProcStatus(String pid) {
-		return getProcFileAsMap(String.format(PROC_SELF_STATUS_FILE_TPL, pid));
+	/**
+	 * 读取/proc/PID/status，按STATUS_*下标写入values，失败时返回false
+	 */
+	public boolean readStatus(long[] values) {
+		if (!statusReader.read()) {
+			return false;
+		}
+		statusReader.parseKeyValues(STATUS_KEYS, values);
+		return true;
 	}
 
-	public static Map<String, String> getProcIO(String pid) {
-		return getProcFileAsMap(String.format(PROC_SELF_IO_FILE_TPL, pid));
+	/**
+	 * 读取/proc/PID/io，按IO_*下标写入values，不是同一个用户时没有读权限，返回false
+	 */
+	public boolean readIO(long[] values) {
+		if (!ioReader.read()) {
+			return false;
+		}
+		ioReader.parseKeyValues(IO_KEYS, values);
+		return true;
 	}
 
-	public static Map<String, String> getProcFileAsMap(String filePath) {
-		try {
-			File file = new File(filePath);
-			if (!file.exists() || file.isDirectory() || !file.canRead()) {
-				return Collections.emptyMap();
+	/**
+	 * 读取进程的/proc/PID/stat，返回的对象在每次调用时复用，读取失败时返回null
+	 */
+	public TaskStat readProcStat() {
+		if (!statReader.read() || !statReader.parseStatFields(STAT_FIELDS, statValues)) {
+			return null;
+		}
+		procStat.update(statValues);
+		return procStat;
+	}
+
+	/**
+	 * 读取进程所有线程的/proc/PID/task/TID/stat，线程在读取期间退出时跳过。
+	 * 
+	 * 返回的List与TaskStat在下次调用时复用，调用方不能保留
+	 */
+	public List<TaskStat> readThreadStats() {
+		taskStats.clear();
+		swapTaskStatCache.clear();
+
+		String[] tids = new File(taskDir).list();
+		if (tids == null) {
+			return taskStats;
+		}
+
+		for (String tidStr : tids) {
+			long tid = Long.parseLong(tidStr);
+			TaskStat taskStat = taskStatCache.get(tid);
+			if (taskStat == null) {
+				taskStat = new TaskStat();
+				taskStat.tid = tid;
+				taskStat.path = String.format(PROC_SELF_TASK_STAT_FILE_TPL, pid, tidStr);
 			}
 
-			List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
-			Map<String, String> result = new HashMap<>(lines.size() * 2);
-
-			for (String line : lines) {
-				int index = line.indexOf(VALUE_SEPARATOR);
-				if (index <= 0 || index >= line.length() - 1) {
-					continue;
-				}
-				String key = line.substring(0, index).trim();
-				String value = line.substring(index + 1).trim();
-				result.put(key, value);
+			if (!taskStatReader.read(taskStat.path) || !taskStatReader.parseStatFields(STAT_FIELDS, statValues)) {
+				// 线程已退出或无权限
+				continue;
+			}
+			if (taskStat.name == null) {
+				taskStat.name = taskStatReader.parseStatComm();
+			}
+			taskStat.update(statValues);
+
+			taskStats.add(taskStat);
+			swapTaskStatCache.put(tid, taskStat);
+		}
+
+		// 交换两个Map，已退出线程的TaskStat随之丢弃
+		LongObjectMap<TaskStat> temp = taskStatCache;
+		taskStatCache = swapTaskStatCache;
+		swapTaskStatCache = temp;
+		return taskStats;
+	}
+
+	public void close() {
+		statusReader.close();
+		ioReader.close();
+		statReader.close();
+	}
+
+	public static boolean isThreadStatReadable(String pid) {
+		File taskDir = new File(String.format(PROC_SELF_TASK_DIR_TPL, pid));
+		return taskDir.isDirectory() && taskDir.canRead();
+	}
+
+	/**
+	 * /proc/PID/stat 或 /proc/PID/task/TID/stat 中vjtop关心的字段
+	 */
+	public static class TaskStat {
+		public long tid;
+		public String name;
+		public char state;
+		public long userCpuNanos;
+		public long sysCpuNanos;
+
+		private String path;
+
+		private void update(long[] statValues) {
+			state = (char) statValues[0];
+			userCpuNanos = statValues[1] * CLOCK_TICK_NANOS;
+			sysCpuNanos = statValues[2] * CLOCK_TICK_NANOS;
+		}
+
+		public long cpuNanos() {
+			return userCpuNanos + sysCpuNanos;
+		}
+
+		/**
+		 * 将/proc中的单字母状态转换为与Thread.State相近的名称
+		 */
+		public String stateName() {
+			switch (state) {
+				case 'R':
+					return "RUNNABLE";
+				case 'S':
+					return "SLEEPING";
+				case 'D':
+					return "DISK_WAIT";
+				case 'T':
+				case 't':
+					return "STOPPED";
+				case 'Z':
+					return "ZOMBIE";
+				default:
+					return String.valueOf(state);
 			}
-			return result;
-		} catch (Throwable ex) {
-			ex.printStackTrace();
-			return Collections.emptyMap();
 		}
 	}
 }
@@ -0,0 +1,230 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * 复用byte[]缓冲区读取/proc文件，只解析所需的数值，每次刷新不产生String与Map。
+ * 
+ * 对固定的文件(如/proc/PID/status)，文件保持打开，每次seek到文件头重新读取，内核会重新生成内容。
+ */
+public class ProcFileReader implements Closeable {
+
+	private static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private final String path;
+	private RandomAccessFile file;
+
+	private byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+	private int length;
+
+	/**
+	 * @param path 固定读取的文件，为null时只能通过{@link #read(String)}读取不同的文件
+	 */
+	public ProcFileReader(String path) {
+		this.path = path;
+	}
+
+	/**
+	 * 从头重新读取文件的全部内容，失败时返回false
+	 */
+	public boolean read() {
+		try {
+			if (file == null) {
+				file = new RandomAccessFile(path, "r");
+			}
+			file.seek(0);
+			readFully(file);
+			return length > 0;
+		} catch (IOException e) {
+			close();
+			return false;
+		}
+	}
+
+	/**
+	 * 一次性读取指定文件到复用的缓冲区中，用于线程stat等数量多且会随时消失的文件
+	 */
+	public boolean read(String filePath) {
+		try (RandomAccessFile oneshotFile = new RandomAccessFile(filePath, "r")) {
+			readFully(oneshotFile);
+			return length > 0;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	private void readFully(RandomAccessFile input) throws IOException {
+		length = 0;
+		int count;
+		while ((count = input.read(buffer, length, buffer.length - length)) > 0) {
+			length += count;
+			if (length == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+		}
+	}
+
+	/**
+	 * 解析"Key: value [kB]"格式的内容(如status与io文件)，将keys[i]的数值写入values[i]，单位为kB时转换为bytes。
+	 * 
+	 * 找不到的key其值为-1
+	 */
+	public void parseKeyValues(byte[][] keys, long[] values) {
+		parseKeyValues(keys, values, (byte) ':');
+	}
+
+	/**
+	 * 解析以separator分隔key与value的内容，如cgroup的cpu.stat为"key value"格式
+	 */
+	public void parseKeyValues(byte[][] keys, long[] values, byte separatorByte) {
+		Arrays.fill(values, -1);
+
+		int lineStart = 0;
+		while (lineStart < length) {
+			int lineEnd = indexOf((byte) '\n', lineStart);
+			int separator = indexOf(separatorByte, lineStart);
+			if (separator > lineStart && separator < lineEnd) {
+				for (int i = 0; i < keys.length; i++) {
+					if (matchKey(keys[i], lineStart, separator)) {
+						values[i] = parseValue(separator + 1, lineEnd);
+						break;
+					}
+				}
+			}
+			lineStart = lineEnd + 1;
+		}
+	}
+
+	/**
+	 * 解析首行中以空格分隔的数值(如cgroup的cpu.max "200000 100000")，非数值(如"max")与负数的值为-1，返回解析到的字段数
+	 */
+	public int parseFields(long[] values) {
+		Arrays.fill(values, -1);
+		int lineEnd = indexOf((byte) '\n', 0);
+		int fieldStart = 0;
+		int found = 0;
+		while (fieldStart < lineEnd && found < values.length) {
+			int fieldEnd = Math.min(indexOf((byte) ' ', fieldStart), lineEnd);
+			if (fieldEnd > fieldStart) {
+				values[found++] = parseValue(fieldStart, fieldEnd);
+			}
+			fieldStart = fieldEnd + 1;
+		}
+		return found;
+	}
+
+	/**
+	 * 解析"pid (comm) state ppid ..."格式的stat文件，comm可能包含空格与括号，以最后一个')'为界。
+	 * 
+	 * @param fieldIndexes 去掉"pid (comm) "后的字段下标，按升序排列，state字段的下标为0
+	 * @return 失败时返回false
+	 */
+	public boolean parseStatFields(int[] fieldIndexes, long[] values) {
+		int commEnd = lastIndexOf((byte) ')');
+		if (commEnd < 0 || commEnd + 2 >= length) {
+			return false;
+		}
+
+		int fieldStart = commEnd + 2;
+		int fieldIndex = 0;
+		int found = 0;
+		while (fieldStart < length && found < fieldIndexes.length) {
+			int fieldEnd = indexOf((byte) ' ', fieldStart);
+			if (fieldIndex == fieldIndexes[found]) {
+				values[found++] = fieldIndex == 0 ? buffer[fieldStart] : parseValue(fieldStart, fieldEnd);
+			}
+			fieldIndex++;
+			fieldStart = fieldEnd + 1;
+		}
+		return found == fieldIndexes.length;
+	}
+
+	/**
+	 * stat文件中的comm，即OS线程名，会产生String，只应在首次见到该线程时调用
+	 */
+	public String parseStatComm() {
+		int commStart = indexOf((byte) '(', 0);
+		int commEnd = lastIndexOf((byte) ')');
+		if (commStart >= length || commEnd < commStart) {
+			return "";
+		}
+		return new String(buffer, commStart + 1, commEnd - commStart - 1, StandardCharsets.UTF_8);
+	}
+
+	private boolean matchKey(byte[] key, int start, int end) {
+		if (end - start != key.length) {
+			return false;
+		}
+		for (int i = 0; i < key.length; i++) {
+			if (buffer[start + i] != key[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long parseValue(int start, int end) {
+		int index = start;
+		while (index < end && (buffer[index] == ' ' || buffer[index] == '\t')) {
+			index++;
+		}
+
+		long value = 0;
+		boolean hasDigit = false;
+		while (index < end && buffer[index] >= '0' && buffer[index] <= '9') {
+			value = value * 10 + (buffer[index] - '0');
+			hasDigit = true;
+			index++;
+		}
+
+		while (index < end && buffer[index] == ' ') {
+			index++;
+		}
+		if (index < end && (buffer[index] == 'k' || buffer[index] == 'K')) {
+			value *= 1024;
+		}
+
+		return hasDigit ? value : -1;
+	}
+
+	private int indexOf(byte b, int from) {
+		for (int i = from; i < length; i++) {
+			if (buffer[i] == b) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	private int lastIndexOf(byte b) {
+		for (int i = length - 1; i >= 0; i--) {
+			if (buffer[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public static byte[][] toKeys(String... keys) {
+		byte[][] result = new byte[keys.length][];
+		for (int i = 0; i < keys.length; i++) {
+			result[i] = keys[i].getBytes(StandardCharsets.US_ASCII);
+		}
+		return result;
+	}
+
+	@Override
+	public void close() {
+		if (file != null) {
+			try {
+				file.close();
+			} catch (IOException ignored) {
+			}
+			file = null;
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.vip.vjtools.vjtop.data;
+
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+
+/**
+ * 解析线程Dump中的"name" #tid ... nid=0x..，建立OS线程号(nid)与Java线程号的映射。
+ * 
+ * 没有Java线程号的VM线程(GC，JIT编译线程等)也会纪录其线程名，其Java线程号为-1
+ */
+public class ThreadNidMapper {
+
+	public static final long NON_JAVA_THREAD = -1;
+
+	private LongObjectMap<Long> nidToTid = new LongObjectHashMap<>();
+	private LongObjectMap<String> nidToName = new LongObjectHashMap<>();
+
+	/**
+	 * 用新的线程Dump整体替换原有映射，已退出线程的映射随之清除
+	 */
+	public void update(String threadDump) {
+		LongObjectMap<Long> newNidToTid = new LongObjectHashMap<>(Math.max(16, nidToTid.size() * 2));
+		LongObjectMap<String> newNidToName = new LongObjectHashMap<>(Math.max(16, nidToName.size() * 2));
+
+		int lineStart = 0;
+		int length = threadDump.length();
+		while (lineStart < length) {
+			int lineEnd = threadDump.indexOf('\n', lineStart);
+			if (lineEnd < 0) {
+				lineEnd = length;
+			}
+			if (threadDump.charAt(lineStart) == '"') {
+				parseThreadLine(threadDump.substring(lineStart, lineEnd), newNidToTid, newNidToName);
+			}
+			lineStart = lineEnd + 1;
+		}
+
+		nidToTid = newNidToTid;
+		nidToName = newNidToName;
+	}
+
+	/**
+	 * 返回nid对应的Java线程号，VM线程返回{@link #NON_JAVA_THREAD}，未知的nid返回null
+	 */
+	public Long getTid(long nid) {
+		return nidToTid.get(nid);
+	}
+
+	public String getName(long nid) {
+		return nidToName.get(nid);
+	}
+
+	public boolean contains(long nid) {
+		return nidToTid.containsKey(nid);
+	}
+
+	public int size() {
+		return nidToTid.size();
+	}
+
+	// JDK8: "main" #1 prio=5 os_prio=0 tid=0x00007f2c6c00a000 nid=0x1a03 waiting on condition [0x...]
+	// JDK7的Java线程与所有版本的VM线程没有#tid，JDK19开始nid为十进制
+	private static void parseThreadLine(String line, LongObjectMap<Long> nidToTid, LongObjectMap<String> nidToName) {
+		int tidIndex = line.indexOf(" tid=");
+		if (tidIndex < 0) {
+			return;
+		}
+		int nameEnd = line.lastIndexOf('"', tidIndex);
+		if (nameEnd <= 0) {
+			return;
+		}
+
+		long javaTid = NON_JAVA_THREAD;
+		long nid = -1;
+		for (String token : line.substring(nameEnd + 1).split(" ")) {
+			if (token.startsWith("#") && token.length() > 1) {
+				javaTid = parseLong(token.substring(1), 10);
+			} else if (token.startsWith("nid=0x")) {
+				nid = parseLong(token.substring("nid=0x".length()), 16);
+			} else if (token.startsWith("nid=")) {
+				nid = parseLong(token.substring("nid=".length()), 10);
+			}
+		}
+
+		if (nid > 0) {
+			nidToTid.put(nid, Long.valueOf(javaTid < 0 ? NON_JAVA_THREAD : javaTid));
+			nidToName.put(nid, line.substring(1, nameEnd));
+		}
+	}
+
+	private static long parseLong(String value, int radix) {
+		try {
+			return Long.parseLong(value, radix);
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+}
@@ -29,18 +29,30 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
 import javax.management.JMX;
 import javax.management.MBeanException;
 import javax.management.MBeanServerConnection;
@@ -59,6 +71,7 @@ import com.sun.tools.attach.VirtualMachine;
 @SuppressWarnings("restriction")
 public class JmxClient {
 	private static final String LOCAL_CONNECTOR_ADDRESS_PROP = "com.sun.management.jmxremote.localConnectorAddress";
+	private static final String DIAGNOSTIC_COMMAND_MXBEAN_NAME = "com.sun.management:type=DiagnosticCommand";
 
 	private boolean hasPlatformMXBeans = false;
 
@@ -67,6 +80,7 @@ public class JmxClient {
 	private MBeanServerConnection mbsc = null;
 	private SnapshotMBeanServerConnection server = null;
 	private JMXConnector jmxc = null;
+	private final CallStats callStats = new CallStats();
 
 	private ClassLoadingMXBean classLoadingMBean = null;
 	private OperatingSystemMXBean operatingSystemMBean = null;
@@ -87,6 +101,22 @@ public class JmxClient {
 		}
 	}
 
+	/**
+	 * 在flush后调用，并发读取上一周期用到的所有MBean属性，本周期内对这些属性的读取不再产生远程调用
+	 */
+	public void prefetch() {
+		if (server != null) {
+			server.prefetch();
+		}
+	}
+
+	/**
+	 * 本周期(上次flush以来)的JMX远程调用统计
+	 */
+	public CallStats getCallStats() {
+		return callStats;
+	}
+
 	public void connect(String pid, String jmxHostAndPort) throws Exception {
 		this.pid = pid;
 
@@ -107,7 +137,7 @@ public class JmxClient {
 		}
 
 		this.mbsc = jmxc.getMBeanServerConnection();
-		this.server = Snapshot.newSnapshot(mbsc);
+		this.server = Snapshot.newSnapshot(mbsc, callStats);
 
 		try {
 			ObjectName on = createBeanName(ManagementFactory.THREAD_MXBEAN_NAME);
@@ -200,6 +230,25 @@ public class JmxClient {
 		return garbageCollectorManager;
 	}
 
+	/**
+	 * JDK8开始提供DiagnosticCommand MBean，等同于jcmd
+	 */
+	public boolean isDiagnosticCommandSupported() throws IOException {
+		return hasPlatformMXBeans && server.isRegistered(createBeanName(DIAGNOSTIC_COMMAND_MXBEAN_NAME));
+	}
+
+	/**
+	 * 执行诊断命令，operation为jcmd命令的驼峰形式，如Thread.print对应threadPrint
+	 */
+	public String invokeDiagnosticCommand(String operation, String... args) throws IOException {
+		try {
+			return (String) server.invoke(createBeanName(DIAGNOSTIC_COMMAND_MXBEAN_NAME), operation,
+					new Object[] { args }, new String[] { String[].class.getName() });
+		} catch (JMException e) {
+			throw new IOException("Fails to invoke diagnostic command " + operation, e);
+		}
+	}
+
 	private ObjectName createBeanName(String beanName) {
 		try {
 			return new ObjectName(beanName);
@@ -287,11 +336,20 @@ public class JmxClient {
 	// that are in the cache will be retrieved between two subsequent updates.
 	//
 
+	// vjtop在此基础上增加了prefetch：flush时记下上一周期读取过的MBean，下一周期开始时并发地为每个MBean
+	// 发起一次getAttributes，远程连接时每周期的耗时由各MBean往返时间之和降为其中最慢的一次。
+	// 只预取上一周期真正读取过的MBean，Runtime等只在启动时读取的MBean不会被反复获取。
+
 	public interface SnapshotMBeanServerConnection extends MBeanServerConnection {
 		/**
 		 * Flush all cached values of attributes.
 		 */
 		void flush();
+
+		/**
+		 * Concurrently retrieve the attributes of the MBeans read in the last interval.
+		 */
+		void prefetch();
 	}
 
 	public static class Snapshot {
@@ -299,7 +357,11 @@ public class JmxClient {
 		}
 
 		public static SnapshotMBeanServerConnection newSnapshot(MBeanServerConnection mbsc) {
-			final InvocationHandler ih = new SnapshotInvocationHandler(mbsc);
+			return newSnapshot(mbsc, new CallStats());
+		}
+
+		public static SnapshotMBeanServerConnection newSnapshot(MBeanServerConnection mbsc, CallStats callStats) {
+			final InvocationHandler ih = new SnapshotInvocationHandler(mbsc, callStats);
 			return (SnapshotMBeanServerConnection) Proxy.newProxyInstance(Snapshot.class.getClassLoader(),
 					new Class[] { SnapshotMBeanServerConnection.class }, ih);
 		}
@@ -307,20 +369,112 @@ public class JmxClient {
 
 	static class SnapshotInvocationHandler implements InvocationHandler {
 
+		private static final int MAX_PREFETCH_THREADS = 8;
+
 		private final MBeanServerConnection conn;
+		private final CallStats callStats;
 		private Map<ObjectName, NameValueMap> cachedValues = newMap();
 		private Map<ObjectName, Set<String>> cachedNames = newMap();
+		// 本周期与上一周期读取过的MBean
+		private Set<ObjectName> usedNames = new HashSet<ObjectName>();
+		private Set<ObjectName> lastUsedNames = new HashSet<ObjectName>();
+		private ExecutorService prefetchExecutor;
 
 		@SuppressWarnings("serial")
 		private static final class NameValueMap extends HashMap<String, Object> {
 		}
 
-		SnapshotInvocationHandler(MBeanServerConnection conn) {
+		SnapshotInvocationHandler(MBeanServerConnection conn, CallStats callStats) {
 			this.conn = conn;
+			this.callStats = callStats;
 		}
 
 		synchronized void flush() {
 			cachedValues = newMap();
+			lastUsedNames = usedNames;
+			usedNames = new HashSet<ObjectName>();
+			callStats.reset();
+		}
+
+		void prefetch() {
+			final Map<ObjectName, String[]> plan = newMap();
+			synchronized (this) {
+				for (ObjectName objName : lastUsedNames) {
+					Set<String> attrNames = cachedNames.get(objName);
+					if (attrNames != null && !cachedValues.containsKey(objName)) {
+						plan.put(objName, attrNames.toArray(new String[attrNames.size()]));
+					}
+				}
+			}
+			// 只有一个MBean时并发没有收益，留给第一次读取时按原方式获取
+			if (plan.size() < 2) {
+				return;
+			}
+
+			long start = System.nanoTime();
+			List<ObjectName> objNames = new ArrayList<ObjectName>(plan.keySet());
+			List<Future<AttributeList>> futures = new ArrayList<Future<AttributeList>>(objNames.size());
+			ExecutorService executor = getPrefetchExecutor();
+			for (final ObjectName objName : objNames) {
+				futures.add(executor.submit(new Callable<AttributeList>() {
+					@Override
+					public AttributeList call() throws Exception {
+						return getRemoteAttributes(objName, plan.get(objName));
+					}
+				}));
+			}
+
+			int fetched = 0;
+			for (int i = 0; i < objNames.size(); i++) {
+				AttributeList attrs;
+				try {
+					attrs = futures.get(i).get();
+				} catch (ExecutionException e) {
+					// 不放入缓存，读取时按原方式重新获取，由调用者处理异常
+					continue;
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+
+				NameValueMap values = new NameValueMap();
+				for (Attribute attr : attrs.asList()) {
+					values.put(attr.getName(), attr.getValue());
+				}
+				synchronized (this) {
+					if (!cachedValues.containsKey(objNames.get(i))) {
+						cachedValues.put(objNames.get(i), values);
+					}
+				}
+				fetched++;
+			}
+			callStats.prefetchDone(fetched, System.nanoTime() - start);
+		}
+
+		private synchronized ExecutorService getPrefetchExecutor() {
+			if (prefetchExecutor == null) {
+				prefetchExecutor = Executors.newFixedThreadPool(MAX_PREFETCH_THREADS, new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "vjtop-jmx-prefetch-" + count.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+			}
+			return prefetchExecutor;
+		}
+
+		private AttributeList getRemoteAttributes(ObjectName objName, String[] attrNames)
+				throws InstanceNotFoundException, ReflectionException, IOException {
+			long start = System.nanoTime();
+			try {
+				return conn.getAttributes(objName, attrNames);
+			} finally {
+				callStats.callDone(System.nanoTime() - start);
+			}
 		}
 
 		@Override
@@ -333,11 +487,17 @@ public class JmxClient {
 			} else if (methodName.equals("flush")) {
 				flush();
 				return null;
+			} else if (methodName.equals("prefetch")) {
+				prefetch();
+				return null;
 			} else {
+				long start = System.nanoTime();
 				try {
 					return method.invoke(conn, args);
 				} catch (InvocationTargetException e) {
 					throw e.getCause();
+				} finally {
+					callStats.callDone(System.nanoTime() - start);
 				}
 			}
 		}
@@ -352,7 +512,12 @@ public class JmxClient {
 			// Not in cache, presumably because it was omitted from the
 			// getAttributes result because of an exception. Following
 			// call will probably provoke the same exception.
-			return conn.getAttribute(objName, attrName);
+			long start = System.nanoTime();
+			try {
+				return conn.getAttribute(objName, attrName);
+			} finally {
+				callStats.callDone(System.nanoTime() - start);
+			}
 		}
 
 		private AttributeList getAttributes(ObjectName objName, String[] attrNames)
@@ -370,6 +535,7 @@ public class JmxClient {
 
 		private synchronized NameValueMap getCachedAttributes(ObjectName objName, Set<String> attrNames)
 				throws InstanceNotFoundException, ReflectionException, IOException {
+			usedNames.add(objName);
 			NameValueMap values = cachedValues.get(objName);
 			if (values != null && values.keySet().containsAll(attrNames)) {
 				return values;
@@ -380,7 +546,7 @@ public class JmxClient {
 				attrNames.addAll(oldNames);
 			}
 			values = new NameValueMap();
-			final AttributeList attrs = conn.getAttributes(objName, attrNames.toArray(new String[attrNames.size()]));
+			final AttributeList attrs = getRemoteAttributes(objName, attrNames.toArray(new String[attrNames.size()]));
 			for (Attribute attr : attrs.asList()) {
 				values.put(attr.getName(), attr.getValue());
 			}
@@ -394,4 +560,69 @@ public class JmxClient {
 			return new HashMap<K, V>();
 		}
 	}
+
+	/**
+	 * 一个刷新周期内的JMX远程调用次数与耗时，包括采样线程等其他线程发起的调用
+	 */
+	public static class CallStats {
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong latencyNanos = new AtomicLong();
+		// 自连接以来的累计值，不随周期重置
+		private final AtomicLong totalLatencyNanos = new AtomicLong();
+		private volatile int prefetchBeans;
+		private volatile long prefetchNanos;
+
+		void callDone(long costNanos) {
+			calls.incrementAndGet();
+			latencyNanos.addAndGet(costNanos);
+			totalLatencyNanos.addAndGet(costNanos);
+		}
+
+		void prefetchDone(int beans, long costNanos) {
+			prefetchBeans = beans;
+			prefetchNanos = costNanos;
+		}
+
+		void reset() {
+			calls.set(0);
+			latencyNanos.set(0);
+			prefetchBeans = 0;
+			prefetchNanos = 0;
+		}
+
+		/**
+		 * 远程调用次数
+		 */
+		public long getCalls() {
+			return calls.get();
+		}
+
+		/**
+		 * 所有远程调用耗时之和，并发的调用各自计算
+		 */
+		public long getLatencyMills() {
+			return latencyNanos.get() / 1000000;
+		}
+
+		/**
+		 * 自连接以来所有远程调用耗时之和
+		 */
+		public long getTotalLatencyNanos() {
+			return totalLatencyNanos.get();
+		}
+
+		/**
+		 * 本周期并发预取的MBean数
+		 */
+		public int getPrefetchBeans() {
+			return prefetchBeans;
+		}
+
+		/**
+		 * 并发预取的实际耗时
+		 */
+		public long getPrefetchMills() {
+			return prefetchNanos / 1000000;
+		}
+	}
 }
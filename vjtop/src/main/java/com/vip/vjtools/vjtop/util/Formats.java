@@ -18,10 +18,14 @@ public class Formats {
 	private static String[] RED_ANSI = new String[] { "\033[31m\033[01m", "\033[0m" };
 	private static String[] YELLOW_ANSI = new String[] { "\033[33m\033[01m", "\033[0m" };
 	private static final String[] NORMAL_ANSI = new String[] { "", "" };
+	private static final char[] SPARK_LEVELS = "\u2581\u2582\u2583\u2584\u2585\u2586\u2587\u2588".toCharArray();
+	private static final char[] ASCII_SPARK_LEVELS = "_.-~=+*#".toCharArray();
 	private static String CLEAR_TERMINAL_ANSI_CMD = new String(
 			new byte[] { (byte) 0x1b, (byte) 0x5b, (byte) 0x32, (byte) 0x4a, (byte) 0x1b, (byte) 0x5b, (byte) 0x48 });
 
 	public static boolean isWindows = System.getProperty("os.name").toLowerCase(Locale.US).contains("windows");
+	// Windows控制台与非UTF-8编码的终端无法显示方块字符
+	private static final boolean asciiSparkline = isWindows || !isUtf8(outputEncoding());
 	{
 		if (isWindows) {
 			disableAnsi();
@@ -42,6 +46,10 @@ public class Formats {
 		CLEAR_TERMINAL_ANSI_CMD = "%n";
 	}
 
+	public static void setNoClearTerminal() {
+		CLEAR_TERMINAL_ANSI_CMD = "";
+	}
+
 	public static String toMBWithColor(long bytes, LongWarning warning) {
 		String[] ansi = colorAnsi(bytes, warning);
 		return ansi[0] + toMB(bytes) + ansi[1];
@@ -52,6 +60,42 @@ public class Formats {
 		return ansi[0] + value + ansi[1];
 	}
 
+	/**
+	 * 以8级方块字符绘制buffer中最近width个值的走势，按其中的最小与最大值缩放；Windows控制台与非UTF-8终端以ASCII字符代替
+	 */
+	public static String sparkline(LongRingBuffer buffer, int width) {
+		return sparkline(buffer, width, asciiSparkline);
+	}
+
+	static String sparkline(LongRingBuffer buffer, int width, boolean ascii) {
+		char[] levels = ascii ? ASCII_SPARK_LEVELS : SPARK_LEVELS;
+		int count = Math.min(width, buffer.size());
+		long min = buffer.min(count);
+		long range = buffer.max(count) - min;
+
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = buffer.size() - count; i < buffer.size(); i++) {
+			int level = range == 0 ? 0 : (int) ((buffer.get(i) - min) * (levels.length - 1) / range);
+			sb.append(levels[level]);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * System.out的编码：JDK19+为stdout.encoding，JDK17+为按locale得到的native.encoding，更早的版本为file.encoding
+	 */
+	private static String outputEncoding() {
+		String encoding = System.getProperty("stdout.encoding");
+		if (encoding == null) {
+			encoding = System.getProperty("native.encoding");
+		}
+		return encoding != null ? encoding : System.getProperty("file.encoding");
+	}
+
+	static boolean isUtf8(String encoding) {
+		return encoding != null && encoding.replace("-", "").equalsIgnoreCase("UTF8");
+	}
+
 	public static String red(String value) {
 		return RED_ANSI[0] + value + RED_ANSI[1];
 	}
@@ -146,6 +190,34 @@ public class Formats {
 	}
 
 
+	/**
+	 * 按scale位小数四舍五入追加到sb，避免String.format与Double.toString的临时对象，NaN与Infinity输出-1
+	 */
+	public static void appendDecimal(StringBuilder sb, double value, int scale) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			sb.append(-1);
+			return;
+		}
+		long factor = 1;
+		for (int i = 0; i < scale; i++) {
+			factor *= 10;
+		}
+		long scaled = Math.round(value * factor);
+		if (scaled < 0) {
+			sb.append('-');
+			scaled = -scaled;
+		}
+		sb.append(scaled / factor);
+		if (scale > 0) {
+			sb.append('.');
+			long fraction = scaled % factor;
+			for (long f = factor / 10; f > 1 && fraction < f; f /= 10) {
+				sb.append('0');
+			}
+			sb.append(fraction);
+		}
+	}
+
 	public static String formatUsage(Usage usage) {
 		if (usage.committed == usage.max) {
 			return String.format("%s/%s", toMB(usage.used), toMB(usage.max));
@@ -0,0 +1,107 @@
+package com.vip.vjtools.vjtop.util;
+
+import java.util.Arrays;
+
+/**
+ * 对数-线性分桶的直方图，思路同HdrHistogram：每个2的幂区间再等分为SUB_BUCKETS个桶，相对误差不超过1/SUB_BUCKETS。
+ *
+ * 小于SUB_BUCKETS的值精确记录，long范围内的任意正数都有对应的桶，记录与合并均不分配内存。
+ * 百分位返回所在桶的上界(不超过记录到的最大值)，与HdrHistogram的highestEquivalentValue一致，不会低估。
+ *
+ * 非线程安全，由调用方同步。
+ */
+public class Histogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	// 最高位为第62位时shift为58，共59+1组
+	private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKET_COUNT];
+	private long totalCount;
+	private long maxValue;
+
+	public void record(long value) {
+		record(value, 1);
+	}
+
+	public void record(long value, long count) {
+		if (count <= 0) {
+			return;
+		}
+		if (value < 0) {
+			value = 0;
+		}
+		counts[indexOf(value)] += count;
+		totalCount += count;
+		if (value > maxValue) {
+			maxValue = value;
+		}
+	}
+
+	public void add(Histogram other) {
+		if (other.totalCount == 0) {
+			return;
+		}
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] += other.counts[i];
+		}
+		totalCount += other.totalCount;
+		maxValue = Math.max(maxValue, other.maxValue);
+	}
+
+	public void reset() {
+		if (totalCount > 0) {
+			Arrays.fill(counts, 0);
+			totalCount = 0;
+			maxValue = 0;
+		}
+	}
+
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	public long getMaxValue() {
+		return maxValue;
+	}
+
+	/**
+	 * percentile为0到100，没有记录时返回0
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * totalCount);
+		target = Math.max(1, target);
+
+		long seen = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			seen += counts[i];
+			if (seen >= target) {
+				return Math.min(highestValueOf(i), maxValue);
+			}
+		}
+		return maxValue;
+	}
+
+	static int indexOf(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int sub = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return (shift + 1) * SUB_BUCKETS + sub;
+	}
+
+	static long highestValueOf(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long sub = index % SUB_BUCKETS;
+		long lowest = (SUB_BUCKETS + sub) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,128 @@
+package com.vip.vjtools.vjtop.util;
+
+import java.util.Arrays;
+
+/**
+ * 元素为long的开放寻址Set，用于保存每个刷新周期的线程号集合并与上个周期比较，add与contains不产生装箱的Long。
+ *
+ * 与LongLongHashMap相同，以0作为空槽的标记，不允许0作为元素；不支持remove，clear()保留容量，两个Set交替复用时
+ * 在线程数稳定后不再有任何内存分配。
+ */
+public class LongHashSet {
+
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final long EMPTY_KEY = 0;
+
+	private long[] keys;
+	private int size;
+	private int mask;
+	// 负载因子0.5
+	private int maxSize;
+
+	public LongHashSet() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongHashSet(int expectedSize) {
+		int capacity = LongObjectHashMap.safeFindNextPositivePowerOfTwo(Math.max(expectedSize * 2, 2));
+		allocate(capacity);
+	}
+
+	public boolean contains(long key) {
+		int index = hashIndex(key);
+		while (true) {
+			long k = keys[index];
+			if (k == key) {
+				return true;
+			}
+			if (k == EMPTY_KEY) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	/**
+	 * @return 元素原本不存在时返回true
+	 */
+	public boolean add(long key) {
+		if (key == EMPTY_KEY) {
+			throw new IllegalArgumentException("key 0 is reserved");
+		}
+
+		int index = hashIndex(key);
+		while (true) {
+			long k = keys[index];
+			if (k == key) {
+				return false;
+			}
+			if (k == EMPTY_KEY) {
+				keys[index] = key;
+				if (++size > maxSize) {
+					rehash(keys.length * 2);
+				}
+				return true;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 清空内容，保留已分配的容量
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY_KEY);
+			size = 0;
+		}
+	}
+
+	/**
+	 * 槽位数，与isUsed/keyAt一起用于不分配Iterator的遍历
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public boolean isUsed(int slot) {
+		return keys[slot] != EMPTY_KEY;
+	}
+
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	private int hashIndex(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		mask = capacity - 1;
+		maxSize = capacity / 2;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		allocate(newCapacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != EMPTY_KEY) {
+				int index = hashIndex(key);
+				while (keys[index] != EMPTY_KEY) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+			}
+		}
+	}
+}
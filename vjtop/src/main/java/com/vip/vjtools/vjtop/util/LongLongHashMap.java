@@ -0,0 +1,151 @@
+package com.vip.vjtools.vjtop.util;
+
+import java.util.Arrays;
+
+/**
+ * Key与Value均为long的开放寻址Map，用于以线程号为key保存线程的cpu时间与内存分配等累计值。
+ *
+ * 与LongObjectHashMap<Long>相比，put与get都不产生装箱的Long；clear()只重置数组而保留容量，每个刷新周期复用同一个Map时，
+ * 在线程数稳定后不再有任何内存分配。
+ *
+ * 线程号与OS线程号均大于0，因此以0作为空槽的标记，不允许0作为key。不支持remove，需要时clear后重新写入。
+ */
+public class LongLongHashMap {
+
+	private static final int DEFAULT_CAPACITY = 64;
+	private static final long EMPTY_KEY = 0;
+
+	private long[] keys;
+	private long[] values;
+	private int size;
+	private int mask;
+	// 负载因子0.5
+	private int maxSize;
+
+	public LongLongHashMap() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public LongLongHashMap(int expectedSize) {
+		int capacity = LongObjectHashMap.safeFindNextPositivePowerOfTwo(Math.max(expectedSize * 2, 2));
+		allocate(capacity);
+	}
+
+	public long get(long key, long defaultValue) {
+		int index = hashIndex(key);
+		while (true) {
+			long k = keys[index];
+			if (k == key) {
+				return values[index];
+			}
+			if (k == EMPTY_KEY) {
+				return defaultValue;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	public boolean containsKey(long key) {
+		int index = hashIndex(key);
+		while (true) {
+			long k = keys[index];
+			if (k == key) {
+				return true;
+			}
+			if (k == EMPTY_KEY) {
+				return false;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	public void put(long key, long value) {
+		if (key == EMPTY_KEY) {
+			throw new IllegalArgumentException("key 0 is reserved");
+		}
+
+		int index = hashIndex(key);
+		while (true) {
+			long k = keys[index];
+			if (k == key) {
+				values[index] = value;
+				return;
+			}
+			if (k == EMPTY_KEY) {
+				keys[index] = key;
+				values[index] = value;
+				if (++size > maxSize) {
+					rehash(keys.length * 2);
+				}
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * 清空内容，保留已分配的容量
+	 */
+	public void clear() {
+		if (size > 0) {
+			Arrays.fill(keys, EMPTY_KEY);
+			size = 0;
+		}
+	}
+
+	/**
+	 * 槽位数，与isUsed/keyAt/valueAt一起用于不分配Iterator的遍历
+	 */
+	public int capacity() {
+		return keys.length;
+	}
+
+	public boolean isUsed(int slot) {
+		return keys[slot] != EMPTY_KEY;
+	}
+
+	public long keyAt(int slot) {
+		return keys[slot];
+	}
+
+	public long valueAt(int slot) {
+		return values[slot];
+	}
+
+	private int hashIndex(long key) {
+		return (int) (key ^ (key >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		maxSize = capacity / 2;
+	}
+
+	private void rehash(int newCapacity) {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(newCapacity);
+
+		for (int i = 0; i < oldKeys.length; i++) {
+			long key = oldKeys[i];
+			if (key != EMPTY_KEY) {
+				int index = hashIndex(key);
+				while (keys[index] != EMPTY_KEY) {
+					index = (index + 1) & mask;
+				}
+				keys[index] = key;
+				values[index] = oldValues[i];
+			}
+		}
+	}
+}
@@ -0,0 +1,98 @@
+package com.vip.vjtools.vjtop.util;
+
+/**
+ * 固定容量的long环形缓冲，保存最近capacity个值，写满后覆盖最旧的值，add不分配内存。
+ *
+ * 下标0为最旧的值。非线程安全，由调用方同步。
+ */
+public class LongRingBuffer {
+
+	private final long[] values;
+	// 下一个写入位置
+	private int head;
+	private int size;
+
+	public LongRingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity should be positive: " + capacity);
+		}
+		values = new long[capacity];
+	}
+
+	public void add(long value) {
+		values[head] = value;
+		head = (head + 1) % values.length;
+		if (size < values.length) {
+			size++;
+		}
+	}
+
+	/**
+	 * 按写入顺序的第index个值，0为最旧
+	 */
+	public long get(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index: " + index + ", size: " + size);
+		}
+		return values[(head - size + index + values.length) % values.length];
+	}
+
+	/**
+	 * 最近写入的值
+	 */
+	public long last() {
+		return get(size - 1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int capacity() {
+		return values.length;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		head = 0;
+		size = 0;
+	}
+
+	/**
+	 * 最近count个值中的最小值，以下同
+	 */
+	public long min(int count) {
+		long min = Long.MAX_VALUE;
+		for (int i = size - count(count); i < size; i++) {
+			min = Math.min(min, get(i));
+		}
+		return min;
+	}
+
+	public long max(int count) {
+		long max = Long.MIN_VALUE;
+		for (int i = size - count(count); i < size; i++) {
+			max = Math.max(max, get(i));
+		}
+		return max;
+	}
+
+	public long avg(int count) {
+		int n = count(count);
+		if (n == 0) {
+			return 0;
+		}
+		long sum = 0;
+		for (int i = size - n; i < size; i++) {
+			sum += get(i);
+		}
+		return sum / n;
+	}
+
+	private int count(int count) {
+		return Math.max(0, Math.min(count, size));
+	}
+}
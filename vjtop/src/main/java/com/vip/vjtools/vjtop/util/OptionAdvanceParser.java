@@ -39,6 +39,10 @@ public class OptionAdvanceParser {
 				outputFormat = OutputFormat.cleanConsole;
 			} else if (format.equals("text")) {
 				outputFormat = OutputFormat.text;
+			} else if (format.equals("jsonl")) {
+				outputFormat = OutputFormat.jsonl;
+			} else if (format.equals("csv")) {
+				outputFormat = OutputFormat.csv;
 			}
 		}
 
@@ -54,12 +58,30 @@ public class OptionAdvanceParser {
 				contentMode = ContentMode.jvm;
 			} else if (format.equals("thread")) {
 				contentMode = ContentMode.thread;
+			} else if (format.equals("safepoint")) {
+				contentMode = ContentMode.safepoint;
+			} else if (format.equals("jit")) {
+				contentMode = ContentMode.jit;
+			} else if (format.equals("classes")) {
+				contentMode = ContentMode.classes;
 			}
 		}
 
 		return contentMode;
 	}
 
+	public static boolean parsePerfSource(OptionSet optionSet) {
+		if (optionSet.hasArgument("source")) {
+			String source = (String) optionSet.valueOf("source");
+			if (source.equals("perf")) {
+				return true;
+			} else if (!source.equals("jmx")) {
+				throw new IllegalArgumentException("wrong option of data source(jmx,perf)");
+			}
+		}
+		return false;
+	}
+
 	public static ThreadInfoMode parseThreadInfoMode(OptionSet optionSet) {
 		ThreadInfoMode threadInfoMode = ThreadInfoMode.cpu;
 		if (optionSet.hasArgument("mode")) {
@@ -88,6 +110,70 @@ public class OptionAdvanceParser {
 		parser.acceptsAll(Arrays.asList("j", "jmxurl"), "give JMX url like 127.0.0.1:7001 when VM attach doesn't work")
 				.withRequiredArg().ofType(String.class);
 
+		parser.acceptsAll(Arrays.asList("s", "source"),
+				"data source: \n" + " jmx(default): PerfData and /proc first, JMX for the others\n"
+						+ " perf: PerfData and /proc only, no JMX work on target, thread cpu mode only\n")
+				.withRequiredArg().ofType(String.class);
+
+		parser.acceptsAll(Arrays.asList("p", "port"),
+				"serve metrics in OpenMetrics text format on http://[host:]port/metrics, host defaults to 127.0.0.1")
+				.withRequiredArg().ofType(String.class);
+
+		parser.accepts("record", "record every output iteration into the file for replaying later").withRequiredArg()
+				.ofType(String.class);
+		parser.accepts("replay",
+				"replay the recording file instead of attaching a JVM, one frame per interval (defaults to 1s)")
+				.withRequiredArg().ofType(String.class);
+
+		parser.accepts("profile",
+				"sample stacks of the top cpu threads and write them as folded stacks for flamegraph.pl into the file, JMX source only")
+				.withRequiredArg().ofType(String.class);
+		parser.accepts("alloc-profile",
+				"in memory mode, sample stacks of the top allocating threads, attribute their allocated bytes to the stacks "
+						+ "and write them as folded stacks weighted by bytes into the file, JMX source only")
+				.withRequiredArg().ofType(String.class);
+		parser.accepts("profile-hz",
+				"stack sample rate of --profile (defaults to 50) and --alloc-profile (defaults to 20)")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("budget",
+				"keep the cost of vjtop and its JMX calls under the percent of one core, e.g. 1, by lengthening the interval and shrinking --profile threads")
+				.withRequiredArg().ofType(Double.class);
+		parser.accepts("cost", "print the cost of each interval: cpu and time of vjtop itself, JMX calls and latency");
+
+		parser.accepts("gc-sample",
+				"ms between PerfData reads for the GC pause percentiles, 0 to disable (defaults to 100), no cost on target")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("lock-check",
+				"seconds between checks of deadlocks and lock chains, 0 to disable (defaults to 30), JMX source only")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("nmt",
+				"seconds between NMT summary queries when the target runs with -XX:NativeMemoryTracking, "
+						+ "0 to disable (defaults to 60), JMX source only")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("trend",
+				"show sparklines of cpu, rss, ygc, alloc and threads over the number of recent intervals, e.g. 60 "
+						+ "(defaults to 0, disabled)")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("capture",
+				"when a warning stays red for --capture-intervals, write top thread stacks and recent metrics "
+						+ "into a file under the directory, thread stacks need the JMX source")
+				.withRequiredArg().ofType(String.class);
+		parser.accepts("capture-histogram",
+				"also write the class histogram into the capture file, NOT cheap: it walks the whole heap in a safepoint, "
+						+ "a stop-the-world pause of seconds on large heaps, JMX source only");
+		parser.accepts("capture-intervals", "consecutive red intervals before capturing (defaults to 3)")
+				.withRequiredArg().ofType(Integer.class);
+		parser.accepts("capture-cooldown", "minimum seconds between two captures (defaults to 600)")
+				.withRequiredArg().ofType(Integer.class);
+
+		parser.accepts("all",
+				"monitor all local JVMs found in hsperfdata directories with PerfData and /proc only, print a summary table");
+
 		// detail mode
 		parser.acceptsAll(Arrays.asList("m", "mode"),
 				"number of thread display mode: \n"
@@ -96,25 +182,37 @@ public class OptionAdvanceParser {
 						+ " totalcpu: display thread cpu usage and sort by total cpu time\n"
 						+ " totalsyscpu: display thread cpu usage and sort by total syscpu time\n"
 						+ " memory: display thread memory allocated and sort by delta\n"
-						+ " totalmemory: display thread memory allocated and sort by total")
+						+ " totalmemory: display thread memory allocated and sort by total\n"
+						+ " group: aggregate cpu and memory allocated by thread pool, thread names without numeric index\n"
+						+ " contention: display thread blocked/waited count and time, and the locks blocking most threads\n"
+						+ " churn: display threads created and died by thread pool, and the pools churning short-lived threads")
 				.withRequiredArg().ofType(String.class);
 
 		parser.acceptsAll(Arrays.asList("o", "output"),
 				"output format: \n" + " console(default): console with warning and flush ansi code\n"
 						+ " clean: console without warning and flush ansi code\n"
-						+ " text: plain text like /proc/status for 3rd tools\n")
+						+ " text: plain text like /proc/status for 3rd tools\n"
+						+ " jsonl: one json record per line, a jvm record per interval and a thread record per top thread\n"
+						+ " csv: same records as jsonl in csv, header lines start with #\n")
 				.withRequiredArg().ofType(String.class);
 
 		parser.acceptsAll(Arrays.asList("c", "content"),
 				"output content: \n"
-						+ " all(default): jvm info and theads info\n jvm: only jvm info\n thread: only thread info\n")
+						+ " all(default): jvm info and theads info\n jvm: only jvm info\n thread: only thread info\n"
+						+ " safepoint: safepoint view sampled from PerfData every 50ms, time to safepoint and the causes of spikes\n"
+						+ " jit: compiles, compile time, compiler thread cpu and code cache usage per interval\n"
+						+ " classes: classes loaded/unloaded and metaspace growth per interval, class loader snapshots on demand\n")
 				.withRequiredArg().ofType(String.class);
 
 		return parser;
 	}
 
 	public static Integer parseInterval(OptionSet optionSet) {
-		Integer interval = OptionAdvanceParser.DEFAULT_INTERVAL;
+		return parseInterval(optionSet, OptionAdvanceParser.DEFAULT_INTERVAL);
+	}
+
+	public static Integer parseInterval(OptionSet optionSet, int defaultInterval) {
+		Integer interval = defaultInterval;
 		if (optionSet.hasArgument("interval")) {
 			interval = (Integer) (optionSet.valueOf("interval"));
 			if (interval < 1) {
@@ -0,0 +1,58 @@
+package com.vip.vjtools.vjtop.util;
+
+/**
+ * 将线程名归一为线程池名，去掉线程序号与线程池序号，如:
+ *
+ * <pre>
+ * http-nio-8080-exec-123       -> http-nio-8080-exec-*
+ * pool-3-thread-7              -> pool-*-thread-*
+ * ForkJoinPool.commonPool-worker-5 -> ForkJoinPool.commonPool-worker-*
+ * C2 CompilerThread0           -> C2 CompilerThread*
+ * </pre>
+ *
+ * 规则: 名字末尾的数字总被替换；中间的数字只有在前后都不是字母且不超过3位时才被替换，以保留端口号等有意义的数字。
+ */
+public class ThreadNameNormalizer {
+
+	private static final int MAX_INDEX_DIGITS = 3;
+
+	public static String normalize(String name) {
+		int length = name.length();
+		StringBuilder sb = null;
+		int copied = 0;
+
+		int i = 0;
+		while (i < length) {
+			if (!isDigit(name.charAt(i))) {
+				i++;
+				continue;
+			}
+
+			int start = i;
+			while (i < length && isDigit(name.charAt(i))) {
+				i++;
+			}
+
+			boolean trailing = i == length;
+			boolean separated = (start == 0 || !Character.isLetter(name.charAt(start - 1)))
+					&& (trailing || !Character.isLetter(name.charAt(i))) && i - start <= MAX_INDEX_DIGITS;
+			if (trailing || separated) {
+				if (sb == null) {
+					sb = new StringBuilder(length);
+				}
+				sb.append(name, copied, start).append('*');
+				copied = i;
+			}
+		}
+
+		if (sb == null) {
+			return name;
+		}
+		sb.append(name, copied, length);
+		return sb.toString();
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
@@ -1,38 +1,43 @@
 package com.vip.vjtools.vjtop.util;
 
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.Map;
-
 public class Utils {
 
 	public static long NANOS_TO_MILLS = 1000 * 1000;
 
 	/**
-	 * Sorts a Map by its values, using natural ordering.
+	 * 取出value最大的threadLimit个key，按value降序排列。
+	 * 
+	 * 只需要前N个时不必对全部线程排序，以插入排序维护长度为N的有序数组，复杂度为O(线程数*N)，除返回的数组外不分配内存。
 	 */
-	public static long[] sortAndFilterThreadIdsByValue(LongObjectMap map, int threadLimit) {
+	public static long[] sortAndFilterThreadIdsByValue(LongLongHashMap map, int threadLimit) {
 		int max = Math.min(threadLimit, map.size());
-		List<Map.Entry> list = new LinkedList(map.entrySet());
-		Collections.sort(list, new Comparator() {
-			@Override
-			public int compare(Object o1, Object o2) {
-				return ((Comparable) ((Map.Entry) (o2)).getValue()).compareTo(((Map.Entry) (o1)).getValue());
+		long[] topKeys = new long[max];
+		if (max == 0) {
+			return topKeys;
+		}
+		long[] topValues = new long[max];
+		int count = 0;
+
+		for (int slot = 0; slot < map.capacity(); slot++) {
+			if (!map.isUsed(slot)) {
+				continue;
+			}
+			long value = map.valueAt(slot);
+			if (count == max && value <= topValues[max - 1]) {
+				continue;
 			}
-		});
 
-		long[] topTidArray = new long[max];
-		int i = 0;
-		for (Map.Entry entry : list) {
-			topTidArray[i] = (Long) entry.getKey();
-			if (++i >= max) {
-				break;
+			int i = count < max ? count++ : max - 1;
+			while (i > 0 && topValues[i - 1] < value) {
+				topValues[i] = topValues[i - 1];
+				topKeys[i] = topKeys[i - 1];
+				i--;
 			}
+			topValues[i] = value;
+			topKeys[i] = map.keyAt(slot);
 		}
 
-		return topTidArray;
+		return topKeys;
 	}
 
 	/**
@@ -46,17 +51,18 @@ public class Utils {
 	}
 
 	/**
-	 * calculates a "load", given on two deltas
+	 * 与calcLoad(deltaCpuTime, deltaUptime)相同，deltaCpuTime先除以factor换算为deltaUptime的单位，
+	 * 如纳秒的线程CPU时间与毫秒的运行时间之比时factor为NANOS_TO_MILLS
 	 */
-	public static double calcLoad(Long deltaCpuTime, long deltaUptime, long factor) {
-		if (deltaCpuTime == null || deltaCpuTime <= 0 || deltaUptime == 0) {
+	public static double calcLoad(long deltaCpuTime, long deltaUptime, long factor) {
+		if (deltaCpuTime <= 0 || deltaUptime == 0) {
 			return 0.0;
 		}
 		return deltaCpuTime * 100d / factor / deltaUptime;
 	}
 
-	public static double calcMemoryUtilization(Long threadBytes, long totalBytes) {
-		if (threadBytes == null || totalBytes == 0) {
+	public static double calcMemoryUtilization(long threadBytes, long totalBytes) {
+		if (totalBytes == 0) {
 			return 0;
 		}
 
@@ -0,0 +1,102 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+
+public class AdaptiveSchedulerTest {
+
+	private static final long MS = 1000 * 1000;
+	// 每个周期100ms
+	private static final long CYCLE = 100 * MS;
+
+	private AdaptiveScheduler scheduler;
+	private long now;
+	private long cpu;
+	private long jmx;
+
+	@Before
+	public void setUp() {
+		// 预算为一个核的10%
+		scheduler = new AdaptiveScheduler(VMInfo.createDeadVM("1234", VMInfoState.ATTACHED), 10);
+		scheduler.beginIteration(now, cpu, jmx);
+	}
+
+	@Test
+	public void backOffAndRecover() {
+		long[] tids = new long[8];
+		Assert.assertTrue(scheduler.limitSampleTargets(tids) == tids);
+
+		// 观察者消耗20%，超出预算，倍数翻倍，采样线程数减半
+		cycle(20 * MS, 0);
+		Assert.assertEquals(20, scheduler.costPercent, 0.01);
+		Assert.assertEquals(2, scheduler.factor);
+		Assert.assertEquals(4, scheduler.sampleLimit);
+		Assert.assertEquals(4, scheduler.limitSampleTargets(tids).length);
+
+		// 被观察者消耗超出预算同样退避
+		cycle(0, 30 * MS);
+		Assert.assertEquals(30, scheduler.targetPercent, 0.01);
+		Assert.assertEquals(4, scheduler.factor);
+		Assert.assertEquals(2, scheduler.sampleLimit);
+		cycle(20 * MS, 0);
+		Assert.assertEquals(8, scheduler.factor);
+		Assert.assertEquals(1, scheduler.sampleLimit);
+		cycle(20 * MS, 0);
+		Assert.assertEquals(16, scheduler.factor);
+		Assert.assertEquals(0, scheduler.sampleLimit);
+		Assert.assertNull(scheduler.limitSampleTargets(tids));
+
+		// 倍数最多16倍
+		cycle(20 * MS, 0);
+		Assert.assertEquals(AdaptiveScheduler.MAX_FACTOR, scheduler.factor);
+		Assert.assertEquals(0, scheduler.sampleLimit);
+
+		// 消耗在预算与预算的1/4之间时保持不变
+		cycle(5 * MS, 0);
+		Assert.assertEquals(16, scheduler.factor);
+		Assert.assertEquals(0, scheduler.sampleLimit);
+
+		// 低于预算的1/4时逐步恢复
+		cycle(MS, 0);
+		Assert.assertEquals(8, scheduler.factor);
+		Assert.assertEquals(1, scheduler.sampleLimit);
+		cycle(MS, 0);
+		Assert.assertEquals(4, scheduler.factor);
+		Assert.assertEquals(2, scheduler.sampleLimit);
+		cycle(MS, 0);
+		Assert.assertEquals(2, scheduler.factor);
+		Assert.assertEquals(4, scheduler.sampleLimit);
+		cycle(MS, 0);
+		Assert.assertEquals(1, scheduler.factor);
+		Assert.assertEquals(-1, scheduler.sampleLimit);
+		Assert.assertTrue(scheduler.limitSampleTargets(tids) == tids);
+		cycle(MS, 0);
+		Assert.assertEquals(1, scheduler.factor);
+	}
+
+	@Test
+	public void sleepCoversIterationCost() {
+		// 刷新耗时60ms，消耗CPU 50ms，周期至少需要500ms才不超出10%的预算
+		scheduler.endIteration(now + 60 * MS, cpu + 50 * MS, jmx);
+		Assert.assertEquals(440, scheduler.nextSleepMills(100));
+		Assert.assertEquals(1000, scheduler.nextSleepMills(1000));
+
+		// 消耗很小时按间隔乘以倍数休眠
+		scheduler.endIteration(now + 10 * MS, cpu + MS, jmx + 2 * MS);
+		Assert.assertEquals(100, scheduler.nextSleepMills(100));
+	}
+
+	/**
+	 * 一个周期内刷新消耗cpuNanos与jmxNanos，刷新本身耗时为周期的一半
+	 */
+	private void cycle(long cpuNanos, long jmxNanos) {
+		cpu += cpuNanos;
+		jmx += jmxNanos;
+		scheduler.endIteration(now + CYCLE / 2, cpu, jmx);
+		now += CYCLE;
+		scheduler.beginIteration(now, cpu, jmx);
+	}
+}
@@ -0,0 +1,71 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.AllocationSampler.ThreadSamples;
+
+public class AllocationSamplerTest {
+
+	@Test
+	public void allocationSite() {
+		StackTraceElement[] frames = new StackTraceElement[] {
+				new StackTraceElement("java.util.Arrays", "copyOf", "Arrays.java", 3512),
+				new StackTraceElement("java.util.ArrayList", "grow", "ArrayList.java", 237),
+				new StackTraceElement("com.foo.OrderService", "load", "OrderService.java", 42),
+				new StackTraceElement("com.foo.OrderController", "list", "OrderController.java", 18) };
+		Assert.assertEquals("com.foo.OrderService.load:42", AllocationSampler.allocationSite(frames));
+
+		// 全部为JDK帧时取栈顶
+		StackTraceElement[] jdkFrames = new StackTraceElement[] {
+				new StackTraceElement("sun.nio.ch.Util", "getTemporaryDirectBuffer", null, -1),
+				new StackTraceElement("java.lang.Thread", "run", "Thread.java", 748) };
+		Assert.assertEquals("sun.nio.ch.Util.getTemporaryDirectBuffer", AllocationSampler.allocationSite(jdkFrames));
+
+		Assert.assertEquals("[unknown]", AllocationSampler.allocationSite(new StackTraceElement[0]));
+	}
+
+	@Test
+	public void distribute() throws Exception {
+		File file = File.createTempFile("vjtop", ".folded");
+		file.deleteOnExit();
+		AllocationSampler sampler = new AllocationSampler(null, file.getPath(), AllocationSampler.DEFAULT_HZ);
+
+		ThreadSamples thread = new ThreadSamples();
+		thread.add("worker;Foo.a", "Foo.a:1");
+		thread.add("worker;Foo.b", "Foo.b:2");
+		thread.add("worker;Foo.a", "Foo.a:1");
+		thread.add("worker;Bar.c", "Foo.b:2");
+		// 按采样次数2:1:1分摊，除不尽的余数归入最后一个栈
+		sampler.distribute(thread, 1003);
+
+		sampler.flush();
+		List<String> lines = Files.readAllLines(file.toPath(), Recording.UTF8);
+		Assert.assertEquals(3, lines.size());
+		Assert.assertTrue(lines.contains("worker;Foo.a 501"));
+		Assert.assertTrue(lines.contains("worker;Foo.b 250"));
+		Assert.assertTrue(lines.contains("worker;Bar.c 252"));
+
+		// 同一分配点的栈合并
+		Assert.assertEquals(2, sampler.sites.size());
+		Assert.assertEquals(501, sampler.sites.get("Foo.a:1").deltaBytes);
+		Assert.assertEquals(502, sampler.sites.get("Foo.b:2").totalBytes);
+	}
+
+	@Test
+	public void capDistinctStacksAndSites() {
+		AllocationSampler sampler = new AllocationSampler(null, "unused.folded", AllocationSampler.DEFAULT_HZ);
+		for (int i = 0; i < AbstractStackSampler.MAX_STACKS + 3; i++) {
+			ThreadSamples thread = new ThreadSamples();
+			thread.add("task-" + i, "Site.m:" + i);
+			sampler.distribute(thread, 10);
+		}
+		Assert.assertEquals(3, sampler.otherCount);
+		Assert.assertEquals(AbstractStackSampler.MAX_STACKS + 1, sampler.sites.size());
+		Assert.assertEquals(30, sampler.sites.get(AbstractStackSampler.OTHER_STACKS).deltaBytes);
+	}
+}
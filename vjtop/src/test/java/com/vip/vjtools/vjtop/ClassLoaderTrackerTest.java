@@ -0,0 +1,66 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.ClassLoaderTracker.LoaderStat;
+
+public class ClassLoaderTrackerTest {
+
+	@Test
+	public void parseClassLoaderStats() {
+		ClassLoaderTracker tracker = new ClassLoaderTracker(null);
+		tracker.parse(stats(2, 10));
+
+		Assert.assertEquals(4, tracker.totalLoaders);
+		Assert.assertEquals(2073 + 54 + 48 + 2 * 10, tracker.totalClasses);
+		Assert.assertEquals(0, tracker.totalClassesDelta);
+
+		LoaderStat boot = find(tracker, "<boot class loader>");
+		// hidden类计入定义它的loader
+		Assert.assertEquals(1, boot.loaders);
+		Assert.assertEquals(2073 + 54, boot.classes);
+		Assert.assertEquals(54, boot.hiddenClasses);
+		Assert.assertEquals(748416 + 21504, boot.chunkSize);
+
+		LoaderStat groovy = find(tracker, "groovy.lang.GroovyClassLoader$InnerLoader");
+		Assert.assertEquals(2, groovy.loaders);
+		Assert.assertEquals(20, groovy.classes);
+
+		tracker.parse(stats(5, 10));
+		Assert.assertEquals(3, tracker.totalLoadersDelta);
+		Assert.assertEquals(30, tracker.totalClassesDelta);
+		// 按类数增量排序
+		groovy = tracker.loaders.get(0);
+		Assert.assertEquals("groovy.lang.GroovyClassLoader$InnerLoader", groovy.type);
+		Assert.assertEquals(3, groovy.loadersDelta);
+		Assert.assertEquals(30, groovy.classesDelta);
+		Assert.assertEquals(3 * 4096, groovy.chunkSizeDelta);
+	}
+
+	private static LoaderStat find(ClassLoaderTracker tracker, String type) {
+		for (LoaderStat stat : tracker.loaders) {
+			if (stat.type.equals(type)) {
+				return stat;
+			}
+		}
+		throw new AssertionError(type + " not found");
+	}
+
+	private static String stats(int groovyLoaders, int groovyClasses) {
+		StringBuilder sb = new StringBuilder(
+				"ClassLoader         Parent              CLD*               Classes   ChunkSz   BlockSz  Type\n");
+		sb.append("0x00007f1be80798a8  0x00007f1be807bb88  0x00007f1c4004aff0      48     98304     90627  ")
+				.append("jdk.internal.loader.ClassLoaders$AppClassLoader\n");
+		for (int i = 0; i < groovyLoaders; i++) {
+			sb.append("0x00007f1be80094e8  0x00007f1be80798a8  0x00007f1c4017ee6").append(i).append("      ")
+					.append(groovyClasses).append("      4096      3020  groovy.lang.GroovyClassLoader$InnerLoader\n");
+		}
+		sb.append("0x0000000000000000  0x0000000000000000  0x00007f1c40026f30    2073    748416    678221  ")
+				.append("<boot class loader>\n");
+		sb.append("                                                                54     21504     14023   + hidden classes\n");
+		sb.append("Total = 4                                                      2195    872320    785891\n");
+		sb.append("ChunkSz: Total size of all allocated metaspace chunks\n");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,67 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ThreadInfo;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+
+public class DeadlockDetectorTest {
+
+	@Test
+	public void chain() {
+		// worker-1 -> worker-2 -> owner，worker-3 -> owner，owner自身不在等待
+		DeadlockDetector detector = new DeadlockDetector(null, 30);
+		boolean hasCycle = detector.buildChains(waiters(waiter(11, "worker-1", 12, "worker-2", "lock-b"),
+				waiter(12, "worker-2", 10, "owner", "lock-a"), waiter(13, "worker-3", 10, "owner", "lock-a"),
+				waiter(21, "single", 20, "other", "lock-c")));
+
+		Assert.assertFalse(hasCycle);
+		// 只有一个直接等待者的other不是锁链
+		Assert.assertEquals(1, detector.chains.size());
+		DeadlockDetector.LockChain chain = detector.chains.get(0);
+		Assert.assertFalse(chain.deadlock);
+		Assert.assertEquals(10, chain.rootTid);
+		Assert.assertEquals("owner", chain.rootName);
+		Assert.assertEquals("lock-a", chain.lockName);
+		Assert.assertEquals(3, chain.blockedThreads);
+		// 最长的等待路径
+		Assert.assertEquals(Arrays.asList("worker-1(11)", "worker-2(12)", "owner(10)"), chain.path);
+	}
+
+	@Test
+	public void cycle() {
+		// a -> b -> c -> a 形成环，d等待环上的c
+		DeadlockDetector detector = new DeadlockDetector(null, 30);
+		boolean hasCycle = detector.buildChains(waiters(waiter(1, "a", 2, "b", "lock-b"), waiter(2, "b", 3, "c", "lock-c"),
+				waiter(3, "c", 1, "a", "lock-a"), waiter(4, "d", 3, "c", "lock-c")));
+
+		Assert.assertTrue(hasCycle);
+		// 环上的线程没有根持有者，不报告为锁链
+		Assert.assertTrue(detector.chains.isEmpty());
+	}
+
+	@Test
+	public void selfWait() {
+		DeadlockDetector detector = new DeadlockDetector(null, 30);
+		boolean hasCycle = detector.buildChains(waiters(waiter(5, "self", 5, "self", "lock-s")));
+
+		Assert.assertTrue(hasCycle);
+		Assert.assertTrue(detector.chains.isEmpty());
+	}
+
+	private static ThreadInfo waiter(long tid, String name, long ownerId, String ownerName, String lockName) {
+		return new ThreadInfoBuilder(tid, name).lock(Thread.State.BLOCKED, lockName, ownerId, ownerName).build();
+	}
+
+	private static LongObjectMap<ThreadInfo> waiters(ThreadInfo... infos) {
+		LongObjectMap<ThreadInfo> waiters = new LongObjectHashMap<>();
+		for (ThreadInfo info : infos) {
+			waiters.put(info.getThreadId(), info);
+		}
+		return waiters;
+	}
+}
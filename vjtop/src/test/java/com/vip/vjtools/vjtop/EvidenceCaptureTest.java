@@ -0,0 +1,119 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMDetailView.ContentMode;
+import com.vip.vjtools.vjtop.VMDetailView.OutputFormat;
+import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+
+public class EvidenceCaptureTest {
+
+	private static final long COOLDOWN_MILLS = 600 * 1000L;
+
+	@Test
+	public void captureAfterConsecutiveRedIntervals() throws Exception {
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		RecordingCapture capture = new RecordingCapture(vmInfo);
+		long now = 1000000;
+
+		// 中间有一个周期恢复正常时重新计数
+		vmInfo.cpuLoad = 90;
+		Assert.assertFalse(capture.check(now));
+		Assert.assertFalse(capture.check(now += 1000));
+		vmInfo.cpuLoad = 10;
+		Assert.assertFalse(capture.check(now += 1000));
+		vmInfo.cpuLoad = 90;
+		Assert.assertFalse(capture.check(now += 1000));
+		Assert.assertFalse(capture.check(now += 1000));
+		Assert.assertEquals(0, capture.captures);
+
+		Assert.assertTrue(capture.check(now += 1000));
+		Assert.assertEquals(1, capture.captures);
+		Assert.assertTrue(capture.lastReasonText.startsWith("cpu 90.00%>=70.00%"));
+		Assert.assertEquals(0, capture.suppressedCount);
+	}
+
+	@Test
+	public void cooldownAndInFlightSuppress() throws Exception {
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		RecordingCapture capture = new RecordingCapture(vmInfo);
+		long now = 1000000;
+		vmInfo.cpuLoad = 90;
+
+		capture.check(now);
+		capture.check(now += 1000);
+		Assert.assertTrue(capture.check(now += 1000));
+		capture.capturing.set(false);
+
+		// 冷却期间持续红色，达到连续周期数后的每个周期都计为一次抑制
+		for (int i = 0; i < 6; i++) {
+			Assert.assertFalse(capture.check(now += 1000));
+		}
+		Assert.assertEquals(1, capture.captures);
+		Assert.assertEquals(4, capture.suppressedCount);
+
+		// 冷却结束，但上一次取证仍未完成
+		now += COOLDOWN_MILLS;
+		Assert.assertTrue(capture.check(now));
+		Assert.assertEquals(2, capture.captures);
+		capture.check(now += COOLDOWN_MILLS);
+		capture.check(now += 1000);
+		Assert.assertFalse(capture.check(now += 1000));
+		Assert.assertEquals(2, capture.captures);
+		Assert.assertEquals(5, capture.suppressedCount);
+
+		capture.capturing.set(false);
+		Assert.assertTrue(capture.check(now += 1000));
+		Assert.assertEquals(3, capture.captures);
+	}
+
+	@Test
+	public void truncateHistogram() {
+		String histogram = " num     #instances         #bytes  class name (module)\n"
+				+ "-------------------------------------------------------\n"
+				+ "   1:         12146        1080968  [B (java.base@11)\n"
+				+ "   2:          2566         311904  java.lang.Class (java.base@11)\n"
+				+ "   3:         11874         284976  java.lang.String (java.base@11)\n"
+				+ "Total         26586        1677848\n";
+
+		String truncated = EvidenceCapture.truncateHistogram(histogram, 2);
+		Assert.assertTrue(truncated.contains("num     #instances"));
+		Assert.assertTrue(truncated.contains("java.lang.Class"));
+		Assert.assertFalse(truncated.contains("java.lang.String"));
+		// Total行保留
+		Assert.assertTrue(truncated.endsWith("Total         26586        1677848\n"));
+
+		Assert.assertEquals(histogram, EvidenceCapture.truncateHistogram(histogram, 50));
+	}
+
+	/**
+	 * 只记录取证请求，不启动写文件的线程
+	 */
+	private static class RecordingCapture extends EvidenceCapture {
+		int captures;
+		String lastReasonText;
+
+		RecordingCapture(VMInfo vmInfo) throws Exception {
+			super(new VMDetailView(vmInfo, OutputFormat.text, ContentMode.jvm, ThreadInfoMode.cpu, null, 1),
+					createDir(), 3, 600, false);
+		}
+
+		@Override
+		void capture(File file, String reasonText, String metrics) {
+			captures++;
+			lastReasonText = reasonText;
+		}
+
+		private static String createDir() throws IOException {
+			File dir = Files.createTempDirectory("vjtop-capture").toFile();
+			dir.deleteOnExit();
+			return dir.getPath();
+		}
+	}
+}
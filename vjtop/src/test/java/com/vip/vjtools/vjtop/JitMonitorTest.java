@@ -0,0 +1,52 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JitMonitorTest {
+
+	private static final long KB = 1024;
+
+	@Test
+	public void parseSegmentedCodeCache() {
+		JitMonitor.CodeCache codeCache = new JitMonitor.CodeCache();
+		codeCache.parse(jdk17(1218, 0));
+
+		Assert.assertTrue(codeCache.supported);
+		// 各CodeHeap相加
+		Assert.assertEquals((120036 + 120032 + 5692) * KB, codeCache.size);
+		Assert.assertEquals((377 + 1857 + 1165) * KB, codeCache.used);
+		Assert.assertEquals((377 + 1857 + 1182) * KB, codeCache.maxUsed);
+		Assert.assertEquals(1218, codeCache.nmethods.current);
+		Assert.assertEquals(0, codeCache.fullCount.current);
+		Assert.assertTrue(codeCache.compilationEnabled);
+
+		codeCache.parse(jdk17(1300, 2));
+		Assert.assertEquals(82, codeCache.nmethods.delta);
+		Assert.assertEquals(2, codeCache.fullCount.delta);
+	}
+
+	@Test
+	public void codeCacheNotSupportedOnJdk8() {
+		// JDK8没有Compiler.codecache命令，perf数据源没有DiagnosticCommand
+		Assert.assertFalse(JitMonitor.isCodeCacheSupported(true, VMInfo.getJavaMajorVersion("1.8.0_292")));
+		Assert.assertFalse(JitMonitor.isCodeCacheSupported(false, VMInfo.getJavaMajorVersion("17.0.9")));
+		Assert.assertTrue(JitMonitor.isCodeCacheSupported(true, VMInfo.getJavaMajorVersion("9.0.4")));
+		Assert.assertTrue(JitMonitor.isCodeCacheSupported(true, VMInfo.getJavaMajorVersion("11.0.21")));
+		Assert.assertTrue(JitMonitor.isCodeCacheSupported(true, VMInfo.getJavaMajorVersion("17")));
+
+		JitMonitor.CodeCache codeCache = new JitMonitor.CodeCache();
+		Assert.assertFalse(codeCache.supported);
+	}
+
+	private static String jdk17(int nmethods, int fullCount) {
+		return "CodeHeap 'non-profiled nmethods': size=120036Kb used=377Kb max_used=377Kb free=119658Kb\n"
+				+ " bounds [0x00007ff028ec7000, 0x00007ff029137000, 0x00007ff030400000]\n"
+				+ "CodeHeap 'profiled nmethods': size=120032Kb used=1857Kb max_used=1857Kb free=118174Kb\n"
+				+ " bounds [0x00007ff021400000, 0x00007ff021670000, 0x00007ff028938000]\n"
+				+ "CodeHeap 'non-nmethods': size=5692Kb used=1165Kb max_used=1182Kb free=4526Kb\n"
+				+ " bounds [0x00007ff028938000, 0x00007ff028ba8000, 0x00007ff028ec7000]\n"
+				+ " total_blobs=1673 nmethods=" + nmethods + " adapters=371\n" + " compilation: enabled\n"
+				+ "              stopped_count=0, restarted_count=0\n" + " full_count=" + fullCount + "\n";
+	}
+}
@@ -0,0 +1,76 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+import com.vip.vjtools.vjtop.data.LocalVMDiscovery;
+
+public class MultiVMViewTest {
+
+	@Test
+	public void refreshTargets() {
+		StubDiscovery discovery = new StubDiscovery();
+		StubView view = new StubView(discovery);
+
+		// 222无法映射PerfData
+		discovery.pids = Arrays.asList("111", "222", "333");
+		view.refreshTargets();
+		Assert.assertEquals(2, view.updateTasks.size());
+		Assert.assertTrue(view.failedPids.contains("222"));
+		VMInfo vm111 = view.updateTasks.get("111").vmInfo;
+		VMInfo vm333 = view.updateTasks.get("333").vmInfo;
+
+		// 已发现的进程不再重复映射，失败的进程在退出前不再重试
+		view.refreshTargets();
+		Assert.assertEquals(Arrays.asList("111", "222", "333"), view.attached);
+
+		// 111退出后关闭并移除，333连续更新失败后关闭并不再重试
+		vm333.state = VMInfoState.DETACHED;
+		discovery.pids = Arrays.asList("222", "333", "444");
+		view.refreshTargets();
+		Assert.assertEquals(VMInfoState.DETACHED, vm111.state);
+		Assert.assertFalse(view.updateTasks.containsKey("111"));
+		Assert.assertFalse(view.updateTasks.containsKey("333"));
+		Assert.assertTrue(view.updateTasks.containsKey("444"));
+		Assert.assertTrue(view.failedPids.contains("333"));
+
+		// 进程退出后从失败列表中清除，同一进程号再次出现时重新映射
+		discovery.pids = Arrays.asList("444");
+		view.refreshTargets();
+		Assert.assertTrue(view.failedPids.isEmpty());
+		discovery.pids = Arrays.asList("444", "222");
+		view.refreshTargets();
+		Assert.assertEquals(Arrays.asList("111", "222", "333", "444", "222"), view.attached);
+	}
+
+	private static class StubDiscovery extends LocalVMDiscovery {
+		private List<String> pids;
+
+		@Override
+		public List<String> listPids() {
+			return pids;
+		}
+	}
+
+	private static class StubView extends MultiVMView {
+		private final List<String> attached = new ArrayList<>();
+
+		StubView(LocalVMDiscovery discovery) {
+			super(null, discovery);
+		}
+
+		@Override
+		VMInfo attach(String pid) throws Exception {
+			attached.add(pid);
+			if (pid.equals("222") && attached.size() == 2) {
+				throw new IllegalStateException("Cannot map perf data of process " + pid);
+			}
+			return VMInfo.createDeadVM(pid, VMInfoState.ATTACHED);
+		}
+	}
+}
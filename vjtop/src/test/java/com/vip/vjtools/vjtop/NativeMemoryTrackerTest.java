@@ -0,0 +1,59 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NativeMemoryTrackerTest {
+
+	private static final long KB = 1024;
+
+	@Test
+	public void isEnabled() {
+		Assert.assertTrue(NativeMemoryTracker.isEnabled("-Xmx1g -XX:NativeMemoryTracking=summary"));
+		Assert.assertTrue(NativeMemoryTracker.isEnabled("-XX:NativeMemoryTracking=detail -Xss256k"));
+		Assert.assertFalse(
+				NativeMemoryTracker.isEnabled("-XX:NativeMemoryTracking=summary -XX:NativeMemoryTracking=off"));
+		Assert.assertFalse(NativeMemoryTracker.isEnabled("-Xmx1g"));
+	}
+
+	@Test
+	public void parseSummary() {
+		NativeMemoryTracker tracker = new NativeMemoryTracker(null, 60);
+		tracker.parse(summary(96256, 527, 708));
+
+		Assert.assertEquals(2939305 * KB, tracker.totalReserved);
+		Assert.assertEquals(124741 * KB, tracker.totalCommitted);
+		Assert.assertEquals(0, tracker.totalDelta);
+		Assert.assertEquals(4, tracker.categories.size());
+		// 按committed从大到小排序
+		Assert.assertEquals("Java Heap", tracker.categories.get(0).name);
+		Assert.assertEquals("javaHeap", tracker.categories.get(0).key());
+		Assert.assertEquals("sharedClassSpace", tracker.categories.get(1).key());
+		Assert.assertEquals("gc", new NativeMemoryTracker.Category("GC", 0, 0).key());
+		Assert.assertEquals(0, tracker.categories.get(0).delta);
+
+		tracker.parse(summary(96256, 2575, 700));
+		for (NativeMemoryTracker.Category category : tracker.categories) {
+			if (category.name.equals("Class")) {
+				Assert.assertEquals(2048 * KB, category.delta);
+			} else if (category.name.equals("Thread")) {
+				Assert.assertEquals(-8 * KB, category.delta);
+			} else {
+				Assert.assertEquals(0, category.delta);
+			}
+		}
+	}
+
+	private static String summary(long heap, long klass, long thread) {
+		return "Native Memory Tracking:\n\n" + "Total: reserved=2939305KB, committed=124741KB\n"
+				+ "       malloc: 4705KB #18483\n\n"
+				+ "-                 Java Heap (reserved=1538048KB, committed=" + heap + "KB)\n"
+				+ "                            (mmap: reserved=1538048KB, committed=96256KB) \n \n"
+				+ "-                     Class (reserved=1048719KB, committed=" + klass + "KB)\n"
+				+ "                            (classes #1530)\n"
+				+ "                            (    reserved=65536KB, committed=2752KB)\n \n"
+				+ "-                    Thread (reserved=13348KB, committed=" + thread + "KB)\n"
+				+ "                            (thread #13)\n \n"
+				+ "-        Shared class space (reserved=16384KB, committed=12056KB)\n";
+	}
+}
@@ -0,0 +1,112 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+
+public class RecordPrinterTest {
+
+	@Test
+	public void escapeString() {
+		StringBuilder sb = new StringBuilder();
+		RecordPrinter.appendJsonString(sb, "a\"b\\c\td\u0001");
+		Assert.assertEquals("\"a\\\"b\\\\c\\td\\u0001\"", sb.toString());
+
+		sb.setLength(0);
+		RecordPrinter.appendCsvString(sb, "pool-1-thread-1");
+		Assert.assertEquals("pool-1-thread-1", sb.toString());
+
+		sb.setLength(0);
+		RecordPrinter.appendCsvString(sb, "a,\"b\"");
+		Assert.assertEquals("\"a,\"\"b\"\"\"", sb.toString());
+	}
+
+	@Test
+	public void printRecords() throws IOException {
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		String jsonl = print(new RecordPrinter(true), vmInfo);
+		String[] lines = jsonl.split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertTrue(lines[0].startsWith("{\"type\":\"jvm\",\"v\":" + RecordPrinter.SCHEMA_VERSION + ",\"time\":"));
+		Assert.assertTrue(lines[0].contains(",\"pid\":1234,"));
+		Assert.assertTrue(lines[1].endsWith(",\"memory.rate\":-1,\"memory.rate.percent\":-1,"
+				+ "\"memory.total\":-1,\"memory.total.percent\":-1}"));
+
+		String csv = print(new RecordPrinter(false), vmInfo);
+		lines = csv.split("\n");
+		Assert.assertEquals(4, lines.length);
+		Assert.assertTrue(lines[0].startsWith("#jvm,v,time,pid,"));
+		Assert.assertTrue(lines[1].startsWith("#thread,v,time,pid,"));
+		// 表头与记录的列数一致
+		Assert.assertEquals(lines[0].split(",", -1).length, lines[2].split(",", -1).length);
+		Assert.assertEquals(lines[1].split(",", -1).length, lines[3].split(",", -1).length);
+		Assert.assertTrue(lines[3].startsWith("thread," + RecordPrinter.SCHEMA_VERSION + ","));
+	}
+
+	@Test
+	public void printLockRecords() throws IOException {
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		String jsonl = printLock(new RecordPrinter(true), vmInfo);
+		String[] lines = jsonl.split("\n");
+		Assert.assertEquals(2, lines.length);
+		Assert.assertTrue(lines[0].startsWith("{\"type\":\"lock\",\"v\":" + RecordPrinter.SCHEMA_VERSION + ",\"time\":"));
+		Assert.assertTrue(lines[0].endsWith(",\"kind\":\"chain\",\"root.tid\":7,\"root.name\":\"owner\",\"blocked\":2,"
+				+ "\"depth\":2,\"lock\":\"java.lang.Object@1b6d3586\",\"chain\":\"worker-1(8) -> worker-2(9) -> owner(7)\"}"));
+
+		String csv = printLock(new RecordPrinter(false), vmInfo);
+		lines = csv.split("\n");
+		// lock记录的表头只在第一条lock记录前打印
+		Assert.assertEquals(5, lines.length);
+		Assert.assertTrue(lines[2].startsWith("#lock,v,time,pid,"));
+		Assert.assertEquals(lines[2].split(",", -1).length, lines[3].split(",", -1).length);
+		Assert.assertTrue(lines[3].startsWith("lock," + RecordPrinter.SCHEMA_VERSION + ","));
+		Assert.assertTrue(lines[4].startsWith("lock," + RecordPrinter.SCHEMA_VERSION + ","));
+	}
+
+	private static DeadlockDetector.LockChain lockChain() {
+		DeadlockDetector.LockChain chain = new DeadlockDetector.LockChain(false);
+		chain.rootTid = 7;
+		chain.rootName = "owner";
+		chain.lockName = "java.lang.Object@1b6d3586";
+		chain.blockedThreads = 2;
+		chain.path = Arrays.asList("worker-1(8)", "worker-2(9)", "owner(7)");
+		return chain;
+	}
+
+	private static String printLock(RecordPrinter printer, VMInfo vmInfo) throws IOException {
+		PrintStream origin = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			printer.beginInterval();
+			printer.printLockRecord(vmInfo, lockChain());
+			printer.beginInterval();
+			printer.printLockRecord(vmInfo, lockChain());
+			printer.flush();
+		} finally {
+			System.setOut(origin);
+		}
+		return bytes.toString("UTF-8");
+	}
+
+	private static String print(RecordPrinter printer, VMInfo vmInfo) throws IOException {
+		PrintStream origin = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes));
+		try {
+			printer.beginInterval();
+			printer.printJvmRecord(vmInfo);
+			printer.printCpuThreadRecord(vmInfo, "cpu", 1, 42, "main", "RUNNABLE", 12.5, 1.2, 30, 2);
+			printer.flush();
+		} finally {
+			System.setOut(origin);
+		}
+		return bytes.toString("UTF-8");
+	}
+}
@@ -0,0 +1,155 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.TopThreadInfo.TopCpuResult;
+import com.vip.vjtools.vjtop.VMDetailView.ThreadInfoMode;
+import com.vip.vjtools.vjtop.VMInfo.Usage;
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+
+public class RecordingTest {
+
+	@Test
+	public void writeAndReplay() throws IOException {
+		File file = File.createTempFile("vjtop", ".rec");
+		file.deleteOnExit();
+
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		vmInfo.jvmVersion = "1.8.0_191";
+		vmInfo.processors = 4;
+		vmInfo.threadCpuTimeSupported = true;
+
+		RecordingWriter writer = new RecordingWriter(file.getPath());
+		// 超过一个关键帧间隔，覆盖关键帧之后的解码
+		int frames = Recording.KEY_FRAME_INTERVAL + 2;
+		for (int i = 0; i < frames; i++) {
+			vmInfo.upTimeMills.update(i * 1000L);
+			vmInfo.cpuTimeNanos.update(i * 500000000L);
+			vmInfo.old = new Usage(i * 1024L, 4096L * frames, 8192L * frames);
+			vmInfo.currentGcCause = i % 2 == 0 ? "No GC" : "Allocation Failure";
+			writer.write(vmInfo, ThreadInfoMode.cpu, cpuResult(i), null);
+		}
+		writer.close();
+
+		RecordingReader reader = RecordingReader.open(file.getPath());
+		Assert.assertEquals(frames, reader.frameCount());
+		VMInfo replayed = reader.createVMInfo();
+		Assert.assertTrue(replayed.replay);
+		Assert.assertEquals("1.8.0_191", replayed.jvmVersion);
+		Assert.assertTrue(replayed.threadCpuTimeSupported);
+
+		reader.advance();
+		Assert.assertEquals(0, reader.currentIndex());
+		Assert.assertEquals(0, replayed.upTimeMills.delta);
+		Assert.assertFalse(reader.cpuResult.ready);
+
+		reader.advance();
+		assertFrame(reader, replayed, 1);
+
+		// 向后定位到关键帧之后，再向前定位
+		reader.requestSeek(frames - 1);
+		reader.advance();
+		assertFrame(reader, replayed, frames - 1);
+		reader.requestSeek(7);
+		reader.advance();
+		assertFrame(reader, replayed, 7);
+		Assert.assertTrue(reader.paused);
+	}
+
+	@Test
+	public void ignoreTruncatedFrame() throws IOException {
+		File file = File.createTempFile("vjtop", ".rec");
+		file.deleteOnExit();
+
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		RecordingWriter writer = new RecordingWriter(file.getPath());
+		for (int i = 0; i < 3; i++) {
+			vmInfo.upTimeMills.update(i * 1000L);
+			writer.write(vmInfo, ThreadInfoMode.cpu, null, null);
+		}
+		writer.close();
+
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		Assert.assertEquals(2, RecordingReader.open(file.getPath()).frameCount());
+	}
+
+	@Test
+	public void ignoreFrameTruncatedInLength() throws IOException {
+		File file = File.createTempFile("vjtop", ".rec");
+		file.deleteOnExit();
+
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		RecordingWriter writer = new RecordingWriter(file.getPath());
+		for (int i = 0; i < 2; i++) {
+			vmInfo.upTimeMills.update(i * 1000L);
+			writer.write(vmInfo, ThreadInfoMode.cpu, cpuResult(i), null);
+		}
+		writer.close();
+
+		// 帧类型之后，多字节的帧长度只写了第一个字节
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.seek(raf.length());
+		raf.write(new byte[] { Recording.DELTA_FRAME, (byte) 0x90 });
+		raf.close();
+
+		Assert.assertEquals(2, RecordingReader.open(file.getPath()).frameCount());
+	}
+
+	@Test
+	public void stableThreadModeId() {
+		// 已有的录制文件中的序号
+		Assert.assertEquals(0, Recording.threadModeId(ThreadInfoMode.cpu));
+		Assert.assertEquals(2, Recording.threadModeId(ThreadInfoMode.syscpu));
+		Assert.assertEquals(5, Recording.threadModeId(ThreadInfoMode.totalmemory));
+		Assert.assertEquals(-1, Recording.threadModeId(ThreadInfoMode.group));
+		for (ThreadInfoMode mode : new ThreadInfoMode[] { ThreadInfoMode.cpu, ThreadInfoMode.totalcpu,
+				ThreadInfoMode.syscpu, ThreadInfoMode.totalsyscpu, ThreadInfoMode.memory, ThreadInfoMode.totalmemory }) {
+			Assert.assertEquals(mode, Recording.threadMode(Recording.threadModeId(mode), null));
+		}
+		Assert.assertEquals(ThreadInfoMode.memory, Recording.threadMode(99, ThreadInfoMode.memory));
+		Assert.assertEquals(ThreadInfoMode.cpu, Recording.threadMode(-1, ThreadInfoMode.cpu));
+	}
+
+	private static void assertFrame(RecordingReader reader, VMInfo replayed, int i) {
+		Assert.assertEquals(i, reader.currentIndex());
+		Assert.assertEquals(i * 1000L, replayed.upTimeMills.current);
+		Assert.assertEquals(1000L, replayed.upTimeMills.delta);
+		Assert.assertEquals(50.0, replayed.singleCoreCpuLoad, 0.01);
+		Assert.assertEquals(i * 1024L, replayed.old.used);
+		Assert.assertEquals(i % 2 == 0 ? "No GC" : "Allocation Failure", replayed.currentGcCause);
+
+		TopCpuResult result = reader.cpuResult;
+		Assert.assertTrue(result.ready);
+		Assert.assertEquals(ThreadInfoMode.cpu, reader.threadMode);
+		Assert.assertEquals(2, result.topTids.length);
+		Assert.assertEquals("worker-" + i, result.topThreadNames[0]);
+		Assert.assertEquals(i * 100L, result.threadCpuTotalTimes.get(result.topTids[0], -1));
+		Assert.assertEquals(7L, result.threadCpuDeltaTimes.get(result.topTids[1], -1));
+	}
+
+	private static TopCpuResult cpuResult(int i) {
+		TopCpuResult result = new TopCpuResult();
+		result.activeThreads = 2;
+		result.topTids = new long[] { 10 + i % 3, 99 };
+		result.topThreadNames = new String[] { "worker-" + i, "main" };
+		result.topThreadStates = new String[] { "RUNNABLE", "WAITING" };
+		result.threadCpuDeltaTimes = new LongLongHashMap();
+		result.threadSysCpuDeltaTimes = new LongLongHashMap();
+		result.threadCpuTotalTimes = new LongLongHashMap();
+		result.threadSysCpuTotalTimes = new LongLongHashMap();
+		result.threadCpuDeltaTimes.put(result.topTids[0], 100);
+		result.threadCpuDeltaTimes.put(99, 7);
+		result.threadCpuTotalTimes.put(result.topTids[0], i * 100L);
+		result.threadCpuTotalTimes.put(99, i * 7L);
+		return result;
+	}
+}
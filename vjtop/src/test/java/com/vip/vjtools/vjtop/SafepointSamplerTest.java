@@ -0,0 +1,96 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.SafepointSampler.Cause;
+import com.vip.vjtools.vjtop.SafepointSampler.IntervalStats;
+import com.vip.vjtools.vjtop.SafepointSampler.Spike;
+
+public class SafepointSamplerTest {
+
+	@Test
+	public void spikeAndTtsp() {
+		SafepointSampler sampler = new SafepointSampler(50);
+		// 没有安全点的采样间隔不产生spike
+		sampler.sample(1000, 0, 0, 0, 0, 0, false);
+		// 一次安全点，停顿2ms，其中进入安全点0.5ms
+		sampler.sample(1050, 1, 2000, 500, 0, 0, false);
+		// 两次安全点共停顿1ms，平均每次0.5ms，进入安全点共0.8ms
+		sampler.sample(1100, 3, 3000, 1300, 0, 0, false);
+		// 计数器的同步时间大于总时间时，以总时间为上限
+		sampler.sample(1150, 4, 3100, 1500, 0, 0, false);
+
+		IntervalStats stats = sampler.drain();
+		Assert.assertEquals(4, stats.samples);
+		Assert.assertEquals(4, stats.count);
+		Assert.assertEquals(3100, stats.totalMicros);
+		Assert.assertEquals(775, stats.avgMicros());
+		Assert.assertEquals(2000, stats.worstMicros);
+		// 最差那次安全点的TTSP，与所有间隔中最长的TTSP
+		Assert.assertEquals(500, stats.worstSyncMicros);
+		Assert.assertEquals(500, stats.worstTtspMicros);
+		Assert.assertEquals(4, stats.totalCount);
+
+		Assert.assertEquals(3, stats.spikes.size());
+		Spike worst = stats.spikes.get(0);
+		Assert.assertEquals(1050, worst.time);
+		Assert.assertEquals(2000, worst.latencyMicros());
+		Assert.assertEquals(500, stats.spikes.get(1).latencyMicros());
+		Assert.assertEquals(400, stats.spikes.get(1).syncLatencyMicros());
+		Assert.assertEquals(100, stats.spikes.get(2).syncMicros);
+
+		// drain后开始新的周期，启动以来的次数继续累计
+		sampler.sample(1200, 5, 3200, 1550, 0, 0, false);
+		stats = sampler.drain();
+		Assert.assertEquals(1, stats.count);
+		Assert.assertEquals(100, stats.worstMicros);
+		Assert.assertEquals(50, stats.worstTtspMicros);
+		Assert.assertEquals(5, stats.totalCount);
+	}
+
+	@Test
+	public void safepointSpansSamples() {
+		SafepointSampler sampler = new SafepointSampler(50);
+		// 安全点开始时次数已增加，时间在结束时才累加
+		sampler.sample(1000, 1, 0, 0, 0, 0, false);
+		sampler.sample(1050, 1, 0, 0, 1, 0, false);
+		// 120ms后结束，跨越了三个采样间隔
+		sampler.sample(1100, 1, 120000, 300, 1, 0, false);
+		sampler.sample(1150, 1, 120000, 300, 1, 0, false);
+
+		IntervalStats stats = sampler.drain();
+		Assert.assertEquals(4, stats.samples);
+		Assert.assertEquals(1, stats.count);
+		Assert.assertEquals(120000, stats.totalMicros);
+		Assert.assertEquals(120000, stats.worstMicros);
+		Assert.assertEquals(300, stats.worstTtspMicros);
+		Assert.assertEquals(1, stats.spikes.size());
+		Assert.assertEquals(1100, stats.spikes.get(0).time);
+		// 进行中看到的GC仍归入这次安全点
+		Assert.assertEquals(Cause.gc, stats.spikes.get(0).cause);
+	}
+
+	@Test
+	public void causeAttribution() {
+		SafepointSampler sampler = new SafepointSampler(50);
+		// 间隔内有GC
+		sampler.sample(1000, 1, 1000, 100, 1, 0, false);
+		// 间隔内vjtop完成了一次取栈
+		sampler.sample(1050, 2, 1200, 200, 1, 1, false);
+		// 取栈跨越多个采样间隔时，进行中与结束后的一个间隔都归为vjtop
+		sampler.sample(1100, 3, 1500, 300, 1, 1, true);
+		sampler.sample(1150, 4, 1900, 400, 1, 2, false);
+		// 同时有GC与取栈时归为gc
+		sampler.sample(1200, 5, 2400, 500, 2, 3, false);
+		sampler.sample(1250, 7, 3000, 600, 2, 3, false);
+
+		IntervalStats stats = sampler.drain();
+		Assert.assertEquals(2, stats.causeCounts[Cause.gc.ordinal()]);
+		Assert.assertEquals(1500, stats.causeMicros[Cause.gc.ordinal()]);
+		Assert.assertEquals(3, stats.causeCounts[Cause.vjtop.ordinal()]);
+		Assert.assertEquals(900, stats.causeMicros[Cause.vjtop.ordinal()]);
+		Assert.assertEquals(2, stats.causeCounts[Cause.other.ordinal()]);
+		Assert.assertEquals(600, stats.causeMicros[Cause.other.ordinal()]);
+	}
+}
@@ -0,0 +1,38 @@
+package com.vip.vjtools.vjtop;
+
+import java.io.File;
+import java.lang.management.ThreadInfo;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StackSamplerTest {
+
+	@Test
+	public void capDistinctStacks() throws Exception {
+		File file = File.createTempFile("vjtop", ".folded");
+		file.deleteOnExit();
+		StackSampler sampler = new StackSampler(null, file.getPath(), StackSampler.DEFAULT_HZ);
+
+		// 线程名带有递增序号时，每个线程都是一个不同的栈
+		ThreadInfo[] infos = new ThreadInfo[StackSampler.MAX_STACKS + 5];
+		for (int i = 0; i < infos.length; i++) {
+			infos[i] = new ThreadInfoBuilder(i, "task-" + i).build();
+		}
+		sampler.addSamples(null, infos);
+		sampler.addSamples(null, new ThreadInfo[] { infos[0], infos[infos.length - 1],
+				new ThreadInfoBuilder(1, "blocked").lock(Thread.State.BLOCKED, "java.lang.Object@1", 2, "owner")
+						.build() });
+
+		Assert.assertEquals(StackSampler.MAX_STACKS + 7, sampler.sampleCount);
+		Assert.assertEquals(6, sampler.otherCount);
+
+		sampler.flush();
+		List<String> lines = Files.readAllLines(file.toPath(), Recording.UTF8);
+		Assert.assertEquals(StackSampler.MAX_STACKS + 1, lines.size());
+		Assert.assertTrue(lines.contains("task-0 2"));
+		Assert.assertTrue(lines.contains(StackSampler.OTHER_STACKS + " 6"));
+	}
+}
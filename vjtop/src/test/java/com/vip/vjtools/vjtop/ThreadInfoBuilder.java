@@ -0,0 +1,84 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+
+/**
+ * ThreadInfo没有公开的构造函数，以本JVM的ThreadMXBean返回的CompositeData为模板构造测试用的ThreadInfo
+ */
+public class ThreadInfoBuilder {
+
+	private static CompositeData template;
+
+	private final Map<String, Object> items = new HashMap<>();
+
+	public ThreadInfoBuilder(long tid, String name) {
+		CompositeData cd = template();
+		for (String key : cd.getCompositeType().keySet()) {
+			items.put(key, cd.get(key));
+		}
+		items.put("threadId", tid);
+		items.put("threadName", name);
+		items.put("threadState", Thread.State.RUNNABLE.name());
+		items.put("lockInfo", null);
+		items.put("lockName", null);
+		items.put("lockOwnerId", -1L);
+		items.put("lockOwnerName", null);
+		items.put("blockedCount", 0L);
+		items.put("blockedTime", -1L);
+		items.put("waitedCount", 0L);
+		items.put("waitedTime", -1L);
+	}
+
+	/**
+	 * 阻塞在ownerId持有的lockName上，ownerId为-1时为没有owner的等待
+	 */
+	public ThreadInfoBuilder lock(Thread.State state, String lockName, long ownerId, String ownerName) {
+		items.put("threadState", state.name());
+		items.put("lockName", lockName);
+		items.put("lockOwnerId", ownerId);
+		items.put("lockOwnerName", ownerName);
+		return this;
+	}
+
+	public ThreadInfoBuilder blocked(long count, long time) {
+		items.put("blockedCount", count);
+		items.put("blockedTime", time);
+		return this;
+	}
+
+	public ThreadInfoBuilder waited(long count, long time) {
+		items.put("waitedCount", count);
+		items.put("waitedTime", time);
+		return this;
+	}
+
+	public ThreadInfo build() {
+		try {
+			CompositeType type = template().getCompositeType();
+			return ThreadInfo.from(new CompositeDataSupport(type, items));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static synchronized CompositeData template() {
+		if (template == null) {
+			try {
+				template = (CompositeData) ManagementFactory.getPlatformMBeanServer().invoke(
+						new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME), "getThreadInfo",
+						new Object[] { Thread.currentThread().getId() }, new String[] { long.class.getName() });
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return template;
+	}
+}
@@ -0,0 +1,92 @@
+package com.vip.vjtools.vjtop;
+
+import java.lang.management.ThreadInfo;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.TopContention.LockStat;
+import com.vip.vjtools.vjtop.TopContention.TopContentionResult;
+
+public class TopContentionTest {
+
+	private static final String MONITOR = "java.lang.Object@1b6d3586";
+	private static final String REENTRANT_LOCK = "java.util.concurrent.locks.ReentrantLock$NonfairSync@4554617c";
+
+	@Test
+	public void rankThreadsAndAggregateLocks() {
+		TopContention contention = new TopContention(null);
+		TopContentionResult result = contention.topContention(new ThreadInfo[] {
+				new ThreadInfoBuilder(1, "worker-1").blocked(10, 100).build(),
+				new ThreadInfoBuilder(2, "worker-2").blocked(0, 0).waited(5, 50).build(),
+				new ThreadInfoBuilder(3, "owner").blocked(0, 0).build(),
+				new ThreadInfoBuilder(5, "juc-waiter").blocked(0, 0).waited(3, 200).build(),
+				new ThreadInfoBuilder(6, "juc-owner").blocked(0, 0).waited(9, 0).build(),
+				new ThreadInfoBuilder(7, "exited").blocked(0, 0).build() }, 10);
+		// 第一次没有区间值
+		Assert.assertFalse(result.ready);
+
+		result = contention.topContention(new ThreadInfo[] {
+				new ThreadInfoBuilder(1, "worker-1").lock(Thread.State.BLOCKED, MONITOR, 3, "owner").blocked(14, 400)
+						.build(),
+				new ThreadInfoBuilder(2, "worker-2").lock(Thread.State.BLOCKED, MONITOR, 3, "owner").blocked(2, 100)
+						.waited(5, 50).build(),
+				new ThreadInfoBuilder(3, "owner").blocked(0, 0).build(),
+				// 新出现的线程没有区间值，但阻塞在锁上
+				new ThreadInfoBuilder(4, "worker-4").lock(Thread.State.BLOCKED, MONITOR, 3, "owner").blocked(1, 30)
+						.build(),
+				new ThreadInfoBuilder(5, "juc-waiter").lock(Thread.State.WAITING, REENTRANT_LOCK, 6, "juc-owner")
+						.blocked(0, 0).waited(8, 1000).build(),
+				// Object.wait()没有owner，不计入锁
+				new ThreadInfoBuilder(6, "juc-owner").lock(Thread.State.WAITING, "java.lang.Object@7f31245a", -1, null)
+						.blocked(0, 0).waited(10, 900).build(),
+				null }, 3);
+
+		Assert.assertTrue(result.ready);
+		Assert.assertTrue(result.timeSupported);
+		Assert.assertEquals(6, result.deltaAllBlockedCount);
+		Assert.assertEquals(400, result.deltaAllBlockedTime);
+		Assert.assertEquals(1700, result.deltaAllWaitedTime);
+
+		// 按阻塞时间、阻塞次数、等待时间排序，并按threadLimit截断
+		Assert.assertEquals(5, result.contendedThreads);
+		Assert.assertEquals(3, result.topThreads.size());
+		Assert.assertEquals(1, result.topThreads.get(0).tid);
+		Assert.assertEquals(4, result.topThreads.get(0).deltaBlockedCount);
+		Assert.assertEquals(300, result.topThreads.get(0).deltaBlockedTime);
+		Assert.assertEquals(2, result.topThreads.get(1).tid);
+		Assert.assertEquals(6, result.topThreads.get(2).tid);
+		Assert.assertEquals(900, result.topThreads.get(2).deltaWaitedTime);
+
+		// 按阻塞的线程数汇总
+		Assert.assertEquals(2, result.lockCount);
+		LockStat monitor = result.topLocks.get(0);
+		Assert.assertEquals(MONITOR, monitor.name);
+		Assert.assertEquals(3, monitor.waiters);
+		Assert.assertEquals(6, monitor.deltaBlockedCount);
+		Assert.assertEquals(400, monitor.deltaBlockedTime);
+		Assert.assertEquals(3, monitor.ownerId);
+		Assert.assertEquals("owner", monitor.ownerName);
+		LockStat juc = result.topLocks.get(1);
+		Assert.assertEquals(REENTRANT_LOCK, juc.name);
+		Assert.assertEquals(1, juc.waiters);
+		Assert.assertEquals(6, juc.ownerId);
+	}
+
+	@Test
+	public void rankByCountWithoutContentionMonitoring() {
+		TopContention contention = new TopContention(null);
+		contention.topContention(new ThreadInfo[] { new ThreadInfoBuilder(1, "a").blocked(1, -1).build(),
+				new ThreadInfoBuilder(2, "b").blocked(1, -1).build() }, 10);
+
+		TopContentionResult result = contention.topContention(new ThreadInfo[] {
+				new ThreadInfoBuilder(1, "a").blocked(3, -1).build(), new ThreadInfoBuilder(2, "b").blocked(9, -1).build() },
+				10);
+		Assert.assertFalse(result.timeSupported);
+		Assert.assertEquals(0, result.deltaAllBlockedTime);
+		Assert.assertEquals(10, result.deltaAllBlockedCount);
+		Assert.assertEquals(2, result.topThreads.get(0).tid);
+		Assert.assertEquals(1, result.topThreads.get(1).tid);
+		Assert.assertEquals(0, result.lockCount);
+	}
+}
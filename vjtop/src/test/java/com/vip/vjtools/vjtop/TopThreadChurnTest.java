@@ -0,0 +1,108 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.TopThreadChurn.ChurnStat;
+import com.vip.vjtools.vjtop.TopThreadChurn.TopChurnResult;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+
+public class TopThreadChurnTest {
+
+	private static final String POOL = "pool-*-thread-*";
+
+	@Test
+	public void createdDiedAndShortLived() {
+		TopThreadChurn churn = new TopThreadChurn(null);
+		// 第一个周期只记录已存在的线程
+		TopChurnResult result = churn.topChurn(0, tasks("main", 1, "pool-1-thread-1", 10, "pool-1-thread-2", 11), 3, 10);
+		Assert.assertFalse(result.ready);
+
+		// 新建12、13，退出11，另有一个线程在两次刷新之间启动又退出
+		result = churn.topChurn(1000, tasks("main", 1, "pool-1-thread-1", 10, "pool-1-thread-3", 12,
+				"pool-1-thread-4", 13), 6, 10);
+		Assert.assertTrue(result.ready);
+		Assert.assertEquals(2, result.created);
+		Assert.assertEquals(1, result.died);
+		Assert.assertEquals(3, result.started);
+		Assert.assertEquals(1, result.unseen);
+		Assert.assertEquals(2, result.groupCount);
+		Assert.assertEquals(1, result.churningGroups);
+		ChurnStat pool = result.topGroups.get(0);
+		Assert.assertEquals(POOL, pool.name);
+		Assert.assertEquals(3, pool.threads);
+		Assert.assertEquals(2, pool.created);
+		Assert.assertEquals(1, pool.died);
+		// 启动时已存在的线程不知道存活时长
+		Assert.assertEquals(0, pool.shortLived);
+		Assert.assertEquals(-1, pool.avgLifeMills());
+
+		// 12在被看到后29秒退出，为短命线程
+		result = churn.topChurn(30000, tasks("main", 1, "pool-1-thread-1", 10, "pool-1-thread-4", 13), 6, 10);
+		Assert.assertEquals(0, result.created);
+		Assert.assertEquals(1, result.died);
+		Assert.assertEquals(0, result.unseen);
+		pool = result.topGroups.get(0);
+		Assert.assertEquals(1, pool.shortLived);
+		Assert.assertEquals(29000, pool.avgLifeMills());
+		Assert.assertTrue(pool.isChurning());
+
+		// 13存活超过SHORT_LIVED_MILLS后退出
+		result = churn.topChurn(200000, tasks("main", 1, "pool-1-thread-1", 10), 6, 1);
+		pool = result.topGroups.get(0);
+		Assert.assertEquals(0, pool.shortLived);
+		Assert.assertEquals(199000, pool.avgLifeMills());
+		Assert.assertFalse(pool.isChurning());
+		Assert.assertEquals(0, result.churningGroups);
+		Assert.assertEquals(2, pool.totalCreated);
+		Assert.assertEquals(3, pool.totalDied);
+		// 按groupLimit截断
+		Assert.assertEquals(1, result.topGroups.size());
+		Assert.assertEquals(2, result.groupCount);
+	}
+
+	@Test
+	public void pauseDiscardsThreadsOutsideChurnMode() {
+		TopThreadChurn churn = new TopThreadChurn(null);
+		churn.topChurn(0, tasks("main", 1, "pool-1-thread-1", 10), 2, 10);
+		churn.topChurn(1000, tasks("main", 1, "pool-1-thread-1", 10, "pool-1-thread-2", 11), 3, 10);
+
+		// 离开churn模式期间线程10、11退出，20、21新建，另有100个线程启动又退出
+		churn.pause();
+		TopChurnResult result = churn.topChurn(120000, tasks("main", 1, "pool-1-thread-3", 20, "pool-1-thread-4", 21),
+				105, 10);
+		Assert.assertFalse(result.ready);
+		Assert.assertEquals(0, result.created);
+		Assert.assertEquals(0, result.died);
+		Assert.assertEquals(0, result.unseen);
+
+		result = churn.topChurn(121000, tasks("main", 1, "pool-1-thread-3", 20), 105, 10);
+		Assert.assertTrue(result.ready);
+		Assert.assertEquals(0, result.created);
+		Assert.assertEquals(1, result.died);
+		Assert.assertEquals(0, result.started);
+		Assert.assertEquals(0, result.unseen);
+		ChurnStat pool = result.topGroups.get(0);
+		// 重新进入时已存在的线程不知道存活时长，不算作短命线程
+		Assert.assertEquals(0, pool.shortLived);
+		Assert.assertEquals(1, pool.totalCreated);
+		Assert.assertEquals(1, pool.totalDied);
+	}
+
+	/**
+	 * 参数为交替的线程名与线程号
+	 */
+	private static List<TaskStat> tasks(Object... nameAndTids) {
+		List<TaskStat> result = new ArrayList<>();
+		for (int i = 0; i < nameAndTids.length; i += 2) {
+			TaskStat stat = new TaskStat();
+			stat.name = (String) nameAndTids[i];
+			stat.tid = ((Integer) nameAndTids[i + 1]).longValue();
+			result.add(stat);
+		}
+		return result;
+	}
+}
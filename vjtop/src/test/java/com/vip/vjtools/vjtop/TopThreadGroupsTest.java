@@ -0,0 +1,81 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.TopThreadGroups.GroupStat;
+import com.vip.vjtools.vjtop.TopThreadGroups.TopGroupResult;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+
+public class TopThreadGroupsTest {
+
+	private static final String POOL = "pool-*-thread-*";
+
+	@Test
+	public void aggregateByGroup() {
+		TopThreadGroups topGroups = new TopThreadGroups(null);
+		// 第一个周期只记录各线程的累计值
+		TopGroupResult result = topGroups.topGroups(tasks("main", 1, 100, 0, "pool-1-thread-1", 10, 1000, 100,
+				"pool-1-thread-2", 11, 2000, 200, "Signal Dispatcher", 20, 50, 0), 10);
+		Assert.assertFalse(result.ready);
+		Assert.assertEquals(0, result.deltaAllCpu);
+
+		// 新出现的12没有区间值，但计入线程池的线程数
+		result = topGroups.topGroups(tasks("main", 1, 300, 50, "pool-1-thread-1", 10, 1500, 150, "pool-1-thread-2",
+				11, 2600, 300, "pool-1-thread-3", 12, 400, 0, "Signal Dispatcher", 20, 50, 0), 2);
+		Assert.assertTrue(result.ready);
+		Assert.assertEquals(3, result.groupCount);
+		Assert.assertEquals(1300, result.deltaAllCpu);
+		// 按区间CPU排序并截取前groupLimit个
+		Assert.assertEquals(2, result.topGroups.size());
+		GroupStat pool = result.topGroups.get(0);
+		Assert.assertEquals(POOL, pool.name);
+		Assert.assertEquals(3, pool.threads);
+		Assert.assertEquals(1100, pool.deltaCpu);
+		Assert.assertEquals(150, pool.deltaSys);
+		Assert.assertEquals(4500, pool.totalCpu);
+		GroupStat main = result.topGroups.get(1);
+		Assert.assertEquals("main", main.name);
+		Assert.assertEquals(200, main.deltaCpu);
+		Assert.assertEquals(50, main.deltaSys);
+
+		// 11退出后从线程池中移除，没有线程的Signal Dispatcher被删除
+		result = topGroups.topGroups(tasks("main", 1, 1300, 50, "pool-1-thread-1", 10, 1600, 150, "pool-1-thread-3",
+				12, 500, 0), 10);
+		Assert.assertEquals(2, result.groupCount);
+		Assert.assertEquals("main", result.topGroups.get(0).name);
+		Assert.assertEquals(1000, result.topGroups.get(0).deltaCpu);
+		pool = result.topGroups.get(1);
+		Assert.assertEquals(POOL, pool.name);
+		Assert.assertEquals(2, pool.threads);
+		Assert.assertEquals(200, pool.deltaCpu);
+		Assert.assertEquals(2100, pool.totalCpu);
+
+		// 同名的线程再次出现时重新开始累计，没有区间值
+		result = topGroups.topGroups(tasks("main", 1, 1400, 50, "Signal Dispatcher", 21, 80, 0), 10);
+		Assert.assertEquals(2, result.groupCount);
+		Assert.assertEquals(100, result.deltaAllCpu);
+		Assert.assertEquals(0, result.topGroups.get(1).deltaCpu);
+		Assert.assertEquals("Signal Dispatcher", result.topGroups.get(1).name);
+		Assert.assertEquals(1, result.topGroups.get(1).threads);
+	}
+
+	/**
+	 * 参数依次为线程名、线程号、累计cpu与累计syscpu
+	 */
+	private static List<TaskStat> tasks(Object... values) {
+		List<TaskStat> result = new ArrayList<>();
+		for (int i = 0; i < values.length; i += 4) {
+			TaskStat stat = new TaskStat();
+			stat.name = (String) values[i];
+			stat.tid = ((Integer) values[i + 1]).longValue();
+			stat.sysCpuNanos = ((Integer) values[i + 3]).longValue();
+			stat.userCpuNanos = ((Integer) values[i + 2]).longValue() - stat.sysCpuNanos;
+			result.add(stat);
+		}
+		return result;
+	}
+}
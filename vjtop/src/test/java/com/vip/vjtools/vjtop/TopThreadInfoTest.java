@@ -0,0 +1,61 @@
+package com.vip.vjtools.vjtop;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+import com.vip.vjtools.vjtop.data.ProcFileData.TaskStat;
+
+public class TopThreadInfoTest {
+
+	private static final String DUMP = "\"main\" #1 prio=5 os_prio=0 tid=0x00007f2c6c009800 nid=0x64 runnable\n"
+			+ "\"VM Thread\" os_prio=0 tid=0x00007f2c6c0c1000 nid=0x65 runnable\n";
+
+	// 每个周期的显示阈值
+	private static final long MIN_DELTA = 1000000;
+
+	@Test
+	public void refreshSoonForBusyUnmappedThread() throws Exception {
+		TopThreadInfo topThreadInfo = new TopThreadInfo(VMInfo.createDeadVM("1234", VMInfoState.ATTACHED));
+		Assert.assertTrue(topThreadInfo.needRefreshNidMapping(tasks(task(0x64, 0)), MIN_DELTA, 0));
+		topThreadInfo.updateNidMapping(DUMP, tasks(task(0x64, 0), task(0x65, 0)), 0);
+
+		// 新启动的空闲线程等到60秒后才映射
+		List<TaskStat> idle = tasks(task(0x64, 0), task(0x65, 0), task(0x66, 10));
+		Assert.assertFalse(topThreadInfo.needRefreshNidMapping(idle, MIN_DELTA, 6000));
+		Assert.assertTrue(topThreadInfo.needRefreshNidMapping(idle, MIN_DELTA, 60000));
+
+		// 新启动的繁忙线程5秒后即映射
+		List<TaskStat> busy = tasks(task(0x64, 0), task(0x65, 0), task(0x66, 5 * MIN_DELTA));
+		Assert.assertFalse(topThreadInfo.needRefreshNidMapping(busy, MIN_DELTA, 1000));
+		Assert.assertTrue(topThreadInfo.needRefreshNidMapping(busy, MIN_DELTA, 6000));
+	}
+
+	@Test
+	public void busyThreadNotInDump() throws Exception {
+		TopThreadInfo topThreadInfo = new TopThreadInfo(VMInfo.createDeadVM("1234", VMInfoState.ATTACHED));
+		// 0x70为没有attach到JVM的native线程，Dump中没有它
+		List<TaskStat> tasks = tasks(task(0x64, 0), task(0x65, 0), task(0x70, 5 * MIN_DELTA));
+		topThreadInfo.updateNidMapping(DUMP, tasks, 0);
+
+		Assert.assertFalse(topThreadInfo.needRefreshNidMapping(tasks, MIN_DELTA, 6000));
+		// 仍按较长的间隔重新映射
+		Assert.assertTrue(topThreadInfo.needRefreshNidMapping(tasks, MIN_DELTA, 60000));
+	}
+
+	private static TaskStat task(long tid, long cpuNanos) {
+		TaskStat stat = new TaskStat();
+		stat.tid = tid;
+		stat.name = "task-" + tid;
+		stat.userCpuNanos = cpuNanos;
+		return stat;
+	}
+
+	private static List<TaskStat> tasks(TaskStat... stats) {
+		return new ArrayList<>(Arrays.asList(stats));
+	}
+}
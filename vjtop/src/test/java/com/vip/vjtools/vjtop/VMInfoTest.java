@@ -0,0 +1,61 @@
+package com.vip.vjtools.vjtop;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.VMInfo.VMInfoState;
+
+public class VMInfoTest {
+
+	private static final long MB = 1024 * 1024;
+
+	@Test
+	public void heapRates() {
+		VMInfo vmInfo = VMInfo.createDeadVM("1234", VMInfoState.ATTACHED);
+		next(vmInfo, 0, 0, 0);
+		vmInfo.updateHeapRates(10 * MB, 100 * MB, 50 * MB);
+		Assert.assertEquals(-1, vmInfo.allocRate.ratePerSecond);
+
+		// 10秒内没有GC，eden增长了50m
+		next(vmInfo, 10000, 0, 0);
+		vmInfo.updateHeapRates(60 * MB, 100 * MB, 50 * MB);
+		Assert.assertEquals(5 * MB, vmInfo.allocRate.lastPerSecond);
+		Assert.assertEquals(5 * MB, vmInfo.allocRate.ratePerSecond);
+		Assert.assertEquals(0, vmInfo.promoteRate.lastPerSecond);
+
+		// 两次ygc: 上次剩余的40m + 一个完整的eden 100m + 当前的20m，老年代增长了20m
+		next(vmInfo, 20000, 2, 0);
+		vmInfo.updateHeapRates(20 * MB, 100 * MB, 70 * MB);
+		Assert.assertEquals(16 * MB, vmInfo.allocRate.lastPerSecond);
+		Assert.assertEquals(2 * MB, vmInfo.promoteRate.lastPerSecond);
+		// 平滑后介于新旧值之间
+		Assert.assertTrue(vmInfo.allocRate.ratePerSecond > 5 * MB);
+		Assert.assertTrue(vmInfo.allocRate.ratePerSecond < 16 * MB);
+
+		// Full GC的周期无法推算晋升量，保持上次的值
+		long promoteRate = vmInfo.promoteRate.ratePerSecond;
+		next(vmInfo, 30000, 2, 1);
+		vmInfo.updateHeapRates(5 * MB, 100 * MB, 10 * MB);
+		Assert.assertEquals(promoteRate, vmInfo.promoteRate.ratePerSecond);
+	}
+
+	@Test
+	public void javaMajorVersion() {
+		Assert.assertEquals(6, VMInfo.getJavaMajorVersion("1.6.0_45"));
+		Assert.assertEquals(7, VMInfo.getJavaMajorVersion("1.7.0_80"));
+		Assert.assertEquals(8, VMInfo.getJavaMajorVersion("1.8.0_292"));
+		Assert.assertEquals(9, VMInfo.getJavaMajorVersion("9"));
+		Assert.assertEquals(9, VMInfo.getJavaMajorVersion("9.0.4"));
+		Assert.assertEquals(11, VMInfo.getJavaMajorVersion("11.0.21"));
+		Assert.assertEquals(17, VMInfo.getJavaMajorVersion("17"));
+		Assert.assertEquals(21, VMInfo.getJavaMajorVersion("21-ea"));
+		Assert.assertEquals(0, VMInfo.getJavaMajorVersion(""));
+		Assert.assertEquals(0, VMInfo.getJavaMajorVersion("unknown"));
+	}
+
+	private static void next(VMInfo vmInfo, long uptime, long ygcCount, long fullgcCount) {
+		vmInfo.upTimeMills.update(uptime);
+		vmInfo.ygcCount.update(ygcCount);
+		vmInfo.fullgcCount.update(fullgcCount);
+	}
+}
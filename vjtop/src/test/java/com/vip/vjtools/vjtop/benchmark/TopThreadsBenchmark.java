@@ -0,0 +1,152 @@
+package com.vip.vjtools.vjtop.benchmark;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.vip.vjtools.vjtop.util.LongLongHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectHashMap;
+import com.vip.vjtools.vjtop.util.LongObjectMap;
+import com.vip.vjtools.vjtop.util.Utils;
+
+/**
+ * 对比TopThreadInfo一次刷新的核心计算(计算每个线程的cpu区间值，再取top N线程)在两种实现下的耗时与内存分配:
+ *
+ * boxed: 原实现，每次刷新新建LongObjectHashMap<Long>，值为装箱的Long，排序前先复制到数组再全排序。
+ *
+ * primitive: 现实现，两个LongLongHashMap交替作为本次与上次的累计值，区间值Map复用，top N用插入选择。
+ *
+ * 在IDE中直接运行main()，或mvn test-compile后以test classpath运行本类。JMH参数加上-prof gc可看到每次操作的分配字节数，
+ * 5000线程时primitive版本在稳定后没有内存分配。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopThreadsBenchmark {
+
+	private static final int TOP_N = 10;
+
+	@Param({ "500", "5000" })
+	public int threadCount;
+
+	private long[] tids;
+	private long[] cpuTimes;
+
+	private LongObjectMap<Long> boxedLastTimes;
+
+	private LongLongHashMap lastTimes;
+	private LongLongHashMap currentTimes;
+	private LongLongHashMap deltaTimes;
+
+	@Setup
+	public void setup() {
+		tids = new long[threadCount];
+		cpuTimes = new long[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			tids[i] = 1000 + i * 3;
+			cpuTimes[i] = i * 1000000L;
+		}
+
+		boxedLastTimes = new LongObjectHashMap<>(threadCount);
+		lastTimes = new LongLongHashMap(threadCount);
+		currentTimes = new LongLongHashMap(threadCount);
+		deltaTimes = new LongLongHashMap(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			boxedLastTimes.put(tids[i], Long.valueOf(cpuTimes[i]));
+			lastTimes.put(tids[i], cpuTimes[i]);
+		}
+	}
+
+	private void tick() {
+		// 每次刷新每个线程的cpu时间都增长不同的值，令top N不断变化
+		for (int i = 0; i < threadCount; i++) {
+			cpuTimes[i] += (i * 7919L + cpuTimes[i]) % 100000;
+		}
+	}
+
+	@Benchmark
+	public long[] boxed() {
+		tick();
+		LongObjectMap<Long> currentTimes = new LongObjectHashMap<>(threadCount);
+		LongObjectMap<Long> deltaTimes = new LongObjectHashMap<>(threadCount);
+		for (int i = 0; i < threadCount; i++) {
+			currentTimes.put(tids[i], Long.valueOf(cpuTimes[i]));
+			Long last = boxedLastTimes.get(tids[i]);
+			if (last != null) {
+				deltaTimes.put(tids[i], Long.valueOf(cpuTimes[i] - last));
+			}
+		}
+		boxedLastTimes = currentTimes;
+		return boxedSortAndFilter(deltaTimes, TOP_N);
+	}
+
+	@Benchmark
+	public long[] primitive() {
+		tick();
+		currentTimes.clear();
+		deltaTimes.clear();
+		for (int i = 0; i < threadCount; i++) {
+			currentTimes.put(tids[i], cpuTimes[i]);
+			long last = lastTimes.get(tids[i], -1);
+			if (last != -1) {
+				deltaTimes.put(tids[i], cpuTimes[i] - last);
+			}
+		}
+		LongLongHashMap temp = lastTimes;
+		lastTimes = currentTimes;
+		currentTimes = temp;
+		return Utils.sortAndFilterThreadIdsByValue(deltaTimes, TOP_N);
+	}
+
+	/**
+	 * 原Utils.sortAndFilterThreadIdsByValue的实现
+	 */
+	private static long[] boxedSortAndFilter(LongObjectMap<Long> map, int threadLimit) {
+		int max = Math.min(threadLimit, map.size());
+		List<Map.Entry<Long, Long>> list = new LinkedList<>(map.entrySet());
+		Collections.sort(list, new Comparator<Map.Entry<Long, Long>>() {
+			@Override
+			public int compare(Map.Entry<Long, Long> o1, Map.Entry<Long, Long> o2) {
+				return o2.getValue().compareTo(o1.getValue());
+			}
+		});
+
+		long[] topTidArray = new long[max];
+		int i = 0;
+		for (Map.Entry<Long, Long> entry : list) {
+			if (i >= max) {
+				break;
+			}
+			topTidArray[i++] = entry.getKey();
+		}
+		return topTidArray;
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder().include(TopThreadsBenchmark.class.getSimpleName())
+				.addProfiler("gc").build();
+		new Runner(options).run();
+	}
+}
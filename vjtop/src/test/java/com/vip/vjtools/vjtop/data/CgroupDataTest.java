@@ -0,0 +1,79 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CgroupDataTest {
+
+	@Test
+	public void resolveMountPoint() {
+		List<String> mounts = Arrays.asList(
+				"32 24 0:28 / /sys/fs/cgroup rw,relatime - tmpfs tmpfs rw,mode=755",
+				"33 32 0:29 / /not-exist/cpu,cpuacct rw,relatime shared:9 - cgroup cgroup rw,cpu,cpuacct",
+				"36 32 0:32 /kubepods/pod1 /not-exist/memory rw,relatime - cgroup cgroup rw,memory",
+				"40 32 0:35 / /not-exist/unified rw,relatime - cgroup2 cgroup2 rw");
+
+		// 路径在vjtop中不可见时退回挂载点
+		Assert.assertEquals("/not-exist/cpu,cpuacct",
+				CgroupData.resolve(mounts, "cgroup", "cpu", "/kubepods/pod1/container"));
+		Assert.assertEquals("/not-exist/memory",
+				CgroupData.resolve(mounts, "cgroup", "memory", "/kubepods/pod1/container"));
+		Assert.assertEquals("/not-exist/unified", CgroupData.resolve(mounts, "cgroup2", null, "/system.slice"));
+		Assert.assertNull(CgroupData.resolve(mounts, "cgroup", "pids", "/"));
+	}
+
+	@Test
+	public void resolveExistingPath() {
+		List<String> mounts = Arrays.asList("25 24 0:22 / / rw,relatime - cgroup2 cgroup2 rw");
+		Assert.assertEquals("/tmp", CgroupData.resolve(mounts, "cgroup2", null, "/tmp"));
+	}
+
+	@Test
+	public void memoryWorkingSet() throws IOException {
+		// v2: memory.current 1000m，其中600m为不活跃的文件页
+		File dir = createDir();
+		write(dir, "memory.current", "1048576000\n");
+		write(dir, "memory.stat", "anon 314572800\nfile 734003200\nactive_file 104857600\ninactive_file 629145600\n");
+		CgroupData cgroup = new CgroupData(2, dir.getPath(), dir.getPath());
+		Assert.assertEquals(419430400L, cgroup.readMemoryWorkingSet());
+		cgroup.close();
+
+		// v1使用包含子cgroup的total_inactive_file
+		dir = createDir();
+		write(dir, "memory.usage_in_bytes", "1048576000\n");
+		write(dir, "memory.stat", "cache 734003200\ninactive_file 1024\ntotal_cache 734003200\n"
+				+ "total_inactive_file 629145600\n");
+		cgroup = new CgroupData(1, null, dir.getPath());
+		Assert.assertEquals(419430400L, cgroup.readMemoryWorkingSet());
+		cgroup.close();
+
+		// 没有memory.stat时退回用量
+		dir = createDir();
+		write(dir, "memory.current", "1048576000\n");
+		cgroup = new CgroupData(2, dir.getPath(), dir.getPath());
+		Assert.assertEquals(1048576000L, cgroup.readMemoryWorkingSet());
+		cgroup.close();
+	}
+
+	private static File createDir() throws IOException {
+		File dir = Files.createTempDirectory("vjtop-cgroup").toFile();
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	private static void write(File dir, String name, String content) throws IOException {
+		File file = new File(dir, name);
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LocalVMDiscoveryTest {
+
+	@Test
+	public void listPids() throws IOException {
+		File tmpDir = Files.createTempDirectory("vjtop-tmp").toFile();
+		File procDir = Files.createTempDirectory("vjtop-proc").toFile();
+		tmpDir.deleteOnExit();
+		procDir.deleteOnExit();
+
+		File userDir = mkdir(tmpDir, "hsperfdata_app");
+		File otherDir = mkdir(tmpDir, "hsperfdata_admin");
+		File notPerfDir = mkdir(tmpDir, "other");
+		// 123与456存活，789被kill -9后留下了PerfData文件，100为vjtop自身
+		touch(userDir, "123");
+		touch(userDir, "789");
+		touch(userDir, "100");
+		touch(userDir, "tmp123");
+		touch(otherDir, "456");
+		touch(notPerfDir, "999");
+		for (String pid : new String[] { "123", "456", "100", "999" }) {
+			mkdir(procDir, pid);
+		}
+
+		List<String> pids = new LocalVMDiscovery(tmpDir, "100", procDir).listPids();
+		Collections.sort(pids);
+		Assert.assertEquals(Arrays.asList("123", "456"), pids);
+
+		// 非Linux时不检查进程是否存在
+		pids = new LocalVMDiscovery(tmpDir, "100", null).listPids();
+		Collections.sort(pids);
+		Assert.assertEquals(Arrays.asList("123", "456", "789"), pids);
+	}
+
+	private static File mkdir(File parent, String name) {
+		File dir = new File(parent, name);
+		Assert.assertTrue(dir.mkdir());
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	private static void touch(File parent, String name) throws IOException {
+		File file = new File(parent, name);
+		Assert.assertTrue(file.createNewFile());
+		file.deleteOnExit();
+	}
+}
@@ -0,0 +1,90 @@
+package com.vip.vjtools.vjtop.data;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ProcFileReaderTest {
+
+	@Test
+	public void parseStatusKeyValues() throws IOException {
+		File file = createFile("Name:\tjava\nState:\tS (sleeping)\nVmHWM:\t 6711000 kB\nVmRSS:\t 6626000 kB\n"
+				+ "Threads:\t787\nSigQ:\t0/1031009\n");
+
+		ProcFileReader reader = new ProcFileReader(file.getPath());
+		long[] values = new long[4];
+		Assert.assertTrue(reader.read());
+		reader.parseKeyValues(ProcFileReader.toKeys("VmRSS", "VmHWM", "VmSwap", "Threads"), values);
+		reader.close();
+
+		Assert.assertEquals(6626000L * 1024, values[0]);
+		Assert.assertEquals(6711000L * 1024, values[1]);
+		Assert.assertEquals(-1, values[2]);
+		Assert.assertEquals(787, values[3]);
+	}
+
+	@Test
+	public void parseStatWithSpaceInComm() throws IOException {
+		File file = createFile("4161 (VM (Periodic) Task) S 4100 4100 4100 0 -1 1077960768 12 0 0 0 250 37 0 0 20 0\n");
+
+		ProcFileReader reader = new ProcFileReader(null);
+		long[] values = new long[3];
+		Assert.assertTrue(reader.read(file.getPath()));
+		Assert.assertTrue(reader.parseStatFields(new int[] { 0, 11, 12 }, values));
+
+		Assert.assertEquals('S', values[0]);
+		Assert.assertEquals(250, values[1]);
+		Assert.assertEquals(37, values[2]);
+		Assert.assertEquals("VM (Periodic) Task", reader.parseStatComm());
+	}
+
+	@Test
+	public void parseCgroupFiles() throws IOException {
+		File stat = createFile("nr_periods 1200\nnr_throttled 35\nthrottled_time 812000000\nnr_bursts 0\n");
+		ProcFileReader reader = new ProcFileReader(stat.getPath());
+		long[] values = new long[3];
+		Assert.assertTrue(reader.read());
+		reader.parseKeyValues(ProcFileReader.toKeys("nr_periods", "nr_throttled", "throttled_time"), values,
+				(byte) ' ');
+		reader.close();
+
+		Assert.assertEquals(1200, values[0]);
+		Assert.assertEquals(35, values[1]);
+		Assert.assertEquals(812000000, values[2]);
+
+		long[] fields = new long[2];
+		reader = new ProcFileReader(null);
+		Assert.assertTrue(reader.read(createFile("200000 100000\n").getPath()));
+		Assert.assertEquals(2, reader.parseFields(fields));
+		Assert.assertEquals(200000, fields[0]);
+		Assert.assertEquals(100000, fields[1]);
+
+		// 不限制时的cpu.max与cpu.cfs_quota_us
+		Assert.assertTrue(reader.read(createFile("max 100000\n").getPath()));
+		Assert.assertEquals(2, reader.parseFields(fields));
+		Assert.assertEquals(-1, fields[0]);
+		Assert.assertTrue(reader.read(createFile("-1\n").getPath()));
+		Assert.assertEquals(1, reader.parseFields(fields));
+		Assert.assertEquals(-1, fields[0]);
+	}
+
+	@Test
+	public void readMissingFile() {
+		ProcFileReader reader = new ProcFileReader("/proc/not-exist/status");
+		Assert.assertFalse(reader.read());
+		Assert.assertFalse(reader.read("/proc/not-exist/stat"));
+	}
+
+	private static File createFile(String content) throws IOException {
+		File file = File.createTempFile("vjtop-proc", ".txt");
+		file.deleteOnExit();
+		try (FileOutputStream out = new FileOutputStream(file)) {
+			out.write(content.getBytes(StandardCharsets.UTF_8));
+		}
+		return file;
+	}
+}
@@ -0,0 +1,43 @@
+package com.vip.vjtools.vjtop.data;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThreadNidMapperTest {
+
+	@Test
+	public void parseJdk8ThreadDump() {
+		String dump = "2018-08-08 10:00:00\n" + "Full thread dump Java HotSpot(TM) 64-Bit Server VM (25.131-b11 mixed mode):\n"
+				+ "\n"
+				+ "\"http-nio-8080-exec-1\" #23 daemon prio=5 os_prio=0 tid=0x00007f2c6c00a000 nid=0x1a2b waiting on condition [0x00007f2c3bffe000]\n"
+				+ "   java.lang.Thread.State: WAITING (parking)\n"
+				+ "\n"
+				+ "\"main\" #1 prio=5 os_prio=0 tid=0x00007f2c6c009800 nid=0x1a03 runnable [0x00007f2c73a5e000]\n"
+				+ "\n" + "\"VM Thread\" os_prio=0 tid=0x00007f2c6c0c1000 nid=0x1a0b runnable \n"
+				+ "\n" + "\"GC task thread#0 (ParallelGC)\" os_prio=0 tid=0x00007f2c6c01e800 nid=0x1a04 runnable \n";
+
+		ThreadNidMapper mapper = new ThreadNidMapper();
+		mapper.update(dump);
+
+		Assert.assertEquals(4, mapper.size());
+		Assert.assertEquals(Long.valueOf(23), mapper.getTid(0x1a2b));
+		Assert.assertEquals(Long.valueOf(1), mapper.getTid(0x1a03));
+		Assert.assertEquals(Long.valueOf(ThreadNidMapper.NON_JAVA_THREAD), mapper.getTid(0x1a0b));
+		Assert.assertEquals("http-nio-8080-exec-1", mapper.getName(0x1a2b));
+		Assert.assertEquals("GC task thread#0 (ParallelGC)", mapper.getName(0x1a04));
+		Assert.assertNull(mapper.getTid(0x9999));
+	}
+
+	@Test
+	public void parseDecimalNidAndReplaceOldMapping() {
+		ThreadNidMapper mapper = new ThreadNidMapper();
+		mapper.update("\"main\" #1 prio=5 os_prio=0 tid=0x00007f2c6c009800 nid=0x1a03 runnable\n");
+
+		mapper.update(
+				"\"worker \"1\"\" #15 [6699] prio=5 os_prio=0 cpu=12.50ms elapsed=3.01s tid=0x00007f2c6c00a000 nid=6699 waiting on condition\n");
+
+		Assert.assertFalse(mapper.contains(0x1a03));
+		Assert.assertEquals(Long.valueOf(15), mapper.getTid(6699));
+		Assert.assertEquals("worker \"1\"", mapper.getName(6699));
+	}
+}
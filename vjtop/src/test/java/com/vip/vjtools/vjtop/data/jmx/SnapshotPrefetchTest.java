@@ -0,0 +1,49 @@
+package com.vip.vjtools.vjtop.data.jmx;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.vip.vjtools.vjtop.data.jmx.JmxClient.CallStats;
+import com.vip.vjtools.vjtop.data.jmx.JmxClient.Snapshot;
+import com.vip.vjtools.vjtop.data.jmx.JmxClient.SnapshotMBeanServerConnection;
+
+public class SnapshotPrefetchTest {
+
+	@Test
+	public void prefetchAttributesUsedInLastInterval() throws Exception {
+		MBeanServerConnection mbsc = ManagementFactory.getPlatformMBeanServer();
+		CallStats stats = new CallStats();
+		SnapshotMBeanServerConnection server = Snapshot.newSnapshot(mbsc, stats);
+
+		ObjectName threading = new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME);
+		ObjectName classLoading = new ObjectName(ManagementFactory.CLASS_LOADING_MXBEAN_NAME);
+		ObjectName runtime = new ObjectName(ManagementFactory.RUNTIME_MXBEAN_NAME);
+
+		// 第一个周期，逐个MBean读取并学习
+		server.getAttribute(runtime, "StartTime");
+		server.flush();
+		server.prefetch();
+		server.getAttribute(threading, "ThreadCount");
+		server.getAttribute(classLoading, "LoadedClassCount");
+		Assert.assertEquals(2, stats.getCalls());
+
+		// 第二个周期，只预取上一周期用到的两个MBean，之后的读取全部命中缓存
+		server.flush();
+		server.prefetch();
+		Assert.assertEquals(2, stats.getPrefetchBeans());
+		Assert.assertEquals(2, stats.getCalls());
+
+		server.getAttribute(threading, "ThreadCount");
+		server.getAttribute(classLoading, "LoadedClassCount");
+		Assert.assertEquals(2, stats.getCalls());
+
+		// 未预取的属性仍按原方式获取
+		server.getAttribute(threading, "DaemonThreadCount");
+		Assert.assertEquals(3, stats.getCalls());
+	}
+}
@@ -246,4 +246,30 @@ public class FormatsTest {
         // Method is not expected to return due to exception thrown
     }
 
+    @Test
+    public void appendDecimal() {
+        Assert.assertEquals("12.35", decimal(12.345, 2));
+        Assert.assertEquals("0.05", decimal(0.05, 2));
+        Assert.assertEquals("100.00", decimal(100, 2));
+        Assert.assertEquals("-1.50", decimal(-1.5, 2));
+        Assert.assertEquals("0.007", decimal(0.007, 3));
+        Assert.assertEquals("3", decimal(3.2, 0));
+        Assert.assertEquals("-1", decimal(Double.NaN, 2));
+    }
+
+    @Test
+    public void utf8Encoding() {
+        Assert.assertTrue(Formats.isUtf8("UTF-8"));
+        Assert.assertTrue(Formats.isUtf8("utf8"));
+        Assert.assertFalse(Formats.isUtf8("ANSI_X3.4-1968"));
+        Assert.assertFalse(Formats.isUtf8("GBK"));
+        Assert.assertFalse(Formats.isUtf8(null));
+    }
+
+    private static String decimal(double value, int scale) {
+        StringBuilder sb = new StringBuilder();
+        Formats.appendDecimal(sb, value, scale);
+        return sb.toString();
+    }
+
 }
@@ -0,0 +1,54 @@
+package com.vip.vjtools.vjtop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+
+	@Test
+	public void percentiles() {
+		Histogram histogram = new Histogram();
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i * 1000);
+		}
+
+		Assert.assertEquals(1000, histogram.getTotalCount());
+		Assert.assertEquals(1000000, histogram.getMaxValue());
+		// 桶的上界，相对误差不超过1/16
+		assertWithin(500000, histogram.getValueAtPercentile(50));
+		assertWithin(990000, histogram.getValueAtPercentile(99));
+		Assert.assertEquals(1000000, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void smallValuesAreExact() {
+		Histogram histogram = new Histogram();
+		histogram.record(3, 99);
+		histogram.record(7);
+
+		Assert.assertEquals(3, histogram.getValueAtPercentile(50));
+		Assert.assertEquals(3, histogram.getValueAtPercentile(99));
+		Assert.assertEquals(7, histogram.getValueAtPercentile(100));
+	}
+
+	@Test
+	public void addAndReset() {
+		Histogram a = new Histogram();
+		Histogram b = new Histogram();
+		a.record(10);
+		b.record(Long.MAX_VALUE);
+		a.add(b);
+
+		Assert.assertEquals(2, a.getTotalCount());
+		Assert.assertEquals(Long.MAX_VALUE, a.getValueAtPercentile(100));
+
+		a.reset();
+		Assert.assertEquals(0, a.getTotalCount());
+		Assert.assertEquals(0, a.getValueAtPercentile(50));
+	}
+
+	private static void assertWithin(long expected, long actual) {
+		Assert.assertTrue(actual + " < " + expected, actual >= expected);
+		Assert.assertTrue(actual + " too far from " + expected, actual <= expected + expected / 16);
+	}
+}
@@ -0,0 +1,48 @@
+package com.vip.vjtools.vjtop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongHashSetTest {
+
+	@Test
+	public void addAndContains() {
+		LongHashSet set = new LongHashSet(4);
+		for (long tid = 1; tid <= 1000; tid++) {
+			Assert.assertTrue(set.add(tid));
+		}
+		Assert.assertFalse(set.add(500));
+
+		Assert.assertEquals(1000, set.size());
+		Assert.assertTrue(set.contains(1));
+		Assert.assertTrue(set.contains(1000));
+		Assert.assertFalse(set.contains(1001));
+
+		int count = 0;
+		for (int slot = 0; slot < set.capacity(); slot++) {
+			if (set.isUsed(slot)) {
+				count++;
+			}
+		}
+		Assert.assertEquals(1000, count);
+	}
+
+	@Test
+	public void clearKeepCapacity() {
+		LongHashSet set = new LongHashSet();
+		for (long tid = 1; tid <= 100; tid++) {
+			set.add(tid);
+		}
+		int capacity = set.capacity();
+
+		set.clear();
+		Assert.assertTrue(set.isEmpty());
+		Assert.assertFalse(set.contains(50));
+		Assert.assertEquals(capacity, set.capacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroKeyIsReserved() {
+		new LongHashSet().add(0);
+	}
+}
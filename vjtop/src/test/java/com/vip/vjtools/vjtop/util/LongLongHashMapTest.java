@@ -0,0 +1,65 @@
+package com.vip.vjtools.vjtop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongLongHashMapTest {
+
+	@Test
+	public void putAndGet() {
+		LongLongHashMap map = new LongLongHashMap(4);
+		for (long tid = 1; tid <= 1000; tid++) {
+			map.put(tid, tid * 10);
+		}
+		// 覆盖已有的key不增加size
+		map.put(500, 1);
+
+		Assert.assertEquals(1000, map.size());
+		Assert.assertEquals(10, map.get(1, -1));
+		Assert.assertEquals(1, map.get(500, -1));
+		Assert.assertEquals(10000, map.get(1000, -1));
+		Assert.assertEquals(-1, map.get(1001, -1));
+		Assert.assertTrue(map.containsKey(999));
+		Assert.assertFalse(map.containsKey(1001));
+	}
+
+	@Test
+	public void clearKeepCapacity() {
+		LongLongHashMap map = new LongLongHashMap();
+		for (long tid = 1; tid <= 100; tid++) {
+			map.put(tid, tid);
+		}
+		int capacity = map.capacity();
+
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(-1, map.get(50, -1));
+		Assert.assertEquals(capacity, map.capacity());
+
+		map.put(50, 5);
+		Assert.assertEquals(5, map.get(50, -1));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void zeroKeyIsReserved() {
+		new LongLongHashMap().put(0, 1);
+	}
+
+	@Test
+	public void sortAndFilterThreadIdsByValue() {
+		LongLongHashMap map = new LongLongHashMap();
+		long[] values = { 30, 10, 50, 20, 40, 50 };
+		for (int i = 0; i < values.length; i++) {
+			map.put(i + 1, values[i]);
+		}
+
+		long[] top = Utils.sortAndFilterThreadIdsByValue(map, 3);
+		Assert.assertEquals(3, top.length);
+		Assert.assertEquals(50, map.get(top[0], -1));
+		Assert.assertEquals(50, map.get(top[1], -1));
+		Assert.assertEquals(5, top[2]);
+
+		Assert.assertEquals(6, Utils.sortAndFilterThreadIdsByValue(map, 10).length);
+		Assert.assertEquals(0, Utils.sortAndFilterThreadIdsByValue(new LongLongHashMap(), 10).length);
+	}
+}
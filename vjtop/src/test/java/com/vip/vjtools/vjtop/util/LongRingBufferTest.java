@@ -0,0 +1,67 @@
+package com.vip.vjtools.vjtop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongRingBufferTest {
+
+	@Test
+	public void overwriteOldest() {
+		LongRingBuffer buffer = new LongRingBuffer(3);
+		Assert.assertTrue(buffer.isEmpty());
+
+		buffer.add(1);
+		buffer.add(2);
+		Assert.assertEquals(2, buffer.size());
+		Assert.assertEquals(1, buffer.get(0));
+		Assert.assertEquals(2, buffer.last());
+
+		buffer.add(3);
+		buffer.add(4);
+		buffer.add(5);
+		Assert.assertEquals(3, buffer.size());
+		Assert.assertEquals(3, buffer.get(0));
+		Assert.assertEquals(4, buffer.get(1));
+		Assert.assertEquals(5, buffer.last());
+	}
+
+	@Test
+	public void statsOfRecentValues() {
+		LongRingBuffer buffer = new LongRingBuffer(10);
+		for (long value : new long[] { 9, 1, 5, 3, 7 }) {
+			buffer.add(value);
+		}
+		Assert.assertEquals(1, buffer.min(5));
+		Assert.assertEquals(9, buffer.max(5));
+		Assert.assertEquals(5, buffer.avg(5));
+
+		// 只统计最近3个
+		Assert.assertEquals(3, buffer.min(3));
+		Assert.assertEquals(7, buffer.max(3));
+		Assert.assertEquals(5, buffer.avg(3));
+		// 超过size时按size统计
+		Assert.assertEquals(1, buffer.min(100));
+	}
+
+	@Test
+	public void sparkline() {
+		LongRingBuffer buffer = new LongRingBuffer(8);
+		for (long value = 0; value < 8; value++) {
+			buffer.add(value * 10);
+		}
+		String line = Formats.sparkline(buffer, 8, false);
+		Assert.assertEquals(8, line.length());
+		Assert.assertTrue(line.charAt(0) < line.charAt(7));
+		// 非UTF-8终端的ASCII字符
+		Assert.assertEquals("_.-~=+*#", Formats.sparkline(buffer, 8, true));
+
+		// 宽度小于size时只画最近的值，值相同时为最低一级
+		LongRingBuffer flat = new LongRingBuffer(8);
+		for (int i = 0; i < 8; i++) {
+			flat.add(42);
+		}
+		String flatLine = Formats.sparkline(flat, 4, false);
+		Assert.assertEquals(4, flatLine.length());
+		Assert.assertEquals(flatLine.charAt(0), flatLine.charAt(3));
+	}
+}
@@ -0,0 +1,21 @@
+package com.vip.vjtools.vjtop.util;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThreadNameNormalizerTest {
+
+	@Test
+	public void normalize() {
+		Assert.assertEquals("http-nio-8080-exec-*", ThreadNameNormalizer.normalize("http-nio-8080-exec-123"));
+		Assert.assertEquals("pool-*-thread-*", ThreadNameNormalizer.normalize("pool-3-thread-7"));
+		Assert.assertEquals("nioEventLoopGroup-*-*", ThreadNameNormalizer.normalize("nioEventLoopGroup-2-16"));
+		Assert.assertEquals("ForkJoinPool.commonPool-worker-*",
+				ThreadNameNormalizer.normalize("ForkJoinPool.commonPool-worker-5"));
+		Assert.assertEquals("C2 CompilerThread*", ThreadNameNormalizer.normalize("C2 CompilerThread0"));
+		Assert.assertEquals("GC task thread#* (ParallelGC)",
+				ThreadNameNormalizer.normalize("GC task thread#3 (ParallelGC)"));
+		Assert.assertEquals("main", ThreadNameNormalizer.normalize("main"));
+		Assert.assertEquals("*", ThreadNameNormalizer.normalize("12345"));
+	}
+}